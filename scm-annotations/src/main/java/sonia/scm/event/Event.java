@@ -54,4 +54,23 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 @PluginAnnotation("event")
 @Retention(RetentionPolicy.RUNTIME)
-public @interface Event {}
+public @interface Event
+{
+
+  /**
+   * Returns true if events of this type should be dispatched by a dedicated
+   * background thread of the event bus, instead of the thread which posts the
+   * event. All subscribers of such an event are called on the background
+   * thread, in the order in which the events were posted. If the queue of
+   * the event type stays full for too long, an event is dispatched by the
+   * posting thread and the order is not guaranteed for this event. Events
+   * which can be vetoed by a subscriber, such as pre receive hook events or
+   * events which are fired before an item is changed, are always dispatched
+   * synchronously.
+   *
+   * @return true if events of this type are dispatched asynchronously
+   *
+   * @since 2.0.0
+   */
+  boolean async() default false;
+}
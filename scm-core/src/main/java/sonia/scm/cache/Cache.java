@@ -37,6 +37,10 @@ package sonia.scm.cache;
 
 import com.google.common.base.Predicate;
 
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Set;
+
 /**
  * The main interface for the cache.
  * Provides methods to add, access, and remove entries from a cache.
@@ -65,6 +69,16 @@ public interface Cache<K, V>
    */
   public boolean contains(K key);
 
+  /**
+   * Returns a view of all keys of this cache. The view should only be used to
+   * find entries which have to be updated or removed.
+   *
+   * @return all keys of the cache
+   *
+   * @since 2.0.0
+   */
+  public Set<K> keys();
+
   /**
    * Put a new element to this cache.
    *
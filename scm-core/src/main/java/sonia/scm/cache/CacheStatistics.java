@@ -54,10 +54,29 @@ public final class CacheStatistics
    * @param missCount miss count
    */
   public CacheStatistics(String name, long hitCount, long missCount)
+  {
+    this(name, hitCount, missCount, 0l, -1l);
+  }
+
+  /**
+   * Constructs a new performance statistic for a {@link Cache}, which
+   * includes the evictions and the estimated size of the entries.
+   *
+   *
+   * @param name name of the cache
+   * @param hitCount hit count
+   * @param missCount miss count
+   * @param evictionCount number of evicted entries
+   * @param weight estimated size of all entries in bytes or -1 if unknown
+   */
+  public CacheStatistics(String name, long hitCount, long missCount,
+    long evictionCount, long weight)
   {
     this.name = name;
     this.hitCount = hitCount;
     this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.weight = weight;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -82,7 +101,9 @@ public final class CacheStatistics
 
     return Objects.equal(name, other.name)
       && Objects.equal(hitCount, other.hitCount)
-      && Objects.equal(missCount, other.missCount);
+      && Objects.equal(missCount, other.missCount)
+      && Objects.equal(evictionCount, other.evictionCount)
+      && Objects.equal(weight, other.weight);
   }
 
   /**
@@ -91,7 +112,7 @@ public final class CacheStatistics
   @Override
   public int hashCode()
   {
-    return Objects.hashCode(name, hitCount, missCount);
+    return Objects.hashCode(name, hitCount, missCount, evictionCount, weight);
   }
 
   /**
@@ -105,12 +126,26 @@ public final class CacheStatistics
                   .add("name", name)
                   .add("hitCount", hitCount)
                   .add("missCount", missCount)
+                  .add("evictionCount", evictionCount)
+                  .add("weight", weight)
                   .toString();
     //J+
   }
 
   //~--- get methods ----------------------------------------------------------
 
+  /**
+   * Returns the number of entries, which were evicted because of the size
+   * limit or the expiration of the cache.
+   *
+   *
+   * @return number of evicted entries
+   */
+  public long getEvictionCount()
+  {
+    return evictionCount;
+  }
+
   /**
    * Returns number of times requested elements were found in the cache.
    *
@@ -177,6 +212,18 @@ public final class CacheStatistics
     return hitCount + missCount;
   }
 
+  /**
+   * Returns the estimated size of all entries in bytes or -1, if the cache
+   * can not estimate the size of its entries.
+   *
+   *
+   * @return estimated size in bytes or -1
+   */
+  public long getWeight()
+  {
+    return weight;
+  }
+
   //~--- methods --------------------------------------------------------------
 
   /**
@@ -198,6 +245,9 @@ public final class CacheStatistics
 
   //~--- fields ---------------------------------------------------------------
 
+  /** eviction count */
+  private final long evictionCount;
+
   /** hit count */
   private final long hitCount;
 
@@ -206,4 +256,7 @@ public final class CacheStatistics
 
   /** name of cache */
   private final String name;
+
+  /** estimated size of all entries in bytes */
+  private final long weight;
 }
@@ -134,6 +134,7 @@ public class ScmConfiguration
     this.skipFailedAuthenticators = other.skipFailedAuthenticators;
     this.loginAttemptLimit = other.loginAttemptLimit;
     this.loginAttemptLimitTimeout = other.loginAttemptLimitTimeout;
+    this.commandCoalescingTimeout = other.commandCoalescingTimeout;
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -172,6 +173,20 @@ public class ScmConfiguration
     return baseUrl;
   }
 
+  /**
+   * Returns the time in seconds, which a repository command waits for an
+   * identical command that is already running. A value of 0 or lower disables
+   * the coalescing of identical repository commands.
+   *
+   * @return command coalescing timeout in seconds
+   *
+   * @since 2.0.0
+   */
+  public long getCommandCoalescingTimeout()
+  {
+    return commandCoalescingTimeout;
+  }
+
   /**
    * Returns the date format for the user interface. This format is a
    * JavaScript date format, from the library moment.js.
@@ -432,6 +447,20 @@ public class ScmConfiguration
     this.baseUrl = baseUrl;
   }
 
+  /**
+   * Sets the time in seconds, which a repository command waits for an
+   * identical command that is already running. A value of 0 or lower disables
+   * the coalescing of identical repository commands.
+   *
+   * @param commandCoalescingTimeout command coalescing timeout in seconds
+   *
+   * @since 2.0.0
+   */
+  public void setCommandCoalescingTimeout(long commandCoalescingTimeout)
+  {
+    this.commandCoalescingTimeout = commandCoalescingTimeout;
+  }
+
   /**
    * Sets the date format for the ui.
    *
@@ -676,6 +705,14 @@ public class ScmConfiguration
   @XmlElement(name = "login-attempt-limit-timeout")
   private long loginAttemptLimitTimeout = TimeUnit.MINUTES.toSeconds(5l);
 
+  /**
+   * Command coalescing timeout.
+   *
+   * @since 2.0.0
+   */
+  @XmlElement(name = "command-coalescing-timeout")
+  private long commandCoalescingTimeout = 30l;
+
   /** Field description */
   private boolean enableProxy = false;
 
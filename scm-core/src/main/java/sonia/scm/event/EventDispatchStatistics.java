@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of SCM-Manager;
+ * nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.event;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Objects;
+
+/**
+ * Statistics about the asynchronous dispatching of one event type by the
+ * {@link ScmEventBus}. Instances of this class are immutable.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public final class EventDispatchStatistics
+{
+
+  /**
+   * Constructs a new statistic for the dispatching of an event type.
+   *
+   *
+   * @param name name of the event type
+   * @param queueSize number of events waiting for dispatch
+   * @param queueCapacity maximum number of events waiting for dispatch
+   * @param dispatchCount number of dispatched events
+   * @param callerRunsCount number of events which were dispatched by the
+   *   posting thread, because the queue was full
+   * @param totalLatency time in nanoseconds spent to dispatch all events
+   * @param maxLatency longest time in nanoseconds spent to dispatch one event
+   */
+  public EventDispatchStatistics(String name, int queueSize,
+    int queueCapacity, long dispatchCount, long callerRunsCount,
+    long totalLatency, long maxLatency)
+  {
+    this.name = name;
+    this.queueSize = queueSize;
+    this.queueCapacity = queueCapacity;
+    this.dispatchCount = dispatchCount;
+    this.callerRunsCount = callerRunsCount;
+    this.totalLatency = totalLatency;
+    this.maxLatency = maxLatency;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (obj == null)
+    {
+      return false;
+    }
+
+    if (getClass() != obj.getClass())
+    {
+      return false;
+    }
+
+    final EventDispatchStatistics other = (EventDispatchStatistics) obj;
+
+    return Objects.equal(name, other.name)
+      && Objects.equal(queueSize, other.queueSize)
+      && Objects.equal(queueCapacity, other.queueCapacity)
+      && Objects.equal(dispatchCount, other.dispatchCount)
+      && Objects.equal(callerRunsCount, other.callerRunsCount)
+      && Objects.equal(totalLatency, other.totalLatency)
+      && Objects.equal(maxLatency, other.maxLatency);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hashCode(name, queueSize, queueCapacity, dispatchCount,
+      callerRunsCount, totalLatency, maxLatency);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    //J-
+    return Objects.toStringHelper(this)
+                  .add("name", name)
+                  .add("queueSize", queueSize)
+                  .add("queueCapacity", queueCapacity)
+                  .add("dispatchCount", dispatchCount)
+                  .add("callerRunsCount", callerRunsCount)
+                  .add("totalLatency", totalLatency)
+                  .add("maxLatency", maxLatency)
+                  .toString();
+    //J+
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the average time in nanoseconds spent to dispatch one event to
+   * all of its subscribers.
+   *
+   *
+   * @return average latency in nanoseconds
+   */
+  public long getAverageLatency()
+  {
+    return (dispatchCount == 0)
+      ? 0l
+      : totalLatency / dispatchCount;
+  }
+
+  /**
+   * Returns the number of events, which were dispatched by the posting
+   * thread, because the queue was full.
+   *
+   *
+   * @return number of events dispatched by the posting thread
+   */
+  public long getCallerRunsCount()
+  {
+    return callerRunsCount;
+  }
+
+  /**
+   * Returns the number of dispatched events.
+   *
+   *
+   * @return number of dispatched events
+   */
+  public long getDispatchCount()
+  {
+    return dispatchCount;
+  }
+
+  /**
+   * Returns the longest time in nanoseconds spent to dispatch one event to all
+   * of its subscribers.
+   *
+   *
+   * @return maximum latency in nanoseconds
+   */
+  public long getMaxLatency()
+  {
+    return maxLatency;
+  }
+
+  /**
+   * Returns the name of the event type.
+   *
+   *
+   * @return name of the event type
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Returns the maximum number of events, which can wait for dispatch.
+   *
+   *
+   * @return capacity of the queue
+   */
+  public int getQueueCapacity()
+  {
+    return queueCapacity;
+  }
+
+  /**
+   * Returns the number of events, which are waiting for dispatch.
+   *
+   *
+   * @return current size of the queue
+   */
+  public int getQueueSize()
+  {
+    return queueSize;
+  }
+
+  /**
+   * Returns the time in nanoseconds spent to dispatch all events.
+   *
+   *
+   * @return total latency in nanoseconds
+   */
+  public long getTotalLatency()
+  {
+    return totalLatency;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** number of events dispatched by the posting thread */
+  private final long callerRunsCount;
+
+  /** number of dispatched events */
+  private final long dispatchCount;
+
+  /** longest dispatch time in nanoseconds */
+  private final long maxLatency;
+
+  /** name of the event type */
+  private final String name;
+
+  /** capacity of the queue */
+  private final int queueCapacity;
+
+  /** current size of the queue */
+  private final int queueSize;
+
+  /** total dispatch time in nanoseconds */
+  private final long totalLatency;
+}
@@ -45,6 +45,8 @@ import sonia.scm.util.ServiceUtil;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.Collections;
+import java.util.List;
 import java.util.ServiceLoader;
 
 /**
@@ -105,6 +107,22 @@ public abstract class ScmEventBus
     return instance;
   }
 
+  /**
+   * Returns statistics about the asynchronous dispatching of events, one entry
+   * for each event type which is marked with {@link Event#async()}. The
+   * default implementation dispatches every event synchronously and returns
+   * an empty list.
+   *
+   *
+   * @return dispatch statistics of asynchronous event types
+   *
+   * @since 2.0.0
+   */
+  public List<EventDispatchStatistics> getStatistics()
+  {
+    return Collections.emptyList();
+  }
+
   //~--- methods --------------------------------------------------------------
 
   /**
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.filter;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Pool of {@link Deflater} instances. Every deflater allocates native memory,
+ * the pool avoids the allocation of a new deflater for each compressed
+ * response. Deflaters which are not accepted by the full pool are ended.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+final class DeflaterPool
+{
+
+  /**
+   * Constructs a new pool.
+   *
+   *
+   * @param capacity maximum number of idle deflaters
+   */
+  DeflaterPool(int capacity)
+  {
+    this.deflaters = new ArrayBlockingQueue<Deflater>(capacity);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns a deflater from the pool or creates a new one, if the pool is
+   * empty. The deflater writes raw deflate data without zlib header.
+   *
+   *
+   * @return deflater
+   */
+  Deflater borrow()
+  {
+    Deflater deflater = deflaters.poll();
+
+    if (deflater == null)
+    {
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    return deflater;
+  }
+
+  /**
+   * Resets the deflater and returns it to the pool.
+   *
+   *
+   * @param deflater deflater to release
+   */
+  void release(Deflater deflater)
+  {
+    deflater.reset();
+
+    if (!deflaters.offer(deflater))
+    {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Returns the number of idle deflaters.
+   *
+   *
+   * @return number of idle deflaters
+   */
+  int size()
+  {
+    return deflaters.size();
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** idle deflaters */
+  private final BlockingQueue<Deflater> deflaters;
+}
@@ -42,6 +42,43 @@ package sonia.scm.filter;
 public class GZipFilterConfig
 {
 
+  /** default maximum size of a buffered response in bytes */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /** default minimum size of a response in bytes, which is compressed */
+  public static final int DEFAULT_MINIMUM_SIZE = 256;
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the maximum size of the compressed response in bytes, which is
+   * buffered to send the content length. Larger responses are streamed to the
+   * client without content length. The size is only used, if response
+   * buffering is enabled.
+   *
+   *
+   * @return maximum size of a buffered response in bytes
+   *
+   * @since 2.0.0
+   */
+  public int getBufferSize()
+  {
+    return bufferSize;
+  }
+
+  /**
+   * Returns the minimum size of the response in bytes, which is compressed.
+   * Smaller responses are sent without compression.
+   *
+   *
+   * @return minimum size of a compressed response in bytes
+   *
+   * @since 2.0.0
+   */
+  public int getMinimumSize()
+  {
+    return minimumSize;
+  }
 
   /**
    * Returns true if the response should be buffered.
@@ -56,6 +93,20 @@ public class GZipFilterConfig
 
   //~--- set methods ----------------------------------------------------------
 
+  /**
+   * Sets the maximum size of the compressed response in bytes, which is
+   * buffered to send the content length.
+   *
+   *
+   * @param bufferSize maximum size of a buffered response in bytes
+   *
+   * @since 2.0.0
+   */
+  public void setBufferSize(int bufferSize)
+  {
+    this.bufferSize = bufferSize;
+  }
+
   /**
    * Enables or disables response buffering. Default buffering is enabled.
    *
@@ -66,8 +117,27 @@ public class GZipFilterConfig
     this.bufferResponse = bufferResponse;
   }
 
+  /**
+   * Sets the minimum size of the response in bytes, which is compressed.
+   *
+   *
+   * @param minimumSize minimum size of a compressed response in bytes
+   *
+   * @since 2.0.0
+   */
+  public void setMinimumSize(int minimumSize)
+  {
+    this.minimumSize = minimumSize;
+  }
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
   private boolean bufferResponse = true;
+
+  /** maximum size of a buffered response */
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+  /** minimum size of a compressed response */
+  private int minimumSize = DEFAULT_MINIMUM_SIZE;
 }
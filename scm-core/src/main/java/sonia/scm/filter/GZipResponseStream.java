@@ -44,14 +44,18 @@ import sonia.scm.util.IOUtil;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-
-import java.util.zip.GZIPOutputStream;
+import java.io.OutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * Response stream for gzip encoding.
+ * Response stream for gzip encoding. The first bytes of the response are
+ * collected until the minimum size of {@link GZipFilterConfig} is reached,
+ * smaller responses are sent without compression. Larger responses are
+ * compressed while they are written, with a deflater from a shared pool. If
+ * response buffering is enabled, the compressed response is buffered up to the
+ * buffer size of the {@link GZipFilterConfig} to send the content length.
  *
  * @author Sebastian Sdorra
  * @since 1.15
@@ -59,6 +63,12 @@ import javax.servlet.http.HttpServletResponse;
 public class GZipResponseStream extends ServletOutputStream
 {
 
+  /** maximum number of idle deflaters */
+  private static final int POOL_SIZE = 32;
+
+  /** shared pool of deflaters */
+  private static final DeflaterPool pool = new DeflaterPool(POOL_SIZE);
+
   /**
    * the logger for GZipResponseStream
    */
@@ -97,28 +107,10 @@ public class GZipResponseStream extends ServletOutputStream
     super();
     closed = false;
     this.response = response;
-    response.addHeader("Content-Encoding", "gzip");
-
-    if ((config == null) || config.isBufferResponse())
-    {
-      if (logger.isTraceEnabled())
-      {
-        logger.trace("use buffered gzip stream");
-      }
-
-      this.output = response.getOutputStream();
-      baos = new ByteArrayOutputStream();
-      gzipstream = new GZIPOutputStream(baos);
-    }
-    else
-    {
-      if (logger.isTraceEnabled())
-      {
-        logger.trace("use unbuffered gzip stream");
-      }
-
-      gzipstream = new GZIPOutputStream(response.getOutputStream());
-    }
+    this.config = (config != null)
+      ? config
+      : new GZipFilterConfig();
+    this.buffer = new byte[this.config.getMinimumSize()];
   }
 
   //~--- methods --------------------------------------------------------------
@@ -137,18 +129,26 @@ public class GZipResponseStream extends ServletOutputStream
       throw new IOException("This output stream has already been closed");
     }
 
-    gzipstream.finish();
-    gzipstream.close();
+    closed = true;
 
-    if (baos != null)
+    if (gzipstream != null)
+    {
+      gzipstream.close();
+    }
+    else
     {
-      byte[] bytes = baos.toByteArray();
+      if (logger.isTraceEnabled())
+      {
+        logger.trace("response is smaller than {} bytes, skip compression",
+          buffer.length);
+      }
 
-      response.addIntHeader("Content-Length", bytes.length);
+      response.setContentLength(count);
+      output = response.getOutputStream();
 
       try
       {
-        output.write(bytes);
+        output.write(buffer, 0, count);
         output.flush();
       }
       finally
@@ -156,8 +156,6 @@ public class GZipResponseStream extends ServletOutputStream
         IOUtil.close(output);
       }
     }
-
-    closed = true;
   }
 
   /**
@@ -174,7 +172,16 @@ public class GZipResponseStream extends ServletOutputStream
       throw new IOException("Cannot flush a closed output stream");
     }
 
-    gzipstream.flush();
+    // a buffered response is not sent before it is closed
+    if ((gzipstream == null) &&!config.isBufferResponse())
+    {
+      startCompression();
+    }
+
+    if (gzipstream != null)
+    {
+      gzipstream.flush();
+    }
   }
 
   /**
@@ -198,12 +205,7 @@ public class GZipResponseStream extends ServletOutputStream
   @Override
   public void write(int b) throws IOException
   {
-    if (closed)
-    {
-      throw new IOException("Cannot write to a closed output stream");
-    }
-
-    gzipstream.write((byte) b);
+    write(new byte[] { (byte) b }, 0, 1);
   }
 
   /**
@@ -238,9 +240,58 @@ public class GZipResponseStream extends ServletOutputStream
       throw new IOException("Cannot write to a closed output stream");
     }
 
+    if (gzipstream == null)
+    {
+      if ((count + len) <= buffer.length)
+      {
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+
+        return;
+      }
+
+      startCompression();
+    }
+
     gzipstream.write(b, off, len);
   }
 
+  /**
+   * Starts the compression of the response and writes the collected bytes to
+   * the gzip stream.
+   *
+   *
+   * @throws IOException
+   */
+  private void startCompression() throws IOException
+  {
+    response.addHeader("Content-Encoding", "gzip");
+
+    OutputStream target;
+
+    if (config.isBufferResponse())
+    {
+      if (logger.isTraceEnabled())
+      {
+        logger.trace("use buffered gzip stream");
+      }
+
+      target = new ResponseBuffer(config.getBufferSize());
+    }
+    else
+    {
+      if (logger.isTraceEnabled())
+      {
+        logger.trace("use unbuffered gzip stream");
+      }
+
+      target = response.getOutputStream();
+    }
+
+    gzipstream = new PooledGZipOutputStream(pool, target);
+    gzipstream.write(buffer, 0, count);
+  }
+
   //~--- get methods ----------------------------------------------------------
 
   /**
@@ -254,16 +305,132 @@ public class GZipResponseStream extends ServletOutputStream
     return closed;
   }
 
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Buffers the compressed response up to a maximum size to send the content
+   * length. If the maximum size is exceeded, the buffer is written to the
+   * client and all further bytes are streamed.
+   */
+  private class ResponseBuffer extends OutputStream
+  {
+
+    /**
+     * Constructs a new response buffer.
+     *
+     *
+     * @param limit maximum size of the buffer
+     */
+    public ResponseBuffer(int limit)
+    {
+      this.limit = limit;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Sends the buffered response with its content length, if the maximum
+     * size was not exceeded, and closes the response stream.
+     *
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+      try
+      {
+        if (output == null)
+        {
+          response.setContentLength(baos.size());
+          output = response.getOutputStream();
+          baos.writeTo(output);
+        }
+
+        output.flush();
+      }
+      finally
+      {
+        IOUtil.close(output);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     *
+     * @param b
+     *
+     * @throws IOException
+     */
+    @Override
+    public void write(int b) throws IOException
+    {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     *
+     * @param b
+     * @param off
+     * @param len
+     *
+     * @throws IOException
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      if ((output == null) && (baos.size() + len > limit))
+      {
+        if (logger.isTraceEnabled())
+        {
+          logger.trace("response exceeds buffer size of {} bytes, stream it",
+            limit);
+        }
+
+        output = response.getOutputStream();
+        baos.writeTo(output);
+        baos = null;
+      }
+
+      if (output != null)
+      {
+        output.write(b, off, len);
+      }
+      else
+      {
+        baos.write(b, off, len);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** maximum size of the buffer */
+    private final int limit;
+
+    /** buffered compressed response */
+    private ByteArrayOutputStream baos = new ByteArrayOutputStream();
+  }
+
+
   //~--- fields ---------------------------------------------------------------
 
-  /** Field description */
-  protected ByteArrayOutputStream baos = null;
+  /** uncompressed bytes, until the minimum size is reached */
+  protected byte[] buffer;
 
   /** Field description */
-  protected GZIPOutputStream gzipstream = null;
+  protected boolean closed = false;
+
+  /** configuration of the gzip filter */
+  protected GZipFilterConfig config;
+
+  /** number of uncompressed bytes in the buffer */
+  protected int count = 0;
 
   /** Field description */
-  protected boolean closed = false;
+  protected OutputStream gzipstream = null;
 
   /** Field description */
   protected ServletOutputStream output = null;
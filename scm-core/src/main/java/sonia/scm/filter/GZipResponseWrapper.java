@@ -56,6 +56,11 @@ import javax.servlet.http.HttpServletResponseWrapper;
 public class GZipResponseWrapper extends HttpServletResponseWrapper
 {
 
+  /** name of the content encoding header */
+  private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+
+  //~--- constructors ---------------------------------------------------------
+
   /**
    * Constructs a new GZipResponseWrapper
    *
@@ -86,6 +91,20 @@ public class GZipResponseWrapper extends HttpServletResponseWrapper
 
   //~--- methods --------------------------------------------------------------
 
+  /**
+   * {@inheritDoc}
+   *
+   *
+   * @param name
+   * @param value
+   */
+  @Override
+  public void addHeader(String name, String value)
+  {
+    checkContentEncoding(name);
+    super.addHeader(name, value);
+  }
+
   /**
    * Method description
    *
@@ -139,6 +158,11 @@ public class GZipResponseWrapper extends HttpServletResponseWrapper
   @Override
   public ServletOutputStream getOutputStream() throws IOException
   {
+    if (encoded)
+    {
+      return origResponse.getOutputStream();
+    }
+
     if (writer != null)
     {
       throw new IllegalStateException("getWriter() has already been called!");
@@ -163,6 +187,11 @@ public class GZipResponseWrapper extends HttpServletResponseWrapper
   @Override
   public PrintWriter getWriter() throws IOException
   {
+    if (encoded)
+    {
+      return origResponse.getWriter();
+    }
+
     if (writer != null)
     {
       return writer;
@@ -189,7 +218,27 @@ public class GZipResponseWrapper extends HttpServletResponseWrapper
    * @param length
    */
   @Override
-  public void setContentLength(int length) {}
+  public void setContentLength(int length)
+  {
+    if (encoded)
+    {
+      super.setContentLength(length);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   *
+   * @param name
+   * @param value
+   */
+  @Override
+  public void setHeader(String name, String value)
+  {
+    checkContentEncoding(name);
+    super.setHeader(name, value);
+  }
 
   //~--- methods --------------------------------------------------------------
 
@@ -206,11 +255,30 @@ public class GZipResponseWrapper extends HttpServletResponseWrapper
     return new GZipResponseStream(origResponse, config);
   }
 
+  /**
+   * Disables the compression, if the content encoding is set before the
+   * response stream is used. The response is already encoded, e.g. a
+   * precompressed resource.
+   *
+   *
+   * @param name name of the header
+   */
+  private void checkContentEncoding(String name)
+  {
+    if ((stream == null) && HEADER_CONTENT_ENCODING.equalsIgnoreCase(name))
+    {
+      encoded = true;
+    }
+  }
+
   //~--- fields ---------------------------------------------------------------
 
   /** gzip filter config */
   protected GZipFilterConfig config = null;
 
+  /** true if the response is already encoded */
+  protected boolean encoded = false;
+
   /** original http response */
   protected HttpServletResponse origResponse = null;
 
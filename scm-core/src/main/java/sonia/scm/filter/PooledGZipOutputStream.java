@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.filter;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Output stream which writes the gzip format with a {@link Deflater} from a
+ * {@link DeflaterPool}. The deflater is returned to the pool, when the stream
+ * is closed.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+final class PooledGZipOutputStream extends DeflaterOutputStream
+{
+
+  /** gzip header: magic number, deflate method, no flags, mtime and os */
+  private static final byte[] HEADER = new byte[]
+  {
+    (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+  };
+
+  /** size of the buffer for compressed data */
+  private static final int BUFFER_SIZE = 8192;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new gzip stream and writes the gzip header.
+   *
+   *
+   * @param pool deflater pool
+   * @param out underlying output stream
+   *
+   * @throws IOException
+   */
+  PooledGZipOutputStream(DeflaterPool pool, OutputStream out)
+    throws IOException
+  {
+    super(out, pool.borrow(), BUFFER_SIZE);
+    this.pool = pool;
+    out.write(HEADER);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Finishes the gzip stream, returns the deflater to the pool and closes the
+   * underlying output stream.
+   *
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (!closed)
+    {
+      closed = true;
+
+      try
+      {
+        finish();
+      }
+      finally
+      {
+        pool.release(def);
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the remaining compressed data and the gzip trailer, without
+   * closing the underlying output stream.
+   *
+   *
+   * @throws IOException
+   */
+  @Override
+  public void finish() throws IOException
+  {
+    if (!def.finished())
+    {
+      super.finish();
+      writeInt((int) crc.getValue());
+      writeInt((int) def.getBytesRead());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   *
+   * @param b
+   * @param off
+   * @param len
+   *
+   * @throws IOException
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+    super.write(b, off, len);
+    crc.update(b, off, len);
+  }
+
+  /**
+   * Writes an integer in little endian byte order.
+   *
+   *
+   * @param value value to write
+   *
+   * @throws IOException
+   */
+  private void writeInt(int value) throws IOException
+  {
+    out.write(value & 0xff);
+    out.write((value >> 8) & 0xff);
+    out.write((value >> 16) & 0xff);
+    out.write((value >> 24) & 0xff);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** checksum of the uncompressed data */
+  private final CRC32 crc = new CRC32();
+
+  /** pool of the deflater */
+  private final DeflaterPool pool;
+
+  /** true if the stream is closed */
+  private boolean closed = false;
+}
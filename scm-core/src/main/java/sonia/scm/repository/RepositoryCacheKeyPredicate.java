@@ -37,6 +37,8 @@ package sonia.scm.repository;
 
 import com.google.common.base.Predicate;
 
+import sonia.scm.cache.PersistentCacheKey;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -55,8 +57,28 @@ public class RepositoryCacheKeyPredicate<T extends RepositoryCacheKey>
    * @param repositoryId
    */
   public RepositoryCacheKeyPredicate(String repositoryId)
+  {
+    this(repositoryId, false);
+  }
+
+  /**
+   * Constructs a new predicate for the entries of the repository. If
+   * persistent entries are kept, keys with a
+   * {@link PersistentCacheKey#getPersistentKey()} are not matched. A cache
+   * with a disk tier may still drop such entries from its memory tier, as long
+   * as it keeps them on disk.
+   *
+   *
+   * @param repositoryId id of the repository
+   * @param keepPersistent true to keep entries with a persistent key
+   *
+   * @since 2.0.0
+   */
+  public RepositoryCacheKeyPredicate(String repositoryId,
+    boolean keepPersistent)
   {
     this.repositoryId = repositoryId;
+    this.keepPersistent = keepPersistent;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -72,11 +94,49 @@ public class RepositoryCacheKeyPredicate<T extends RepositoryCacheKey>
   @Override
   public boolean apply(T item)
   {
-    return repositoryId.equals(item.getRepositoryId());
+    boolean matches = repositoryId.equals(item.getRepositoryId());
+
+    if (matches && keepPersistent && (item instanceof PersistentCacheKey))
+    {
+      matches = ((PersistentCacheKey) item).getPersistentKey() == null;
+    }
+
+    return matches;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the id of the repository, which is matched by this predicate.
+   *
+   *
+   * @return id of the repository
+   *
+   * @since 2.0.0
+   */
+  public String getRepositoryId()
+  {
+    return repositoryId;
+  }
+
+  /**
+   * Returns true if entries with a persistent key are kept.
+   *
+   *
+   * @return true if entries with a persistent key are kept
+   *
+   * @since 2.0.0
+   */
+  public boolean isKeepPersistent()
+  {
+    return keepPersistent;
   }
 
   //~--- fields ---------------------------------------------------------------
 
+  /** true to keep entries with a persistent key */
+  private final boolean keepPersistent;
+
   /** Field description */
   private final String repositoryId;
 }
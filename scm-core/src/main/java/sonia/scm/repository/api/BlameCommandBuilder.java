@@ -44,13 +44,18 @@ import org.slf4j.LoggerFactory;
 
 import sonia.scm.cache.Cache;
 import sonia.scm.cache.CacheManager;
+import sonia.scm.cache.PersistentCacheKey;
 import sonia.scm.repository.BlameResult;
 import sonia.scm.repository.PreProcessorUtil;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryCacheKey;
 import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.api.CommandCoalescer.Computation;
+import sonia.scm.repository.spi.BlameChange;
 import sonia.scm.repository.spi.BlameCommand;
 import sonia.scm.repository.spi.BlameCommandRequest;
+import sonia.scm.repository.spi.IncrementalBlameCommand;
+import sonia.scm.repository.spi.PersistentCacheKeys;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -98,14 +103,17 @@ public final class BlameCommandBuilder
    * only be called from the {@link RepositoryService}.
    *
    * @param cacheManager cache manager
+   * @param coalescer coalescer for identical commands
    * @param blameCommand implementation of the {@link BlameCommand}
    * @param repository repository to query
    * @param preProcessorUtil
    */
-  BlameCommandBuilder(CacheManager cacheManager, BlameCommand blameCommand,
-                      Repository repository, PreProcessorUtil preProcessorUtil)
+  BlameCommandBuilder(CacheManager cacheManager, CommandCoalescer coalescer,
+                      BlameCommand blameCommand, Repository repository,
+                      PreProcessorUtil preProcessorUtil)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
+    this.coalescer = coalescer;
     this.blameCommand = blameCommand;
     this.repository = repository;
     this.preProcessorUtil = preProcessorUtil;
@@ -146,7 +154,7 @@ public final class BlameCommandBuilder
     Preconditions.checkArgument(!Strings.isNullOrEmpty(path),
                                 "path is required");
 
-    BlameCommandRequest requestClone = request.clone();
+    final BlameCommandRequest requestClone = request.clone();
 
     requestClone.setPath(path);
 
@@ -163,23 +171,20 @@ public final class BlameCommandBuilder
     }
     else
     {
-      CacheKey key = new CacheKey(repository, requestClone);
+      final CacheKey key = new CacheKey(repository, requestClone);
 
       result = cache.get(key);
 
       if (result == null)
       {
-        if (logger.isDebugEnabled())
-        {
-          logger.debug("create blame for {}", requestClone);
-        }
-
-        result = blameCommand.getBlameResult(requestClone);
-
-        if (result != null)
+        result = coalescer.execute(key, new Computation<BlameResult>()
         {
-          cache.put(key, result);
-        }
+          @Override
+          public BlameResult compute() throws IOException, RepositoryException
+          {
+            return getBlameResultFromCommand(key, requestClone);
+          }
+        });
       }
       else if (logger.isDebugEnabled())
       {
@@ -263,6 +268,188 @@ public final class BlameCommandBuilder
     return this;
   }
 
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the blame result from the cache, if an identical command has
+   * stored it in the meantime. Otherwise the blame result is created by the
+   * command and stored in the cache.
+   *
+   *
+   * @param key cache key
+   * @param requestClone command request
+   *
+   * @return blame result from the cache or the command
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private BlameResult getBlameResultFromCommand(CacheKey key,
+    BlameCommandRequest requestClone)
+    throws IOException, RepositoryException
+  {
+    BlameResult result = cache.get(key);
+
+    if (result == null)
+    {
+      if (blameCommand instanceof IncrementalBlameCommand)
+      {
+        result = getIncrementalBlameResult(
+          (IncrementalBlameCommand) blameCommand, requestClone);
+      }
+      else
+      {
+        if (logger.isDebugEnabled())
+        {
+          logger.debug("create blame for {}", requestClone);
+        }
+
+        result = blameCommand.getBlameResult(requestClone);
+      }
+
+      if (result != null)
+      {
+        cache.put(key, result);
+      }
+    }
+    else if (logger.isDebugEnabled())
+    {
+      logger.debug("retrive blame from coalesced command for {}",
+        requestClone);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the blame of the revision, which has last modified the file. The
+   * blame is stored in the cache under the key of that revision, so that all
+   * revisions which have not modified the file share the same blame. If the
+   * blame is not cached, it is created from the cached blame of the previous
+   * change of the file or from scratch, if the previous blame is not
+   * available.
+   *
+   *
+   * @param command incremental blame command
+   * @param requestClone command request
+   *
+   * @return blame result
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private BlameResult getIncrementalBlameResult(
+    IncrementalBlameCommand command, BlameCommandRequest requestClone)
+    throws IOException, RepositoryException
+  {
+    BlameResult result;
+    BlameChange change = command.getChange(requestClone);
+
+    if (change == null)
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("could not find last change, create blame for {}",
+          requestClone);
+      }
+
+      result = command.getBlameResult(requestClone);
+    }
+    else
+    {
+      BlameCommandRequest changeRequest = requestClone.clone();
+
+      changeRequest.setRevision(change.getRevision());
+
+      CacheKey changeKey = new CacheKey(repository, changeRequest);
+
+      result = cache.get(changeKey);
+
+      if (result == null)
+      {
+        result = getIncrementalBlameResult(command, changeRequest, change);
+
+        if (result == null)
+        {
+          if (logger.isDebugEnabled())
+          {
+            logger.debug("create blame for {}", changeRequest);
+          }
+
+          result = command.getBlameResult(changeRequest);
+        }
+
+        if (result != null)
+        {
+          cache.put(changeKey, result);
+        }
+      }
+      else if (logger.isDebugEnabled())
+      {
+        logger.debug("retrive blame of last change {} for {}",
+          change.getRevision(), requestClone);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates the blame of the change from the cached blame of the previous
+   * change of the file. Returns {@code null}, if the previous blame is not
+   * cached or could not be applied.
+   *
+   *
+   * @param command incremental blame command
+   * @param changeRequest command request for the revision of the change
+   * @param change last change of the file
+   *
+   * @return blame result or {@code null}
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private BlameResult getIncrementalBlameResult(
+    IncrementalBlameCommand command, BlameCommandRequest changeRequest,
+    BlameChange change)
+    throws IOException, RepositoryException
+  {
+    BlameResult result = null;
+
+    if (change.getPreviousRevision() != null)
+    {
+      BlameCommandRequest previousRequest = changeRequest.clone();
+
+      previousRequest.setRevision(change.getPreviousRevision());
+
+      BlameResult previous = cache.get(new CacheKey(repository,
+                               previousRequest));
+
+      if (previous != null)
+      {
+        result = IncrementalBlame.apply(previous,
+          command.getContent(previousRequest), change,
+          command.getContent(changeRequest));
+
+        if (logger.isDebugEnabled())
+        {
+          if (result != null)
+          {
+            logger.debug("created blame for {} from previous revision {}",
+              changeRequest, change.getPreviousRevision());
+          }
+          else
+          {
+            logger.debug("could not apply previous revision {} to {}",
+              change.getPreviousRevision(), changeRequest);
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
   //~--- inner classes --------------------------------------------------------
 
   /**
@@ -272,7 +459,8 @@ public final class BlameCommandBuilder
    * @version        Enter version here..., 12/06/05
    * @author         Enter your name here...
    */
-  static class CacheKey implements RepositoryCacheKey, Serializable
+  static class CacheKey
+    implements RepositoryCacheKey, PersistentCacheKey, Serializable
   {
 
     /** Field description */
@@ -291,6 +479,7 @@ public final class BlameCommandBuilder
     {
       this.repositoryId = repository.getId();
       this.request = request;
+      this.persistentKey = PersistentCacheKeys.blame(repository, request);
     }
 
     //~--- methods ------------------------------------------------------------
@@ -336,6 +525,18 @@ public final class BlameCommandBuilder
 
     //~--- get methods --------------------------------------------------------
 
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public String getPersistentKey()
+    {
+      return persistentKey;
+    }
+
     /**
      * Method description
      *
@@ -350,6 +551,9 @@ public final class BlameCommandBuilder
 
     //~--- fields -------------------------------------------------------------
 
+    /** key for the disk tier or null */
+    private final String persistentKey;
+
     /** repository id */
     private final String repositoryId;
 
@@ -366,6 +570,9 @@ public final class BlameCommandBuilder
   /** the cache */
   private final Cache<CacheKey, BlameResult> cache;
 
+  /** coalescer for identical commands */
+  private final CommandCoalescer coalescer;
+
   /** disable escaping */
   private boolean disableEscaping = false;
   
@@ -46,6 +46,7 @@ import sonia.scm.repository.Branches;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryCacheKey;
 import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.api.CommandCoalescer.Computation;
 import sonia.scm.repository.spi.BlameCommand;
 import sonia.scm.repository.spi.BranchesCommand;
 
@@ -86,15 +87,17 @@ public final class BranchesCommandBuilder
    * only be called from the {@link RepositoryService}.
    *
    * @param cacheManager cache manager
+   * @param coalescer coalescer for identical commands
    * @param blameCommand implementation of the {@link BlameCommand}
    * @param branchesCommand
    * @param repository repository to query
    * @param preProcessorUtil
    */
-  BranchesCommandBuilder(CacheManager cacheManager,
+  BranchesCommandBuilder(CacheManager cacheManager, CommandCoalescer coalescer,
     BranchesCommand branchesCommand, Repository repository)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
+    this.coalescer = coalescer;
     this.branchesCommand = branchesCommand;
     this.repository = repository;
   }
@@ -126,23 +129,20 @@ public final class BranchesCommandBuilder
     }
     else
     {
-      CacheKey key = new CacheKey(repository);
+      final CacheKey key = new CacheKey(repository);
 
       branches = cache.get(key);
 
       if (branches == null)
       {
-        if (logger.isDebugEnabled())
+        branches = coalescer.execute(key, new Computation<Branches>()
         {
-          logger.debug("get branches for repository {}", repository.getName());
-        }
-
-        branches = getBranchesFromCommand();
-
-        if (branches != null)
-        {
-          cache.put(key, branches);
-        }
+          @Override
+          public Branches compute() throws IOException, RepositoryException
+          {
+            return getBranchesFromCommand(key);
+          }
+        });
       }
       else if (logger.isDebugEnabled())
       {
@@ -190,6 +190,47 @@ public final class BranchesCommandBuilder
     return new Branches(branchesCommand.getBranches());
   }
 
+  /**
+   * Returns the branches from the cache, if an identical command has stored
+   * them in the meantime. Otherwise the branches are retrieved from the command
+   * and stored in the cache.
+   *
+   *
+   * @param key cache key
+   *
+   * @return branches from the cache or the command
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private Branches getBranchesFromCommand(CacheKey key)
+    throws RepositoryException, IOException
+  {
+    Branches branches = cache.get(key);
+
+    if (branches == null)
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("get branches for repository {}", repository.getName());
+      }
+
+      branches = getBranchesFromCommand();
+
+      if (branches != null)
+      {
+        cache.put(key, branches);
+      }
+    }
+    else if (logger.isDebugEnabled())
+    {
+      logger.debug("get branches for repository {} from coalesced command",
+        repository.getName());
+    }
+
+    return branches;
+  }
+
   //~--- inner classes --------------------------------------------------------
 
   /**
@@ -282,6 +323,9 @@ public final class BranchesCommandBuilder
   /** cache for branches */
   private final Cache<CacheKey, Branches> cache;
 
+  /** coalescer for identical commands */
+  private final CommandCoalescer coalescer;
+
   /** disable cache */
   private boolean disableCache = false;
 
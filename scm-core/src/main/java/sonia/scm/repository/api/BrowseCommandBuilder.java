@@ -42,6 +42,7 @@ import org.slf4j.LoggerFactory;
 
 import sonia.scm.cache.Cache;
 import sonia.scm.cache.CacheManager;
+import sonia.scm.cache.PersistentCacheKey;
 import sonia.scm.repository.BrowserResult;
 import sonia.scm.repository.FileObject;
 import sonia.scm.repository.FileObjectNameComparator;
@@ -49,8 +50,10 @@ import sonia.scm.repository.PreProcessorUtil;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryCacheKey;
 import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.api.CommandCoalescer.Computation;
 import sonia.scm.repository.spi.BrowseCommand;
 import sonia.scm.repository.spi.BrowseCommandRequest;
+import sonia.scm.repository.spi.PersistentCacheKeys;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -100,15 +103,18 @@ public final class BrowseCommandBuilder
    * only be called from the {@link RepositoryService}.
    *
    * @param cacheManager cache manager
+   * @param coalescer coalescer for identical commands
    * @param logCommand implementation of the {@link LogCommand}
    * @param browseCommand
    * @param repository repository to query
    * @param preProcessorUtil
    */
-  BrowseCommandBuilder(CacheManager cacheManager, BrowseCommand browseCommand,
-    Repository repository, PreProcessorUtil preProcessorUtil)
+  BrowseCommandBuilder(CacheManager cacheManager, CommandCoalescer coalescer,
+    BrowseCommand browseCommand, Repository repository,
+    PreProcessorUtil preProcessorUtil)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
+    this.coalescer = coalescer;
     this.browseCommand = browseCommand;
     this.repository = repository;
     this.preProcessorUtil = preProcessorUtil;
@@ -159,23 +165,20 @@ public final class BrowseCommandBuilder
     }
     else
     {
-      CacheKey key = new CacheKey(repository, request);
+      final CacheKey key = new CacheKey(repository, request);
 
       result = cache.get(key);
 
       if (result == null)
       {
-        if (logger.isDebugEnabled())
+        result = coalescer.execute(key, new Computation<BrowserResult>()
         {
-          logger.debug("create browser result for {}", request);
-        }
-
-        result = browseCommand.getBrowserResult(request);
-
-        if (result != null)
-        {
-          cache.put(key, result);
-        }
+          @Override
+          public BrowserResult compute() throws IOException, RepositoryException
+          {
+            return getBrowserResultFromCommand(key);
+          }
+        });
       }
       else if (logger.isDebugEnabled())
       {
@@ -336,6 +339,49 @@ public final class BrowseCommandBuilder
     return this;
   }
 
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the browser result from the cache, if an identical command has
+   * stored it in the meantime. Otherwise the browser result is created by the
+   * command and stored in the cache.
+   *
+   *
+   * @param key cache key
+   *
+   * @return browser result from the cache or the command
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private BrowserResult getBrowserResultFromCommand(CacheKey key)
+    throws IOException, RepositoryException
+  {
+    BrowserResult result = cache.get(key);
+
+    if (result == null)
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("create browser result for {}", request);
+      }
+
+      result = browseCommand.getBrowserResult(request);
+
+      if (result != null)
+      {
+        cache.put(key, result);
+      }
+    }
+    else if (logger.isDebugEnabled())
+    {
+      logger.debug("retrive browser result from coalesced command for {}",
+        request);
+    }
+
+    return result;
+  }
+
   //~--- inner classes --------------------------------------------------------
 
   /**
@@ -345,7 +391,8 @@ public final class BrowseCommandBuilder
    * @version        Enter version here..., 12/06/05
    * @author         Enter your name here...
    */
-  static class CacheKey implements RepositoryCacheKey, Serializable
+  static class CacheKey
+    implements RepositoryCacheKey, PersistentCacheKey, Serializable
   {
 
     /** Field description */
@@ -364,6 +411,7 @@ public final class BrowseCommandBuilder
     {
       this.repositoryId = repository.getId();
       this.request = request;
+      this.persistentKey = PersistentCacheKeys.browse(repository, request);
     }
 
     //~--- methods ------------------------------------------------------------
@@ -409,6 +457,18 @@ public final class BrowseCommandBuilder
 
     //~--- get methods --------------------------------------------------------
 
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public String getPersistentKey()
+    {
+      return persistentKey;
+    }
+
     /**
      * Method description
      *
@@ -423,6 +483,9 @@ public final class BrowseCommandBuilder
 
     //~--- fields -------------------------------------------------------------
 
+    /** key for the disk tier or null */
+    private final String persistentKey;
+
     /** repository id */
     private final String repositoryId;
 
@@ -439,6 +502,9 @@ public final class BrowseCommandBuilder
   /** cache */
   private final Cache<CacheKey, BrowserResult> cache;
 
+  /** coalescer for identical commands */
+  private final CommandCoalescer coalescer;
+
   /** disable escaping */
   private boolean disableEscaping = false;
   
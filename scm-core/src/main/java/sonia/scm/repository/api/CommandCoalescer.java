@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.repository.api;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sonia.scm.config.ScmConfiguration;
+import sonia.scm.repository.RepositoryException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces identical repository commands, which are executed at the same
+ * time. The first caller of a key executes its computation, all concurrent
+ * callers with an equal key wait until the first caller has finished and
+ * execute their computation afterwards. The computations should look into the
+ * cache before they ask the repository, so that the waiting callers are
+ * served by the result of the first caller. Waiting callers give up after the
+ * timeout of {@link ScmConfiguration#getCommandCoalescingTimeout()} and
+ * execute their computation on their own.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+final class CommandCoalescer
+{
+
+  /**
+   * the logger for CommandCoalescer
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(CommandCoalescer.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new {@link CommandCoalescer}.
+   *
+   *
+   * @param configuration main configuration
+   */
+  CommandCoalescer(ScmConfiguration configuration)
+  {
+    this.configuration = configuration;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Executes the computation. If an computation with an equal key is already
+   * running, the method waits until the running computation has finished
+   * before the given computation is executed.
+   *
+   *
+   * @param key key of the computation, in most cases a cache key
+   * @param computation computation to execute
+   * @param <V> type of result
+   *
+   * @return result of the computation
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  <V> V execute(Object key, Computation<V> computation)
+    throws IOException, RepositoryException
+  {
+    long timeout = configuration.getCommandCoalescingTimeout();
+
+    if (timeout > 0)
+    {
+      CountDownLatch latch = new CountDownLatch(1);
+      CountDownLatch running = inFlight.putIfAbsent(key, latch);
+
+      if (running == null)
+      {
+        try
+        {
+          return computation.compute();
+        }
+        finally
+        {
+          inFlight.remove(key, latch);
+          latch.countDown();
+        }
+      }
+
+      await(key, running, timeout);
+    }
+
+    return computation.compute();
+  }
+
+  /**
+   * Returns the number of running computations.
+   *
+   *
+   * @return number of running computations
+   */
+  int size()
+  {
+    return inFlight.size();
+  }
+
+  /**
+   * Waits until the running computation has finished or the timeout is
+   * reached.
+   *
+   *
+   * @param key key of the computation
+   * @param running latch of the running computation
+   * @param timeout timeout in seconds
+   */
+  private void await(Object key, CountDownLatch running, long timeout)
+  {
+    logger.debug("wait for running computation of {}", key);
+
+    try
+    {
+      if (!running.await(timeout, TimeUnit.SECONDS))
+      {
+        logger.warn("running computation of {} takes longer than {}s",
+          key, timeout);
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      logger.warn("wait for running computation of {} was interrupted", key);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * A computation, which is coalesced by the {@link CommandCoalescer}.
+   *
+   *
+   * @param <V> type of result
+   */
+  static interface Computation<V>
+  {
+
+    /**
+     * Computes the result.
+     *
+     *
+     * @return result of the computation
+     *
+     * @throws IOException
+     * @throws RepositoryException
+     */
+    public V compute() throws IOException, RepositoryException;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** main configuration */
+  private final ScmConfiguration configuration;
+
+  /** latches of the running computations */
+  private final ConcurrentMap<Object, CountDownLatch> inFlight =
+    Maps.newConcurrentMap();
+}
@@ -34,6 +34,7 @@ package sonia.scm.repository.api;
 //~--- non-JDK imports --------------------------------------------------------
 
 import com.google.common.base.Function;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
@@ -46,11 +47,14 @@ import sonia.scm.repository.PreProcessorUtil;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.spi.HookChangesetProvider;
 import sonia.scm.repository.spi.HookChangesetRequest;
+import sonia.scm.util.IOUtil;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.Closeable;
 import java.io.IOException;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -63,10 +67,6 @@ import java.util.List;
 public final class HookChangesetBuilder
 {
 
-  /** request */
-  private static final HookChangesetRequest request =
-    new HookChangesetRequest();
-
   /**
    * the logger for HookChangesetBuilder
    */
@@ -118,6 +118,11 @@ public final class HookChangesetBuilder
     Iterable<Changeset> changesets =
       provider.handleRequest(request).getChangesets();
 
+    if (limit >= 0)
+    {
+      changesets = new LimitedIterable(changesets, limit);
+    }
+
     if (!disablePreProcessors)
     {
       changesets = Iterables.transform(changesets,
@@ -174,6 +179,27 @@ public final class HookChangesetBuilder
     return this;
   }
 
+  /**
+   * Disable the computation of the modifications of the returned changesets.
+   * Listeners which need only a summary of the pushed changesets, should
+   * disable the modifications. Note: the flag is a hint for the repository
+   * implementation, the changesets could contain modifications anyway.
+   *
+   *
+   * @param disableModifications true to disable the modifications
+   *
+   * @return {@code this}
+   *
+   * @since 2.0.0
+   */
+  public HookChangesetBuilder setDisableModifications(
+    boolean disableModifications)
+  {
+    request.setDisableModifications(disableModifications);
+
+    return this;
+  }
+
   /**
    * Disable the execution of pre processors.
    *
@@ -190,8 +216,119 @@ public final class HookChangesetBuilder
     return this;
   }
 
+  /**
+   * Limits the number of returned changesets. The changesets of a push are
+   * created lazy, so the limit stops the creation of the changesets after the
+   * limit is reached. If the iterator of the provider is {@link Closeable},
+   * it is closed as soon as the limit is reached. A negative limit disables
+   * the limit, which is the default.
+   *
+   *
+   * @param limit maximum number of changesets
+   *
+   * @return {@code this}
+   *
+   * @since 2.0.0
+   */
+  public HookChangesetBuilder setLimit(int limit)
+  {
+    this.limit = limit;
+
+    return this;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * {@link Iterable} which limits the number of changesets and closes the
+   * {@link Closeable} iterators of the provider, when the limit is reached.
+   * The iterators of the provider could hold resources, which are otherwise
+   * only released after the last changeset.
+   */
+  private static class LimitedIterable implements Iterable<Changeset>
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param changesets
+     * @param limit
+     */
+    public LimitedIterable(Iterable<Changeset> changesets, int limit)
+    {
+      this.changesets = changesets;
+      this.limit = limit;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public Iterator<Changeset> iterator()
+    {
+      return new AbstractIterator<Changeset>()
+      {
+
+        @Override
+        protected Changeset computeNext()
+        {
+          if (remaining <= 0)
+          {
+            return endOfData();
+          }
+
+          if (iterator == null)
+          {
+            iterator = changesets.iterator();
+          }
+
+          if (!iterator.hasNext())
+          {
+            return endOfData();
+          }
+
+          Changeset changeset = iterator.next();
+
+          remaining--;
+
+          if ((remaining == 0) && (iterator instanceof Closeable))
+          {
+            IOUtil.close((Closeable) iterator);
+          }
+
+          return changeset;
+        }
+
+        private Iterator<Changeset> iterator;
+
+        private int remaining = limit;
+      };
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** changesets of the provider */
+    private final Iterable<Changeset> changesets;
+
+    /** maximum number of changesets */
+    private final int limit;
+  }
+
+
   //~--- fields ---------------------------------------------------------------
 
+  /** request */
+  private final HookChangesetRequest request = new HookChangesetRequest();
+
+  /** maximum number of changesets */
+  private int limit = -1;
+
   /** disable escaping */
   private boolean disableEscaping = false;
 
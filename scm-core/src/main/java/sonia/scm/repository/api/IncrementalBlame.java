@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository.api;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+import sonia.scm.repository.BlameLine;
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.spi.BlameChange;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates the blame of a file from the blame of its previous version. The
+ * lines of both versions are compared with the diff algorithm of Eugene W.
+ * Myers. Lines which are not changed keep the origin of the previous blame,
+ * inserted and modified lines are blamed on the new revision.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+final class IncrementalBlame
+{
+
+  /**
+   * max number of inserted and deleted lines, larger changes are blamed
+   * from scratch
+   */
+  @VisibleForTesting
+  static final int MAX_EDITS = 1000;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private IncrementalBlame() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates the blame of the new version of a file. The method returns
+   * {@code null}, if the previous blame does not match the previous content
+   * or if the versions differ in more than {@link #MAX_EDITS} lines.
+   *
+   *
+   * @param previous blame of the previous version
+   * @param previousContent lines of the previous version
+   * @param change revision of the new version
+   * @param content lines of the new version
+   *
+   * @return blame of the new version or {@code null}
+   */
+  static BlameResult apply(BlameResult previous, List<String> previousContent,
+    BlameChange change, List<String> content)
+  {
+    BlameResult result = null;
+    List<BlameLine> previousLines = previous.getBlameLines();
+
+    if (matches(previousLines, previousContent))
+    {
+      int[] origins = diff(previousContent, content, MAX_EDITS);
+
+      if (origins != null)
+      {
+        List<BlameLine> lines = Lists.newArrayListWithCapacity(content.size());
+
+        for (int i = 0; i < origins.length; i++)
+        {
+          BlameLine line;
+
+          if (origins[i] >= 0)
+          {
+            BlameLine origin = previousLines.get(origins[i]);
+
+            line = new BlameLine(i + 1, origin.getRevision(), origin.getWhen(),
+              origin.getAuthor(), origin.getDescription(), content.get(i));
+          }
+          else
+          {
+            line = new BlameLine(i + 1, change.getRevision(), change.getWhen(),
+              change.getAuthor(), change.getDescription(), content.get(i));
+          }
+
+          lines.add(line);
+        }
+
+        result = new BlameResult(lines.size(), lines);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Compares the lines of two versions and returns for each line of the new
+   * version the index of the unchanged line in the old version or -1, if the
+   * line was inserted or modified. The method returns {@code null}, if the
+   * versions differ in more than maxEdits lines.
+   *
+   *
+   * @param a lines of the old version
+   * @param b lines of the new version
+   * @param maxEdits max number of inserted and deleted lines
+   *
+   * @return origins of the new lines or {@code null}
+   */
+  @VisibleForTesting
+  static int[] diff(List<String> a, List<String> b, int maxEdits)
+  {
+    int[] origins = new int[b.size()];
+
+    Arrays.fill(origins, -1);
+
+    // most changes touch only a few lines, so we skip the common head and
+    // tail and run the diff only on the lines between
+    int start = 0;
+    int endA = a.size();
+    int endB = b.size();
+
+    while ((start < endA) && (start < endB)
+      && a.get(start).equals(b.get(start)))
+    {
+      origins[start] = start;
+      start++;
+    }
+
+    while ((endA > start) && (endB > start)
+      && a.get(endA - 1).equals(b.get(endB - 1)))
+    {
+      origins[--endB] = --endA;
+    }
+
+    if (!diff(a, b, start, endA - start, endB - start, maxEdits, origins))
+    {
+      origins = null;
+    }
+
+    return origins;
+  }
+
+  /**
+   * Runs the greedy diff of Myers on the lines between the common head and
+   * the common tail. The furthest reaching path of each diagonal is stored
+   * for every edit distance to find the path back from the end.
+   *
+   *
+   * @param a lines of the old version
+   * @param b lines of the new version
+   * @param offset number of lines in the common head
+   * @param n number of old lines to compare
+   * @param m number of new lines to compare
+   * @param maxEdits max number of inserted and deleted lines
+   * @param origins origins of the new lines
+   *
+   * @return false if the versions differ in more than maxEdits lines
+   */
+  private static boolean diff(List<String> a, List<String> b, int offset,
+    int n, int m, int maxEdits, int[] origins)
+  {
+    boolean found = false;
+    int max = Math.min(n + m, maxEdits);
+    int[] v = new int[(2 * max) + 3];
+    List<int[]> trace = Lists.newArrayList();
+    int d = 0;
+
+    for (; !found && (d <= max); d++)
+    {
+      trace.add(v.clone());
+
+      for (int k = -d; !found && (k <= d); k += 2)
+      {
+        int x;
+
+        if ((k == -d) || ((k != d) && (v[max + k] < v[max + k + 2])))
+        {
+          x = v[max + k + 2];
+        }
+        else
+        {
+          x = v[max + k] + 1;
+        }
+
+        int y = x - k;
+
+        while ((x < n) && (y < m)
+          && a.get(offset + x).equals(b.get(offset + y)))
+        {
+          x++;
+          y++;
+        }
+
+        v[max + k + 1] = x;
+        found = (x >= n) && (y >= m);
+      }
+    }
+
+    if (found)
+    {
+      int x = n;
+      int y = m;
+
+      for (d = d - 1; d >= 0; d--)
+      {
+        int[] previous = trace.get(d);
+        int k = x - y;
+        int previousK;
+
+        if ((k == -d)
+          || ((k != d) && (previous[max + k] < previous[max + k + 2])))
+        {
+          previousK = k + 1;
+        }
+        else
+        {
+          previousK = k - 1;
+        }
+
+        int previousX = previous[max + previousK + 1];
+        int previousY = previousX - previousK;
+
+        while ((x > previousX) && (y > previousY))
+        {
+          x--;
+          y--;
+          origins[offset + y] = offset + x;
+        }
+
+        x = previousX;
+        y = previousY;
+      }
+    }
+
+    return found;
+  }
+
+  /**
+   * Returns true if the code of the blame lines is equal to the content.
+   *
+   *
+   * @param lines blame lines
+   * @param content lines of the file
+   *
+   * @return true if the code of the blame lines is equal to the content
+   */
+  private static boolean matches(List<BlameLine> lines, List<String> content)
+  {
+    boolean matches = (lines != null) && (lines.size() == content.size());
+
+    for (int i = 0; matches && (i < content.size()); i++)
+    {
+      matches = Objects.equal(lines.get(i).getCode(), content.get(i));
+    }
+
+    return matches;
+  }
+}
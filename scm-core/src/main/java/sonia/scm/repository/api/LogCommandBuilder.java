@@ -43,14 +43,17 @@ import org.slf4j.LoggerFactory;
 
 import sonia.scm.cache.Cache;
 import sonia.scm.cache.CacheManager;
+import sonia.scm.cache.PersistentCacheKey;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.PreProcessorUtil;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryCacheKey;
 import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.api.CommandCoalescer.Computation;
 import sonia.scm.repository.spi.LogCommand;
 import sonia.scm.repository.spi.LogCommandRequest;
+import sonia.scm.repository.spi.PersistentCacheKeys;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -109,14 +112,17 @@ public final class LogCommandBuilder
    * only be called from the {@link RepositoryService}.
    *
    * @param cacheManager cache manager
+   * @param coalescer coalescer for identical commands
    * @param logCommand implementation of the {@link LogCommand}
    * @param repository repository to query
    * @param preProcessorUtil
    */
-  LogCommandBuilder(CacheManager cacheManager, LogCommand logCommand,
-    Repository repository, PreProcessorUtil preProcessorUtil)
+  LogCommandBuilder(CacheManager cacheManager, CommandCoalescer coalescer,
+    LogCommand logCommand, Repository repository,
+    PreProcessorUtil preProcessorUtil)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
+    this.coalescer = coalescer;
     this.logCommand = logCommand;
     this.repository = repository;
     this.preProcessorUtil = preProcessorUtil;
@@ -246,23 +252,21 @@ public final class LogCommandBuilder
     }
     else
     {
-      CacheKey key = new CacheKey(repository, request);
+      final CacheKey key = new CacheKey(repository, request);
 
       cpr = cache.get(key);
 
       if (cpr == null)
       {
-        if (logger.isDebugEnabled())
-        {
-          logger.debug("get changesets for {}", request);
-        }
-
-        cpr = logCommand.getChangesets(request);
-
-        if (cpr != null)
+        cpr = coalescer.execute(key, new Computation<ChangesetPagingResult>()
         {
-          cache.put(key, cpr);
-        }
+          @Override
+          public ChangesetPagingResult compute()
+            throws IOException, RepositoryException
+          {
+            return getChangesetsFromCommand(key);
+          }
+        });
       }
       else if (logger.isDebugEnabled())
       {
@@ -424,6 +428,48 @@ public final class LogCommandBuilder
     return this;
   }
 
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the changesets from the cache, if an identical command has stored
+   * them in the meantime. Otherwise the changesets are retrieved from the
+   * command and stored in the cache.
+   *
+   *
+   * @param key cache key
+   *
+   * @return changesets from the cache or the command
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private ChangesetPagingResult getChangesetsFromCommand(CacheKey key)
+    throws IOException, RepositoryException
+  {
+    ChangesetPagingResult cpr = cache.get(key);
+
+    if (cpr == null)
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("get changesets for {}", request);
+      }
+
+      cpr = logCommand.getChangesets(request);
+
+      if (cpr != null)
+      {
+        cache.put(key, cpr);
+      }
+    }
+    else if (logger.isDebugEnabled())
+    {
+      logger.debug("get changesets from coalesced command for {}", request);
+    }
+
+    return cpr;
+  }
+
   //~--- inner classes --------------------------------------------------------
 
   /**
@@ -433,7 +479,8 @@ public final class LogCommandBuilder
    * @version        Enter version here..., 12/06/05
    * @author         Enter your name here...
    */
-  static class CacheKey implements RepositoryCacheKey, Serializable
+  static class CacheKey
+    implements RepositoryCacheKey, PersistentCacheKey, Serializable
   {
 
     /** Field description */
@@ -453,6 +500,7 @@ public final class LogCommandBuilder
       this.repositoryId = repository.getId();
       this.request = request;
       this.changesetId = null;
+      this.persistentKey = PersistentCacheKeys.log(repository, request);
     }
 
     /**
@@ -468,6 +516,8 @@ public final class LogCommandBuilder
       this.repositoryId = repository.getId();
       this.changesetId = changesetId;
       this.request = null;
+      this.persistentKey = PersistentCacheKeys.changeset(repository,
+        changesetId);
     }
 
     //~--- methods ------------------------------------------------------------
@@ -514,6 +564,18 @@ public final class LogCommandBuilder
 
     //~--- get methods --------------------------------------------------------
 
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public String getPersistentKey()
+    {
+      return persistentKey;
+    }
+
     /**
      * Method description
      *
@@ -531,6 +593,9 @@ public final class LogCommandBuilder
     /** Field description */
     private final String changesetId;
 
+    /** key for the disk tier or null */
+    private final String persistentKey;
+
     /** Field description */
     private final String repositoryId;
 
@@ -544,6 +609,9 @@ public final class LogCommandBuilder
   /** cache for changesets */
   private final Cache<CacheKey, ChangesetPagingResult> cache;
 
+  /** coalescer for identical commands */
+  private final CommandCoalescer coalescer;
+
   /** Implementation of the log command */
   private final LogCommand logCommand;
 
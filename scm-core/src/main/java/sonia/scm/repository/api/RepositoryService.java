@@ -100,15 +100,17 @@ public final class RepositoryService implements Closeable
    * be called from the {@link RepositoryServiceFactory}.
    *
    * @param cacheManager cache manager
+   * @param coalescer coalescer for identical commands
    * @param provider implementation for {@link RepositoryServiceProvider}
    * @param repository the repository
    * @param preProcessorUtil
    */
-  RepositoryService(CacheManager cacheManager,
+  RepositoryService(CacheManager cacheManager, CommandCoalescer coalescer,
     RepositoryServiceProvider provider, Repository repository,
     PreProcessorUtil preProcessorUtil)
   {
     this.cacheManager = cacheManager;
+    this.coalescer = coalescer;
     this.provider = provider;
     this.repository = repository;
     this.preProcessorUtil = preProcessorUtil;
@@ -162,8 +164,8 @@ public final class RepositoryService implements Closeable
         repository.getName());
     }
 
-    return new BlameCommandBuilder(cacheManager, provider.getBlameCommand(),
-      repository, preProcessorUtil);
+    return new BlameCommandBuilder(cacheManager, coalescer,
+      provider.getBlameCommand(), repository, preProcessorUtil);
   }
 
   /**
@@ -181,7 +183,7 @@ public final class RepositoryService implements Closeable
         repository.getName());
     }
 
-    return new BranchesCommandBuilder(cacheManager,
+    return new BranchesCommandBuilder(cacheManager, coalescer,
       provider.getBranchesCommand(), repository);
   }
 
@@ -200,8 +202,8 @@ public final class RepositoryService implements Closeable
         repository.getName());
     }
 
-    return new BrowseCommandBuilder(cacheManager, provider.getBrowseCommand(),
-      repository, preProcessorUtil);
+    return new BrowseCommandBuilder(cacheManager, coalescer,
+      provider.getBrowseCommand(), repository, preProcessorUtil);
   }
 
   /**
@@ -278,8 +280,8 @@ public final class RepositoryService implements Closeable
         repository.getName());
     }
 
-    return new LogCommandBuilder(cacheManager, provider.getLogCommand(),
-      repository, preProcessorUtil);
+    return new LogCommandBuilder(cacheManager, coalescer,
+      provider.getLogCommand(), repository, preProcessorUtil);
   }
 
   /**
@@ -366,8 +368,8 @@ public final class RepositoryService implements Closeable
         repository.getName());
     }
 
-    return new TagsCommandBuilder(cacheManager, provider.getTagsCommand(),
-      repository);
+    return new TagsCommandBuilder(cacheManager, coalescer,
+      provider.getTagsCommand(), repository);
   }
 
   /**
@@ -403,6 +405,9 @@ public final class RepositoryService implements Closeable
   /** cache manager */
   private CacheManager cacheManager;
 
+  /** coalescer for identical commands */
+  private CommandCoalescer coalescer;
+
   /** Field description */
   private PreProcessorUtil preProcessorUtil;
 
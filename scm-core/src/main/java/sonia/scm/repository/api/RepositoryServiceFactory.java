@@ -150,6 +150,7 @@ public final class RepositoryServiceFactory
     this.repositoryManager = repositoryManager;
     this.resolvers = resolvers;
     this.preProcessorUtil = preProcessorUtil;
+    this.coalescer = new CommandCoalescer(configuration);
 
     ScmEventBus.getInstance().register(new CacheClearHook(cacheManager));
   }
@@ -272,8 +273,8 @@ public final class RepositoryServiceFactory
             repository.getName(), repository.getType());
         }
 
-        service = new RepositoryService(cacheManager, provider, repository,
-          preProcessorUtil);
+        service = new RepositoryService(cacheManager, coalescer, provider,
+          repository, preProcessorUtil);
 
         break;
       }
@@ -331,7 +332,7 @@ public final class RepositoryServiceFactory
       {
         String id = repository.getId();
 
-        clearCaches(id);
+        clearCaches(id, true);
       }
     }
 
@@ -347,18 +348,27 @@ public final class RepositoryServiceFactory
     {
       if (event.getEventType() == HandlerEventType.DELETE)
       {
-        clearCaches(event.getItem().getId());
+        clearCaches(event.getItem().getId(), false);
       }
     }
 
     /**
-     * Method description
+     * Clears the caches of the repository. The blame and browse results of
+     * immutable revisions could be kept after a push, they do not change and
+     * the blame results are required to create the blame of the next change
+     * of a file incrementally. They are kept by a
+     * {@link RepositoryCacheKeyPredicate}, which drops the memory partition of
+     * the repository but keeps its entries in the disk tier. The other
+     * predicate removes the entries from the disk tier as well, because the
+     * changesets of the log contain branches and tags.
      *
      *
-     * @param repositoryId
+     * @param repositoryId id of the repository
+     * @param keepImmutable true to keep the blame and browse results of
+     *   immutable revisions
      */
     @SuppressWarnings("unchecked")
-    private void clearCaches(final String repositoryId)
+    private void clearCaches(String repositoryId, boolean keepImmutable)
     {
       if (logger.isDebugEnabled())
       {
@@ -367,9 +377,11 @@ public final class RepositoryServiceFactory
 
       RepositoryCacheKeyPredicate filter =
         new RepositoryCacheKeyPredicate(repositoryId);
+      RepositoryCacheKeyPredicate immutableFilter =
+        new RepositoryCacheKeyPredicate(repositoryId, keepImmutable);
 
-      blameCache.removeAll(filter);
-      browseCache.removeAll(filter);
+      blameCache.removeAll(immutableFilter);
+      browseCache.removeAll(immutableFilter);
       logCache.removeAll(filter);
       tagsCache.removeAll(filter);
       branchesCache.removeAll(filter);
@@ -399,6 +411,9 @@ public final class RepositoryServiceFactory
   /** cache manager */
   private final CacheManager cacheManager;
 
+  /** coalescer for identical repository commands */
+  private final CommandCoalescer coalescer;
+
   /** scm-manager configuration */
   private final ScmConfiguration configuration;
 
@@ -45,6 +45,7 @@ import sonia.scm.cache.CacheManager;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryCacheKey;
 import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.api.CommandCoalescer.Computation;
 import sonia.scm.repository.Tag;
 import sonia.scm.repository.Tags;
 import sonia.scm.repository.spi.TagsCommand;
@@ -88,14 +89,16 @@ public final class TagsCommandBuilder
    * only be called from the {@link RepositoryService}.
    *
    * @param cacheManager cache manager
+   * @param coalescer coalescer for identical commands
    * @param logCommand implementation of the {@link TagsCommand}
    * @param command
    * @param repository repository
    */
-  TagsCommandBuilder(CacheManager cacheManager, TagsCommand command,
-    Repository repository)
+  TagsCommandBuilder(CacheManager cacheManager, CommandCoalescer coalescer,
+    TagsCommand command, Repository repository)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
+    this.coalescer = coalescer;
     this.command = command;
     this.repository = repository;
   }
@@ -127,23 +130,20 @@ public final class TagsCommandBuilder
     }
     else
     {
-      CacheKey key = new CacheKey(repository);
+      final CacheKey key = new CacheKey(repository);
 
       tags = cache.get(key);
 
       if (tags == null)
       {
-        if (logger.isDebugEnabled())
+        tags = coalescer.execute(key, new Computation<Tags>()
         {
-          logger.debug("get tags for repository {}", repository.getName());
-        }
-
-        tags = getTagsFromCommand();
-
-        if (tags != null)
-        {
-          cache.put(key, tags);
-        }
+          @Override
+          public Tags compute() throws IOException, RepositoryException
+          {
+            return getTagsFromCommand(key);
+          }
+        });
       }
       else if (logger.isDebugEnabled())
       {
@@ -192,6 +192,47 @@ public final class TagsCommandBuilder
     return new Tags(tagList);
   }
 
+  /**
+   * Returns the tags from the cache, if an identical command has stored them
+   * in the meantime. Otherwise the tags are retrieved from the command and
+   * stored in the cache.
+   *
+   *
+   * @param key cache key
+   *
+   * @return tags from the cache or the command
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private Tags getTagsFromCommand(CacheKey key)
+    throws RepositoryException, IOException
+  {
+    Tags tags = cache.get(key);
+
+    if (tags == null)
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("get tags for repository {}", repository.getName());
+      }
+
+      tags = getTagsFromCommand();
+
+      if (tags != null)
+      {
+        cache.put(key, tags);
+      }
+    }
+    else if (logger.isDebugEnabled())
+    {
+      logger.debug("get tags for repository {} from coalesced command",
+        repository.getName());
+    }
+
+    return tags;
+  }
+
   //~--- inner classes --------------------------------------------------------
 
   /**
@@ -281,6 +322,9 @@ public final class TagsCommandBuilder
   /** cache for changesets */
   private final Cache<CacheKey, Tags> cache;
 
+  /** coalescer for identical commands */
+  private final CommandCoalescer coalescer;
+
   /** command implementation */
   private final TagsCommand command;
 
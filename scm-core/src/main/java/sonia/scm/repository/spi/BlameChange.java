@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository.spi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Objects;
+
+import sonia.scm.repository.Person;
+
+/**
+ * The revision which has last modified a file, returned by
+ * {@link IncrementalBlameCommand#getChange(BlameCommandRequest)}. Instances of
+ * this class are immutable.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public final class BlameChange
+{
+
+  /**
+   * Constructs a new {@link BlameChange}. The description must be formatted
+   * in the same way as the description of the blame lines of the command.
+   *
+   *
+   * @param revision revision which has modified the file
+   * @param previousRevision revision which has modified the file before or
+   *   {@code null}, if the revision has added, copied or merged the file
+   * @param author author of the revision
+   * @param when time of the revision
+   * @param description description of the revision
+   */
+  public BlameChange(String revision, String previousRevision, Person author,
+    Long when, String description)
+  {
+    this.revision = revision;
+    this.previousRevision = previousRevision;
+    this.author = author;
+    this.when = when;
+    this.description = description;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (obj == null)
+    {
+      return false;
+    }
+
+    if (getClass() != obj.getClass())
+    {
+      return false;
+    }
+
+    final BlameChange other = (BlameChange) obj;
+
+    return Objects.equal(revision, other.revision)
+      && Objects.equal(previousRevision, other.previousRevision)
+      && Objects.equal(author, other.author)
+      && Objects.equal(when, other.when)
+      && Objects.equal(description, other.description);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hashCode(revision, previousRevision, author, when,
+      description);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    //J-
+    return Objects.toStringHelper(this)
+                  .add("revision", revision)
+                  .add("previousRevision", previousRevision)
+                  .add("author", author)
+                  .add("when", when)
+                  .toString();
+    //J+
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the author of the revision.
+   *
+   *
+   * @return author of the revision
+   */
+  public Person getAuthor()
+  {
+    return author;
+  }
+
+  /**
+   * Returns the description of the revision.
+   *
+   *
+   * @return description of the revision
+   */
+  public String getDescription()
+  {
+    return description;
+  }
+
+  /**
+   * Returns the revision which has modified the file before or {@code null},
+   * if the revision has added, copied or merged the file.
+   *
+   *
+   * @return previous revision or {@code null}
+   */
+  public String getPreviousRevision()
+  {
+    return previousRevision;
+  }
+
+  /**
+   * Returns the revision which has modified the file.
+   *
+   *
+   * @return revision which has modified the file
+   */
+  public String getRevision()
+  {
+    return revision;
+  }
+
+  /**
+   * Returns the time of the revision.
+   *
+   *
+   * @return time of the revision
+   */
+  public Long getWhen()
+  {
+    return when;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** author of the revision */
+  private final Person author;
+
+  /** description of the revision */
+  private final String description;
+
+  /** revision which has modified the file before */
+  private final String previousRevision;
+
+  /** revision which has modified the file */
+  private final String revision;
+
+  /** time of the revision */
+  private final Long when;
+}
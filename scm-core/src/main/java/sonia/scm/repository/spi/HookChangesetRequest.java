@@ -34,11 +34,47 @@ package sonia.scm.repository.spi;
 import sonia.scm.repository.Changeset;
 
 /**
- * Request object to retrieve {@link Changeset}s during a hook. At the moment 
- * this object has no functionality, but it is used to be prepared for further 
- * functions.
+ * Request object to retrieve {@link Changeset}s during a hook.
  *
  * @author Sebastian Sdorra
  * @since 1.33
  */
-public final class HookChangesetRequest {}
+public final class HookChangesetRequest
+{
+
+  /**
+   * Disables the computation of the modifications of the changesets. Listeners
+   * which need only a summary of the pushed changesets, should disable the
+   * modifications, because their computation is the most expensive part.
+   *
+   *
+   * @param disableModifications true to disable the modifications
+   *
+   * @since 2.0.0
+   */
+  public void setDisableModifications(boolean disableModifications)
+  {
+    this.disableModifications = disableModifications;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns true if the modifications of the changesets should not be
+   * computed.
+   *
+   *
+   * @return true if the modifications are disabled
+   *
+   * @since 2.0.0
+   */
+  public boolean isDisableModifications()
+  {
+    return disableModifications;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** disable modifications */
+  private boolean disableModifications = false;
+}
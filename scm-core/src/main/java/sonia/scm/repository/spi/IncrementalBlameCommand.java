@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository.spi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import sonia.scm.repository.RepositoryException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+
+import java.util.List;
+
+/**
+ * A {@link BlameCommand} which allows to create the blame of a file from the
+ * blame of its previous version. The api stores the blame of each file under
+ * the revision, which has last modified the file. When the file is modified
+ * again, only the lines which differ between the two versions are blamed on
+ * the new revision and all other lines keep the origin of the previous blame.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public interface IncrementalBlameCommand extends BlameCommand
+{
+
+  /**
+   * Returns the revision which has last modified the file of the request, at
+   * or before the revision of the request. The method returns {@code null},
+   * if the change could not be determined. In this case the blame is created
+   * with {@link #getBlameResult(BlameCommandRequest)}.
+   *
+   *
+   * @param request blame request
+   *
+   * @return last change of the file or {@code null}
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  public BlameChange getChange(BlameCommandRequest request)
+    throws IOException, RepositoryException;
+
+  /**
+   * Returns the lines of the file at the revision of the request. The lines
+   * must be split and decoded in the same way as the code of the lines
+   * returned by {@link #getBlameResult(BlameCommandRequest)}.
+   *
+   *
+   * @param request blame request
+   *
+   * @return lines of the file
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  public List<String> getContent(BlameCommandRequest request)
+    throws IOException, RepositoryException;
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.repository.spi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import sonia.scm.repository.Repository;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.regex.Pattern;
+
+/**
+ * Creates the keys for the persistent disk tier of the repository command
+ * caches. A key is only created, if all revisions of the request are
+ * immutable. Branch names, tags and missing revisions resolve to a different
+ * changeset after a push and never produce a key.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public final class PersistentCacheKeys
+{
+
+  /** full changeset id of git and mercurial */
+  private static final Pattern PATTERN_NODE = Pattern.compile("[0-9a-f]{40}");
+
+  /** revision number of subversion */
+  private static final Pattern PATTERN_REVISION = Pattern.compile("[0-9]+");
+
+  /** repository type of subversion */
+  private static final String TYPE_SVN = "svn";
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private PersistentCacheKeys() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns the persistent key for a blame request or {@code null}.
+   *
+   *
+   * @param repository repository
+   * @param request blame request
+   *
+   * @return persistent key or {@code null}
+   */
+  public static String blame(Repository repository,
+    BlameCommandRequest request)
+  {
+    String key = null;
+
+    if (isImmutable(repository, request.getRevision()))
+    {
+      key = key(repository, "blame", request.getPath(),
+        request.getRevision());
+    }
+
+    return key;
+  }
+
+  /**
+   * Returns the persistent key for a browse request or {@code null}.
+   *
+   *
+   * @param repository repository
+   * @param request browse request
+   *
+   * @return persistent key or {@code null}
+   */
+  public static String browse(Repository repository,
+    BrowseCommandRequest request)
+  {
+    String key = null;
+
+    if (isImmutable(repository, request.getRevision()))
+    {
+      key = key(repository, "browse", request.getPath(),
+        request.getRevision(), request.isRecursive(),
+        request.isDisableLastCommit(),
+        request.isDisableSubRepositoryDetection());
+    }
+
+    return key;
+  }
+
+  /**
+   * Returns the persistent key for a single changeset or {@code null}.
+   *
+   *
+   * @param repository repository
+   * @param id id of the changeset
+   *
+   * @return persistent key or {@code null}
+   */
+  public static String changeset(Repository repository, String id)
+  {
+    String key = null;
+
+    if (isImmutable(repository, id))
+    {
+      key = key(repository, "changeset", id);
+    }
+
+    return key;
+  }
+
+  /**
+   * Returns true if the persistent key was created for the repository with
+   * the given id.
+   *
+   *
+   * @param key persistent key
+   * @param repositoryId id of the repository
+   *
+   * @return true if the key belongs to the repository
+   */
+  public static boolean isKeyOfRepository(String key, String repositoryId)
+  {
+    int index = key.indexOf('/');
+
+    return (index > 0)
+      && key.startsWith(repositoryId.concat("/"), index + 1);
+  }
+
+  /**
+   * Returns the persistent key for a log request or {@code null}. The start
+   * changeset is required, because the log of a branch changes with every
+   * push.
+   *
+   *
+   * @param repository repository
+   * @param request log request
+   *
+   * @return persistent key or {@code null}
+   */
+  public static String log(Repository repository, LogCommandRequest request)
+  {
+    String key = null;
+
+    if (isImmutable(repository, request.getStartChangeset())
+      && ((request.getEndChangeset() == null)
+        || isImmutable(repository, request.getEndChangeset())))
+    {
+      key = key(repository, "log", request.getStartChangeset(),
+        request.getEndChangeset(), request.getPagingStart(),
+        request.getPagingLimit(), request.getPath(), request.getBranch());
+    }
+
+    return key;
+  }
+
+  /**
+   * Returns true if the revision identifies always the same changeset.
+   *
+   *
+   * @param repository repository
+   * @param revision revision
+   *
+   * @return true if the revision is immutable
+   */
+  private static boolean isImmutable(Repository repository, String revision)
+  {
+    boolean immutable = false;
+
+    if (revision != null)
+    {
+      Pattern pattern = TYPE_SVN.equals(repository.getType())
+        ? PATTERN_REVISION
+        : PATTERN_NODE;
+
+      immutable = pattern.matcher(revision).matches();
+    }
+
+    return immutable;
+  }
+
+  /**
+   * Creates the key from the command name, the repository id and the parts.
+   * Each part is prefixed with its length, to keep the key unambiguous.
+   *
+   *
+   * @param repository repository
+   * @param command name of the command
+   * @param parts parts of the request
+   *
+   * @return key
+   */
+  private static String key(Repository repository, String command,
+    Object... parts)
+  {
+    StringBuilder key = new StringBuilder(command);
+
+    key.append('/').append(repository.getId());
+
+    for (Object part : parts)
+    {
+      key.append('/');
+
+      if (part == null)
+      {
+        key.append('-');
+      }
+      else
+      {
+        String value = part.toString();
+
+        key.append(value.length()).append(':').append(value);
+      }
+    }
+
+    return key.toString();
+  }
+}
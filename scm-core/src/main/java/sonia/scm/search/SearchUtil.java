@@ -48,6 +48,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.regex.Pattern;
 
 /**
  *
@@ -191,6 +192,22 @@ public final class SearchUtil
     return items;
   }
 
+  /**
+   * Compiles the query of the search request to a pattern, which can be used
+   * for many values.
+   *
+   *
+   * @param request search request
+   *
+   * @return compiled query
+   *
+   * @since 2.0.0
+   */
+  static Pattern createPattern(SearchRequest request)
+  {
+    return Pattern.compile(createStringQuery(request));
+  }
+
   /**
    * Method description
    *
@@ -0,0 +1,832 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.search;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory trigram index for the search of items such as users or groups.
+ * Every field of an item is split into all lowercase substrings of three
+ * characters and each of these trigrams points to the items which contain it.
+ * A query is answered by intersecting the items of the trigrams of the query
+ * and by matching the remaining candidates with the same pattern which is used
+ * by {@link SearchUtil}. Queries without any trigram, for example queries
+ * with less than three characters, are matched against all items.
+ * <p>
+ * The results are ranked: matches of the first field (the id) come before
+ * matches of the other fields, and exact matches come before prefix matches,
+ * which come before all other matches. The index is thread safe.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ *
+ * @param <T> type of indexed items
+ */
+public final class TrigramIndex<T>
+{
+
+  /** length of a gram */
+  private static final int GRAM_LENGTH = 3;
+
+  /** characters with a special meaning in a query */
+  private static final String WILDCARDS = "*?+^$";
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new empty {@link TrigramIndex}. The given function returns
+   * the searchable fields of an item. The first field is the unique id of the
+   * item and must not be null, all other fields are optional.
+   *
+   *
+   * @param fields function which returns the fields of an item
+   */
+  public TrigramIndex(Function<T, String[]> fields)
+  {
+    this.fields = fields;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Removes all items from the index.
+   *
+   */
+  public void clear()
+  {
+    Lock writeLock = lock.writeLock();
+
+    writeLock.lock();
+
+    try
+    {
+      entries.clear();
+      documents.clear();
+      freeDocuments.clear();
+      postings.clear();
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Adds the item to the index or replaces the item with the same id.
+   *
+   *
+   * @param item item to index
+   */
+  public void put(T item)
+  {
+    Entry<T> entry = createEntry(item);
+    Lock writeLock = lock.writeLock();
+
+    writeLock.lock();
+
+    try
+    {
+      Entry<T> previous = entries.remove(entry.id);
+
+      if (previous != null)
+      {
+        entry.document = previous.document;
+        unindex(previous);
+        documents.set(entry.document, entry);
+      }
+      else if (!freeDocuments.isEmpty())
+      {
+        entry.document = freeDocuments.remove(freeDocuments.size() - 1);
+        documents.set(entry.document, entry);
+      }
+      else
+      {
+        entry.document = documents.size();
+        documents.add(entry);
+      }
+
+      entries.put(entry.id, entry);
+      index(entry);
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Replaces all items of the index with the given items.
+   *
+   *
+   * @param items items to index
+   */
+  public void putAll(Collection<T> items)
+  {
+    Lock writeLock = lock.writeLock();
+
+    writeLock.lock();
+
+    try
+    {
+      clear();
+
+      for (T item : items)
+      {
+        put(item);
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the item with the same id from the index.
+   *
+   *
+   * @param item item to remove
+   */
+  public void remove(T item)
+  {
+    String id = createEntry(item).id;
+    Lock writeLock = lock.writeLock();
+
+    writeLock.lock();
+
+    try
+    {
+      Entry<T> entry = entries.remove(id);
+
+      if (entry != null)
+      {
+        unindex(entry);
+        documents.set(entry.document, null);
+        freeDocuments.add(entry.document);
+      }
+    }
+    finally
+    {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the ranked items which are matching the search request. The
+   * start value of the request is the number of ranked items which are
+   * skipped and a max results value lower than 1 returns all matching items.
+   *
+   *
+   * @param request search request
+   *
+   * @return ranked items
+   */
+  public List<T> search(SearchRequest request)
+  {
+    Query query = new Query(request);
+    List<Match<T>> matches = Lists.newArrayList();
+    Lock readLock = lock.readLock();
+
+    readLock.lock();
+
+    try
+    {
+      for (Entry<T> entry : candidates(query))
+      {
+        int rank = query.rank(entry);
+
+        if (rank >= 0)
+        {
+          matches.add(new Match<T>(entry, rank));
+        }
+      }
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+
+    int start = Math.max(0, request.getStartWith());
+    int max = request.getMaxResults();
+
+    if (max > 0)
+    {
+      matches = Match.ORDERING.leastOf(matches, start + max);
+    }
+    else
+    {
+      Collections.sort(matches, Match.ORDERING);
+    }
+
+    List<T> items = Lists.newArrayList();
+
+    for (int i = start; i < matches.size(); i++)
+    {
+      items.add(matches.get(i).entry.item);
+    }
+
+    return items;
+  }
+
+  /**
+   * Returns the number of indexed items.
+   *
+   *
+   * @return number of indexed items
+   */
+  public int size()
+  {
+    Lock readLock = lock.readLock();
+
+    readLock.lock();
+
+    try
+    {
+      return entries.size();
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Adds all trigrams of the given value to the set.
+   *
+   *
+   * @param grams set of trigrams
+   * @param value lowercase value
+   */
+  private static void addGrams(Set<String> grams, String value)
+  {
+    for (int i = 0; (i + GRAM_LENGTH) <= value.length(); i++)
+    {
+      grams.add(value.substring(i, i + GRAM_LENGTH));
+    }
+  }
+
+  /**
+   * Returns the lowercase representation of the value.
+   *
+   *
+   * @param value value
+   *
+   * @return lowercase value
+   */
+  private static String lower(String value)
+  {
+    return value.toLowerCase(Locale.ENGLISH);
+  }
+
+  /**
+   * Returns the entries which contain all trigrams of the query. This method
+   * must be called with the read lock.
+   *
+   *
+   * @param query query
+   *
+   * @return candidate entries
+   */
+  private Collection<Entry<T>> candidates(Query query)
+  {
+    Collection<Entry<T>> candidates;
+
+    if (query.grams.isEmpty())
+    {
+      candidates = entries.values();
+    }
+    else
+    {
+      List<Postings> lists = Lists.newArrayList();
+
+      for (String gram : query.grams)
+      {
+        Postings p = postings.get(gram);
+
+        if (p == null)
+        {
+          return Collections.emptyList();
+        }
+
+        lists.add(p);
+      }
+
+      Collections.sort(lists, Postings.BY_SIZE);
+      candidates = Lists.newArrayList();
+
+      Postings smallest = lists.get(0);
+
+      for (int i = 0; i < smallest.size; i++)
+      {
+        int document = smallest.documents[i];
+        boolean found = true;
+
+        for (int j = 1; found && (j < lists.size()); j++)
+        {
+          found = lists.get(j).contains(document);
+        }
+
+        if (found)
+        {
+          candidates.add(documents.get(document));
+        }
+      }
+    }
+
+    return candidates;
+  }
+
+  /**
+   * Creates an entry for the given item.
+   *
+   *
+   * @param item item
+   *
+   * @return entry of the item
+   */
+  private Entry<T> createEntry(T item)
+  {
+    Preconditions.checkNotNull(item, "item is required");
+
+    String[] values = fields.apply(item);
+
+    Preconditions.checkArgument((values.length > 0) && (values[0] != null),
+      "item has no id");
+
+    return new Entry<T>(item, values);
+  }
+
+  /**
+   * Adds the trigrams of the entry to the postings. This method must be
+   * called with the write lock.
+   *
+   *
+   * @param entry entry to index
+   */
+  private void index(Entry<T> entry)
+  {
+    for (String gram : entry.grams())
+    {
+      Postings p = postings.get(gram);
+
+      if (p == null)
+      {
+        p = new Postings();
+        postings.put(gram, p);
+      }
+
+      p.add(entry.document);
+    }
+  }
+
+  /**
+   * Removes the trigrams of the entry from the postings. This method must be
+   * called with the write lock.
+   *
+   *
+   * @param entry entry to remove
+   */
+  private void unindex(Entry<T> entry)
+  {
+    for (String gram : entry.grams())
+    {
+      Postings p = postings.get(gram);
+
+      if (p != null)
+      {
+        p.remove(entry.document);
+
+        if (p.size == 0)
+        {
+          postings.remove(gram);
+        }
+      }
+    }
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Indexed item with its fields.
+   *
+   *
+   * @param <T> type of item
+   */
+  private static final class Entry<T>
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param item indexed item
+     * @param values fields of the item
+     */
+    public Entry(T item, String[] values)
+    {
+      this.item = item;
+      this.values = values;
+      this.id = values[0];
+      this.lowerValues = new String[values.length];
+
+      for (int i = 0; i < values.length; i++)
+      {
+        if (values[i] != null)
+        {
+          lowerValues[i] = lower(values[i]);
+        }
+      }
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Returns the trigrams of all fields.
+     *
+     *
+     * @return trigrams of all fields
+     */
+    public Set<String> grams()
+    {
+      Set<String> grams = Sets.newHashSet();
+
+      for (String value : lowerValues)
+      {
+        if (value != null)
+        {
+          addGrams(grams, value);
+        }
+      }
+
+      return grams;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** id of the item */
+    private final String id;
+
+    /** indexed item */
+    private final T item;
+
+    /** lowercase fields */
+    private final String[] lowerValues;
+
+    /** fields */
+    private final String[] values;
+
+    /** document number */
+    private int document;
+  }
+
+
+  /**
+   * Ranked search result.
+   *
+   *
+   * @param <T> type of item
+   */
+  private static final class Match<T>
+  {
+
+    /** orders matches by rank and id */
+    @SuppressWarnings("rawtypes")
+    private static final Ordering<Match> ORDERING =
+      Ordering.from(new Comparator<Match>()
+    {
+      @Override
+      public int compare(Match left, Match right)
+      {
+        return ComparisonChain.start().compare(left.rank,
+          right.rank).compare(left.entry.lowerValues[0],
+            right.entry.lowerValues[0]).result();
+      }
+    });
+
+    //~--- constructors -------------------------------------------------------
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param entry matching entry
+     * @param rank rank of the match
+     */
+    public Match(Entry<T> entry, int rank)
+    {
+      this.entry = entry;
+      this.rank = rank;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** matching entry */
+    private final Entry<T> entry;
+
+    /** rank of the match */
+    private final int rank;
+  }
+
+
+  /**
+   * Sorted list of the documents, which contain a trigram.
+   */
+  private static final class Postings
+  {
+
+    /** orders postings by their size */
+    private static final Comparator<Postings> BY_SIZE =
+      new Comparator<Postings>()
+    {
+      @Override
+      public int compare(Postings left, Postings right)
+      {
+        return left.size - right.size;
+      }
+    };
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Adds the document.
+     *
+     *
+     * @param document document number
+     */
+    public void add(int document)
+    {
+      int index = Arrays.binarySearch(documents, 0, size, document);
+
+      if (index < 0)
+      {
+        index = -(index + 1);
+
+        if (size == documents.length)
+        {
+          documents = Arrays.copyOf(documents, size * 2);
+        }
+
+        System.arraycopy(documents, index, documents, index + 1,
+          size - index);
+        documents[index] = document;
+        size++;
+      }
+    }
+
+    /**
+     * Returns true if the postings contain the document.
+     *
+     *
+     * @param document document number
+     *
+     * @return true if the document is contained
+     */
+    public boolean contains(int document)
+    {
+      return Arrays.binarySearch(documents, 0, size, document) >= 0;
+    }
+
+    /**
+     * Removes the document.
+     *
+     *
+     * @param document document number
+     */
+    public void remove(int document)
+    {
+      int index = Arrays.binarySearch(documents, 0, size, document);
+
+      if (index >= 0)
+      {
+        System.arraycopy(documents, index + 1, documents, index,
+          size - index - 1);
+        size--;
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** sorted document numbers */
+    private int[] documents = new int[4];
+
+    /** number of documents */
+    private int size = 0;
+  }
+
+
+  /**
+   * Parsed search request.
+   */
+  private static final class Query
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param request search request
+     */
+    public Query(SearchRequest request)
+    {
+      this.pattern = SearchUtil.createPattern(request);
+      this.ignoreCase = request.isIgnoreCase();
+      this.literal = request.getQuery().trim();
+
+      String query = lower(literal);
+      List<String> segments = Lists.newArrayList();
+      StringBuilder segment = new StringBuilder();
+
+      for (char c : query.toCharArray())
+      {
+        if (WILDCARDS.indexOf(c) >= 0)
+        {
+          segments.add(segment.toString());
+          segment.setLength(0);
+        }
+        else
+        {
+          segment.append(c);
+        }
+      }
+
+      segments.add(segment.toString());
+
+      for (String s : segments)
+      {
+        addGrams(grams, s);
+      }
+
+      this.exact = (segments.size() == 1)
+        ? query
+        : null;
+      this.prefix = segments.get(0);
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Returns the rank of the entry or -1 if the entry does not match.
+     *
+     *
+     * @param entry entry
+     *
+     * @return rank or -1
+     */
+    public int rank(Entry<?> entry)
+    {
+      int rank = -1;
+
+      for (int i = 0; i < entry.values.length; i++)
+      {
+        String value = entry.values[i];
+
+        String lowerValue = entry.lowerValues[i];
+
+        if ((value != null) && matches(value, lowerValue))
+        {
+          int fieldRank = (i == 0)
+            ? 0
+            : 3;
+
+          if (!lowerValue.equals(exact))
+          {
+            fieldRank += (!prefix.isEmpty() && lowerValue.startsWith(prefix))
+              ? 1
+              : 2;
+          }
+
+          if ((rank < 0) || (fieldRank < rank))
+          {
+            rank = fieldRank;
+          }
+        }
+      }
+
+      return rank;
+    }
+
+    /**
+     * Returns true if the value matches the query. Queries without wildcards
+     * are matched without the pattern.
+     *
+     *
+     * @param value value
+     * @param lowerValue lowercase value
+     *
+     * @return true if the value matches
+     */
+    private boolean matches(String value, String lowerValue)
+    {
+      boolean result;
+
+      if (exact == null)
+      {
+        result = pattern.matcher(value).matches();
+      }
+      else if (ignoreCase)
+      {
+        result = lowerValue.contains(exact);
+      }
+      else
+      {
+        result = value.contains(literal);
+      }
+
+      return result;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** lowercase query, if it contains no wildcards */
+    private final String exact;
+
+    /** trigrams of the query */
+    private final Set<String> grams = Sets.newHashSet();
+
+    /** true if the query is case insensitive */
+    private final boolean ignoreCase;
+
+    /** query as it was entered */
+    private final String literal;
+
+    /** compiled query */
+    private final Pattern pattern;
+
+    /** lowercase text before the first wildcard */
+    private final String prefix;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** documents by document number */
+  private final List<Entry<T>> documents = Lists.newArrayList();
+
+  /** entries by id */
+  private final Map<String, Entry<T>> entries = Maps.newHashMap();
+
+  /** function which returns the fields of an item */
+  private final Function<T, String[]> fields;
+
+  /** unused document numbers */
+  private final List<Integer> freeDocuments = Lists.newArrayList();
+
+  /** lock for the index */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** postings by trigram */
+  private final Map<String, Postings> postings = Maps.newHashMap();
+}
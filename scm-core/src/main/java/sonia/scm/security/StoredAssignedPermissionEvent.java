@@ -50,7 +50,7 @@ import sonia.scm.event.Event;
  * @author Sebastian Sdorra
  * @since 1.31
  */
-@Event
+@Event(async = true)
 public final class StoredAssignedPermissionEvent implements Serializable
 {
 
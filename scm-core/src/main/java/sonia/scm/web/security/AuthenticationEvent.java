@@ -46,7 +46,7 @@ import sonia.scm.user.User;
  * @author Sebastian Sdorra
  * @since 1.27
  */
-@Event
+@Event(async = true)
 public class AuthenticationEvent
 {
 
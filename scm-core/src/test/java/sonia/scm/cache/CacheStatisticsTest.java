@@ -56,6 +56,12 @@ public class CacheStatisticsTest
     assertEquals(12, stats.getHitCount());
     assertEquals(3, stats.getMissCount());
     assertEquals(15, stats.getRequestCount());
+    assertEquals(0, stats.getEvictionCount());
+    assertEquals(-1, stats.getWeight());
+
+    stats = new CacheStatistics("", 12, 3, 4, 2048);
+    assertEquals(4, stats.getEvictionCount());
+    assertEquals(2048, stats.getWeight());
   }
 
   /**
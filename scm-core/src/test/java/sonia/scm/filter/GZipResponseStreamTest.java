@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of SCM-Manager;
+ * nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+
+package sonia.scm.filter;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class GZipResponseStreamTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    content = new ByteArrayOutputStream();
+    response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream()
+    {
+      @Override
+      public void write(int b) throws IOException
+      {
+        content.write(b);
+      }
+    });
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testBufferedResponse() throws IOException
+  {
+    byte[] data = createData(4096);
+
+    write(new GZipFilterConfig(), data);
+
+    verify(response).addHeader("Content-Encoding", "gzip");
+    verify(response).setContentLength(content.size());
+    assertTrue(content.size() < data.length);
+    assertArrayEquals(data, decompress());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testBufferedResponseExceedsBufferSize() throws IOException
+  {
+    GZipFilterConfig config = new GZipFilterConfig();
+
+    config.setBufferSize(16);
+
+    byte[] data = createData(4096);
+
+    write(config, data);
+
+    verify(response).addHeader("Content-Encoding", "gzip");
+    verify(response, never()).setContentLength(anyInt());
+    assertArrayEquals(data, decompress());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testReuseDeflater() throws IOException
+  {
+    for (int i = 0; i < 3; i++)
+    {
+      setUp();
+
+      byte[] data = createData(1024 * (i + 1));
+
+      write(new GZipFilterConfig(), data);
+      assertArrayEquals(data, decompress());
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testSmallResponse() throws IOException
+  {
+    byte[] data = createData(GZipFilterConfig.DEFAULT_MINIMUM_SIZE);
+
+    write(new GZipFilterConfig(), data);
+
+    verify(response, never()).addHeader("Content-Encoding", "gzip");
+    verify(response).setContentLength(data.length);
+    assertArrayEquals(data, content.toByteArray());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testUnbufferedFlush() throws IOException
+  {
+    GZipFilterConfig config = new GZipFilterConfig();
+
+    config.setBufferResponse(false);
+
+    GZipResponseStream stream = new GZipResponseStream(response, config);
+
+    stream.write("small".getBytes("UTF-8"));
+    stream.flush();
+    verify(response).addHeader("Content-Encoding", "gzip");
+    stream.close();
+
+    verify(response, never()).setContentLength(anyInt());
+    assertEquals("small", new String(decompress(), "UTF-8"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testUnbufferedResponse() throws IOException
+  {
+    GZipFilterConfig config = new GZipFilterConfig();
+
+    config.setBufferResponse(false);
+
+    byte[] data = createData(8192);
+
+    write(config, data);
+
+    verify(response).addHeader("Content-Encoding", "gzip");
+    verify(response, never()).setContentLength(anyInt());
+    assertArrayEquals(data, decompress());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param size
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private byte[] createData(int size) throws IOException
+  {
+    return Strings.repeat("abcdefghij", (size / 10) + 1).substring(0,
+      size).getBytes("UTF-8");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private byte[] decompress() throws IOException
+  {
+    GZIPInputStream input =
+      new GZIPInputStream(new ByteArrayInputStream(content.toByteArray()));
+
+    try
+    {
+      return ByteStreams.toByteArray(input);
+    }
+    finally
+    {
+      input.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param config
+   * @param data
+   *
+   * @throws IOException
+   */
+  private void write(GZipFilterConfig config, byte[] data) throws IOException
+  {
+    GZipResponseStream stream = new GZipResponseStream(response, config);
+
+    // write in small chunks, to cross the minimum size
+    for (int i = 0; i < data.length; i += 100)
+    {
+      stream.write(data, i, Math.min(100, data.length - i));
+    }
+
+    stream.close();
+    assertTrue(stream.isClosed());
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private ByteArrayOutputStream content;
+
+  /** Field description */
+  private HttpServletResponse response;
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.repository.api;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.After;
+import org.junit.Test;
+
+import sonia.scm.config.ScmConfiguration;
+import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.api.CommandCoalescer.Computation;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class CommandCoalescerTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void tearDown()
+  {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCoalesce() throws Exception
+  {
+    CommandCoalescer coalescer = createCoalescer(30l);
+    Future<String> leader = submit(coalescer, "a");
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    Future<String> follower = submit(coalescer, "a");
+
+    Thread.sleep(100l);
+    assertFalse(follower.isDone());
+    assertEquals(1, coalescer.size());
+
+    release.countDown();
+    assertEquals("a", leader.get(5, TimeUnit.SECONDS));
+    assertEquals("a", follower.get(5, TimeUnit.SECONDS));
+    assertEquals(1, computations.get());
+    assertEquals(0, coalescer.size());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDifferentKeys() throws Exception
+  {
+    CommandCoalescer coalescer = createCoalescer(30l);
+
+    submit(coalescer, "a");
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertEquals("b",
+      coalescer.execute("b", new StaticComputation("b")));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDisabled() throws Exception
+  {
+    CommandCoalescer coalescer = createCoalescer(0l);
+
+    submit(coalescer, "a");
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertEquals("b",
+      coalescer.execute("a", new StaticComputation("b")));
+    assertEquals(0, coalescer.size());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFailure() throws Exception
+  {
+    CommandCoalescer coalescer = createCoalescer(30l);
+
+    try
+    {
+      coalescer.execute("a", new Computation<String>()
+      {
+        @Override
+        public String compute() throws IOException
+        {
+          throw new IOException("failed");
+        }
+      });
+      fail("exception expected");
+    }
+    catch (IOException ex)
+    {
+      assertEquals("failed", ex.getMessage());
+    }
+
+    assertEquals(0, coalescer.size());
+    assertEquals("b",
+      coalescer.execute("a", new StaticComputation("b")));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testTimeout() throws Exception
+  {
+    CommandCoalescer coalescer = createCoalescer(1l);
+
+    submit(coalescer, "a");
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertEquals("b",
+      coalescer.execute("a", new StaticComputation("b")));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param timeout
+   *
+   * @return
+   */
+  private CommandCoalescer createCoalescer(long timeout)
+  {
+    ScmConfiguration configuration = new ScmConfiguration();
+
+    configuration.setCommandCoalescingTimeout(timeout);
+
+    return new CommandCoalescer(configuration);
+  }
+
+  /**
+   * Submits a computation, which blocks until the release latch is counted
+   * down and stores its result in the simulated cache.
+   *
+   *
+   * @param coalescer
+   * @param key
+   *
+   * @return
+   */
+  private Future<String> submit(final CommandCoalescer coalescer,
+    final String key)
+  {
+    return executor.submit(new Callable<String>()
+    {
+      @Override
+      public String call() throws Exception
+      {
+        return coalescer.execute(key, new Computation<String>()
+        {
+          @Override
+          public String compute()
+          {
+            String value = cache.get();
+
+            if (value == null)
+            {
+              computations.incrementAndGet();
+              started.countDown();
+
+              try
+              {
+                release.await();
+              }
+              catch (InterruptedException ex)
+              {
+                Thread.currentThread().interrupt();
+              }
+
+              value = key;
+              cache.set(value);
+            }
+
+            return value;
+          }
+        });
+      }
+    });
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Computation with a static result.
+   */
+  private static class StaticComputation implements Computation<String>
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param value
+     */
+    public StaticComputation(String value)
+    {
+      this.value = value;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     *
+     * @throws IOException
+     * @throws RepositoryException
+     */
+    @Override
+    public String compute() throws IOException, RepositoryException
+    {
+      return value;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final String value;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** simulated cache */
+  private final AtomicReference<String> cache =
+    new AtomicReference<String>();
+
+  /** number of expensive computations */
+  private final AtomicInteger computations = new AtomicInteger();
+
+  /** Field description */
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  /** Field description */
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  /** Field description */
+  private final CountDownLatch started = new CountDownLatch(1);
+}
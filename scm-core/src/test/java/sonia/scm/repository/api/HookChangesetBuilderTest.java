@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.repository.api;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.AbstractIterator;
+
+import org.junit.Test;
+
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.PreProcessorUtil;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.spi.HookChangesetProvider;
+import sonia.scm.repository.spi.HookChangesetRequest;
+import sonia.scm.repository.spi.HookChangesetResponse;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class HookChangesetBuilderTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testLimit()
+  {
+    List<Changeset> changesets = createBuilder().setLimit(2).getChangesetList();
+
+    assertEquals(2, changesets.size());
+    assertEquals("0", changesets.get(0).getId());
+    assertEquals("1", changesets.get(1).getId());
+    assertEquals(2, created);
+    assertTrue(closed);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testLimitZero()
+  {
+    assertTrue(createBuilder().setLimit(0).getChangesetList().isEmpty());
+    assertEquals(0, created);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testWithoutLimit()
+  {
+    assertEquals(5, createBuilder().getChangesetList().size());
+    assertEquals(5, created);
+    assertFalse(closed);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private HookChangesetBuilder createBuilder()
+  {
+    HookChangesetProvider provider = mock(HookChangesetProvider.class);
+    Iterable<Changeset> changesets = new Iterable<Changeset>()
+    {
+      @Override
+      public Iterator<Changeset> iterator()
+      {
+        return new ChangesetIterator();
+      }
+    };
+
+    when(provider.handleRequest(any(HookChangesetRequest.class))).thenReturn(
+      new HookChangesetResponse(changesets));
+
+    HookChangesetBuilder builder =
+      new HookChangesetBuilder(new Repository("1", "git", "hog"),
+        mock(PreProcessorUtil.class), provider);
+
+    return builder.setDisablePreProcessors(true);
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Iterator which creates five changesets and records, if it was closed.
+   */
+  private class ChangesetIterator extends AbstractIterator<Changeset>
+    implements Closeable
+  {
+
+    /**
+     * Method description
+     *
+     */
+    @Override
+    public void close()
+    {
+      closed = true;
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    protected Changeset computeNext()
+    {
+      if (closed || (created >= 5))
+      {
+        return endOfData();
+      }
+
+      Changeset changeset = new Changeset();
+
+      changeset.setId(String.valueOf(created++));
+
+      return changeset;
+    }
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** true if the iterator was closed */
+  private boolean closed = false;
+
+  /** number of created changesets */
+  private int created = 0;
+}
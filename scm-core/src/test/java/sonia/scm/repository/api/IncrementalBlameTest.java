@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.repository.api;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import sonia.scm.repository.BlameLine;
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.spi.BlameChange;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class IncrementalBlameTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testApply()
+  {
+    BlameResult previous = blame("1", "a", "b", "c", "d");
+    BlameChange change = new BlameChange("2", "1",
+                           new Person("Zaphod Beeblebrox"), 2l, "change");
+    BlameResult result = IncrementalBlame.apply(previous,
+                           lines("a", "b", "c", "d"), change,
+                           lines("a", "x", "c", "d", "e"));
+
+    assertNotNull(result);
+    assertEquals(5, result.getTotal());
+    assertLine(result.getLine(0), 1, "1", "a");
+    assertLine(result.getLine(1), 2, "2", "x");
+    assertLine(result.getLine(2), 3, "1", "c");
+    assertLine(result.getLine(3), 4, "1", "d");
+    assertLine(result.getLine(4), 5, "2", "e");
+    assertEquals("Trillian", result.getLine(0).getAuthor().getName());
+    assertEquals(Long.valueOf(1l), result.getLine(0).getWhen());
+    assertEquals("Zaphod Beeblebrox",
+      result.getLine(1).getAuthor().getName());
+    assertEquals("change", result.getLine(1).getDescription());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testApplyWithDifferentPreviousContent()
+  {
+    BlameResult previous = blame("1", "a", "b");
+    BlameChange change = new BlameChange("2", "1", null, 2l, "change");
+
+    assertNull(IncrementalBlame.apply(previous, lines("a", "c"), change,
+      lines("a", "c", "d")));
+    assertNull(IncrementalBlame.apply(previous, lines("a"), change,
+      lines("a", "d")));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testDiff()
+  {
+    assertArrayEquals(new int[] { 0, -1, 2 },
+      IncrementalBlame.diff(lines("a", "b", "c"), lines("a", "x", "c"), 10));
+    assertArrayEquals(new int[] { -1, 0, 1 },
+      IncrementalBlame.diff(lines("a", "b"), lines("x", "a", "b"), 10));
+    assertArrayEquals(new int[] { 1 },
+      IncrementalBlame.diff(lines("a", "b", "c"), lines("b"), 10));
+    assertArrayEquals(new int[] { -1, -1 },
+      IncrementalBlame.diff(lines(), lines("a", "b"), 10));
+    assertArrayEquals(new int[0],
+      IncrementalBlame.diff(lines("a", "b"), lines(), 10));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testDiffFindsLongestCommonSubsequence()
+  {
+    Random random = new Random(42l);
+
+    for (int i = 0; i < 500; i++)
+    {
+      List<String> a = random(random, random.nextInt(30));
+      List<String> b = random(random, random.nextInt(30));
+      int[] origins = IncrementalBlame.diff(a, b, IncrementalBlame.MAX_EDITS);
+
+      assertNotNull(origins);
+
+      int last = -1;
+      int common = 0;
+
+      for (int j = 0; j < origins.length; j++)
+      {
+        if (origins[j] >= 0)
+        {
+          assertTrue(origins[j] > last);
+          assertEquals(a.get(origins[j]), b.get(j));
+          last = origins[j];
+          common++;
+        }
+      }
+
+      assertEquals(lcs(a, b), common);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testDiffWithTooManyEdits()
+  {
+    List<String> a = lines("a", "b", "c", "d");
+    List<String> b = lines("w", "x", "y", "z");
+
+    assertNull(IncrementalBlame.diff(a, b, 7));
+    assertNotNull(IncrementalBlame.diff(a, b, 8));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param line
+   * @param lineNumber
+   * @param revision
+   * @param code
+   */
+  private void assertLine(BlameLine line, int lineNumber, String revision,
+    String code)
+  {
+    assertEquals(lineNumber, line.getLineNumber());
+    assertEquals(revision, line.getRevision());
+    assertEquals(code, line.getCode());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param revision
+   * @param code
+   *
+   * @return
+   */
+  private BlameResult blame(String revision, String... code)
+  {
+    List<BlameLine> lines = Lists.newArrayList();
+
+    for (int i = 0; i < code.length; i++)
+    {
+      lines.add(new BlameLine(i + 1, revision, 1l, new Person("Trillian"),
+        "initial", code[i]));
+    }
+
+    return new BlameResult(lines.size(), lines);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param a
+   * @param b
+   *
+   * @return
+   */
+  private int lcs(List<String> a, List<String> b)
+  {
+    int[][] lengths = new int[a.size() + 1][b.size() + 1];
+
+    for (int i = a.size() - 1; i >= 0; i--)
+    {
+      for (int j = b.size() - 1; j >= 0; j--)
+      {
+        if (a.get(i).equals(b.get(j)))
+        {
+          lengths[i][j] = lengths[i + 1][j + 1] + 1;
+        }
+        else
+        {
+          lengths[i][j] = Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+        }
+      }
+    }
+
+    return lengths[0][0];
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param lines
+   *
+   * @return
+   */
+  private List<String> lines(String... lines)
+  {
+    return Arrays.asList(lines);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param random
+   * @param size
+   *
+   * @return
+   */
+  private List<String> random(Random random, int size)
+  {
+    List<String> lines = Lists.newArrayList();
+
+    for (int i = 0; i < size; i++)
+    {
+      lines.add(String.valueOf((char) ('a' + random.nextInt(4))));
+    }
+
+    return lines;
+  }
+}
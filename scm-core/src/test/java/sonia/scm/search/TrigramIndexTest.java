@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.search;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.List;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class TrigramIndexTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUp()
+  {
+    index = new TrigramIndex<String[]>(new Function<String[], String[]>()
+    {
+      @Override
+      public String[] apply(String[] item)
+      {
+        return item;
+      }
+    });
+    index.put(item("trillian", "Tricia McMillan", "tricia@hitchhiker.com"));
+    index.put(item("dent", "Arthur Dent", "arthur@hitchhiker.com"));
+    index.put(item("zaphod", "Zaphod Beeblebrox", null));
+    index.put(item("marvin", "Marvin", "marvin@hitchhiker.com"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testCaseSensitive()
+  {
+    assertEquals(ImmutableList.of("zaphod"),
+      search(new SearchRequest("Zaphod", false)));
+    assertEquals(ImmutableList.of(),
+      search(new SearchRequest("ZAPHOD", false)));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPaging()
+  {
+    SearchRequest request = new SearchRequest("hitchhiker", true);
+
+    request.setMaxResults(2);
+    assertEquals(ImmutableList.of("dent", "marvin"), search(request));
+
+    request.setStartWith(2);
+    assertEquals(ImmutableList.of("trillian"), search(request));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPut()
+  {
+    index.put(item("dent", "Arthur Philip Dent", null));
+    assertEquals(4, index.size());
+    assertEquals(ImmutableList.of("dent"), search("philip"));
+    assertEquals(ImmutableList.of("marvin", "trillian"), search("@hitch"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testRanking()
+  {
+    index.put(item("art", "Art", null));
+    index.put(item("martin", "Martin", null));
+
+    // exact id, id substring, prefix of another field
+    assertEquals(ImmutableList.of("art", "martin", "dent"), search("art"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testRemove()
+  {
+    index.remove(item("dent", null, null));
+    assertEquals(3, index.size());
+    assertEquals(ImmutableList.of(), search("arthur"));
+
+    index.put(item("slarti", "Slartibartfast", null));
+    assertEquals(ImmutableList.of("slarti"), search("bart"));
+    assertEquals(ImmutableList.of("marvin", "trillian"),
+      search("hitchhiker"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testSearch()
+  {
+    assertEquals(ImmutableList.of("trillian"), search("McMillan"));
+    assertEquals(ImmutableList.of("zaphod"), search("beeble"));
+    assertEquals(ImmutableList.of("dent", "marvin", "trillian"),
+      search("hitchhiker.com"));
+    assertEquals(ImmutableList.of(), search("vogon"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testShortQuery()
+  {
+    assertEquals(ImmutableList.of("zaphod"), search("z"));
+    assertEquals(ImmutableList.of("marvin", "dent"), search("ar"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testWildcards()
+  {
+    assertEquals(ImmutableList.of("trillian"), search("tri*lan"));
+    assertEquals(ImmutableList.of("zaphod"), search("*phod"));
+    assertEquals(ImmutableList.of("dent"), search("art??r"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param values
+   *
+   * @return
+   */
+  private String[] item(String... values)
+  {
+    return values;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param query
+   *
+   * @return
+   */
+  private List<String> search(String query)
+  {
+    return search(new SearchRequest(query, true));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param request
+   *
+   * @return
+   */
+  private List<String> search(SearchRequest request)
+  {
+    List<String> ids = Lists.newArrayList();
+
+    for (String[] item : index.search(request))
+    {
+      ids.add(item[0]);
+    }
+
+    return ids;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private TrigramIndex<String[]> index;
+}
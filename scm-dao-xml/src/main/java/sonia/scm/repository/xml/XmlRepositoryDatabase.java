@@ -41,13 +41,16 @@ import sonia.scm.xml.XmlDatabase;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 /**
@@ -110,6 +113,7 @@ public class XmlRepositoryDatabase implements XmlDatabase<Repository>
   public void add(Repository repository)
   {
     repositoryMap.put(createKey(repository), repository);
+    idIndex.put(repository.getId(), repository);
   }
 
   /**
@@ -163,6 +167,7 @@ public class XmlRepositoryDatabase implements XmlDatabase<Repository>
   public void remove(Repository repository)
   {
     repositoryMap.remove(createKey(repository));
+    idIndex.remove(repository.getId());
   }
 
   /**
@@ -178,7 +183,10 @@ public class XmlRepositoryDatabase implements XmlDatabase<Repository>
   {
     Repository r = get(id);
 
-    remove(r);
+    if (r != null)
+    {
+      remove(r);
+    }
 
     return r;
   }
@@ -195,6 +203,25 @@ public class XmlRepositoryDatabase implements XmlDatabase<Repository>
     return repositoryMap.values();
   }
 
+  /**
+   * Rebuilds the id index after the database was read by jaxb. The index is
+   * not part of the xml document, because it is derived from the repository
+   * map.
+   *
+   *
+   * @param unmarshaller jaxb unmarshaller
+   * @param parent parent object
+   */
+  void afterUnmarshal(Unmarshaller unmarshaller, Object parent)
+  {
+    idIndex.clear();
+
+    for (Repository repository : repositoryMap.values())
+    {
+      idIndex.put(repository.getId(), repository);
+    }
+  }
+
   //~--- get methods ----------------------------------------------------------
 
   /**
@@ -222,19 +249,7 @@ public class XmlRepositoryDatabase implements XmlDatabase<Repository>
   @Override
   public Repository get(String id)
   {
-    Repository repository = null;
-
-    for (Repository r : values())
-    {
-      if (r.getId().equals(id))
-      {
-        repository = r;
-
-        break;
-      }
-    }
-
-    return repository;
+    return idIndex.get(id);
   }
 
   /**
@@ -300,4 +315,8 @@ public class XmlRepositoryDatabase implements XmlDatabase<Repository>
   @XmlElement(name = "repositories")
   private Map<String, Repository> repositoryMap = new LinkedHashMap<String,
                                                     Repository>();
+
+  /** index of all repositories by their id */
+  @XmlTransient
+  private Map<String, Repository> idIndex = new HashMap<String, Repository>();
 }
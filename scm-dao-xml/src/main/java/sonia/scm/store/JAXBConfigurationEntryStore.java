@@ -44,16 +44,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import sonia.scm.security.KeyGenerator;
+import sonia.scm.util.IOUtil;
 import sonia.scm.xml.IndentXMLStreamWriter;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.Writer;
 
@@ -61,6 +71,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.zip.CRC32;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -73,8 +84,16 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.stream.StreamSource;
 
 /**
+ * Stores configuration entries in a xml file. In the journaled mode, every
+ * change is appended as a single record to a journal file next to the xml
+ * file. The journal is folded into the xml file, when it contains more records
+ * than the store has entries. Records of a journal which was not completely
+ * written (e.g. after a crash) are detected by a checksum and are dropped on
+ * load. Reads are served from a concurrent map and are never blocked by
+ * writers.
  *
  * @author Sebastian Sdorra
  *
@@ -84,6 +103,21 @@ public class JAXBConfigurationEntryStore<V>
   implements ConfigurationEntryStore<V>
 {
 
+  /** minimum number of journal records before the journal is compacted */
+  static final int COMPACTION_THRESHOLD = 1000;
+
+  /** extension of the journal file */
+  static final String EXTENSION_JOURNAL = ".journal";
+
+  /** extension of the temporary snapshot file */
+  private static final String EXTENSION_TEMP = ".tmp";
+
+  /** journal record for a put */
+  private static final byte RECORD_PUT = 1;
+
+  /** journal record for a remove */
+  private static final byte RECORD_REMOVE = 2;
+
   /** Field description */
   private static final String TAG_CONFIGURATION = "configuration";
 
@@ -115,19 +149,54 @@ public class JAXBConfigurationEntryStore<V>
    */
   JAXBConfigurationEntryStore(File file, KeyGenerator keyGenerator,
     Class<V> type)
+  {
+    this(file, keyGenerator, type, true);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param file
+   * @param keyGenerator
+   * @param type
+   * @param journaled true to append changes to a journal instead of writing
+   *   the whole file for every change
+   *
+   * @since 2.0.0
+   */
+  JAXBConfigurationEntryStore(File file, KeyGenerator keyGenerator,
+    Class<V> type, boolean journaled)
   {
     this.file = file;
     this.keyGenerator = keyGenerator;
     this.type = type;
+    this.journaled = journaled;
+    this.journal = new File(file.getParentFile(),
+      file.getName().concat(EXTENSION_JOURNAL));
+    this.temp = new File(file.getParentFile(),
+      file.getName().concat(EXTENSION_TEMP));
 
     try
     {
       this.context = JAXBContext.newInstance(type);
 
+      // the snapshot was replaced, but not renamed
+      if (!file.exists() && temp.exists() &&!temp.renameTo(file))
+      {
+        throw new StoreException("could not restore snapshot ".concat(
+          temp.getPath()));
+      }
+
       if (file.exists())
       {
         load();
       }
+
+      if (journal.exists())
+      {
+        replay();
+      }
     }
     catch (JAXBException ex)
     {
@@ -186,7 +255,7 @@ public class JAXBConfigurationEntryStore<V>
     synchronized (file)
     {
       entries.put(id, item);
-      store();
+      write(RECORD_PUT, id, item);
     }
   }
 
@@ -204,7 +273,7 @@ public class JAXBConfigurationEntryStore<V>
     synchronized (file)
     {
       entries.remove(id);
-      store();
+      write(RECORD_REMOVE, id, null);
     }
   }
 
@@ -256,6 +325,110 @@ public class JAXBConfigurationEntryStore<V>
 
   //~--- methods --------------------------------------------------------------
 
+  /**
+   * Appends a record to the journal.
+   *
+   *
+   * @param op type of the record
+   * @param id id of the entry
+   * @param item item or null for a remove
+   */
+  private void append(byte op, String id, V item)
+  {
+    OutputStream output = null;
+
+    try
+    {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream payload = new DataOutputStream(baos);
+
+      payload.writeByte(op);
+      payload.writeUTF(id);
+
+      if (item != null)
+      {
+        Marshaller m = context.createMarshaller();
+
+        m.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        m.marshal(new JAXBElement<V>(QName.valueOf(TAG_VALUE), type, item),
+          payload);
+      }
+
+      payload.flush();
+
+      byte[] data = baos.toByteArray();
+      CRC32 crc = new CRC32();
+
+      crc.update(data);
+
+      ByteArrayOutputStream record =
+        new ByteArrayOutputStream(data.length + 12);
+      DataOutputStream recordStream = new DataOutputStream(record);
+
+      recordStream.writeInt(data.length);
+      recordStream.write(data);
+      recordStream.writeLong(crc.getValue());
+      recordStream.flush();
+
+      // write the record at once, to keep partial records at the end
+      output = new FileOutputStream(journal, true);
+      output.write(record.toByteArray());
+    }
+    catch (Exception ex)
+    {
+      throw new StoreException("could not append to journal", ex);
+    }
+    finally
+    {
+      IOUtil.close(output);
+    }
+
+    journalRecords++;
+  }
+
+  /**
+   * Applies a journal record to the entries.
+   *
+   *
+   * @param unmarshaller
+   * @param data payload of the record
+   *
+   * @throws IOException
+   * @throws JAXBException
+   */
+  private void apply(Unmarshaller unmarshaller, byte[] data)
+    throws IOException, JAXBException
+  {
+    ByteArrayInputStream bais = new ByteArrayInputStream(data);
+    DataInputStream input = new DataInputStream(bais);
+    byte op = input.readByte();
+    String key = input.readUTF();
+
+    if (op == RECORD_PUT)
+    {
+      JAXBElement<V> element = unmarshaller.unmarshal(new StreamSource(bais),
+                                 type);
+
+      if (!element.isNil())
+      {
+        entries.put(key, element.getValue());
+      }
+      else
+      {
+        logger.warn("could not unmarshall object of journal");
+      }
+    }
+    else if (op == RECORD_REMOVE)
+    {
+      entries.remove(key);
+    }
+    else
+    {
+      throw new IOException("unknown journal record ".concat(
+        String.valueOf(op)));
+    }
+  }
+
   /**
    * Method description
    *
@@ -321,7 +494,7 @@ public class JAXBConfigurationEntryStore<V>
    */
   private Writer createWriter() throws FileNotFoundException
   {
-    return new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8);
+    return new OutputStreamWriter(new FileOutputStream(temp), Charsets.UTF_8);
   }
 
   /**
@@ -396,7 +569,80 @@ public class JAXBConfigurationEntryStore<V>
   }
 
   /**
-   * Method description
+   * Reads the journal and applies all complete records. An incomplete or
+   * corrupt record and everything after it is cut off from the journal.
+   *
+   */
+  private void replay()
+  {
+    logger.debug("replay journal {}", journal);
+
+    DataInputStream input = null;
+    long valid = 0;
+    boolean truncate = false;
+
+    try
+    {
+      Unmarshaller u = context.createUnmarshaller();
+      long length = journal.length();
+
+      input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(journal)));
+
+      while (valid < length)
+      {
+        int size = input.readInt();
+
+        if ((size < 0) || (size > length - valid))
+        {
+          truncate = true;
+
+          break;
+        }
+
+        byte[] data = new byte[size];
+
+        input.readFully(data);
+
+        CRC32 crc = new CRC32();
+
+        crc.update(data);
+
+        if (crc.getValue() != input.readLong())
+        {
+          truncate = true;
+
+          break;
+        }
+
+        apply(u, data);
+        valid += size + 12;
+        journalRecords++;
+      }
+    }
+    catch (EOFException ex)
+    {
+      truncate = true;
+    }
+    catch (Exception ex)
+    {
+      throw new StoreException("could not replay journal", ex);
+    }
+    finally
+    {
+      IOUtil.close(input);
+    }
+
+    if (truncate)
+    {
+      logger.warn("drop incomplete record at position {} of journal {}",
+        valid, journal);
+      truncateJournal(valid);
+    }
+  }
+
+  /**
+   * Writes all entries to the xml file and removes the journal.
    *
    */
   private void store()
@@ -458,6 +704,73 @@ public class JAXBConfigurationEntryStore<V>
     {
       close(writer);
     }
+
+    // replace the snapshot, renameTo does not overwrite files on windows
+    if (!temp.renameTo(file) && (!file.delete() ||!temp.renameTo(file)))
+    {
+      throw new StoreException("could not replace ".concat(file.getPath()));
+    }
+
+    // the journal is contained in the new snapshot
+    if (journal.exists() &&!journal.delete())
+    {
+      logger.warn("could not delete journal {}", journal);
+      truncateJournal(0);
+    }
+
+    journalRecords = 0;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param length
+   */
+  private void truncateJournal(long length)
+  {
+    RandomAccessFile raf = null;
+
+    try
+    {
+      raf = new RandomAccessFile(journal, "rw");
+      raf.setLength(length);
+    }
+    catch (IOException ex)
+    {
+      throw new StoreException("could not truncate journal", ex);
+    }
+    finally
+    {
+      IOUtil.close(raf);
+    }
+  }
+
+  /**
+   * Persists a change. In the journaled mode the change is appended to the
+   * journal, otherwise the whole file is written.
+   *
+   *
+   * @param op
+   * @param id
+   * @param item
+   */
+  private void write(byte op, String id, V item)
+  {
+    if (journaled)
+    {
+      append(op, id, item);
+
+      if (journalRecords > Math.max(COMPACTION_THRESHOLD, entries.size()))
+      {
+        logger.debug("compact journal {}", journal);
+        store();
+      }
+    }
+    else
+    {
+      store();
+    }
   }
 
   //~--- fields ---------------------------------------------------------------
@@ -468,8 +781,20 @@ public class JAXBConfigurationEntryStore<V>
   /** Field description */
   private JAXBContext context;
 
+  /** entries of the store, readers do not lock */
+  private final Map<String, V> entries = Maps.newConcurrentMap();
+
+  /** Field description */
+  private final File journal;
+
+  /** number of records in the journal */
+  private int journalRecords = 0;
+
+  /** true if changes are appended to the journal */
+  private final boolean journaled;
+
   /** Field description */
-  private Map<String, V> entries = Maps.newHashMap();
+  private final File temp;
 
   /** Field description */
   private KeyGenerator keyGenerator;
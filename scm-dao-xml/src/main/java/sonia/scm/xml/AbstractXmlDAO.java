@@ -196,10 +196,13 @@ public abstract class AbstractXmlDAO<I extends ModelObject,
       logger.trace("modify xml backend item {}", item.getId());
     }
 
+    // clone before the lock, to keep the window between remove and add small
+    I clone = clone(item);
+
     synchronized (store)
     {
       db.remove(item.getId());
-      db.add(clone(item));
+      db.add(clone);
       storeDB();
     }
   }
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.repository.xml;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import sonia.scm.repository.Repository;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.bind.JAXB;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class XmlRepositoryDatabaseTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testGetById()
+  {
+    XmlRepositoryDatabase db = new XmlRepositoryDatabase();
+
+    db.add(new Repository("1", "git", "project/one"));
+    db.add(new Repository("2", "hg", "two"));
+
+    assertEquals("project/one", db.get("1").getName());
+    assertEquals("two", db.get("2").getName());
+    assertNull(db.get("3"));
+    assertTrue(db.contains("1"));
+    assertFalse(db.contains("3"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testIndexAfterUnmarshal()
+  {
+    XmlRepositoryDatabase db = new XmlRepositoryDatabase();
+
+    db.add(new Repository("1", "git", "project/one"));
+    db.add(new Repository("2", "hg", "two"));
+
+    StringWriter writer = new StringWriter();
+
+    JAXB.marshal(db, writer);
+    db = JAXB.unmarshal(new StringReader(writer.toString()),
+      XmlRepositoryDatabase.class);
+
+    assertEquals("project/one", db.get("1").getName());
+    assertEquals("two", db.get("hg", "two").getName());
+    assertSame(db.get("2"), db.get("hg", "two"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testModify()
+  {
+    XmlRepositoryDatabase db = new XmlRepositoryDatabase();
+
+    db.add(new Repository("1", "git", "one"));
+    db.remove("1");
+    db.add(new Repository("1", "git", "renamed"));
+
+    assertEquals("renamed", db.get("1").getName());
+    assertNull(db.get("git", "one"));
+    assertEquals(1, db.values().size());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testRemove()
+  {
+    XmlRepositoryDatabase db = new XmlRepositoryDatabase();
+
+    db.add(new Repository("1", "git", "one"));
+
+    assertNotNull(db.remove("1"));
+    assertNull(db.get("1"));
+    assertNull(db.remove("1"));
+    assertFalse(db.contains("git", "one"));
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.store;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import sonia.scm.security.AssignedPermission;
+import sonia.scm.security.UUIDKeyGenerator;
+import sonia.scm.util.IOUtil;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of writes per second to a
+ * {@link JAXBConfigurationEntryStore} with {@link #ENTRIES} entries, with and
+ * without the journal. Run the benchmark with the main method from the test
+ * classpath.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JAXBConfigurationEntryStoreBenchmark
+{
+
+  /** number of entries in the store */
+  public static final int ENTRIES = 50000;
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param args
+   *
+   * @throws RunnerException
+   */
+  public static void main(String[] args) throws RunnerException
+  {
+    new Runner(
+      new OptionsBuilder().include(
+        JAXBConfigurationEntryStoreBenchmark.class.getSimpleName()).build())
+          .run();
+  }
+
+  /**
+   * Replaces an existing entry of the store.
+   *
+   */
+  @Benchmark
+  public void put()
+  {
+    String id = "e" + (counter++ % ENTRIES);
+
+    store.put(id, new AssignedPermission(id, "repository:write"));
+  }
+
+  /**
+   * Creates the store and fills it with {@link #ENTRIES} entries.
+   *
+   *
+   * @throws IOException
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    directory = File.createTempFile("scm-store-", ".benchmark");
+    IOUtil.delete(directory);
+    IOUtil.mkdirs(directory);
+
+    File file = new File(directory, "benchmark.xml");
+
+    // fill the store through the journal, a full rewrite per entry is slow
+    store = new JAXBConfigurationEntryStore<AssignedPermission>(file,
+      new UUIDKeyGenerator(), AssignedPermission.class, true);
+
+    for (int i = 0; i < ENTRIES; i++)
+    {
+      String id = "e" + i;
+
+      store.put(id, new AssignedPermission(id, "repository:read"));
+    }
+
+    store = new JAXBConfigurationEntryStore<AssignedPermission>(file,
+      new UUIDKeyGenerator(), AssignedPermission.class, journaled);
+  }
+
+  /**
+   * Removes the store.
+   *
+   *
+   * @throws IOException
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException
+  {
+    IOUtil.delete(directory);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** true to benchmark the journal, false for a full rewrite per change */
+  @Param({ "true", "false" })
+  public boolean journaled;
+
+  /** Field description */
+  private int counter = 0;
+
+  /** Field description */
+  private File directory;
+
+  /** Field description */
+  private JAXBConfigurationEntryStore<AssignedPermission> store;
+}
@@ -51,6 +51,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 
 import java.net.URL;
 
@@ -122,6 +123,114 @@ public class JAXBConfigurationEntryStoreTest
     assertEquals("tuser3", a3.getName());
   }
 
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testClearRemovesJournal()
+  {
+    String name = UUID.randomUUID().toString();
+    ConfigurationEntryStore<AssignedPermission> store =
+      getPermissionStore(name);
+
+    store.put("a1", new AssignedPermission("tuser", "repository:read"));
+    assertTrue(getJournal(name).exists());
+    store.clear();
+    assertFalse(getJournal(name).exists());
+    assertNull(getPermissionStore(name).get("a1"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testJournalCompaction()
+  {
+    String name = UUID.randomUUID().toString();
+    ConfigurationEntryStore<AssignedPermission> store =
+      getPermissionStore(name);
+
+    // overwrite the same entries, until the journal exceeds the threshold
+    for (int i = 0; i <= JAXBConfigurationEntryStore.COMPACTION_THRESHOLD; i++)
+    {
+      store.put("a" + (i % 10),
+        new AssignedPermission("tuser" + i, "repository:read"));
+    }
+
+    assertFalse(getJournal(name).exists());
+    store.put("b", new AssignedPermission("tuser", "repository:read"));
+    assertTrue(getJournal(name).exists());
+
+    store = getPermissionStore(name);
+    assertEquals(11, store.getAll().size());
+    assertEquals("tuser1000", store.get("a0").getName());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testJournalReplay()
+  {
+    String name = UUID.randomUUID().toString();
+    ConfigurationEntryStore<AssignedPermission> store =
+      getPermissionStore(name);
+
+    store.put("a1", new AssignedPermission("tuser", "repository:read"));
+    store.put("a2", new AssignedPermission("tuser2", "repository:write"));
+    store.put("a1", new AssignedPermission("tuser3", "repository:read"));
+    store.remove("a2");
+
+    store = getPermissionStore(name);
+    assertEquals(1, store.getAll().size());
+    assertEquals("tuser3", store.get("a1").getName());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testJournalWithIncompleteRecord() throws IOException
+  {
+    String name = UUID.randomUUID().toString();
+    ConfigurationEntryStore<AssignedPermission> store =
+      getPermissionStore(name);
+
+    store.put("a1", new AssignedPermission("tuser", "repository:read"));
+    store.put("a2", new AssignedPermission("tuser2", "repository:write"));
+
+    File journal = getJournal(name);
+    long length = journal.length();
+
+    // cut the last record in the middle
+    RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+
+    try
+    {
+      raf.setLength(length - 10);
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    store = getPermissionStore(name);
+    assertNotNull(store.get("a1"));
+    assertNull(store.get("a2"));
+    assertTrue(journal.length() < length - 10);
+
+    store.put("a3", new AssignedPermission("tuser3", "repository:read"));
+    store = getPermissionStore(name);
+    assertNotNull(store.get("a1"));
+    assertNotNull(store.get("a3"));
+  }
+
   /**
    *  Method description
    *
@@ -187,6 +296,38 @@ public class JAXBConfigurationEntryStoreTest
     }
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @param name
+   *
+   * @return
+   */
+  private File getJournal(String name)
+  {
+    File confdir = new File(contextProvider.getBaseDirectory(), "config");
+
+    return new File(confdir,
+      name.concat(".xml").concat(
+        JAXBConfigurationEntryStore.EXTENSION_JOURNAL));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param name
+   *
+   * @return
+   */
+  private ConfigurationEntryStore<AssignedPermission> getPermissionStore(
+    String name)
+  {
+    return createConfigurationStoreFactory().getStore(AssignedPermission.class,
+      name);
+  }
+
   /**
    * Method description
    *
@@ -48,6 +48,7 @@ import org.eclipse.jgit.lib.RepositoryCache;
 
 import sonia.scm.repository.GitRepositoryHandler;
 import sonia.scm.repository.spi.HookEventFacade;
+import sonia.scm.web.GitPackCache;
 import sonia.scm.web.GitReceiveHook;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -85,14 +86,17 @@ public class ScmTransportProtocol extends TransportProtocol
    * @param hookEventFacadeProvider
    *
    * @param repositoryHandlerProvider
+   * @param packCacheProvider
    */
   @Inject
   public ScmTransportProtocol(
     Provider<HookEventFacade> hookEventFacadeProvider,
-    Provider<GitRepositoryHandler> repositoryHandlerProvider)
+    Provider<GitRepositoryHandler> repositoryHandlerProvider,
+    Provider<GitPackCache> packCacheProvider)
   {
     this.hookEventFacadeProvider = hookEventFacadeProvider;
     this.repositoryHandlerProvider = repositoryHandlerProvider;
+    this.packCacheProvider = packCacheProvider;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -150,7 +154,8 @@ public class ScmTransportProtocol extends TransportProtocol
     //J-
     return new TransportLocalWithHooks(
       hookEventFacadeProvider.get(),
-      repositoryHandlerProvider.get(), 
+      repositoryHandlerProvider.get(),
+      packCacheProvider.get(),
       local, uri, gitDir
     );
     //J+
@@ -201,16 +206,19 @@ public class ScmTransportProtocol extends TransportProtocol
      *
      * @param hookEventFacade
      * @param handler
+     * @param packCache
      * @param local
      * @param uri
      * @param gitDir
      */
     public TransportLocalWithHooks(HookEventFacade hookEventFacade,
-      GitRepositoryHandler handler, Repository local, URIish uri, File gitDir)
+      GitRepositoryHandler handler, GitPackCache packCache, Repository local,
+      URIish uri, File gitDir)
     {
       super(local, uri, gitDir);
       this.hookEventFacade = hookEventFacade;
       this.handler = handler;
+      this.packCache = packCache;
     }
 
     //~--- methods ------------------------------------------------------------
@@ -230,7 +238,8 @@ public class ScmTransportProtocol extends TransportProtocol
 
       if ((hookEventFacade != null) && (handler != null))
       {
-        GitReceiveHook hook = new GitReceiveHook(hookEventFacade, handler);
+        GitReceiveHook hook = new GitReceiveHook(hookEventFacade, handler,
+                                packCache);
 
         pack.setPreReceiveHook(hook);
         pack.setPostReceiveHook(hook);
@@ -246,6 +255,9 @@ public class ScmTransportProtocol extends TransportProtocol
 
     /** Field description */
     private HookEventFacade hookEventFacade;
+
+    /** Field description */
+    private GitPackCache packCache;
   }
 
 
@@ -254,6 +266,9 @@ public class ScmTransportProtocol extends TransportProtocol
   /** Field description */
   private Provider<HookEventFacade> hookEventFacadeProvider;
 
+  /** Field description */
+  private Provider<GitPackCache> packCacheProvider;
+
   /** Field description */
   private Provider<GitRepositoryHandler> repositoryHandlerProvider;
 }
@@ -39,7 +39,10 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -60,8 +63,9 @@ import java.io.IOException;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 /**
  *
@@ -139,22 +143,21 @@ public class GitChangesetConverter implements Closeable
    */
   public Changeset createChangeset(RevCommit commit) throws IOException
   {
-    List<String> branches = Lists.newArrayList();
-    Set<Ref> refs = repository.getAllRefsByPeeledObjectId().get(commit.getId());
-
-    if (Util.isNotEmpty(refs))
+    if (branchMap == null)
     {
+      branchMap = createBranchMap(repository);
+    }
 
-      for (Ref ref : refs)
-      {
-        String branch = GitUtil.getBranch(ref);
-
-        if (branch != null)
-        {
-          branches.add(branch);
-        }
-      }
+    List<String> branches;
+    BranchEntry entry = branchMap.get(commit);
 
+    if (entry != null)
+    {
+      branches = Lists.newArrayList(entry.getBranches());
+    }
+    else
+    {
+      branches = Lists.newArrayList();
     }
 
     return createChangeset(commit, branches);
@@ -207,11 +210,14 @@ public class GitChangesetConverter implements Closeable
       changeset.setParents(parentList);
     }
 
-    Modifications modifications = createModifications(treeWalk, commit);
-
-    if (modifications != null)
+    if (!disableModifications)
     {
-      changeset.setModifications(modifications);
+      Modifications modifications = createModifications(treeWalk, commit);
+
+      if (modifications != null)
+      {
+        changeset.setModifications(modifications);
+      }
     }
 
     Collection<String> tagCollection = tags.get(commit.getId());
@@ -228,6 +234,73 @@ public class GitChangesetConverter implements Closeable
     return changeset;
   }
 
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Disables the computation of the modifications for the created
+   * changesets.
+   *
+   *
+   * @param disableModifications true to disable the modifications
+   *
+   * @since 2.0.0
+   */
+  public void setDisableModifications(boolean disableModifications)
+  {
+    this.disableModifications = disableModifications;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates a map from the commit ids to the names of the branches, which
+   * are pointing to the commit. Only the branch refs are read, the map is
+   * created once per converter instead of reading and peeling all refs for
+   * every converted commit.
+   *
+   *
+   * @param repository
+   *
+   * @return map of commit ids to branch names
+   *
+   * @throws IOException
+   */
+  private ObjectIdSubclassMap<BranchEntry> createBranchMap(
+    org.eclipse.jgit.lib.Repository repository)
+    throws IOException
+  {
+    ObjectIdSubclassMap<BranchEntry> map =
+      new ObjectIdSubclassMap<BranchEntry>();
+    Map<String, Ref> refs =
+      repository.getRefDatabase().getRefs(Constants.R_HEADS);
+
+    for (Map.Entry<String, Ref> e : refs.entrySet())
+    {
+      Ref ref = e.getValue();
+      ObjectId id = ref.getPeeledObjectId();
+
+      if (id == null)
+      {
+        id = ref.getObjectId();
+      }
+
+      if (id != null)
+      {
+        BranchEntry entry = map.get(id);
+
+        if (entry == null)
+        {
+          entry = new BranchEntry(id);
+          map.add(entry);
+        }
+
+        entry.add(GitUtil.getBranch(ref));
+      }
+    }
+
+    return map;
+  }
+
   /**
    * TODO: copy and rename
    *
@@ -331,8 +404,84 @@ public class GitChangesetConverter implements Closeable
     return modifications;
   }
 
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Entry of the branch map, the id of the commit and the names of the
+   * branches which are pointing to the commit.
+   */
+  private static class BranchEntry extends ObjectId
+  {
+
+    /** Field description */
+    private static final long serialVersionUID = 3385912664720481375L;
+
+    //~--- constructors -------------------------------------------------------
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param id
+     */
+    public BranchEntry(AnyObjectId id)
+    {
+      super(id);
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @param branch
+     */
+    public void add(String branch)
+    {
+      if (branches.isEmpty())
+      {
+        branches = Collections.singletonList(branch);
+      }
+      else
+      {
+        if (branches.size() == 1)
+        {
+          branches = Lists.newArrayList(branches);
+        }
+
+        branches.add(branch);
+      }
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public List<String> getBranches()
+    {
+      return branches;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private List<String> branches = Collections.emptyList();
+  }
+
+
   //~--- fields ---------------------------------------------------------------
 
+  /** disable modifications */
+  private boolean disableModifications = false;
+
+  /** map of commit ids to branch names, created on first use */
+  private ObjectIdSubclassMap<BranchEntry> branchMap;
+
   /** Field description */
   private org.eclipse.jgit.lib.Repository repository;
 
@@ -0,0 +1,502 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sonia.scm.util.IOUtil;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persistent index of the number of reachable commits for a set of commits
+ * of a git repository. The index is stored in the git directory of the
+ * repository and is used to compute the total of a paged changelog, without
+ * walking the complete history. Counts for new commits are calculated from
+ * the nearest indexed commit on the first parent chain, so only the commits
+ * between both are walked.
+ * <p>
+ * Readers and writers of the same index file are serialized by a lock. The
+ * writer merges the stored entries, writes a unique temporary file and
+ * renames it. The file ends with a crc32 checksum of its content. An index
+ * with a wrong checksum is ignored and rebuilt.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class GitCommitCountIndex
+{
+
+  /** name of the index file in the git directory */
+  static final String FILENAME = "scm-commit-count.idx";
+
+  /** maximum number of entries in the index */
+  static final int MAX_ENTRIES = 4096;
+
+  /** version of the index file format */
+  private static final int VERSION = 2;
+
+  /** locks for the index files */
+  private static final Striped<Lock> locks = Striped.lock(64);
+
+  /**
+   * the logger for GitCommitCountIndex
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(GitCommitCountIndex.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param repository
+   */
+  private GitCommitCountIndex(org.eclipse.jgit.lib.Repository repository)
+  {
+    this.repository = repository;
+    this.file = new File(repository.getDirectory(), FILENAME);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Opens the index of the given repository. A missing or unreadable index
+   * file results in an empty index.
+   *
+   *
+   * @param repository git repository
+   *
+   * @return index of the repository
+   */
+  public static GitCommitCountIndex open(
+    org.eclipse.jgit.lib.Repository repository)
+  {
+    GitCommitCountIndex index = new GitCommitCountIndex(repository);
+
+    index.load();
+
+    return index;
+  }
+
+  /**
+   * Calculates the counts of the given commits, e.g. the new ref tips of a
+   * push, and stores the index.
+   *
+   *
+   * @param repository git repository
+   * @param commits commits to index
+   *
+   * @throws IOException
+   */
+  public static void update(org.eclipse.jgit.lib.Repository repository,
+    Iterable<ObjectId> commits)
+    throws IOException
+  {
+    GitCommitCountIndex index = open(repository);
+
+    for (ObjectId commit : commits)
+    {
+      index.getCount(commit);
+    }
+
+    index.store();
+  }
+
+  /**
+   * Writes the index to the git directory, if it was modified. The entries of
+   * the stored index are merged, because other threads could have stored new
+   * entries in the meantime. The index is written to a unique temporary file
+   * first, to never leave a broken index behind.
+   *
+   *
+   * @throws IOException
+   */
+  public void store() throws IOException
+  {
+    if (modified)
+    {
+      logger.trace("store commit count index {}", file);
+
+      Lock lock = locks.get(file);
+
+      lock.lock();
+
+      try
+      {
+        merge();
+        write();
+      }
+      finally
+      {
+        lock.unlock();
+      }
+
+      modified = false;
+    }
+  }
+
+  /**
+   * Method description
+   *
+   */
+  private void load()
+  {
+    Lock lock = locks.get(file);
+
+    lock.lock();
+
+    try
+    {
+      read(counts);
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds the entries of the stored index, which are not known to this index.
+   * The stored entries are older, so they are evicted first.
+   *
+   */
+  private void merge()
+  {
+    Map<ObjectId, Integer> merged = Maps.newLinkedHashMap();
+
+    read(merged);
+
+    if (!merged.isEmpty())
+    {
+      merged.putAll(counts);
+      counts.clear();
+      counts.putAll(merged);
+
+      Iterator<ObjectId> it = counts.keySet().iterator();
+
+      while (counts.size() > MAX_ENTRIES)
+      {
+        it.next();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param commit
+   * @param count
+   */
+  private void put(ObjectId commit, int count)
+  {
+    counts.put(commit.copy(), count);
+    modified = true;
+
+    Iterator<ObjectId> it = counts.keySet().iterator();
+
+    while (counts.size() > MAX_ENTRIES)
+    {
+      it.next();
+      it.remove();
+    }
+  }
+
+  /**
+   * Reads the stored index into the given map. A missing, unreadable or
+   * corrupt index file leaves the map empty.
+   *
+   *
+   * @param target map for the entries
+   */
+  private void read(Map<ObjectId, Integer> target)
+  {
+    if (file.exists())
+    {
+      DataInputStream input = null;
+      CRC32 checksum = new CRC32();
+
+      try
+      {
+        input = new DataInputStream(
+          new CheckedInputStream(
+            new BufferedInputStream(new FileInputStream(file)), checksum));
+
+        if (input.readInt() == VERSION)
+        {
+          int size = input.readInt();
+          byte[] buffer = new byte[Constants.OBJECT_ID_LENGTH];
+
+          for (int i = 0; i < size; i++)
+          {
+            input.readFully(buffer);
+            target.put(ObjectId.fromRaw(buffer), input.readInt());
+          }
+
+          long expected = checksum.getValue();
+
+          if (input.readLong() != expected)
+          {
+            logger.warn("checksum of commit count index {} does not match",
+              file);
+            target.clear();
+          }
+        }
+        else
+        {
+          logger.warn("unknown version of commit count index {}", file);
+        }
+      }
+      catch (IOException ex)
+      {
+        logger.warn("could not read commit count index, start a new one", ex);
+        target.clear();
+      }
+      finally
+      {
+        IOUtil.close(input);
+      }
+    }
+  }
+
+  /**
+   * Writes the index to a unique temporary file and renames it to the index
+   * file. Must be called with the lock of the index file.
+   *
+   *
+   * @throws IOException
+   */
+  private void write() throws IOException
+  {
+    File tmp = File.createTempFile(FILENAME, ".tmp", file.getParentFile());
+    DataOutputStream output = null;
+    CRC32 checksum = new CRC32();
+    boolean written = false;
+
+    try
+    {
+      output = new DataOutputStream(
+        new CheckedOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmp)), checksum));
+      output.writeInt(VERSION);
+      output.writeInt(counts.size());
+
+      byte[] buffer = new byte[Constants.OBJECT_ID_LENGTH];
+
+      for (Entry<ObjectId, Integer> e : counts.entrySet())
+      {
+        e.getKey().copyRawTo(buffer, 0);
+        output.write(buffer);
+        output.writeInt(e.getValue());
+      }
+
+      output.writeLong(checksum.getValue());
+      output.close();
+      written = true;
+    }
+    finally
+    {
+      if (!written)
+      {
+        IOUtil.close(output);
+        IOUtil.delete(tmp, true);
+      }
+    }
+
+    if (!tmp.renameTo(file))
+    {
+      IOUtil.delete(file, true);
+
+      if (!tmp.renameTo(file))
+      {
+        IOUtil.delete(tmp, true);
+
+        throw new IOException("could not store commit count index");
+      }
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of commits which are reachable from the given commit,
+   * including the commit itself. The count is calculated and added to the
+   * index, if it is not already indexed.
+   *
+   *
+   * @param commit id of the commit
+   *
+   * @return number of reachable commits
+   *
+   * @throws IOException
+   */
+  public int getCount(ObjectId commit) throws IOException
+  {
+    Integer count = counts.get(commit);
+
+    if (count == null)
+    {
+      RevWalk walk = new RevWalk(repository);
+
+      try
+      {
+        walk.setRetainBody(false);
+        count = calculateCount(walk, commit);
+      }
+      finally
+      {
+        GitUtil.release(walk);
+      }
+
+      put(commit, count);
+    }
+
+    return count;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param walk
+   * @param commit
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private int calculateCount(RevWalk walk, ObjectId commit) throws IOException
+  {
+    RevCommit start = walk.parseCommit(commit);
+    RevCommit base = findIndexedAncestor(walk, start);
+    int count = 0;
+
+    walk.reset();
+    walk.markStart(start);
+
+    if (base != null)
+    {
+      logger.trace("calculate commit count of {} based on {}", commit, base);
+
+      count = counts.get(base);
+      walk.markUninteresting(base);
+    }
+
+    for (Iterator<RevCommit> it = walk.iterator(); it.hasNext(); it.next())
+    {
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the first indexed commit on the first parent chain of the given
+   * commit or null.
+   *
+   *
+   * @param walk
+   * @param commit
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private RevCommit findIndexedAncestor(RevWalk walk, RevCommit commit)
+    throws IOException
+  {
+    RevCommit base = null;
+
+    if (!counts.isEmpty())
+    {
+      RevCommit c = commit;
+
+      while ((base == null) && (c.getParentCount() > 0))
+      {
+        c = walk.parseCommit(c.getParent(0));
+
+        if (counts.containsKey(c))
+        {
+          base = c;
+        }
+      }
+    }
+
+    return base;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** indexed counts in insertion order */
+  private final Map<ObjectId, Integer> counts = Maps.newLinkedHashMap();
+
+  /** index file */
+  private final File file;
+
+  /** true if the index has unstored changes */
+  private boolean modified = false;
+
+  /** git repository */
+  private final org.eclipse.jgit.lib.Repository repository;
+}
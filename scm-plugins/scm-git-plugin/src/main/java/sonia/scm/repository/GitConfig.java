@@ -42,4 +42,72 @@ import javax.xml.bind.annotation.XmlRootElement;
  * @author Sebastian Sdorra
  */
 @XmlRootElement(name = "config")
-public class GitConfig extends SimpleRepositoryConfig {}
+public class GitConfig extends SimpleRepositoryConfig
+{
+
+  /**
+   * Returns the maximum number of repositories, which are packed at the same
+   * time by the background maintenance. Zero disables the maintenance.
+   *
+   *
+   * @return number of maintenance threads
+   *
+   * @since 2.0.0
+   */
+  public int getMaintenanceThreads()
+  {
+    return maintenanceThreads;
+  }
+
+  /**
+   * Returns the size limit of the cache for full clones in megabytes. Zero
+   * disables the cache.
+   *
+   *
+   * @return size limit in megabytes
+   *
+   * @since 2.0.0
+   */
+  public int getPackCacheSize()
+  {
+    return packCacheSize;
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Sets the maximum number of repositories, which are packed at the same
+   * time by the background maintenance. Zero disables the maintenance.
+   *
+   *
+   * @param maintenanceThreads number of maintenance threads
+   *
+   * @since 2.0.0
+   */
+  public void setMaintenanceThreads(int maintenanceThreads)
+  {
+    this.maintenanceThreads = maintenanceThreads;
+  }
+
+  /**
+   * Sets the size limit of the cache for full clones in megabytes. Zero
+   * disables the cache.
+   *
+   *
+   * @param packCacheSize size limit in megabytes
+   *
+   * @since 2.0.0
+   */
+  public void setPackCacheSize(int packCacheSize)
+  {
+    this.packCacheSize = packCacheSize;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** number of maintenance threads */
+  private int maintenanceThreads = 1;
+
+  /** size limit of the pack cache in megabytes */
+  private int packCacheSize = 1024;
+}
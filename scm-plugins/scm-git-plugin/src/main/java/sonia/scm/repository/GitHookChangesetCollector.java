@@ -35,8 +35,10 @@ package sonia.scm.repository;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -52,14 +54,21 @@ import sonia.scm.util.IOUtil;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Collects the changesets of a push. The changesets are created lazy during
+ * the iteration, so that the memory consumption does not grow with the
+ * number of pushed commits.
  *
  * @author Sebastian Sdorra
  */
-public class GitHookChangesetCollector
+public class GitHookChangesetCollector implements Iterable<Changeset>
 {
 
   /**
@@ -79,154 +88,303 @@ public class GitHookChangesetCollector
    */
   public GitHookChangesetCollector(ReceivePack rpack,
     List<ReceiveCommand> receiveCommands)
+  {
+    this(rpack, receiveCommands, false);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param rpack
+   * @param receiveCommands
+   * @param disableModifications true to create changesets without
+   *   modifications
+   *
+   * @since 2.0.0
+   */
+  public GitHookChangesetCollector(ReceivePack rpack,
+    List<ReceiveCommand> receiveCommands, boolean disableModifications)
   {
     this.rpack = rpack;
     this.receiveCommands = receiveCommands;
+    this.disableModifications = disableModifications;
   }
 
   //~--- methods --------------------------------------------------------------
 
   /**
-   * Method description
+   * Collects all changesets of the push into a list. Use the {@link Iterable}
+   * interface of the collector, if the changesets are only iterated.
    *
    *
    * @return
    */
   public List<Changeset> collectChangesets()
   {
-    List<Changeset> changesets = Lists.newArrayList();
+    return Lists.newArrayList(this);
+  }
 
-    org.eclipse.jgit.lib.Repository repository = rpack.getRepository();
+  /**
+   * Returns an iterator which walks the commits of the push and creates the
+   * changesets on demand. Every iterator uses its own {@link RevWalk}, which
+   * is released after the last changeset was returned. The iterator is
+   * {@link Closeable}, to release the walk if the iteration stops early.
+   *
+   *
+   * @return iterator over the pushed changesets
+   */
+  @Override
+  public Iterator<Changeset> iterator()
+  {
+    return new ChangesetIterator();
+  }
 
-    RevWalk walk = null;
+  //~--- get methods ----------------------------------------------------------
 
-    GitChangesetConverter converter = null;
+  /**
+   * Method description
+   *
+   *
+   * @param rpack
+   *
+   * @return
+   */
+  private List<ObjectId> getExistingObjects(ReceivePack rpack)
+  {
+    List<ObjectId> existingObjects = Lists.newArrayList();
 
-    try
+    if (existingObjects == null)
     {
-      walk = rpack.getRevWalk();
-      converter = new GitChangesetConverter(repository, walk);
+      Map<String, Ref> refs = rpack.getRepository().getAllRefs();
 
-      for (ReceiveCommand rc : receiveCommands)
+      for (Ref r : refs.values())
       {
-        //J-
-         logger.trace("handle receive command, type={}, ref={}, result={}",
-           new Object[] {
-             rc.getType(),
-             rc.getRefName(),
-             rc.getResult()
-           }
-         );
-         //J+
+        existingObjects.add(r.getObjectId());
+      }
+    }
 
-        ObjectId newId = rc.getNewId();
+    return existingObjects;
+  }
 
-        String branch = GitUtil.getBranch(rc.getRefName());
+  //~--- inner classes --------------------------------------------------------
 
-        walk.reset();
-        walk.sort(RevSort.TOPO);
-        walk.sort(RevSort.REVERSE, true);
+  /**
+   * Iterator which converts the commits of the receive commands one by one.
+   * The bodies of the commits are parsed on demand and disposed after the
+   * conversion.
+   */
+  private class ChangesetIterator extends AbstractIterator<Changeset>
+    implements Closeable
+  {
 
-        if (logger.isTraceEnabled())
-        {
-          logger.trace("mark {} as start for rev walk", newId.getName());
-        }
+    /**
+     * Constructs ...
+     *
+     */
+    public ChangesetIterator()
+    {
+      commands = receiveCommands.iterator();
+    }
 
-        walk.markStart(walk.parseCommit(newId));
+    //~--- methods ------------------------------------------------------------
 
-        ObjectId oldId = rc.getOldId();
+    /**
+     * Releases the walk and ends the iteration.
+     *
+     */
+    @Override
+    public void close()
+    {
+      release();
+      closed = true;
+    }
 
-        if ((oldId != null) &&!oldId.equals(ObjectId.zeroId()))
-        {
-          if (logger.isTraceEnabled())
-          {
-            logger.trace("mark {} as uninteresting for rev walk",
-              oldId.getName());
-          }
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    protected Changeset computeNext()
+    {
+      if (closed)
+      {
+        return endOfData();
+      }
 
-          walk.markUninteresting(walk.parseCommit(oldId));
-        }
+      Changeset changeset = null;
 
-        for (ObjectId id : getExistingObjects(rpack))
-        {
-          if (logger.isTraceEnabled())
-          {
-            logger.trace("mark {} as uninteresting for rev walk", id.getName());
-          }
+      try
+      {
+        RevCommit commit = (walk != null)
+          ? walk.next()
+          : null;
 
-          walk.markUninteresting(walk.parseCommit(id));
+        while ((commit == null) && commands.hasNext())
+        {
+          commit = start(commands.next());
         }
 
-        RevCommit commit = walk.next();
-
-        List<String> branches = Lists.newArrayList(branch);
-
-        while (commit != null)
+        if (commit != null)
         {
 
-          // parse commit body to avoid npe
-          walk.parseBody(commit);
-
-          Changeset changeset = converter.createChangeset(commit, branches);
+          changeset = converter.createChangeset(parseBody(commit),
+            branches);
 
           if (logger.isTraceEnabled())
           {
             logger.trace("retrive commit {} for hook", changeset.getId());
           }
-
-          changesets.add(changeset);
-
-          commit = walk.next();
         }
+      }
+      catch (Exception ex)
+      {
+        logger.error("could not collect changesets", ex);
+      }
+
+      if (changeset == null)
+      {
+        release();
 
+        return endOfData();
       }
 
+      return changeset;
     }
-    catch (Exception ex)
+
+    /**
+     * Parses the body of the commit into a detached copy. The walk does not
+     * retain the bodies, because it has to hold all commits of the push for
+     * the topological sort.
+     *
+     *
+     * @param commit
+     *
+     * @return commit with parsed body
+     *
+     * @throws IOException
+     */
+    private RevCommit parseBody(RevCommit commit) throws IOException
     {
-      logger.error("could not collect changesets", ex);
+      byte[] raw = walk.getObjectReader().open(commit,
+                     Constants.OBJ_COMMIT).getCachedBytes();
+
+      return RevCommit.parse(walk, raw);
     }
-    finally
+
+    /**
+     * Method description
+     *
+     */
+    private void release()
     {
       IOUtil.close(converter);
       GitUtil.release(walk);
+      converter = null;
+      walk = null;
     }
 
-    return changesets;
-  }
+    /**
+     * Prepares the walk for the given receive command and returns its first
+     * commit.
+     *
+     *
+     * @param rc receive command
+     *
+     * @return first commit or {@code null}
+     *
+     * @throws IOException
+     */
+    private RevCommit start(ReceiveCommand rc) throws IOException
+    {
+      //J-
+      logger.trace("handle receive command, type={}, ref={}, result={}",
+        new Object[] {
+          rc.getType(),
+          rc.getRefName(),
+          rc.getResult()
+        }
+      );
+      //J+
 
-  //~--- get methods ----------------------------------------------------------
+      if (walk == null)
+      {
+        walk = new RevWalk(rpack.getRepository());
+        walk.setRetainBody(false);
+        converter = new GitChangesetConverter(rpack.getRepository(), walk);
+        converter.setDisableModifications(disableModifications);
+      }
 
-  /**
-   * Method description
-   *
-   *
-   * @param rpack
-   *
-   * @return
-   */
-  private List<ObjectId> getExistingObjects(ReceivePack rpack)
-  {
-    List<ObjectId> existingObjects = Lists.newArrayList();
+      ObjectId newId = rc.getNewId();
 
-    if (existingObjects == null)
-    {
-      Map<String, Ref> refs = rpack.getRepository().getAllRefs();
+      branches = Lists.newArrayList(GitUtil.getBranch(rc.getRefName()));
 
-      for (Ref r : refs.values())
+      walk.reset();
+      walk.sort(RevSort.TOPO);
+      walk.sort(RevSort.REVERSE, true);
+
+      if (logger.isTraceEnabled())
       {
-        existingObjects.add(r.getObjectId());
+        logger.trace("mark {} as start for rev walk", newId.getName());
+      }
+
+      walk.markStart(walk.parseCommit(newId));
+
+      ObjectId oldId = rc.getOldId();
+
+      if ((oldId != null) &&!oldId.equals(ObjectId.zeroId()))
+      {
+        if (logger.isTraceEnabled())
+        {
+          logger.trace("mark {} as uninteresting for rev walk",
+            oldId.getName());
+        }
+
+        walk.markUninteresting(walk.parseCommit(oldId));
       }
+
+      for (ObjectId id : getExistingObjects(rpack))
+      {
+        if (logger.isTraceEnabled())
+        {
+          logger.trace("mark {} as uninteresting for rev walk", id.getName());
+        }
+
+        walk.markUninteresting(walk.parseCommit(id));
+      }
+
+      return walk.next();
     }
 
-    return existingObjects;
+    //~--- fields -------------------------------------------------------------
+
+    /** branches of the current receive command */
+    private List<String> branches;
+
+    /** Field description */
+    private final Iterator<ReceiveCommand> commands;
+
+    /** true if the iterator was closed */
+    private boolean closed = false;
+
+    /** Field description */
+    private GitChangesetConverter converter;
+
+    /** Field description */
+    private RevWalk walk;
   }
 
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
-  private List<ReceiveCommand> receiveCommands;
+  private final boolean disableModifications;
+
+  /** Field description */
+  private final List<ReceiveCommand> receiveCommands;
 
   /** Field description */
-  private ReceivePack rpack;
+  private final ReceivePack rpack;
 }
@@ -0,0 +1,704 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs git repositories in the background. The maintenance estimates the
+ * number of loose objects and counts the pack files of every repository in a
+ * fixed interval. Repositories which exceed one of the limits, are packed
+ * with the garbage collection of jgit. The new pack gets a reachability
+ * bitmap, unless the repository disables it with {@code pack.buildBitmaps}.
+ * A repository is only packed if it is quiet, which means that it has no
+ * active push and that its last push is older than the quiet period. The
+ * number of repositories which are packed at the same time is limited by
+ * {@link GitConfig#getMaintenanceThreads()}.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+@Singleton
+public class GitRepositoryMaintenance implements Closeable
+{
+
+  /** default interval between two checks of all repositories */
+  public static final long DEFAULT_CHECK_INTERVAL =
+    TimeUnit.MINUTES.toMillis(15);
+
+  /** default limit of loose objects, same as gc.auto of git */
+  public static final long DEFAULT_LOOSE_OBJECT_LIMIT = 6700;
+
+  /** default limit of pack files, same as gc.autoPackLimit of git */
+  public static final int DEFAULT_PACK_LIMIT = 50;
+
+  /** default time without push, before a repository is packed */
+  public static final long DEFAULT_QUIET_PERIOD = TimeUnit.MINUTES.toMillis(10);
+
+  /** object directory which is used to estimate the loose objects */
+  private static final String DIRECTORY_SAMPLE = "17";
+
+  /** name of the object directory */
+  private static final String DIRECTORY_OBJECTS = "objects";
+
+  /** name of the pack directory */
+  private static final String DIRECTORY_PACK = "pack";
+
+  /** number of object directories */
+  private static final int FANOUT = 256;
+
+  /** length of the file name of a loose object */
+  private static final int LOOSE_OBJECT_NAME_LENGTH = 38;
+
+  /** extension of pack files */
+  private static final String SUFFIX_PACK = ".pack";
+
+  /** thread name of the scheduler */
+  private static final String THREAD_NAME_SCHEDULER =
+    "GitMaintenanceScheduler";
+
+  /** thread name of the workers */
+  private static final String THREAD_NAME_WORKER = "GitMaintenance-%d";
+
+  /**
+   * the logger for GitRepositoryMaintenance
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(GitRepositoryMaintenance.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new maintenance with the default limits.
+   *
+   *
+   * @param handler git repository handler
+   */
+  @Inject
+  public GitRepositoryMaintenance(GitRepositoryHandler handler)
+  {
+    this(handler, createWorkerExecutor(), DEFAULT_LOOSE_OBJECT_LIMIT,
+      DEFAULT_PACK_LIMIT, DEFAULT_QUIET_PERIOD);
+  }
+
+  /**
+   * Constructs a new maintenance.
+   *
+   *
+   * @param handler git repository handler
+   * @param executor executor which packs the repositories
+   * @param looseObjectLimit limit of loose objects
+   * @param packLimit limit of pack files
+   * @param quietPeriod time without push in milliseconds
+   */
+  @VisibleForTesting
+  GitRepositoryMaintenance(GitRepositoryHandler handler,
+    ExecutorService executor, long looseObjectLimit, int packLimit,
+    long quietPeriod)
+  {
+    this.handler = handler;
+    this.executor = executor;
+    this.looseObjectLimit = looseObjectLimit;
+    this.packLimit = packLimit;
+    this.quietPeriod = quietPeriod;
+
+    //J-
+    ThreadFactory factory = new ThreadFactoryBuilder()
+      .setNameFormat(THREAD_NAME_SCHEDULER).setDaemon(true).build();
+    //J+
+
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(factory);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Marks the start of a push to the given repository. The repository is not
+   * packed until the push is finished and the quiet period is over.
+   *
+   *
+   * @param repository repository
+   */
+  public void beginPush(Repository repository)
+  {
+    beginPush(handler.getDirectory(repository));
+  }
+
+  /**
+   * Stops the maintenance. Running garbage collections are interrupted.
+   *
+   */
+  @Override
+  public void close()
+  {
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Marks the end of a push, which was started with
+   * {@link #beginPush(sonia.scm.repository.Repository)}.
+   *
+   *
+   * @param repository repository
+   */
+  public void endPush(Repository repository)
+  {
+    endPush(handler.getDirectory(repository));
+  }
+
+  /**
+   * Starts the periodic check of all repositories.
+   *
+   */
+  public void start()
+  {
+    logger.debug("start git repository maintenance");
+
+    //J-
+    scheduler.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        check();
+      }
+    }, DEFAULT_CHECK_INTERVAL, DEFAULT_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    //J+
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param directory
+   */
+  synchronized void beginPush(File directory)
+  {
+    getState(directory).pushes++;
+  }
+
+  /**
+   * Measures all quiet repositories and packs those, which exceed one of the
+   * limits. Repositories with more loose objects and pack files are packed
+   * first.
+   *
+   */
+  void check()
+  {
+    File root = getRepositoryDirectory();
+
+    if ((root != null) && (getMaintenanceThreads() > 0))
+    {
+      Set<File> directories = Sets.newHashSet();
+
+      collectRepositories(directories, root);
+
+      final Map<File, Double> urgencies = Maps.newHashMap();
+
+      for (File directory : directories)
+      {
+        if (isQuiet(directory))
+        {
+          double urgency = getUrgency(directory);
+
+          if (urgency > 1.0)
+          {
+            urgencies.put(directory, urgency);
+          }
+        }
+      }
+
+      List<File> candidates = Lists.newArrayList(urgencies.keySet());
+
+      //J-
+      Collections.sort(candidates, new Comparator<File>()
+      {
+        @Override
+        public int compare(File left, File right)
+        {
+          return Double.compare(urgencies.get(right), urgencies.get(left));
+        }
+      });
+      //J+
+
+      logger.debug("found {} git repositories which need maintenance",
+        candidates.size());
+
+      synchronized (this)
+      {
+        pending.clear();
+        pending.addAll(candidates);
+
+        // forget the state of deleted repositories
+        Iterator<Map.Entry<File, State>> it = states.entrySet().iterator();
+
+        while (it.hasNext())
+        {
+          Map.Entry<File, State> e = it.next();
+
+          if (!directories.contains(e.getKey()) && (e.getValue().pushes == 0))
+          {
+            it.remove();
+          }
+        }
+      }
+
+      startPending();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param directory
+   */
+  synchronized void endPush(File directory)
+  {
+    State state = getState(directory);
+
+    state.pushes--;
+    state.lastPush = System.currentTimeMillis();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private static ExecutorService createWorkerExecutor()
+  {
+    //J-
+    ThreadFactory factory = new ThreadFactoryBuilder()
+      .setNameFormat(THREAD_NAME_WORKER)
+      .setDaemon(true)
+      .setPriority(Thread.MIN_PRIORITY)
+      .build();
+    //J+
+
+    return Executors.newCachedThreadPool(factory);
+  }
+
+  /**
+   * Collects all git repositories below the given directory.
+   *
+   *
+   * @param directories
+   * @param directory
+   */
+  private void collectRepositories(Set<File> directories, File directory)
+  {
+    File[] children = directory.listFiles(new FileFilter()
+    {
+      @Override
+      public boolean accept(File file)
+      {
+        return file.isDirectory();
+      }
+    });
+
+    if (children != null)
+    {
+      for (File child : children)
+      {
+        if (GitUtil.isGitDirectory(child))
+        {
+          directories.add(child);
+        }
+        else
+        {
+          collectRepositories(directories, child);
+        }
+      }
+    }
+  }
+
+  /**
+   * Packs the repository and stores the loose objects and pack files, which
+   * are left after the garbage collection. Loose objects which are not
+   * reachable, are only removed after two weeks. Those objects do not
+   * count to the limit, until the next garbage collection.
+   *
+   *
+   * @param directory
+   */
+  private void pack(File directory)
+  {
+    logger.info("start maintenance of git repository {}", directory);
+
+    Stopwatch sw = Stopwatch.createStarted();
+    FileRepository repository = null;
+
+    try
+    {
+      repository = (FileRepository) GitUtil.open(directory);
+      new GC(repository).gc();
+
+      long looseObjects = countLooseObjects(directory);
+      int packs = countPacks(directory);
+
+      synchronized (this)
+      {
+        State state = getState(directory);
+
+        state.looseObjects = looseObjects;
+        state.packs = packs;
+      }
+
+      logger.info("finished maintenance of git repository {} in {}",
+        directory, sw.stop());
+    }
+    catch (Exception ex)
+    {
+      logger.warn("maintenance of git repository ".concat(directory.getPath()),
+        ex);
+    }
+    finally
+    {
+      if (repository != null)
+      {
+        repository.close();
+      }
+    }
+  }
+
+  /**
+   * Starts the pending repositories, as long as the number of running
+   * garbage collections is below the limit.
+   *
+   */
+  private void startPending()
+  {
+    List<File> started = Lists.newArrayList();
+
+    synchronized (this)
+    {
+      int threads = getMaintenanceThreads();
+      Iterator<File> it = pending.iterator();
+
+      while (it.hasNext() && (running.size() < threads))
+      {
+        File directory = it.next();
+
+        it.remove();
+
+        // the repository could have been pushed since the last check
+        if (!running.contains(directory) && isQuiet(directory))
+        {
+          running.add(directory);
+          started.add(directory);
+        }
+      }
+    }
+
+    for (final File directory : started)
+    {
+      //J-
+      executor.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            pack(directory);
+          }
+          finally
+          {
+            synchronized (GitRepositoryMaintenance.this)
+            {
+              running.remove(directory);
+            }
+
+            startPending();
+          }
+        }
+      });
+      //J+
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Estimates the number of loose objects in the same way as git does, by
+   * counting the objects of one object directory.
+   *
+   *
+   * @param directory
+   *
+   * @return estimated number of loose objects
+   */
+  private long countLooseObjects(File directory)
+  {
+    File sample = new File(new File(directory, DIRECTORY_OBJECTS),
+                    DIRECTORY_SAMPLE);
+    String[] names = sample.list();
+    long count = 0;
+
+    if (names != null)
+    {
+      for (String name : names)
+      {
+        if (name.length() == LOOSE_OBJECT_NAME_LENGTH)
+        {
+          count++;
+        }
+      }
+    }
+
+    return count * FANOUT;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param directory
+   *
+   * @return
+   */
+  private int countPacks(File directory)
+  {
+    File packDirectory = new File(new File(directory, DIRECTORY_OBJECTS),
+                           DIRECTORY_PACK);
+    String[] names = packDirectory.list();
+    int count = 0;
+
+    if (names != null)
+    {
+      for (String name : names)
+      {
+        if (name.endsWith(SUFFIX_PACK))
+        {
+          count++;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private int getMaintenanceThreads()
+  {
+    GitConfig config = handler.getConfig();
+
+    return (config != null)
+      ? config.getMaintenanceThreads()
+      : 0;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private File getRepositoryDirectory()
+  {
+    GitConfig config = handler.getConfig();
+
+    return (config != null)
+      ? config.getRepositoryDirectory()
+      : null;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param directory
+   *
+   * @return
+   */
+  private State getState(File directory)
+  {
+    State state = states.get(directory);
+
+    if (state == null)
+    {
+      state = new State();
+      states.put(directory, state);
+    }
+
+    return state;
+  }
+
+  /**
+   * Returns the ratio of the growth since the last garbage collection to the
+   * limit, for the loose objects or pack files whichever is higher. A
+   * repository with a ratio greater than one needs maintenance.
+   *
+   *
+   * @param directory
+   *
+   * @return
+   */
+  private double getUrgency(File directory)
+  {
+    long looseObjects = countLooseObjects(directory);
+    int packs = countPacks(directory);
+    long baseLooseObjects;
+    int basePacks;
+
+    synchronized (this)
+    {
+      State state = states.get(directory);
+
+      baseLooseObjects = (state != null)
+        ? state.looseObjects
+        : 0;
+      basePacks = (state != null)
+        ? state.packs
+        : 0;
+    }
+
+    logger.trace("git repository {} has about {} loose objects and {} packs",
+      directory, looseObjects, packs);
+
+    return Math.max((double) (looseObjects - baseLooseObjects)
+      / looseObjectLimit, (double) (packs - basePacks) / packLimit);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param directory
+   *
+   * @return
+   */
+  private synchronized boolean isQuiet(File directory)
+  {
+    State state = states.get(directory);
+
+    return (state == null)
+      || ((state.pushes == 0)
+        && (System.currentTimeMillis() - state.lastPush >= quietPeriod));
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Maintenance state of a single repository.
+   */
+  private static class State
+  {
+
+    //~--- fields -------------------------------------------------------------
+
+    /** loose objects after the last garbage collection */
+    private long looseObjects;
+
+    /** end of the last push */
+    private long lastPush;
+
+    /** pack files after the last garbage collection */
+    private int packs;
+
+    /** number of active pushes */
+    private int pushes;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** executor which packs the repositories */
+  private final ExecutorService executor;
+
+  /** git repository handler */
+  private final GitRepositoryHandler handler;
+
+  /** limit of loose objects */
+  private final long looseObjectLimit;
+
+  /** limit of pack files */
+  private final int packLimit;
+
+  /** repositories which are waiting for maintenance */
+  private final LinkedHashSet<File> pending = Sets.newLinkedHashSet();
+
+  /** time without push in milliseconds */
+  private final long quietPeriod;
+
+  /** repositories which are packed at the moment */
+  private final Set<File> running = Sets.newHashSet();
+
+  /** scheduler for the periodic check */
+  private final ScheduledExecutorService scheduler;
+
+  /** maintenance state of the repositories */
+  private final Map<File, State> states = Maps.newHashMap();
+}
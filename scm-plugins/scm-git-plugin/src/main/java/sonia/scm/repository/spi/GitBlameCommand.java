@@ -40,9 +40,14 @@ import com.google.common.base.Strings;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +55,7 @@ import org.slf4j.LoggerFactory;
 import sonia.scm.repository.BlameLine;
 import sonia.scm.repository.BlameResult;
 import sonia.scm.repository.GitUtil;
+import sonia.scm.repository.PathNotFoundException;
 import sonia.scm.repository.Person;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryException;
@@ -65,7 +71,8 @@ import java.util.List;
  *
  * @author Sebastian Sdorra
  */
-public class GitBlameCommand extends AbstractGitCommand implements BlameCommand
+public class GitBlameCommand extends AbstractGitCommand
+  implements IncrementalBlameCommand
 {
 
   /**
@@ -179,4 +186,202 @@ public class GitBlameCommand extends AbstractGitCommand implements BlameCommand
 
     return result;
   }
+
+  /**
+   * Returns the commit which has last modified the file. The history is
+   * followed in the same way as git log simplifies the history of a path,
+   * merges which have taken the file of one parent are skipped. A merge which
+   * has modified the file against all parents has no previous revision.
+   *
+   *
+   * @param request blame request
+   *
+   * @return last change of the file or {@code null}
+   *
+   * @throws IOException
+   */
+  @Override
+  public BlameChange getChange(BlameCommandRequest request) throws IOException
+  {
+    BlameChange change = null;
+    org.eclipse.jgit.lib.Repository gr = open();
+    ObjectId revId = GitUtil.getRevisionId(gr, request.getRevision());
+
+    if (revId != null)
+    {
+      RevWalk walk = new RevWalk(gr);
+
+      try
+      {
+        RevCommit commit = findChange(walk, walk.parseCommit(revId),
+                             request.getPath());
+
+        if (commit != null)
+        {
+          String previousRevision = null;
+
+          if (commit.getParentCount() == 1)
+          {
+            RevCommit previous = findChange(walk,
+                                   walk.parseCommit(commit.getParent(0)),
+                                   request.getPath());
+
+            if (previous != null)
+            {
+              previousRevision = previous.getId().getName();
+            }
+          }
+
+          PersonIdent author = commit.getAuthorIdent();
+
+          change = new BlameChange(commit.getId().getName(),
+            previousRevision,
+            new Person(author.getName(), author.getEmailAddress()),
+            GitUtil.getCommitTime(commit), commit.getShortMessage());
+        }
+      }
+      finally
+      {
+        GitUtil.release(walk);
+      }
+    }
+
+    return change;
+  }
+
+  /**
+   * Returns the lines of the file, split in the same way as the lines of the
+   * jgit blame.
+   *
+   *
+   * @param request blame request
+   *
+   * @return lines of the file
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Override
+  public List<String> getContent(BlameCommandRequest request)
+    throws IOException, RepositoryException
+  {
+    List<String> lines = new ArrayList<String>();
+    org.eclipse.jgit.lib.Repository gr = open();
+    ObjectId revId = GitUtil.getRevisionId(gr, request.getRevision());
+
+    if (revId == null)
+    {
+      throw new RepositoryException(
+        "could not find revision ".concat(request.getRevision()));
+    }
+
+    RevWalk walk = new RevWalk(gr);
+
+    try
+    {
+      ObjectReader reader = walk.getObjectReader();
+      ObjectId blobId = getBlobId(reader, walk.parseCommit(revId),
+                          request.getPath());
+
+      if (blobId == null)
+      {
+        throw new PathNotFoundException(request.getPath());
+      }
+
+      RawText text = new RawText(reader.open(blobId,
+                       Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+
+      for (int i = 0; i < text.size(); i++)
+      {
+        lines.add(text.getString(i));
+      }
+    }
+    finally
+    {
+      GitUtil.release(walk);
+    }
+
+    return lines;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Follows the history from the given commit, as long as the commit or one
+   * of its parents contains the same version of the file. Returns the commit
+   * which has created this version of the file or {@code null}, if the file
+   * does not exist in the given commit.
+   *
+   *
+   * @param walk revision walk
+   * @param commit commit to start from
+   * @param path path of the file
+   *
+   * @return commit which has created the version of the file or {@code null}
+   *
+   * @throws IOException
+   */
+  private RevCommit findChange(RevWalk walk, RevCommit commit, String path)
+    throws IOException
+  {
+    ObjectReader reader = walk.getObjectReader();
+    ObjectId blobId = getBlobId(reader, commit, path);
+    RevCommit change = null;
+
+    if (blobId != null)
+    {
+      RevCommit current = commit;
+
+      while (current != null)
+      {
+        change = current;
+        current = null;
+
+        for (RevCommit parent : change.getParents())
+        {
+          walk.parseHeaders(parent);
+
+          if (blobId.equals(getBlobId(reader, parent, path)))
+          {
+            current = parent;
+
+            break;
+          }
+        }
+      }
+    }
+
+    return change;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the id of the file in the tree of the commit or {@code null}, if
+   * the commit does not contain the file.
+   *
+   *
+   * @param reader object reader
+   * @param commit commit
+   * @param path path of the file
+   *
+   * @return id of the file or {@code null}
+   *
+   * @throws IOException
+   */
+  private ObjectId getBlobId(ObjectReader reader, RevCommit commit,
+    String path)
+    throws IOException
+  {
+    ObjectId blobId = null;
+    TreeWalk treeWalk = TreeWalk.forPath(reader, path, commit.getTree());
+
+    if ((treeWalk != null)
+      && (treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB))
+    {
+      blobId = treeWalk.getObjectId(0);
+    }
+
+    return blobId;
+  }
 }
@@ -35,6 +35,8 @@ package sonia.scm.repository.spi;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -47,12 +49,14 @@ import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
 import sonia.scm.repository.BrowserResult;
 import sonia.scm.repository.FileObject;
 import sonia.scm.repository.GitSubModuleParser;
@@ -82,6 +86,9 @@ public class GitBrowseCommand extends AbstractGitCommand
   implements BrowseCommand
 {
 
+  /** name of the cache for the last commits of directory trees */
+  public static final String CACHE_NAME = "sonia.cache.git.lastcommit";
+
   /** Field description */
   public static final String PATH_MODULES = ".gitmodules";
 
@@ -102,8 +109,35 @@ public class GitBrowseCommand extends AbstractGitCommand
    * @param repository
    */
   public GitBrowseCommand(GitContext context, Repository repository)
+  {
+    this(context, repository, null);
+  }
+
+  /**
+   * Constructs a new {@link GitBrowseCommand}, which stores the resolved last
+   * commits of browsed directories in the cache of the given
+   * {@link CacheManager}.
+   *
+   *
+   * @param context
+   * @param repository
+   * @param cacheManager cache manager or {@code null} to disable caching
+   *
+   * @since 2.0.0
+   */
+  public GitBrowseCommand(GitContext context, Repository repository,
+    CacheManager cacheManager)
   {
     super(context, repository);
+
+    if (cacheManager != null)
+    {
+      this.cache = cacheManager.getCache(CACHE_NAME);
+    }
+    else
+    {
+      this.cache = null;
+    }
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -227,6 +261,200 @@ public class GitBrowseCommand extends AbstractGitCommand
     }
   }
 
+  /**
+   * Resolves the last commit of all given files with a single walk over the
+   * history of the revision. The results are stored in the cache for the
+   * tree of the browsed directory. A cached result is reused, if it was
+   * computed at an ancestor of the revision. In that case only the commits
+   * between the cached revision and the requested one have to be walked.
+   *
+   *
+   * @param repo
+   * @param revWalk
+   * @param revId
+   * @param path
+   * @param treeId id of the tree of the browsed directory
+   * @param files
+   * @param blobs blob ids of the files by path
+   *
+   * @throws IOException
+   */
+  private void appendLastCommits(org.eclipse.jgit.lib.Repository repo,
+    RevWalk revWalk, ObjectId revId, String path, ObjectId treeId,
+    List<FileObject> files, Map<String, ObjectId> blobs)
+    throws IOException
+  {
+    Map<String, LastCommit> lastCommits = Maps.newHashMap();
+    LastCommitCacheKey key = null;
+
+    if (cache != null)
+    {
+      key = new LastCommitCacheKey(repository.getId(), Util.nonNull(path),
+        treeId.name());
+
+      LastCommitCacheEntry entry = cache.get(key);
+
+      if (entry != null)
+      {
+        ObjectId cachedRevId = ObjectId.fromString(entry.getRevision());
+
+        if (cachedRevId.equals(revId))
+        {
+          logger.trace("use cached last commits of {} at {}", path, revId);
+          lastCommits.putAll(entry.getLastCommits());
+        }
+        else if (isAncestor(revWalk, cachedRevId, revId))
+        {
+          logger.trace("update cached last commits of {} from {} to {}",
+            path, cachedRevId, revId);
+
+          Map<String, ObjectId> cachedBlobs = Maps.newHashMap();
+
+          for (String file : entry.getLastCommits().keySet())
+          {
+            ObjectId blob = blobs.get(file);
+
+            if (blob != null)
+            {
+              cachedBlobs.put(file, blob);
+            }
+          }
+
+          resolveLastCommits(repo, revId, cachedRevId, cachedBlobs,
+            lastCommits);
+
+          for (String file : cachedBlobs.keySet())
+          {
+            lastCommits.put(file, entry.getLastCommits().get(file));
+          }
+        }
+      }
+    }
+
+    Map<String, ObjectId> unresolved = Maps.newHashMap(blobs);
+
+    unresolved.keySet().removeAll(lastCommits.keySet());
+
+    if (!unresolved.isEmpty())
+    {
+      logger.trace("fetch last commits for {} files of {} at {}",
+        unresolved.size(), path, revId);
+      resolveLastCommits(repo, revId, null, unresolved, lastCommits);
+
+      for (String file : unresolved.keySet())
+      {
+        logger.warn("could not find latest commit for {} on {}", file, revId);
+      }
+    }
+
+    if (key != null)
+    {
+      cache.put(key, new LastCommitCacheEntry(revId.name(), lastCommits));
+    }
+
+    for (FileObject file : files)
+    {
+      LastCommit commit = lastCommits.get(file.getPath());
+
+      if (commit != null)
+      {
+        file.setLastModified(commit.getDate());
+        file.setDescription(commit.getDescription());
+      }
+    }
+  }
+
+  /**
+   * Walks the history of the given revision once and assigns every commit,
+   * which introduces the expected blob of an unresolved file, as last commit
+   * of that file. Resolved files are removed from the unresolved map. The
+   * walk stops as soon as all files are resolved.
+   *
+   *
+   * @param repo
+   * @param revId start of the walk
+   * @param since end of the walk (exclusive) or {@code null}
+   * @param unresolved expected blob ids of the unresolved files by path
+   * @param lastCommits resolved last commits by path
+   *
+   * @throws IOException
+   */
+  private void resolveLastCommits(org.eclipse.jgit.lib.Repository repo,
+    ObjectId revId, ObjectId since, Map<String, ObjectId> unresolved,
+    Map<String, LastCommit> lastCommits)
+    throws IOException
+  {
+    RevWalk walk = null;
+    TreeWalk treeWalk = null;
+
+    try
+    {
+      walk = new RevWalk(repo);
+      walk.markStart(walk.parseCommit(revId));
+
+      if (since != null)
+      {
+        walk.markUninteresting(walk.parseCommit(since));
+      }
+
+      treeWalk = new TreeWalk(repo);
+      treeWalk.setRecursive(true);
+
+      TreeFilter pathFilter = null;
+      RevCommit commit = walk.next();
+
+      while ((commit != null) &&!unresolved.isEmpty())
+      {
+        if (pathFilter == null)
+        {
+          pathFilter = PathFilterGroup.createFromStrings(unresolved.keySet());
+        }
+
+        RevCommit[] parents = commit.getParents();
+
+        treeWalk.reset();
+        treeWalk.addTree(commit.getTree());
+
+        for (RevCommit parent : parents)
+        {
+          treeWalk.addTree(walk.parseCommit(parent).getTree());
+        }
+
+        if (parents.length > 0)
+        {
+          treeWalk.setFilter(AndTreeFilter.create(pathFilter,
+            TreeFilter.ANY_DIFF));
+        }
+        else
+        {
+          treeWalk.setFilter(pathFilter);
+        }
+
+        while (treeWalk.next())
+        {
+          String file = treeWalk.getPathString();
+          ObjectId blob = unresolved.get(file);
+
+          if ((blob != null) && isIntroducedBy(treeWalk, blob))
+          {
+            lastCommits.put(file,
+              new LastCommit(GitUtil.getCommitTime(commit),
+                commit.getShortMessage()));
+            unresolved.remove(file);
+            pathFilter = null;
+          }
+        }
+
+        commit = walk.next();
+      }
+    }
+    finally
+    {
+      GitUtil.release(treeWalk);
+      GitUtil.release(walk);
+    }
+  }
+
   /**
    * Method description
    *
@@ -234,16 +462,16 @@ public class GitBrowseCommand extends AbstractGitCommand
    *
    *
    * @param repo
-   * @param request
    * @param revId
    * @param treeWalk
+   * @param blobs
    *
    * @return
    *
    * @throws IOException
    */
   private FileObject createFileObject(org.eclipse.jgit.lib.Repository repo,
-    BrowseCommandRequest request, ObjectId revId, TreeWalk treeWalk)
+    ObjectId revId, TreeWalk treeWalk, Map<String, ObjectId> blobs)
     throws IOException
   {
     FileObject file = null;
@@ -257,27 +485,16 @@ public class GitBrowseCommand extends AbstractGitCommand
       file.setName(treeWalk.getNameString());
       file.setPath(path);
 
-      ObjectLoader loader = repo.open(treeWalk.getObjectId(0));
+      ObjectId objectId = treeWalk.getObjectId(0);
+      ObjectLoader loader = repo.open(objectId);
 
       file.setDirectory(loader.getType() == Constants.OBJ_TREE);
       file.setLength(loader.getSize());
 
       // don't show message and date for directories to improve performance
-      if (!file.isDirectory() &&!request.isDisableLastCommit())
+      if (!file.isDirectory())
       {
-        logger.trace("fetch last commit for {} at {}", path, revId.getName());
-
-        RevCommit commit = getLatestCommit(repo, revId, path);
-
-        if (commit != null)
-        {
-          file.setLastModified(GitUtil.getCommitTime(commit));
-          file.setDescription(commit.getShortMessage());
-        }
-        else if (logger.isWarnEnabled())
-        {
-          logger.warn("could not find latest commit for {} on {}", path, revId);
-        }
+        blobs.put(path, objectId);
       }
     }
     catch (MissingObjectException ex)
@@ -297,43 +514,60 @@ public class GitBrowseCommand extends AbstractGitCommand
   //~--- get methods ----------------------------------------------------------
 
   /**
-   * Method description
+   * Returns true if the base commit is an ancestor of the tip.
    *
    *
+   * @param revWalk
+   * @param base
+   * @param tip
    *
-   * @param repo
-   * @param revId
-   * @param path
+   * @return true if base is an ancestor of tip
    *
-   * @return
+   * @throws IOException
    */
-  private RevCommit getLatestCommit(org.eclipse.jgit.lib.Repository repo,
-    ObjectId revId, String path)
+  private boolean isAncestor(RevWalk revWalk, ObjectId base, ObjectId tip)
+    throws IOException
   {
-    RevCommit result = null;
-    RevWalk walk = null;
+    boolean ancestor = false;
 
     try
     {
-      walk = new RevWalk(repo);
-      walk.setTreeFilter(AndTreeFilter.create(PathFilter.create(path),
-        TreeFilter.ANY_DIFF));
-
-      RevCommit commit = walk.parseCommit(revId);
-
-      walk.markStart(commit);
-      result = Util.getFirst(walk);
+      revWalk.reset();
+      ancestor = revWalk.isMergedInto(revWalk.parseCommit(base),
+        revWalk.parseCommit(tip));
     }
-    catch (Exception ex)
+    catch (MissingObjectException ex)
     {
-      logger.error("could not parse commit for file", ex);
+      logger.debug("cached revision {} is not longer available", base);
     }
     finally
     {
-      GitUtil.release(walk);
+      revWalk.reset();
     }
 
-    return result;
+    return ancestor;
+  }
+
+  /**
+   * Returns true if the commit of the first tree introduces the blob, which
+   * means that none of the parent trees contains the blob at this path.
+   *
+   *
+   * @param treeWalk
+   * @param blob
+   *
+   * @return true if the blob is introduced by the commit
+   */
+  private boolean isIntroducedBy(TreeWalk treeWalk, ObjectId blob)
+  {
+    boolean introduced = blob.equals(treeWalk.getObjectId(0));
+
+    for (int i = 1; introduced && (i < treeWalk.getTreeCount()); i++)
+    {
+      introduced = !blob.equals(treeWalk.getObjectId(i));
+    }
+
+    return introduced;
   }
 
   /**
@@ -383,6 +617,7 @@ public class GitBrowseCommand extends AbstractGitCommand
       result = new BrowserResult();
 
       List<FileObject> files = Lists.newArrayList();
+      Map<String, ObjectId> blobs = Maps.newHashMap();
 
       String path = request.getPath();
 
@@ -395,7 +630,7 @@ public class GitBrowseCommand extends AbstractGitCommand
       {
         while (treeWalk.next())
         {
-          FileObject fo = createFileObject(repo, request, revId, treeWalk);
+          FileObject fo = createFileObject(repo, revId, treeWalk, blobs);
 
           if (fo != null)
           {
@@ -419,7 +654,7 @@ public class GitBrowseCommand extends AbstractGitCommand
 
             if (p.split("/").length > limit)
             {
-              FileObject fo = createFileObject(repo, request, revId, treeWalk);
+              FileObject fo = createFileObject(repo, revId, treeWalk, blobs);
 
               if (fo != null)
               {
@@ -439,6 +674,12 @@ public class GitBrowseCommand extends AbstractGitCommand
         }
       }
 
+      if (!request.isDisableLastCommit() &&!blobs.isEmpty())
+      {
+        appendLastCommits(repo, revWalk, revId, path, getTreeId(repo, tree,
+          path), files, blobs);
+      }
+
       result.setFiles(files);
       result.setRevision(revId.getName());
     }
@@ -451,6 +692,47 @@ public class GitBrowseCommand extends AbstractGitCommand
     return result;
   }
 
+  /**
+   * Returns the id of the tree of the given path. If the path could not be
+   * found, the id of the root tree is returned.
+   *
+   *
+   * @param repo
+   * @param tree root tree of the revision
+   * @param path
+   *
+   * @return id of the tree of the path
+   *
+   * @throws IOException
+   */
+  private ObjectId getTreeId(org.eclipse.jgit.lib.Repository repo,
+    RevTree tree, String path)
+    throws IOException
+  {
+    ObjectId treeId = tree;
+
+    if (Util.isNotEmpty(path))
+    {
+      TreeWalk pathWalk = null;
+
+      try
+      {
+        pathWalk = TreeWalk.forPath(repo, path, tree);
+
+        if (pathWalk != null)
+        {
+          treeId = pathWalk.getObjectId(0);
+        }
+      }
+      finally
+      {
+        GitUtil.release(pathWalk);
+      }
+    }
+
+    return treeId;
+  }
+
   /**
    * Method description
    *
@@ -496,8 +778,200 @@ public class GitBrowseCommand extends AbstractGitCommand
     return subRepositories;
   }
 
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Date and description of the last commit of a file.
+   */
+  static class LastCommit
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param date
+     * @param description
+     */
+    public LastCommit(long date, String description)
+    {
+      this.date = date;
+      this.description = description;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public long getDate()
+    {
+      return date;
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public String getDescription()
+    {
+      return description;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final long date;
+
+    /** Field description */
+    private final String description;
+  }
+
+
+  /**
+   * Key of the last commit cache. The tree id identifies the content of the
+   * browsed directory, so that unchanged directories share their entry
+   * across revisions.
+   */
+  static class LastCommitCacheKey
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param repositoryId
+     * @param path
+     * @param treeId
+     */
+    public LastCommitCacheKey(String repositoryId, String path, String treeId)
+    {
+      this.repositoryId = repositoryId;
+      this.path = path;
+      this.treeId = treeId;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @param obj
+     *
+     * @return
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (obj == null)
+      {
+        return false;
+      }
+
+      if (getClass() != obj.getClass())
+      {
+        return false;
+      }
+
+      final LastCommitCacheKey other = (LastCommitCacheKey) obj;
+
+      return Objects.equal(repositoryId, other.repositoryId)
+        && Objects.equal(path, other.path)
+        && Objects.equal(treeId, other.treeId);
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public int hashCode()
+    {
+      return Objects.hashCode(repositoryId, path, treeId);
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final String path;
+
+    /** Field description */
+    private final String repositoryId;
+
+    /** Field description */
+    private final String treeId;
+  }
+
+
+  /**
+   * Value of the last commit cache. The entry stores the revision at which
+   * the last commits were resolved, because the cached commits are only
+   * valid for descendants of that revision.
+   */
+  static class LastCommitCacheEntry
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param revision
+     * @param lastCommits
+     */
+    public LastCommitCacheEntry(String revision,
+      Map<String, LastCommit> lastCommits)
+    {
+      this.revision = revision;
+      this.lastCommits = ImmutableMap.copyOf(lastCommits);
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public Map<String, LastCommit> getLastCommits()
+    {
+      return lastCommits;
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public String getRevision()
+    {
+      return revision;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final Map<String, LastCommit> lastCommits;
+
+    /** Field description */
+    private final String revision;
+  }
+
+
   //~--- fields ---------------------------------------------------------------
 
+  /** cache for the last commits of directory trees */
+  private final Cache<LastCommitCacheKey, LastCommitCacheEntry> cache;
+
   /** Field description */
   private final Map<ObjectId, Map<String, SubRepository>> subrepositoryCache =
     Maps.newHashMap();
@@ -33,22 +33,42 @@ package sonia.scm.repository.spi;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
 import org.eclipse.jgit.transport.ReceiveCommand;
 import org.eclipse.jgit.transport.ReceivePack;
 
+import sonia.scm.repository.Changeset;
 import sonia.scm.repository.GitHookChangesetCollector;
+import sonia.scm.util.IOUtil;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.Closeable;
+
+import java.util.Iterator;
 import java.util.List;
 
 /**
+ * Provides the changesets of a push to the hook listeners. The changesets are
+ * created lazy during the first iteration and are kept for the following
+ * listeners of the same hook, if the push does not contain too many commits.
  *
  * @author Sebastian Sdorra
  */
 public class GitHookChangesetProvider implements HookChangesetProvider
 {
 
+  /**
+   * maximum number of changesets which are kept for the following listeners,
+   * larger pushes are walked again by each listener
+   */
+  private static final int CACHE_LIMIT = 1000;
+
+  //~--- constructors ---------------------------------------------------------
+
   /**
    * Constructs ...
    *
@@ -66,7 +86,9 @@ public class GitHookChangesetProvider implements HookChangesetProvider
   //~--- methods --------------------------------------------------------------
 
   /**
-   * Method description
+   * Returns a response with a lazy {@link Iterable} of the pushed changesets.
+   * All requests of the hook share one result. Only a request which needs
+   * the modifications replaces a result, which was created without them.
    *
    *
    * @param request
@@ -77,25 +99,189 @@ public class GitHookChangesetProvider implements HookChangesetProvider
   public synchronized HookChangesetResponse handleRequest(
     HookChangesetRequest request)
   {
-    if (response == null)
+    boolean disableModifications = request.isDisableModifications();
+
+    if ((changesets == null)
+      || (changesets.disableModifications &&!disableModifications))
+    {
+      changesets = new CachingChangesets(disableModifications);
+    }
+
+    return new HookChangesetResponse(changesets);
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * {@link Iterable} which walks the push until one iteration has reached the
+   * end. The changesets of the completed iteration are returned by all
+   * following iterators.
+   */
+  private class CachingChangesets implements Iterable<Changeset>
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param disableModifications
+     */
+    public CachingChangesets(boolean disableModifications)
+    {
+      this.disableModifications = disableModifications;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public Iterator<Changeset> iterator()
+    {
+      Iterator<Changeset> iterator;
+
+      synchronized (this)
+      {
+        if (cache != null)
+        {
+          iterator = Iterators.unmodifiableIterator(cache.iterator());
+        }
+        else
+        {
+          iterator = new CachingIterator(this,
+            new GitHookChangesetCollector(receivePack, receiveCommands,
+              disableModifications).iterator());
+        }
+      }
+
+      return iterator;
+    }
+
+    /**
+     * Keeps the changesets of a completed iteration.
+     *
+     *
+     * @param changesets
+     */
+    private synchronized void complete(List<Changeset> changesets)
+    {
+      if (cache == null)
+      {
+        cache = changesets;
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** true if the changesets are created without modifications */
+    private final boolean disableModifications;
+
+    /** changesets of the completed iteration */
+    private List<Changeset> cache;
+  }
+
+
+  /**
+   * Iterator which collects the changesets of the walk and passes them to
+   * the {@link CachingChangesets}, when the walk has reached its end.
+   */
+  private static class CachingIterator extends AbstractIterator<Changeset>
+    implements Closeable
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param changesets
+     * @param iterator
+     */
+    public CachingIterator(CachingChangesets changesets,
+      Iterator<Changeset> iterator)
     {
-      GitHookChangesetCollector collector =
-        new GitHookChangesetCollector(receivePack, receiveCommands);
+      this.changesets = changesets;
+      this.iterator = iterator;
+    }
+
+    //~--- methods ------------------------------------------------------------
 
-      response = new HookChangesetResponse(collector.collectChangesets());
+    /**
+     * Closes the walk. The changesets of an unfinished iteration are not
+     * cached.
+     *
+     */
+    @Override
+    public void close()
+    {
+      collected = null;
+
+      if (iterator instanceof Closeable)
+      {
+        IOUtil.close((Closeable) iterator);
+      }
     }
 
-    return response;
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    protected Changeset computeNext()
+    {
+      if (!iterator.hasNext())
+      {
+        if (collected != null)
+        {
+          changesets.complete(collected);
+        }
+
+        return endOfData();
+      }
+
+      Changeset changeset = iterator.next();
+
+      if (collected != null)
+      {
+        if (collected.size() < CACHE_LIMIT)
+        {
+          collected.add(changeset);
+        }
+        else
+        {
+          collected = null;
+        }
+      }
+
+      return changeset;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** cached changesets */
+    private final CachingChangesets changesets;
+
+    /** iterator of the walk */
+    private final Iterator<Changeset> iterator;
+
+    /** changesets of the walk or null if the walk is too large or closed */
+    private List<Changeset> collected = Lists.newArrayList();
   }
 
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
-  private List<ReceiveCommand> receiveCommands;
+  private final List<ReceiveCommand> receiveCommands;
 
   /** Field description */
-  private ReceivePack receivePack;
+  private final ReceivePack receivePack;
 
-  /** Field description */
-  private HookChangesetResponse response;
+  /** changesets of the push */
+  private CachingChangesets changesets;
 }
@@ -52,6 +52,7 @@ import org.slf4j.LoggerFactory;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.GitChangesetConverter;
+import sonia.scm.repository.GitCommitCountIndex;
 import sonia.scm.repository.GitUtil;
 import sonia.scm.repository.RepositoryException;
 import sonia.scm.util.IOUtil;
@@ -233,15 +234,23 @@ public class GitLogCommand extends AbstractGitCommand implements LogCommand
           head = GitUtil.getRepositoryHead(gr);
         }
 
+        Integer total = null;
+
         if (head != null)
         {
-          if (startId != null)
+          if (startId == null)
           {
-            revWalk.markStart(revWalk.lookupCommit(startId));
+            startId = head;
           }
-          else
+
+          revWalk.markStart(revWalk.lookupCommit(startId));
+
+          // the total of an unfiltered log is taken from the commit count
+          // index, which allows to stop the walk after the requested page
+          if (Strings.isNullOrEmpty(request.getPath()) && (endId == null)
+            && (limit >= 0))
           {
-            revWalk.markStart(revWalk.lookupCommit(head));
+            total = getCommitCount(gr, startId);
           }
 
           Iterator<RevCommit> iterator = revWalk.iterator();
@@ -262,10 +271,20 @@ public class GitLogCommand extends AbstractGitCommand implements LogCommand
             {
               break;
             }
+
+            if ((total != null) && (counter >= start + limit))
+            {
+              break;
+            }
           }
         }
 
-        changesets = new ChangesetPagingResult(counter, changesetList);
+        if (total == null)
+        {
+          total = counter;
+        }
+
+        changesets = new ChangesetPagingResult(total, changesetList);
       }
       else if (logger.isWarnEnabled())
       {
@@ -287,4 +306,34 @@ public class GitLogCommand extends AbstractGitCommand implements LogCommand
 
     return changesets;
   }
+
+  /**
+   * Returns the number of commits which are reachable from the given commit.
+   *
+   *
+   * @param gr git repository
+   * @param commit id of the commit
+   *
+   * @return number of reachable commits
+   *
+   * @throws IOException
+   */
+  private int getCommitCount(org.eclipse.jgit.lib.Repository gr,
+    ObjectId commit)
+    throws IOException
+  {
+    GitCommitCountIndex index = GitCommitCountIndex.open(gr);
+    int count = index.getCount(commit);
+
+    try
+    {
+      index.store();
+    }
+    catch (IOException ex)
+    {
+      logger.warn("could not store commit count index", ex);
+    }
+
+    return count;
+  }
 }
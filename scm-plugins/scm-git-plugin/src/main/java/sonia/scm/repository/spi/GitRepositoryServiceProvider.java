@@ -37,6 +37,7 @@ package sonia.scm.repository.spi;
 
 import com.google.common.collect.ImmutableSet;
 
+import sonia.scm.cache.CacheManager;
 import sonia.scm.repository.GitRepositoryHandler;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.Command;
@@ -79,12 +80,14 @@ public class GitRepositoryServiceProvider extends RepositoryServiceProvider
    *
    * @param handler
    * @param repository
+   * @param cacheManager
    */
   public GitRepositoryServiceProvider(GitRepositoryHandler handler,
-    Repository repository)
+    Repository repository, CacheManager cacheManager)
   {
     this.handler = handler;
     this.repository = repository;
+    this.cacheManager = cacheManager;
     context = new GitContext(handler.getDirectory(repository));
   }
 
@@ -137,7 +140,7 @@ public class GitRepositoryServiceProvider extends RepositoryServiceProvider
   @Override
   public BrowseCommand getBrowseCommand()
   {
-    return new GitBrowseCommand(context, repository);
+    return new GitBrowseCommand(context, repository, cacheManager);
   }
 
   /**
@@ -250,6 +253,9 @@ public class GitRepositoryServiceProvider extends RepositoryServiceProvider
 
   //~--- fields ---------------------------------------------------------------
 
+  /** Field description */
+  private CacheManager cacheManager;
+
   /** Field description */
   private GitContext context;
 
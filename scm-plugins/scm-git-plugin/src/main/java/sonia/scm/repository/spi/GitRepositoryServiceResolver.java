@@ -36,6 +36,7 @@ package sonia.scm.repository.spi;
 
 import com.google.inject.Inject;
 
+import sonia.scm.cache.CacheManager;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.GitRepositoryHandler;
 import sonia.scm.repository.Repository;
@@ -58,11 +59,14 @@ public class GitRepositoryServiceResolver implements RepositoryServiceResolver
    *
    *
    * @param handler
+   * @param cacheManager
    */
   @Inject
-  public GitRepositoryServiceResolver(GitRepositoryHandler handler)
+  public GitRepositoryServiceResolver(GitRepositoryHandler handler,
+    CacheManager cacheManager)
   {
     this.handler = handler;
+    this.cacheManager = cacheManager;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -82,7 +86,8 @@ public class GitRepositoryServiceResolver implements RepositoryServiceResolver
 
     if (TYPE.equalsIgnoreCase(repository.getType()))
     {
-      provider = new GitRepositoryServiceProvider(handler, repository);
+      provider = new GitRepositoryServiceProvider(handler, repository,
+        cacheManager);
     }
 
     return provider;
@@ -90,6 +95,9 @@ public class GitRepositoryServiceResolver implements RepositoryServiceResolver
 
   //~--- fields ---------------------------------------------------------------
 
+  /** Field description */
+  private CacheManager cacheManager;
+
   /** Field description */
   private GitRepositoryHandler handler;
 }
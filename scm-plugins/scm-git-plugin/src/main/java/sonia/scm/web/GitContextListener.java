@@ -43,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import sonia.scm.plugin.Extension;
+import sonia.scm.repository.GitRepositoryMaintenance;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -70,11 +71,14 @@ public class GitContextListener implements ServletContextListener
    *
    *
    * @param transportProtocol
+   * @param maintenance
    */
   @Inject
-  public GitContextListener(ScmTransportProtocol transportProtocol)
+  public GitContextListener(ScmTransportProtocol transportProtocol,
+    GitRepositoryMaintenance maintenance)
   {
     this.transportProtocol = transportProtocol;
+    this.maintenance = maintenance;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -88,8 +92,8 @@ public class GitContextListener implements ServletContextListener
   @Override
   public void contextDestroyed(ServletContextEvent sce)
   {
-
-    // do nothing
+    logger.debug("stop git repository maintenance");
+    maintenance.close();
   }
 
   /**
@@ -103,10 +107,14 @@ public class GitContextListener implements ServletContextListener
   {
     logger.debug("register scm transport protocol");
     Transport.register(transportProtocol);
+    maintenance.start();
   }
 
   //~--- fields ---------------------------------------------------------------
 
+  /** background maintenance of the git repositories */
+  private GitRepositoryMaintenance maintenance;
+
   /** Field description */
   private ScmTransportProtocol transportProtocol;
 }
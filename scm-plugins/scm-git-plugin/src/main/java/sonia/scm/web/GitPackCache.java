@@ -0,0 +1,874 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.web;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.transport.UploadPack;
+import org.eclipse.jgit.util.FS;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sonia.scm.SCMContextProvider;
+import sonia.scm.repository.GitConfig;
+import sonia.scm.repository.GitRepositoryHandler;
+import sonia.scm.repository.Repository;
+import sonia.scm.util.IOUtil;
+import sonia.scm.web.filter.BufferedHttpServletRequest;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Cache for the responses of full clones. CI servers clone the same
+ * repositories over and over again and every clone counts and compresses
+ * the objects of the repository again. The cache stores the response of the
+ * first clone in a file. The key of the file consists of the wanted objects,
+ * the capabilities of the client and all refs of the repository. Later
+ * clones of an unchanged repository with the same wants and capabilities
+ * are answered by copying the file with {@link FileChannel#transferTo}.
+ * Fetches, shallow clones and clones of objects which are not the tip of a
+ * ref are passed to the git servlet. The cached packs of a repository are
+ * removed after each push and the size of the cache is limited by
+ * {@link GitConfig#getPackCacheSize()}. Packs which were not used for the
+ * longest time are removed first.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+@Singleton
+public class GitPackCache
+{
+
+  /** maximum size of a request, which is checked against the cache */
+  static final int MAX_REQUEST_SIZE = 1024 * 1024;
+
+  /** capability which contains the name of the client */
+  private static final String CAPABILITY_AGENT = "agent=";
+
+  /** content type of the upload pack response */
+  private static final String CONTENT_TYPE =
+    "application/x-git-upload-pack-result";
+
+  /** name of the cache directory */
+  private static final String DIRECTORY = "cache/git-packs";
+
+  /** line which finishes the negotiation */
+  private static final String LINE_DONE = "done";
+
+  /** prefix of a want line */
+  private static final String LINE_WANT = "want ";
+
+  /** length of the pkt-line length header */
+  private static final int PKT_LENGTH = 4;
+
+  /** extension of cached packs */
+  private static final String SUFFIX_PACK = ".pack";
+
+  /** extension of packs, which are written at the moment */
+  private static final String SUFFIX_TMP = ".tmp";
+
+  /**
+   * the logger for GitPackCache
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(GitPackCache.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new pack cache.
+   *
+   *
+   * @param handler git repository handler
+   * @param context scm context
+   */
+  @Inject
+  public GitPackCache(GitRepositoryHandler handler,
+    SCMContextProvider context)
+  {
+    this(handler, new File(context.getBaseDirectory(), DIRECTORY));
+  }
+
+  /**
+   * Constructs a new pack cache and reads the existing packs from the given
+   * directory.
+   *
+   *
+   * @param handler git repository handler
+   * @param directory cache directory
+   */
+  @VisibleForTesting
+  GitPackCache(GitRepositoryHandler handler, File directory)
+  {
+    this.handler = handler;
+    this.directory = directory;
+    load();
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Removes all cached packs of the given repository.
+   *
+   *
+   * @param repositoryDirectory directory of the repository
+   */
+  public void invalidate(File repositoryDirectory)
+  {
+    File packDirectory = getPackDirectory(repositoryDirectory);
+
+    synchronized (this)
+    {
+      Iterator<Map.Entry<File, Long>> it = packs.entrySet().iterator();
+
+      while (it.hasNext())
+      {
+        Map.Entry<File, Long> e = it.next();
+
+        if (packDirectory.equals(e.getKey().getParentFile()))
+        {
+          size -= e.getValue();
+          it.remove();
+        }
+      }
+    }
+
+    File[] files = packDirectory.listFiles(new SuffixFilter(SUFFIX_PACK));
+
+    if (files != null)
+    {
+      logger.debug("remove {} cached packs of {}", files.length,
+        repositoryDirectory);
+
+      for (File file : files)
+      {
+        delete(file);
+      }
+    }
+  }
+
+  /**
+   * Answers the upload pack request of a full clone from the cache. If the
+   * cache does not contain a pack for the request, the pack is created and
+   * stored in the cache. The method returns false and writes nothing, if the
+   * request is no full clone of the current refs.
+   *
+   *
+   * @param request buffered upload pack request
+   * @param response http response
+   * @param repository repository
+   *
+   * @return true if the request was answered
+   *
+   * @throws IOException
+   */
+  public boolean send(BufferedHttpServletRequest request,
+    HttpServletResponse response, Repository repository)
+    throws IOException
+  {
+    return send(request, response, handler.getDirectory(repository));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param request
+   * @param response
+   * @param repositoryDirectory
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  boolean send(BufferedHttpServletRequest request,
+    HttpServletResponse response, File repositoryDirectory)
+    throws IOException
+  {
+    byte[] body = ByteStreams.toByteArray(ServletUtils.getInputStream(request));
+    SortedSet<String> wants = Sets.newTreeSet();
+    SortedSet<String> capabilities = Sets.newTreeSet();
+    boolean answered = false;
+
+    if (parse(body, wants, capabilities))
+    {
+      org.eclipse.jgit.lib.Repository gitRepository =
+        RepositoryCache.open(FileKey.lenient(repositoryDirectory, FS.DETECTED),
+          true);
+
+      try
+      {
+        File file = getPackFile(gitRepository, repositoryDirectory, wants,
+                      capabilities);
+
+        if (file != null)
+        {
+          if (!sendCachedPack(response, file))
+          {
+            sendAndStorePack(response, gitRepository, body, file);
+          }
+
+          answered = true;
+        }
+      }
+      finally
+      {
+        gitRepository.close();
+      }
+    }
+
+    return answered;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param file
+   */
+  private void delete(File file)
+  {
+    if (!file.delete() && file.exists())
+    {
+      logger.warn("could not delete cached pack {}", file);
+    }
+  }
+
+  /**
+   * Reads the packs of the cache directory and orders them by the time of
+   * the last modification. Incomplete packs are removed.
+   *
+   */
+  private void load()
+  {
+    List<File> files = Lists.newArrayList();
+    File[] packDirectories = directory.listFiles();
+
+    if (packDirectories != null)
+    {
+      for (File packDirectory : packDirectories)
+      {
+        File[] children = packDirectory.listFiles();
+
+        if (children != null)
+        {
+          for (File child : children)
+          {
+            if (child.getName().endsWith(SUFFIX_PACK))
+            {
+              files.add(child);
+            }
+            else
+            {
+              delete(child);
+            }
+          }
+        }
+      }
+    }
+
+    Collections.sort(files, new Comparator<File>()
+    {
+      @Override
+      public int compare(File left, File right)
+      {
+        return Long.valueOf(left.lastModified()).compareTo(
+          right.lastModified());
+      }
+    });
+
+    for (File file : files)
+    {
+      long length = file.length();
+
+      packs.put(file, length);
+      size += length;
+    }
+
+    logger.debug("found {} cached git packs with {} bytes", packs.size(),
+      size);
+  }
+
+  /**
+   * Parses the pkt-lines of an upload pack request. The method returns false,
+   * if the request is not the request of a full clone.
+   *
+   *
+   * @param body request body
+   * @param wants wanted objects
+   * @param capabilities capabilities of the client
+   *
+   * @return true if the request is the request of a full clone
+   */
+  private boolean parse(byte[] body, Set<String> wants,
+    Set<String> capabilities)
+  {
+    boolean done = false;
+    boolean valid = true;
+    int offset = 0;
+
+    while (valid &&!done && (offset + PKT_LENGTH <= body.length))
+    {
+      int length;
+
+      try
+      {
+        length = Integer.parseInt(new String(body, offset, PKT_LENGTH,
+          Charsets.US_ASCII), 16);
+      }
+      catch (NumberFormatException ex)
+      {
+        length = -1;
+      }
+
+      if (length == 0)
+      {
+        offset += PKT_LENGTH;
+      }
+      else if ((length < PKT_LENGTH) || (offset + length > body.length))
+      {
+        valid = false;
+      }
+      else
+      {
+        String line = new String(body, offset + PKT_LENGTH,
+                        length - PKT_LENGTH, Charsets.UTF_8).trim();
+
+        offset += length;
+
+        if (line.startsWith(LINE_WANT))
+        {
+          String[] parts = line.split(" ");
+
+          wants.add(parts[1]);
+
+          for (int i = 2; i < parts.length; i++)
+          {
+            if (!parts[i].startsWith(CAPABILITY_AGENT))
+            {
+              capabilities.add(parts[i]);
+            }
+          }
+        }
+        else if (LINE_DONE.equals(line))
+        {
+          done = true;
+        }
+        else
+        {
+
+          // have, shallow or deepen
+          valid = false;
+        }
+      }
+    }
+
+    return valid && done &&!wants.isEmpty();
+  }
+
+  /**
+   * Adds a new pack to the cache and removes the packs which were not used
+   * for the longest time, until the cache fits into its size limit.
+   *
+   *
+   * @param file
+   */
+  private void put(File file)
+  {
+    List<File> evicted = Lists.newArrayList();
+    long maximumSize = getMaximumSize();
+
+    synchronized (this)
+    {
+      long length = file.length();
+      Long previous = packs.put(file, length);
+
+      if (previous != null)
+      {
+        size -= previous;
+      }
+
+      size += length;
+
+      Iterator<Map.Entry<File, Long>> it = packs.entrySet().iterator();
+
+      while ((size > maximumSize) && it.hasNext())
+      {
+        Map.Entry<File, Long> e = it.next();
+
+        size -= e.getValue();
+        evicted.add(e.getKey());
+        it.remove();
+      }
+    }
+
+    for (File pack : evicted)
+    {
+      logger.debug("evict cached pack {}", pack);
+      delete(pack);
+    }
+  }
+
+  /**
+   * Creates the pack for the request, sends it to the client and stores it
+   * in the cache.
+   *
+   *
+   * @param response
+   * @param gitRepository
+   * @param body
+   * @param file
+   *
+   * @throws IOException
+   */
+  private void sendAndStorePack(HttpServletResponse response,
+    org.eclipse.jgit.lib.Repository gitRepository, byte[] body, File file)
+    throws IOException
+  {
+    logger.debug("create pack for cache file {}", file);
+
+    IOUtil.mkdirs(file.getParentFile());
+
+    File tmp = File.createTempFile("pack-", SUFFIX_TMP, file.getParentFile());
+    OutputStream output = null;
+    boolean stored = false;
+
+    try
+    {
+      output = new FileOutputStream(tmp);
+      setHeaders(response);
+
+      UploadPack pack = new UploadPack(gitRepository);
+
+      pack.setBiDirectionalPipe(false);
+      pack.upload(new ByteArrayInputStream(body),
+        new TeeOutputStream(response.getOutputStream(), output), null);
+      output.close();
+      output = null;
+
+      if (file.exists() || tmp.renameTo(file))
+      {
+        stored = file.exists();
+      }
+    }
+    finally
+    {
+      IOUtil.close(output);
+
+      if (tmp.exists())
+      {
+        delete(tmp);
+      }
+    }
+
+    if (stored)
+    {
+      put(file);
+    }
+  }
+
+  /**
+   * Sends a cached pack to the client. The method returns false, if the pack
+   * was not found in the cache.
+   *
+   *
+   * @param response
+   * @param file
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private boolean sendCachedPack(HttpServletResponse response, File file)
+    throws IOException
+  {
+    boolean found;
+
+    synchronized (this)
+    {
+
+      // moves the pack to the end of the eviction order
+      found = packs.get(file) != null;
+    }
+
+    FileInputStream input = null;
+
+    if (found)
+    {
+      try
+      {
+        input = new FileInputStream(file);
+      }
+      catch (FileNotFoundException ex)
+      {
+        logger.debug("cached pack {} was evicted", file);
+        found = false;
+      }
+    }
+
+    if (found)
+    {
+      logger.trace("send cached pack {}", file);
+
+      try
+      {
+        FileChannel channel = input.getChannel();
+        long length = channel.size();
+
+        setHeaders(response);
+        response.setHeader("Content-Length", String.valueOf(length));
+
+        WritableByteChannel target =
+          Channels.newChannel(response.getOutputStream());
+        long position = 0;
+
+        while (position < length)
+        {
+          position += channel.transferTo(position, length - position, target);
+        }
+      }
+      finally
+      {
+        IOUtil.close(input);
+      }
+    }
+
+    return found;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns true if the request could be answered from the cache. This is
+   * the case for small upload pack requests, if the cache is enabled.
+   *
+   *
+   * @param request http request
+   *
+   * @return true if the request could be answered from the cache
+   */
+  public boolean isCacheable(HttpServletRequest request)
+  {
+    int length = request.getContentLength();
+
+    return (getMaximumSize() > 0) && "POST".equals(request.getMethod())
+      && (length > 0) && (length <= MAX_REQUEST_SIZE);
+  }
+
+  /**
+   * Returns the size limit of the cache in bytes.
+   *
+   *
+   * @return size limit in bytes
+   */
+  private long getMaximumSize()
+  {
+    GitConfig config = handler.getConfig();
+
+    return (config != null)
+      ? config.getPackCacheSize() * 1024l * 1024l
+      : 0l;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param repositoryDirectory
+   *
+   * @return
+   */
+  private File getPackDirectory(File repositoryDirectory)
+  {
+    String path;
+
+    try
+    {
+      path = repositoryDirectory.getCanonicalPath();
+    }
+    catch (IOException ex)
+    {
+      path = repositoryDirectory.getAbsolutePath();
+    }
+
+    return new File(directory,
+      Hashing.sha1().hashString(path, Charsets.UTF_8).toString());
+  }
+
+  /**
+   * Returns the cache file for the request or {@code null}, if one of the
+   * wanted objects is not the tip of a ref.
+   *
+   *
+   * @param gitRepository
+   * @param repositoryDirectory
+   * @param wants
+   * @param capabilities
+   *
+   * @return cache file or {@code null}
+   */
+  private File getPackFile(org.eclipse.jgit.lib.Repository gitRepository,
+    File repositoryDirectory, Set<String> wants, Set<String> capabilities)
+  {
+    Map<String, Ref> refs = Maps.newTreeMap();
+
+    refs.putAll(gitRepository.getAllRefs());
+
+    Set<String> tips = Sets.newHashSet();
+    Hasher hasher = Hashing.sha1().newHasher();
+
+    for (Ref ref : refs.values())
+    {
+      ObjectId id = ref.getObjectId();
+
+      if (id != null)
+      {
+        tips.add(id.name());
+        hasher.putString(ref.getName(), Charsets.UTF_8);
+        hasher.putString(id.name(), Charsets.US_ASCII);
+      }
+    }
+
+    File file = null;
+
+    if (tips.containsAll(wants))
+    {
+      for (String want : wants)
+      {
+        hasher.putString(want, Charsets.US_ASCII);
+      }
+
+      for (String capability : capabilities)
+      {
+        hasher.putString(capability, Charsets.UTF_8);
+      }
+
+      file = new File(getPackDirectory(repositoryDirectory),
+        hasher.hash().toString().concat(SUFFIX_PACK));
+    }
+
+    return file;
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param response
+   */
+  private void setHeaders(HttpServletResponse response)
+  {
+    response.setContentType(CONTENT_TYPE);
+    response.setHeader("Expires", "Fri, 01 Jan 1980 00:00:00 GMT");
+    response.setHeader("Pragma", "no-cache");
+    response.setHeader("Cache-Control", "no-cache, max-age=0, must-revalidate");
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Accepts files with the given extension.
+   */
+  private static class SuffixFilter implements FileFilter
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param suffix
+     */
+    public SuffixFilter(String suffix)
+    {
+      this.suffix = suffix;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @param file
+     *
+     * @return
+     */
+    @Override
+    public boolean accept(File file)
+    {
+      return file.getName().endsWith(suffix);
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final String suffix;
+  }
+
+
+  /**
+   * Writes to the client and to the cache file at the same time.
+   */
+  private static class TeeOutputStream extends OutputStream
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param client
+     * @param file
+     */
+    public TeeOutputStream(OutputStream client, OutputStream file)
+    {
+      this.client = client;
+      this.file = file;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException
+    {
+      file.flush();
+      client.flush();
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @param b
+     *
+     * @throws IOException
+     */
+    @Override
+    public void write(int b) throws IOException
+    {
+      file.write(b);
+      client.write(b);
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @param b
+     * @param off
+     * @param len
+     *
+     * @throws IOException
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      file.write(b, off, len);
+      client.write(b, off, len);
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final OutputStream client;
+
+    /** Field description */
+    private final OutputStream file;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** cache directory */
+  private final File directory;
+
+  /** git repository handler */
+  private final GitRepositoryHandler handler;
+
+  /** cached packs and their size in eviction order */
+  private final LinkedHashMap<File, Long> packs = new LinkedHashMap<File,
+                                                    Long>(16, 0.75f, true);
+
+  /** size of all cached packs in bytes */
+  private long size = 0;
+}
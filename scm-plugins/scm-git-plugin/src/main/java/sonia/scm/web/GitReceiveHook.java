@@ -35,6 +35,9 @@ package sonia.scm.web;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.collect.Lists;
+
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.transport.PostReceiveHook;
 import org.eclipse.jgit.transport.PreReceiveHook;
@@ -44,6 +47,7 @@ import org.eclipse.jgit.transport.ReceivePack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.repository.GitCommitCountIndex;
 import sonia.scm.repository.GitRepositoryHandler;
 import sonia.scm.repository.RepositoryHookType;
 import sonia.scm.repository.RepositoryUtil;
@@ -78,12 +82,14 @@ public class GitReceiveHook implements PreReceiveHook, PostReceiveHook
    *
    * @param hookEventFacade
    * @param handler
+   * @param packCache cache for full clones, can be {@code null}
    */
   public GitReceiveHook(HookEventFacade hookEventFacade,
-    GitRepositoryHandler handler)
+    GitRepositoryHandler handler, GitPackCache packCache)
   {
     this.hookEventFacade = hookEventFacade;
     this.handler = handler;
+    this.packCache = packCache;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -100,6 +106,12 @@ public class GitReceiveHook implements PreReceiveHook, PostReceiveHook
     Collection<ReceiveCommand> receiveCommands)
   {
     onReceive(rpack, receiveCommands, RepositoryHookType.POST_RECEIVE);
+    updateCommitCountIndex(rpack, receiveCommands);
+
+    if (packCache != null)
+    {
+      packCache.invalidate(rpack.getRepository().getDirectory());
+    }
   }
 
   /**
@@ -181,6 +193,40 @@ public class GitReceiveHook implements PreReceiveHook, PostReceiveHook
     }
   }
 
+  /**
+   * Adds the new ref tips of the push to the commit count index.
+   *
+   *
+   * @param rpack
+   * @param receiveCommands
+   */
+  private void updateCommitCountIndex(ReceivePack rpack,
+    Collection<ReceiveCommand> receiveCommands)
+  {
+    List<ObjectId> commits = Lists.newArrayList();
+
+    for (ReceiveCommand rc : receiveCommands)
+    {
+      if ((rc.getResult() == ReceiveCommand.Result.OK)
+        && (rc.getType() != ReceiveCommand.Type.DELETE))
+      {
+        commits.add(rc.getNewId());
+      }
+    }
+
+    if (!commits.isEmpty())
+    {
+      try
+      {
+        GitCommitCountIndex.update(rpack.getRepository(), commits);
+      }
+      catch (IOException ex)
+      {
+        logger.warn("could not update commit count index", ex);
+      }
+    }
+  }
+
   /**
    * Resolve the name of the repository.
    * This method was introduced to fix issue #415.
@@ -214,4 +260,7 @@ public class GitReceiveHook implements PreReceiveHook, PostReceiveHook
 
   /** Field description */
   private HookEventFacade hookEventFacade;
+
+  /** cache for full clones, can be null */
+  private GitPackCache packCache;
 }
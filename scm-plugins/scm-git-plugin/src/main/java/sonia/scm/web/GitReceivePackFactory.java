@@ -66,12 +66,13 @@ public class GitReceivePackFactory
    *
    * @param hookEventFacade
    * @param handler
+   * @param packCache
    */
   @Inject
   public GitReceivePackFactory(HookEventFacade hookEventFacade,
-    GitRepositoryHandler handler)
+    GitRepositoryHandler handler, GitPackCache packCache)
   {
-    hook = new GitReceiveHook(hookEventFacade, handler);
+    hook = new GitReceiveHook(hookEventFacade, handler, packCache);
   }
 
   //~--- methods --------------------------------------------------------------
@@ -43,9 +43,11 @@ import org.eclipse.jgit.http.server.GitServlet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.repository.GitRepositoryMaintenance;
 import sonia.scm.repository.RepositoryProvider;
 import sonia.scm.repository.RepositoryRequestListenerUtil;
 import sonia.scm.util.HttpUtil;
+import sonia.scm.web.filter.BufferedHttpServletRequest;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -67,6 +69,12 @@ public class ScmGitServlet extends GitServlet
   public static final String REGEX_GITHTTPBACKEND =
     "(?x)^/git/(.*/(HEAD|info/refs|objects/(info/[^/]+|[0-9a-f]{2}/[0-9a-f]{38}|pack/pack-[0-9a-f]{40}\\.(pack|idx))|git-(upload|receive)-pack))$";
 
+  /** uri suffix of the receive pack service, which is used for pushes */
+  private static final String SUFFIX_RECEIVE_PACK = "/git-receive-pack";
+
+  /** uri suffix of the upload pack service, which is used for clones */
+  private static final String SUFFIX_UPLOAD_PACK = "/git-upload-pack";
+
   /** Field description */
   private static final long serialVersionUID = -7712897339207470674L;
 
@@ -86,14 +94,19 @@ public class ScmGitServlet extends GitServlet
    * @param repositoryViewer
    * @param repositoryProvider
    * @param repositoryRequestListenerUtil
+   * @param maintenance
+   * @param packCache
    */
   @Inject
   public ScmGitServlet(GitRepositoryResolver repositoryResolver,
     GitReceivePackFactory receivePackFactory,
     GitRepositoryViewer repositoryViewer,
     RepositoryProvider repositoryProvider,
-    RepositoryRequestListenerUtil repositoryRequestListenerUtil)
+    RepositoryRequestListenerUtil repositoryRequestListenerUtil,
+    GitRepositoryMaintenance maintenance, GitPackCache packCache)
   {
+    this.maintenance = maintenance;
+    this.packCache = packCache;
     this.repositoryProvider = repositoryProvider;
     this.repositoryViewer = repositoryViewer;
     this.repositoryRequestListenerUtil = repositoryRequestListenerUtil;
@@ -129,7 +142,7 @@ public class ScmGitServlet extends GitServlet
         if (repositoryRequestListenerUtil.callListeners(request, response,
           repository))
         {
-          super.service(request, response);
+          service(request, response, repository, uri);
         }
         else if (logger.isDebugEnabled())
         {
@@ -181,8 +194,63 @@ public class ScmGitServlet extends GitServlet
     }
   }
 
+  /**
+   * Passes the request to the git servlet. Pushes are reported to the
+   * repository maintenance, which does not pack the repository during the
+   * push. Full clones are answered from the pack cache.
+   *
+   *
+   * @param request
+   * @param response
+   * @param repository
+   * @param uri
+   *
+   * @throws IOException
+   * @throws ServletException
+   */
+  private void service(HttpServletRequest request,
+    HttpServletResponse response, sonia.scm.repository.Repository repository,
+    String uri)
+    throws ServletException, IOException
+  {
+    if (uri.endsWith(SUFFIX_RECEIVE_PACK))
+    {
+      maintenance.beginPush(repository);
+
+      try
+      {
+        super.service(request, response);
+      }
+      finally
+      {
+        maintenance.endPush(repository);
+      }
+    }
+    else if (uri.endsWith(SUFFIX_UPLOAD_PACK)
+      && packCache.isCacheable(request))
+    {
+      BufferedHttpServletRequest buffered =
+        new BufferedHttpServletRequest(request, true);
+
+      if (!packCache.send(buffered, response, repository))
+      {
+        super.service(buffered, response);
+      }
+    }
+    else
+    {
+      super.service(request, response);
+    }
+  }
+
   //~--- fields ---------------------------------------------------------------
 
+  /** background maintenance of the git repositories */
+  private GitRepositoryMaintenance maintenance;
+
+  /** cache for full clones */
+  private GitPackCache packCache;
+
   /** Field description */
   private RepositoryProvider repositoryProvider;
 
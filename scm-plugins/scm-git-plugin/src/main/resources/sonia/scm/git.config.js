@@ -36,10 +36,18 @@ Sonia.git.ConfigPanel = Ext.extend(Sonia.config.SimpleConfigForm, {
   // labels
   titleText: 'Git Settings',
   repositoryDirectoryText: 'Repository directory',
+  maintenanceThreadsText: 'Maintenance Threads',
+  packCacheSizeText: 'Clone Cache Size (MB)',
   disabledText: 'Disabled',
 
   // helpTexts
   repositoryDirectoryHelpText: 'Location of the Git repositories.',
+  maintenanceThreadsHelpText: 'Maximum number of repositories, which are \n\
+                    packed at the same time in the background. \n\
+                    0 disables the packing.',
+  packCacheSizeHelpText: 'Disk space for the responses of full clones, \n\
+                    which are reused for clones of unchanged repositories. \n\
+                    0 disables the cache.',
   disabledHelpText: 'Enable or disable the Git plugin.\n\
                     Note you have to reload the page, after changing this value.',
 
@@ -54,6 +62,20 @@ Sonia.git.ConfigPanel = Ext.extend(Sonia.config.SimpleConfigForm, {
         fieldLabel: this.repositoryDirectoryText,
         helpText: this.repositoryDirectoryHelpText,
         allowBlank : false
+      },{
+        xtype: 'numberfield',
+        name: 'maintenanceThreads',
+        fieldLabel: this.maintenanceThreadsText,
+        helpText: this.maintenanceThreadsHelpText,
+        allowDecimals: false,
+        allowNegative: false
+      },{
+        xtype: 'numberfield',
+        name: 'packCacheSize',
+        fieldLabel: this.packCacheSizeText,
+        helpText: this.packCacheSizeHelpText,
+        allowDecimals: false,
+        allowNegative: false
       },{
         xtype: 'checkbox',
         name: 'disabled',
@@ -80,10 +102,17 @@ if ( i18n && i18n.country === 'de' ){
     // labels
     titleText: 'Git Einstellungen',
     repositoryDirectoryText: 'Repository-Verzeichnis',
+    maintenanceThreadsText: 'Wartungs-Threads',
+    packCacheSizeText: 'Clone-Cache Größe (MB)',
     disabledText: 'Deaktivieren',
 
     // helpTexts
     repositoryDirectoryHelpText: 'Verzeichnis der Git-Repositories.',
+    maintenanceThreadsHelpText: 'Maximale Anzahl der Repositories, die \n\
+      gleichzeitig im Hintergrund gepackt werden. 0 deaktiviert das Packen.',
+    packCacheSizeHelpText: 'Speicherplatz für die Antworten vollständiger \n\
+      Clones, die für Clones unveränderter Repositories wiederverwendet \n\
+      werden. 0 deaktiviert den Cache.',
     disabledHelpText: 'Aktivieren oder deaktivieren des Git Plugins.\n\
       Die Seite muss neu geladen werden wenn dieser Wert geändert wird.'
     
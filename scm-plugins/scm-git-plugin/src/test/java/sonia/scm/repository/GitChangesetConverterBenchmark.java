@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import sonia.scm.util.IOUtil;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of commits per second, which are converted by the
+ * {@link GitChangesetConverter}. The benchmark creates a synthetic repository
+ * with {@link #COMMITS} commits and {@link #REFS} branches and tags. Run the
+ * benchmark with the main method from the test classpath.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GitChangesetConverterBenchmark
+{
+
+  /** number of commits in the synthetic repository */
+  public static final int COMMITS = 1000;
+
+  /** number of branches and tags in the synthetic repository */
+  public static final int REFS = 20000;
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param args
+   *
+   * @throws RunnerException
+   */
+  public static void main(String[] args) throws RunnerException
+  {
+    new Runner(
+      new OptionsBuilder().include(
+        GitChangesetConverterBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  /**
+   * Converts every commit of the synthetic repository with a single
+   * converter.
+   *
+   *
+   * @param blackhole
+   *
+   * @throws IOException
+   */
+  @Benchmark
+  @OperationsPerInvocation(COMMITS)
+  public void convert(Blackhole blackhole) throws IOException
+  {
+    RevWalk walk = null;
+    GitChangesetConverter converter = null;
+
+    try
+    {
+      walk = new RevWalk(repository);
+      walk.markStart(walk.parseCommit(head));
+      converter = new GitChangesetConverter(repository, walk);
+
+      for (RevCommit commit : walk)
+      {
+        blackhole.consume(converter.createChangeset(commit));
+      }
+    }
+    finally
+    {
+      IOUtil.close(converter);
+      GitUtil.release(walk);
+    }
+  }
+
+  /**
+   * Creates the synthetic repository.
+   *
+   *
+   * @throws IOException
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    directory = File.createTempFile("scm-git-", ".benchmark");
+    IOUtil.delete(directory);
+    repository = FileRepositoryBuilder.create(directory);
+    repository.create(true);
+
+    ObjectId[] commits = createCommits();
+
+    head = commits[commits.length - 1];
+
+    RefUpdate update = repository.updateRef(Constants.R_HEADS.concat("master"));
+
+    update.setNewObjectId(head);
+    update.forceUpdate();
+    createRefs(commits);
+  }
+
+  /**
+   * Removes the synthetic repository.
+   *
+   *
+   * @throws IOException
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException
+  {
+    GitUtil.close(repository);
+    IOUtil.delete(directory);
+  }
+
+  /**
+   * Creates a linear history, every commit modifies the same file.
+   *
+   *
+   * @return ids of the created commits
+   *
+   * @throws IOException
+   */
+  private ObjectId[] createCommits() throws IOException
+  {
+    ObjectId[] commits = new ObjectId[COMMITS];
+    ObjectInserter inserter = repository.newObjectInserter();
+    PersonIdent ident = new PersonIdent("Trillian Astra",
+                          "tricia.mcmillan@hitchhiker.com");
+
+    try
+    {
+      ObjectId parent = null;
+
+      for (int i = 0; i < COMMITS; i++)
+      {
+        ObjectId blob = inserter.insert(Constants.OBJ_BLOB,
+                          Constants.encode("line ".concat(String.valueOf(i))));
+        TreeFormatter tree = new TreeFormatter();
+
+        tree.append("a.txt", FileMode.REGULAR_FILE, blob);
+
+        CommitBuilder commit = new CommitBuilder();
+
+        commit.setTreeId(inserter.insert(tree));
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage("commit ".concat(String.valueOf(i)));
+
+        if (parent != null)
+        {
+          commit.setParentId(parent);
+        }
+
+        parent = inserter.insert(commit);
+        commits[i] = parent;
+      }
+
+      inserter.flush();
+    }
+    finally
+    {
+      inserter.release();
+    }
+
+    return commits;
+  }
+
+  /**
+   * Writes the branches and tags as packed refs, half of the refs are
+   * branches the other half are tags.
+   *
+   *
+   * @param commits
+   *
+   * @throws IOException
+   */
+  private void createRefs(ObjectId[] commits) throws IOException
+  {
+    Writer writer = null;
+
+    try
+    {
+      writer = new OutputStreamWriter(
+        new FileOutputStream(new File(directory, "packed-refs")), "UTF-8");
+      writer.write("# pack-refs with: peeled \n");
+
+      for (int i = 0; i < REFS; i++)
+      {
+        String prefix = ((i % 2) == 0)
+                        ? Constants.R_HEADS.concat("branch-")
+                        : Constants.R_TAGS.concat("tag-");
+
+        writer.append(commits[i % COMMITS].name()).append(' ');
+        writer.append(prefix).append(String.valueOf(i)).append('\n');
+      }
+    }
+    finally
+    {
+      IOUtil.close(writer);
+    }
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private File directory;
+
+  /** Field description */
+  private ObjectId head;
+
+  /** Field description */
+  private org.eclipse.jgit.lib.Repository repository;
+}
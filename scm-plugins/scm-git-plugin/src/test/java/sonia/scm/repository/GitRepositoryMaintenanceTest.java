@@ -0,0 +1,332 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class GitRepositoryMaintenanceTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Before
+  public void setUp() throws Exception
+  {
+    config = new GitConfig();
+    config.setRepositoryDirectory(tempFolder.newFolder());
+    directory = new File(config.getRepositoryDirectory(), "hitchhiker/hog");
+    Git.init().setDirectory(directory).setBare(true).call().close();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void tearDown()
+  {
+    if (maintenance != null)
+    {
+      maintenance.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testActivePush() throws IOException
+  {
+    createMaintenance(0l);
+    createObjects(1000);
+
+    maintenance.beginPush(directory);
+    maintenance.check();
+    assertFalse(isPacked());
+
+    maintenance.endPush(directory);
+    maintenance.check();
+    assertTrue(isPacked());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testBelowLimit() throws IOException
+  {
+    createMaintenance(0l);
+    createObjects(10);
+
+    maintenance.check();
+    assertFalse(isPacked());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDisabled() throws IOException
+  {
+    config.setMaintenanceThreads(0);
+    createMaintenance(0l);
+    createObjects(1000);
+
+    maintenance.check();
+    assertFalse(isPacked());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testPack() throws IOException
+  {
+    createMaintenance(0l);
+    createObjects(1000);
+
+    maintenance.check();
+    assertTrue(isPacked());
+    assertTrue(hasFile(".bitmap"));
+    assertEquals(0, getLooseObjectDirectories());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testQuietPeriod() throws IOException
+  {
+    createMaintenance(60000l);
+    createObjects(1000);
+
+    maintenance.beginPush(directory);
+    maintenance.endPush(directory);
+    maintenance.check();
+    assertFalse(isPacked());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param quietPeriod
+   */
+  private void createMaintenance(long quietPeriod)
+  {
+    GitRepositoryHandler handler = mock(GitRepositoryHandler.class);
+
+    when(handler.getConfig()).thenReturn(config);
+    maintenance = new GitRepositoryMaintenance(handler,
+      MoreExecutors.sameThreadExecutor(), 256, 10, quietPeriod);
+  }
+
+  /**
+   * Creates a commit with the given number of files as loose objects.
+   *
+   *
+   * @param count number of files
+   *
+   * @throws IOException
+   */
+  private void createObjects(int count) throws IOException
+  {
+    org.eclipse.jgit.lib.Repository repository = GitUtil.open(directory);
+    ObjectInserter inserter = repository.newObjectInserter();
+
+    try
+    {
+      TreeFormatter tree = new TreeFormatter();
+
+      for (int i = 0; i < count; i++)
+      {
+        ObjectId blob = inserter.insert(Constants.OBJ_BLOB,
+                          Constants.encode("content of file " + i));
+
+        tree.append(String.format("file-%05d", i), FileMode.REGULAR_FILE,
+          blob);
+      }
+
+      PersonIdent ident = new PersonIdent("Trillian McMillian",
+                            "tricia.mcmillian@hitchhiker.com");
+      CommitBuilder commit = new CommitBuilder();
+
+      commit.setTreeId(inserter.insert(tree));
+      commit.setAuthor(ident);
+      commit.setCommitter(ident);
+      commit.setMessage("added files");
+
+      ObjectId commitId = inserter.insert(commit);
+
+      inserter.flush();
+
+      RefUpdate update = repository.updateRef("refs/heads/master");
+
+      update.setNewObjectId(commitId);
+      update.update();
+    }
+    finally
+    {
+      inserter.release();
+      repository.close();
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private int getLooseObjectDirectories()
+  {
+    int count = 0;
+    File[] children = new File(directory, "objects").listFiles();
+
+    for (File child : children)
+    {
+      String[] names = child.list();
+
+      if ((child.getName().length() == 2) && (names != null)
+        && (names.length > 0))
+      {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param suffix
+   *
+   * @return
+   */
+  private boolean hasFile(String suffix)
+  {
+    String[] names = new File(directory, "objects/pack").list();
+
+    if (names != null)
+    {
+      for (String name : names)
+      {
+        if (name.endsWith(suffix))
+        {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private boolean isPacked()
+  {
+    return hasFile(".pack");
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** Field description */
+  private GitConfig config;
+
+  /** Field description */
+  private File directory;
+
+  /** Field description */
+  private GitRepositoryMaintenance maintenance;
+}
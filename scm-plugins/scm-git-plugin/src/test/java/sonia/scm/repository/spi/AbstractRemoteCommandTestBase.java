@@ -56,6 +56,7 @@ import sonia.scm.repository.GitRepositoryHandler;
 import sonia.scm.repository.Repository;
 import sonia.scm.user.User;
 import sonia.scm.user.UserTestData;
+import sonia.scm.web.GitPackCache;
 
 import static org.junit.Assert.*;
 
@@ -138,6 +139,14 @@ public class AbstractRemoteCommandTestBase
       {
         return null;
       }
+    }, new Provider<GitPackCache>()
+    {
+
+      @Override
+      public GitPackCache get()
+      {
+        return null;
+      }
     });
     Transport.register(proto);
   }
@@ -46,6 +46,8 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 
+import java.util.List;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -113,6 +115,85 @@ public class GitBlameCommandTest extends AbstractGitCommandTestBase
     checkFirstLine(line);
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetChange() throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+
+    BlameChange change = createCommand().getChange(request);
+
+    assertNotNull(change);
+    assertEquals("fcd0ef1831e4002ac43ea539f4094334c79ea9ec",
+      change.getRevision());
+    assertEquals("435df2f061add3589cb326cc64be9b9c3897ceca",
+      change.getPreviousRevision());
+    assertEquals("added new line for blame", change.getDescription());
+    assertEquals("Zaphod Beeblebrox", change.getAuthor().getName());
+    checkDate(change.getWhen());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetChangeWithRevision()
+    throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+    request.setRevision("86a6645eceefe8b9a247db5eb16e3d89a7e6e6d1");
+
+    BlameChange change = createCommand().getChange(request);
+
+    assertNotNull(change);
+    assertEquals("435df2f061add3589cb326cc64be9b9c3897ceca",
+      change.getRevision());
+    assertNull(change.getPreviousRevision());
+
+    request.setPath("b.txt");
+    request.setRevision("3f76a12f08a6ba0dc988c68b7f0b2cd190efc3c4");
+    assertNull(createCommand().getChange(request));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetContent() throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+
+    List<String> content = createCommand().getContent(request);
+    BlameResult result = createCommand().getBlameResult(request);
+
+    assertEquals(result.getTotal(), content.size());
+
+    for (int i = 0; i < content.size(); i++)
+    {
+      assertEquals(result.getLine(i).getCode(), content.get(i));
+    }
+  }
+
   /**
    * Method description
    *
@@ -37,6 +37,8 @@ package sonia.scm.repository.spi;
 
 import org.junit.Test;
 
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.repository.BrowserResult;
 import sonia.scm.repository.FileObject;
 import sonia.scm.repository.RepositoryException;
@@ -185,6 +187,91 @@ public class GitBrowseCommandTest extends AbstractGitCommandTestBase
     assertEquals(5, foList.size());
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testBrowseLastCommits() throws IOException, RepositoryException
+  {
+    BrowserResult result =
+      createCommand().getBrowserResult(new BrowseCommandRequest());
+
+    assertEquals("added new line for blame",
+      getFile(result, "a.txt").getDescription());
+    assertEquals("added a and b files",
+      getFile(result, "b.txt").getDescription());
+    assertEquals("added file f", getFile(result, "f.txt").getDescription());
+    assertNull(getFile(result, "c").getDescription());
+
+    BrowseCommandRequest request = new BrowseCommandRequest();
+
+    request.setRevision("3f76a12f08a6ba0dc988c68b7f0b2cd190efc3c4");
+    result = createCommand().getBrowserResult(request);
+    assertEquals("modified file a and deleted file b in branch test-branch",
+      getFile(result, "a.txt").getDescription());
+    assertNull(getFile(result, "b.txt"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testBrowseWithLastCommitCache()
+    throws IOException, RepositoryException
+  {
+    MapCacheManager cacheManager = new MapCacheManager();
+    Cache<Object, Object> cache =
+      cacheManager.getCache(GitBrowseCommand.CACHE_NAME);
+    BrowseCommandRequest request = new BrowseCommandRequest();
+
+    request.setPath("c");
+    request.setRevision("592d797cd36432e591416e8b2b98154f4f163411");
+
+    BrowserResult result = createCommand(cacheManager).getBrowserResult(request);
+
+    assertEquals("added file d and e in folder c",
+      getFile(result, "d.txt").getDescription());
+    assertEquals(1, cache.size());
+
+    // the tree of c is unchanged at the head revision
+    request.setRevision(null);
+    result = createCommand(cacheManager).getBrowserResult(request);
+    assertEquals(1, cache.size());
+    assertEquals("added file d and e in folder c",
+      getFile(result, "d.txt").getDescription());
+    assertEquals("added file d and e in folder c",
+      getFile(result, "e.txt").getDescription());
+    checkDate(getFile(result, "e.txt").getLastModified());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testBrowseDisableLastCommit()
+    throws IOException, RepositoryException
+  {
+    BrowseCommandRequest request = new BrowseCommandRequest();
+
+    request.setDisableLastCommit(true);
+
+    BrowserResult result = createCommand().getBrowserResult(request);
+
+    assertNull(getFile(result, "a.txt").getDescription());
+  }
+
   /**
    * Method description
    *
@@ -195,4 +282,45 @@ public class GitBrowseCommandTest extends AbstractGitCommandTestBase
   {
     return new GitBrowseCommand(createContext(), repository);
   }
+
+  /**
+   * Method description
+   *
+   *
+   * @param cacheManager
+   *
+   * @return
+   */
+  private GitBrowseCommand createCommand(MapCacheManager cacheManager)
+  {
+    return new GitBrowseCommand(createContext(), repository, cacheManager);
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param result
+   * @param name
+   *
+   * @return
+   */
+  private FileObject getFile(BrowserResult result, String name)
+  {
+    FileObject file = null;
+
+    for (FileObject f : result.getFiles())
+    {
+      if (name.equals(f.getName()))
+      {
+        file = f;
+
+        break;
+      }
+    }
+
+    return file;
+  }
 }
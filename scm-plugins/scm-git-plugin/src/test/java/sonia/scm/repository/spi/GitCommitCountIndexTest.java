@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository.spi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.Lists;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import org.junit.Test;
+
+import sonia.scm.repository.GitCommitCountIndex;
+import sonia.scm.repository.GitUtil;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class GitCommitCountIndexTest extends AbstractGitCommandTestBase
+{
+
+  /** name of the index file */
+  private static final String FILENAME = "scm-commit-count.idx";
+
+  /** id of the head of the master branch */
+  private static final ObjectId HEAD =
+    ObjectId.fromString("fcd0ef1831e4002ac43ea539f4094334c79ea9ec");
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCorruptIndex() throws IOException
+  {
+    org.eclipse.jgit.lib.Repository repository = createContext().open();
+
+    GitCommitCountIndex.update(repository, Collections.singleton(HEAD));
+
+    // change the count of the only entry
+    RandomAccessFile raf =
+      new RandomAccessFile(new File(repositoryDirectory, FILENAME), "rw");
+
+    try
+    {
+      raf.seek(31);
+      raf.write(42);
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    assertEquals(4, GitCommitCountIndex.open(repository).getCount(HEAD));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentStore() throws Exception
+  {
+    final org.eclipse.jgit.lib.Repository repository = createContext().open();
+    List<Future<Integer>> futures = Lists.newArrayList();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try
+    {
+      for (int i = 0; i < 20; i++)
+      {
+        for (final RevCommit commit : getCommits(repository))
+        {
+          futures.add(executor.submit(new Callable<Integer>()
+          {
+            @Override
+            public Integer call() throws IOException
+            {
+              GitCommitCountIndex index =
+                GitCommitCountIndex.open(repository);
+              int count = index.getCount(commit);
+
+              index.store();
+
+              return count;
+            }
+          }));
+        }
+      }
+
+      for (Future<Integer> future : futures)
+      {
+        assertTrue(future.get() > 0);
+      }
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+
+    // version, size, 4 entries of id and count and the checksum
+    File file = new File(repositoryDirectory, FILENAME);
+
+    assertEquals(8 + (4 * 24) + 8, file.length());
+
+    for (String name : repositoryDirectory.list())
+    {
+      assertFalse(name.endsWith(".tmp"));
+    }
+
+    assertEquals(4, GitCommitCountIndex.open(repository).getCount(HEAD));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param repository
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private List<RevCommit> getCommits(
+    org.eclipse.jgit.lib.Repository repository)
+    throws IOException
+  {
+    List<RevCommit> commits = Lists.newArrayList();
+    RevWalk walk = new RevWalk(repository);
+
+    try
+    {
+      walk.markStart(walk.parseCommit(HEAD));
+
+      for (RevCommit commit : walk)
+      {
+        commits.add(commit);
+      }
+    }
+    finally
+    {
+      GitUtil.release(walk);
+    }
+
+    return commits;
+  }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository.spi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.ReceivePack;
+
+import org.junit.Test;
+
+import sonia.scm.repository.Changeset;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class GitHookChangesetProviderTest extends AbstractGitCommandTestBase
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testHandleRequest() throws IOException
+  {
+    HookChangesetResponse response =
+      createProvider().handleRequest(new HookChangesetRequest());
+    List<Changeset> changesets =
+      ImmutableList.copyOf(response.getChangesets());
+
+    assertEquals(4, changesets.size());
+
+    Changeset first = changesets.get(0);
+
+    assertEquals("435df2f061add3589cb326cc64be9b9c3897ceca", first.getId());
+    assertEquals("added a and b files", first.getDescription());
+    assertEquals("master", first.getBranches().get(0));
+    assertEquals(2, first.getModifications().getAdded().size());
+    assertEquals("fcd0ef1831e4002ac43ea539f4094334c79ea9ec",
+      changesets.get(3).getId());
+
+    // the iterable could be used more than once
+    assertEquals(4, ImmutableList.copyOf(response.getChangesets()).size());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testHandleRequestCached() throws IOException
+  {
+    GitHookChangesetProvider provider = createProvider();
+    HookChangesetResponse response =
+      provider.handleRequest(new HookChangesetRequest());
+    List<Changeset> changesets =
+      ImmutableList.copyOf(response.getChangesets());
+
+    // the second listener gets the changesets of the first walk
+    HookChangesetRequest request = new HookChangesetRequest();
+
+    request.setDisableModifications(true);
+
+    List<Changeset> cached =
+      ImmutableList.copyOf(provider.handleRequest(request).getChangesets());
+
+    assertEquals(4, cached.size());
+
+    for (int i = 0; i < cached.size(); i++)
+    {
+      assertSame(changesets.get(i), cached.get(i));
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testHandleRequestClosed() throws IOException
+  {
+    GitHookChangesetProvider provider = createProvider();
+    Iterator<Changeset> it = provider.handleRequest(
+                               new HookChangesetRequest()).getChangesets()
+                                 .iterator();
+
+    assertTrue(it.hasNext());
+    it.next();
+    assertTrue(it instanceof Closeable);
+    ((Closeable) it).close();
+    assertFalse(it.hasNext());
+
+    // the closed iteration is not cached
+    assertEquals(4, ImmutableList.copyOf(
+      provider.handleRequest(new HookChangesetRequest()).getChangesets())
+        .size());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testHandleRequestLazy() throws IOException
+  {
+    HookChangesetRequest request = new HookChangesetRequest();
+
+    request.setDisableModifications(true);
+
+    Iterator<Changeset> it =
+      createProvider().handleRequest(request).getChangesets().iterator();
+
+    assertTrue(it.hasNext());
+
+    Changeset changeset = it.next();
+
+    assertEquals("435df2f061add3589cb326cc64be9b9c3897ceca", changeset.getId());
+    assertTrue(changeset.getModifications().getAdded().isEmpty());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testHandleRequestWithModificationsAfterSummary()
+    throws IOException
+  {
+    GitHookChangesetProvider provider = createProvider();
+    HookChangesetRequest request = new HookChangesetRequest();
+
+    request.setDisableModifications(true);
+
+    Changeset summary = provider.handleRequest(
+                          request).getChangesets().iterator().next();
+
+    assertTrue(summary.getModifications().getAdded().isEmpty());
+
+    Changeset changeset = provider.handleRequest(
+                            new HookChangesetRequest()).getChangesets()
+                              .iterator().next();
+
+    assertEquals(2, changeset.getModifications().getAdded().size());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private GitHookChangesetProvider createProvider() throws IOException
+  {
+    org.eclipse.jgit.lib.Repository repo = createContext().open();
+    ObjectId head =
+      ObjectId.fromString("fcd0ef1831e4002ac43ea539f4094334c79ea9ec");
+    List<ReceiveCommand> commands = Lists.newArrayList(
+                                      new ReceiveCommand(ObjectId.zeroId(),
+                                        head, "refs/heads/master"));
+
+    return new GitHookChangesetProvider(new ReceivePack(repo), commands);
+  }
+}
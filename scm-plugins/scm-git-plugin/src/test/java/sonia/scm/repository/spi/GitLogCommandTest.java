@@ -48,6 +48,7 @@ import static org.junit.Assert.*;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -161,6 +162,39 @@ public class GitLogCommandTest extends AbstractGitCommandTestBase
     assertEquals("592d797cd36432e591416e8b2b98154f4f163411", c2.getId());
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetTotalFromCommitCountIndex()
+    throws IOException, RepositoryException
+  {
+    LogCommandRequest request = new LogCommandRequest();
+
+    request.setStartChangeset("86a6645eceefe8b9a247");
+    request.setPagingLimit(1);
+
+    ChangesetPagingResult result = createCommand().getChangesets(request);
+
+    assertEquals(3, result.getTotal());
+    assertEquals(1, result.getChangesets().size());
+    assertTrue(new File(repositoryDirectory, "scm-commit-count.idx").exists());
+
+    // the count of the head is calculated from the indexed parent
+    request = new LogCommandRequest();
+    request.setPagingStart(3);
+    request.setPagingLimit(2);
+    result = createCommand().getChangesets(request);
+    assertEquals(4, result.getTotal());
+    assertEquals(1, result.getChangesets().size());
+    assertEquals("435df2f061add3589cb326cc64be9b9c3897ceca",
+      result.getChangesets().get(0).getId());
+  }
+
   /**
    * Method description
    *
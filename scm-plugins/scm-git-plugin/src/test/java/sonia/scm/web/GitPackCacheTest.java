@@ -0,0 +1,501 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.web;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.PackParser;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sonia.scm.repository.GitConfig;
+import sonia.scm.repository.GitRepositoryHandler;
+import sonia.scm.repository.GitUtil;
+import sonia.scm.web.filter.BufferedHttpServletRequest;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class GitPackCacheTest
+{
+
+  /** Field description */
+  private static final String CAPABILITIES = " side-band-64k ofs-delta";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Exception
+   */
+  @Before
+  public void setUp() throws Exception
+  {
+    config = new GitConfig();
+    config.setRepositoryDirectory(tempFolder.newFolder());
+
+    GitRepositoryHandler handler = mock(GitRepositoryHandler.class);
+
+    when(handler.getConfig()).thenReturn(config);
+
+    directory = new File(config.getRepositoryDirectory(), "hog");
+    Git.init().setDirectory(directory).setBare(true).call().close();
+    cacheDirectory = tempFolder.newFolder();
+    cache = new GitPackCache(handler, cacheDirectory);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testChangedRefs() throws IOException
+  {
+    ObjectId first = commit(10);
+
+    assertNotNull(send(first, CAPABILITIES));
+
+    ObjectId second = commit(10);
+
+    // the first commit is no tip anymore
+    assertNull(send(first, CAPABILITIES));
+    assertNotNull(send(second, CAPABILITIES));
+    assertEquals(2, getCachedPacks());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testClone() throws IOException
+  {
+    ObjectId commit = commit(10);
+    byte[] response = send(commit, CAPABILITIES);
+
+    assertNotNull(response);
+    assertEquals(1, getCachedPacks());
+    assertTrue(containsCommit(response, commit));
+
+    // second clone is answered from the cache
+    assertTrue(Arrays.equals(response, send(commit, CAPABILITIES)));
+    assertEquals(1, getCachedPacks());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDisabled() throws IOException
+  {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+
+    when(request.getMethod()).thenReturn("POST");
+    when(request.getContentLength()).thenReturn(100);
+    assertTrue(cache.isCacheable(request));
+
+    config.setPackCacheSize(0);
+    assertFalse(cache.isCacheable(request));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testEviction() throws IOException
+  {
+    config.setPackCacheSize(1);
+
+    ObjectId commit = commit(1, 600 * 1024);
+
+    assertNotNull(send(commit, CAPABILITIES));
+    assertNotNull(send(commit, " side-band-64k"));
+    assertEquals(1, getCachedPacks());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testFetch() throws IOException
+  {
+    ObjectId commit = commit(10);
+    StringBuilder body = new StringBuilder();
+
+    body.append(pkt("want " + commit.name() + CAPABILITIES + "\n"));
+    body.append("0000");
+    body.append(pkt("have " + commit.name() + "\n"));
+    body.append(pkt("done\n"));
+
+    assertNull(send(body.toString()));
+    assertEquals(0, getCachedPacks());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testInvalidate() throws IOException
+  {
+    ObjectId commit = commit(10);
+
+    assertNotNull(send(commit, CAPABILITIES));
+    assertEquals(1, getCachedPacks());
+
+    cache.invalidate(directory);
+    assertEquals(0, getCachedPacks());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param files
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private ObjectId commit(int files) throws IOException
+  {
+    return commit(files, 32);
+  }
+
+  /**
+   * Creates a commit with random files and moves master to the commit.
+   *
+   *
+   * @param files number of files
+   * @param size size of each file
+   *
+   * @return id of the commit
+   *
+   * @throws IOException
+   */
+  private ObjectId commit(int files, int size) throws IOException
+  {
+    org.eclipse.jgit.lib.Repository repository = GitUtil.open(directory);
+    ObjectInserter inserter = repository.newObjectInserter();
+
+    try
+    {
+      TreeFormatter tree = new TreeFormatter();
+
+      for (int i = 0; i < files; i++)
+      {
+        byte[] content = new byte[size];
+
+        random.nextBytes(content);
+        tree.append(String.format("file-%05d", i), FileMode.REGULAR_FILE,
+          inserter.insert(Constants.OBJ_BLOB, content));
+      }
+
+      PersonIdent ident = new PersonIdent("Trillian McMillian",
+                            "tricia.mcmillian@hitchhiker.com");
+      CommitBuilder commit = new CommitBuilder();
+
+      commit.setTreeId(inserter.insert(tree));
+      commit.setAuthor(ident);
+      commit.setCommitter(ident);
+      commit.setMessage("added files");
+
+      ObjectId parent = repository.resolve("refs/heads/master");
+
+      if (parent != null)
+      {
+        commit.setParentId(parent);
+      }
+
+      ObjectId commitId = inserter.insert(commit);
+
+      inserter.flush();
+
+      RefUpdate update = repository.updateRef("refs/heads/master");
+
+      update.setNewObjectId(commitId);
+      update.forceUpdate();
+
+      return commitId;
+    }
+    finally
+    {
+      inserter.release();
+      repository.close();
+    }
+  }
+
+  /**
+   * Extracts the pack from the side band of the response and indexes it in a
+   * new repository.
+   *
+   *
+   * @param response upload pack response
+   * @param commit expected commit
+   *
+   * @return true if the pack contains the commit
+   *
+   * @throws IOException
+   */
+  private boolean containsCommit(byte[] response, ObjectId commit)
+    throws IOException
+  {
+    ByteArrayOutputStream pack = new ByteArrayOutputStream();
+    int offset = 0;
+
+    while (offset < response.length)
+    {
+      int length = Integer.parseInt(new String(response, offset, 4,
+                     Charsets.US_ASCII), 16);
+
+      if ((length > 4) && (response[offset + 4] == 1))
+      {
+        pack.write(response, offset + 5, length - 5);
+      }
+
+      offset += Math.max(length, 4);
+    }
+
+    File target = tempFolder.newFolder();
+    org.eclipse.jgit.lib.Repository repository =
+      new FileRepositoryBuilder().setGitDir(target).build();
+
+    repository.create(true);
+
+    ObjectInserter inserter = repository.newObjectInserter();
+
+    try
+    {
+      PackParser parser = inserter.newPackParser(
+                            new ByteArrayInputStream(pack.toByteArray()));
+
+      parser.parse(null);
+      inserter.flush();
+
+      return repository.hasObject(commit);
+    }
+    finally
+    {
+      inserter.release();
+      repository.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param line
+   *
+   * @return
+   */
+  private String pkt(String line)
+  {
+    return String.format("%04x", line.length() + 4).concat(line);
+  }
+
+  /**
+   * Sends the request of a full clone.
+   *
+   *
+   * @param want
+   * @param capabilities
+   *
+   * @return response or {@code null}
+   *
+   * @throws IOException
+   */
+  private byte[] send(ObjectId want, String capabilities) throws IOException
+  {
+    StringBuilder body = new StringBuilder();
+
+    body.append(pkt("want " + want.name() + capabilities + "\n"));
+    body.append("0000");
+    body.append(pkt("done\n"));
+
+    return send(body.toString());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param body
+   *
+   * @return response or {@code null}
+   *
+   * @throws IOException
+   */
+  private byte[] send(String body) throws IOException
+  {
+    final ByteArrayInputStream input =
+      new ByteArrayInputStream(body.getBytes(Charsets.UTF_8));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+
+    when(request.getInputStream()).thenReturn(new ServletInputStream()
+    {
+      @Override
+      public int read()
+      {
+        return input.read();
+      }
+    });
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream()
+    {
+      @Override
+      public void write(int b)
+      {
+        output.write(b);
+      }
+    });
+
+    boolean answered = cache.send(new BufferedHttpServletRequest(request,
+                         true), response, directory);
+
+    if (!answered)
+    {
+      assertEquals(0, output.size());
+    }
+
+    return answered
+      ? output.toByteArray()
+      : null;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private int getCachedPacks()
+  {
+    int count = 0;
+    File[] directories = cacheDirectory.listFiles();
+
+    if (directories != null)
+    {
+      for (File d : directories)
+      {
+        for (String name : d.list())
+        {
+          if (name.endsWith(".pack"))
+          {
+            count++;
+          }
+        }
+      }
+    }
+
+    return count;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** Field description */
+  private GitPackCache cache;
+
+  /** Field description */
+  private File cacheDirectory;
+
+  /** Field description */
+  private GitConfig config;
+
+  /** Field description */
+  private File directory;
+
+  /** Field description */
+  private final Random random = new Random(42);
+}
@@ -101,6 +101,20 @@ public class HgConfig extends SimpleRepositoryConfig
     return pythonPath;
   }
 
+  /**
+   * Returns the number of persistent hgweb worker processes. If the count is
+   * zero, every request of the mercurial protocol starts a new cgi process.
+   *
+   *
+   * @return number of hgweb workers
+   *
+   * @since 2.0.0
+   */
+  public int getWorkerCount()
+  {
+    return workerCount;
+  }
+
   /**
    * Method description
    *
@@ -204,6 +218,20 @@ public class HgConfig extends SimpleRepositoryConfig
     this.useOptimizedBytecode = useOptimizedBytecode;
   }
 
+  /**
+   * Sets the number of persistent hgweb worker processes, zero disables the
+   * workers.
+   *
+   *
+   * @param workerCount number of hgweb workers
+   *
+   * @since 2.0.0
+   */
+  public void setWorkerCount(int workerCount)
+  {
+    this.workerCount = workerCount;
+  }
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
@@ -223,4 +251,7 @@ public class HgConfig extends SimpleRepositoryConfig
 
   /** Field description */
   private boolean showRevisionInId = false;
+
+  /** number of hgweb workers */
+  private int workerCount = 0;
 }
@@ -124,12 +124,15 @@ public final class HgEnvironment
   //~--- get methods ----------------------------------------------------------
 
   /**
-   * Method description
+   * Returns the encrypted credentials of the current user, which are passed
+   * to the mercurial hooks to authenticate the hook callback.
+   *
    *
+   * @return credentials of the current user or an empty string
    *
-   * @return
+   * @since 2.0.0
    */
-  private static String getCredentials()
+  public static String getCredentials()
   {
     String credentials = null;
 
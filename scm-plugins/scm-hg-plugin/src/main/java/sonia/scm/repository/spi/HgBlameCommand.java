@@ -38,9 +38,13 @@ package sonia.scm.repository.spi;
 import com.aragost.javahg.Changeset;
 import com.aragost.javahg.commands.AnnotateCommand;
 import com.aragost.javahg.commands.AnnotateLine;
+import com.aragost.javahg.commands.StatusCommand;
+import com.aragost.javahg.internals.Utils;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,14 +59,19 @@ import sonia.scm.web.HgUtil;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.io.IOException;
+import java.io.InputStream;
 
+import java.nio.charset.CharsetDecoder;
+
+import java.util.Arrays;
 import java.util.List;
 
 /**
  *
  * @author Sebastian Sdorra
  */
-public class HgBlameCommand extends AbstractCommand implements BlameCommand
+public class HgBlameCommand extends AbstractCommand
+  implements IncrementalBlameCommand
 {
 
   /**
@@ -123,6 +132,116 @@ public class HgBlameCommand extends AbstractCommand implements BlameCommand
     return new BlameResult(blameLines);
   }
 
+  /**
+   * Returns the changeset which has last modified the file. A merge has no
+   * previous revision, because its lines could come from both parents.
+   *
+   *
+   * @param request blame request
+   *
+   * @return last change of the file or {@code null}
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Override
+  public BlameChange getChange(BlameCommandRequest request)
+    throws IOException, RepositoryException
+  {
+    BlameChange change = null;
+    com.aragost.javahg.Repository repository = open();
+    String path = request.getPath();
+    Changeset c = findChange(repository,
+                    HgUtil.getRevision(request.getRevision()), path);
+
+    if (c != null)
+    {
+      String previousRevision = null;
+      Changeset parent = c.getParent1();
+
+      if ((parent != null) && (c.getParent2() == null))
+      {
+        Changeset previous = findChange(repository, parent.getNode(), path);
+
+        if (previous != null)
+        {
+          previousRevision = previous.getNode();
+        }
+      }
+
+      Person author = null;
+      String user = c.getUser();
+
+      if (!Strings.isNullOrEmpty(user))
+      {
+        author = Person.toPerson(user);
+      }
+
+      change = new BlameChange(c.getNode(), previousRevision, author,
+        c.getTimestamp().getDate().getTime(), c.getMessage());
+    }
+
+    return change;
+  }
+
+  /**
+   * Returns the lines of the file, split and decoded in the same way as the
+   * lines of the javahg annotate command.
+   *
+   *
+   * @param request blame request
+   *
+   * @return lines of the file
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Override
+  public List<String> getContent(BlameCommandRequest request)
+    throws IOException, RepositoryException
+  {
+    com.aragost.javahg.Repository repository = open();
+    com.aragost.javahg.commands.CatCommand cmd =
+      com.aragost.javahg.commands.CatCommand.on(repository);
+
+    cmd.rev(HgUtil.getRevision(request.getRevision()));
+
+    byte[] content;
+    InputStream input = null;
+
+    try
+    {
+      input = cmd.execute(request.getPath());
+      content = ByteStreams.toByteArray(input);
+    }
+    finally
+    {
+      Closeables.close(input, true);
+    }
+
+    CharsetDecoder decoder = repository.newDecoder();
+    List<String> lines = Lists.newArrayList();
+    int start = 0;
+
+    for (int i = 0; i < content.length; i++)
+    {
+      if (content[i] == '\n')
+      {
+        lines.add(Utils.decodeBytes(Arrays.copyOfRange(content, start, i),
+          decoder));
+        start = i + 1;
+      }
+    }
+
+    if (start < content.length)
+    {
+      lines.add(Utils.decodeBytes(Arrays.copyOfRange(content, start,
+        content.length), decoder));
+    }
+
+    return lines;
+  }
+
   //~--- methods --------------------------------------------------------------
 
   /**
@@ -156,4 +275,59 @@ public class HgBlameCommand extends AbstractCommand implements BlameCommand
 
     return blameLine;
   }
+
+  /**
+   * Returns the last ancestor of the revision, which has modified the file.
+   * The changeset is only returned, if it contains the same version of the
+   * file as the revision.
+   *
+   *
+   * @param repository mercurial repository
+   * @param revision revision to start from
+   * @param path path of the file
+   *
+   * @return changeset which has last modified the file or {@code null}
+   */
+  private Changeset findChange(com.aragost.javahg.Repository repository,
+    String revision, String path)
+  {
+    Changeset change = null;
+    String pattern = path.replace("\\", "\\\\").replace("'", "\\'");
+    List<Changeset> changesets =
+      com.aragost.javahg.commands.LogCommand.on(repository).rev(
+        "last(::".concat(revision).concat(" and file('path:").concat(
+          pattern).concat("'))")).execute();
+
+    if (!changesets.isEmpty())
+    {
+      change = changesets.get(0);
+
+      if (!isSameFile(repository, change.getNode(), revision, path))
+      {
+        change = null;
+      }
+    }
+
+    return change;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns true if both revisions contain the same version of the file.
+   *
+   *
+   * @param repository mercurial repository
+   * @param revision first revision
+   * @param otherRevision second revision
+   * @param path path of the file
+   *
+   * @return true if both revisions contain the same version of the file
+   */
+  private boolean isSameFile(com.aragost.javahg.Repository repository,
+    String revision, String otherRevision, String path)
+  {
+    return StatusCommand.on(repository).rev(revision,
+      otherRevision).clean().execute(path).getClean().contains(path);
+  }
 }
@@ -94,8 +94,31 @@ public class HgCommandContext implements Closeable
   public HgCommandContext(HgHookManager hookManager,
     HgRepositoryHandler hanlder, sonia.scm.repository.Repository repository,
     File directory, boolean pending)
+  {
+    this(hookManager, hanlder, null, repository, directory, pending);
+  }
+
+  /**
+   * Constructs a new context, which borrows its javahg repository from the
+   * given pool.
+   *
+   *
+   * @param hookManager
+   * @param hanlder
+   * @param pool repository pool or {@code null} to open a new repository
+   * @param repository
+   * @param directory
+   * @param pending
+   *
+   * @since 2.0.0
+   */
+  public HgCommandContext(HgHookManager hookManager,
+    HgRepositoryHandler hanlder, HgRepositoryPool pool,
+    sonia.scm.repository.Repository repository, File directory,
+    boolean pending)
   {
     this.hookManager = hookManager;
+    this.pool = pool;
     this.hanlder = hanlder;
     this.directory = directory;
     this.encoding = repository.getProperty(PROPERTY_ENCODING);
@@ -120,7 +143,16 @@ public class HgCommandContext implements Closeable
   {
     if (repository != null)
     {
-      repository.close();
+      if (pool != null)
+      {
+        pool.release(repository);
+      }
+      else
+      {
+        repository.close();
+      }
+
+      repository = null;
     }
   }
 
@@ -134,8 +166,15 @@ public class HgCommandContext implements Closeable
   {
     if (repository == null)
     {
-      repository = HgUtil.open(hanlder, hookManager, directory, encoding,
-        pending);
+      if (pool != null)
+      {
+        repository = pool.borrow(directory, encoding, pending);
+      }
+      else
+      {
+        repository = HgUtil.open(hanlder, hookManager, directory, encoding,
+          pending);
+      }
     }
 
     return repository;
@@ -171,6 +210,9 @@ public class HgCommandContext implements Closeable
   /** Field description */
   private boolean pending;
 
+  /** repository pool */
+  private HgRepositoryPool pool;
+
   /** Field description */
   private Repository repository;
 }
@@ -70,16 +70,18 @@ public class HgHookChangesetProvider implements HookChangesetProvider
    * @param handler
    * @param repositoryName
    * @param hookManager
+   * @param pool
    * @param startRev
    * @param type
    */
   public HgHookChangesetProvider(HgRepositoryHandler handler,
-    String repositoryName, HgHookManager hookManager, String startRev,
-    RepositoryHookType type)
+    String repositoryName, HgHookManager hookManager, HgRepositoryPool pool,
+    String startRev, RepositoryHookType type)
   {
     this.handler = handler;
     this.repositoryName = repositoryName;
     this.hookManager = hookManager;
+    this.pool = pool;
     this.startRev = startRev;
     this.type = type;
   }
@@ -100,6 +102,7 @@ public class HgHookChangesetProvider implements HookChangesetProvider
     if (response == null)
     {
       Repository repository = null;
+      boolean broken = true;
 
       try
       {
@@ -110,6 +113,7 @@ public class HgHookChangesetProvider implements HookChangesetProvider
 
         response = new HookChangesetResponse(
           cmd.rev(startRev.concat(":").concat(HgUtil.REVISION_TIP)).execute());
+        broken = false;
       }
       catch (Exception ex)
       {
@@ -119,7 +123,7 @@ public class HgHookChangesetProvider implements HookChangesetProvider
       {
         if (repository != null)
         {
-          repository.close();
+          close(repository, broken);
         }
       }
     }
@@ -127,6 +131,29 @@ public class HgHookChangesetProvider implements HookChangesetProvider
     return response;
   }
 
+  /**
+   * Returns the repository to the pool or closes it, if no pool is used.
+   *
+   *
+   * @param repository
+   * @param broken true if the repository should not be reused
+   */
+  private void close(Repository repository, boolean broken)
+  {
+    if (pool == null)
+    {
+      repository.close();
+    }
+    else if (broken)
+    {
+      pool.invalidate(repository);
+    }
+    else
+    {
+      pool.release(repository);
+    }
+  }
+
   /**
    * Method description
    *
@@ -142,8 +169,19 @@ public class HgHookChangesetProvider implements HookChangesetProvider
     boolean pending = type == RepositoryHookType.PRE_RECEIVE;
 
     // TODO get repository encoding
-    return HgUtil.open(handler, hookManager, repositoryDirectory, null,
-      pending);
+    Repository repository;
+
+    if (pool != null)
+    {
+      repository = pool.borrow(repositoryDirectory, null, pending);
+    }
+    else
+    {
+      repository = HgUtil.open(handler, hookManager, repositoryDirectory, null,
+        pending);
+    }
+
+    return repository;
   }
 
   //~--- fields ---------------------------------------------------------------
@@ -154,6 +192,9 @@ public class HgHookChangesetProvider implements HookChangesetProvider
   /** Field description */
   private HgHookManager hookManager;
 
+  /** repository pool */
+  private HgRepositoryPool pool;
+
   /** Field description */
   private String repositoryName;
 
@@ -65,15 +65,16 @@ public class HgHookContextProvider extends HookContextProvider
    * @param handler
    * @param repositoryName
    * @param hookManager
+   * @param pool
    * @param startRev
    * @param type
    */
   public HgHookContextProvider(HgRepositoryHandler handler,
-    String repositoryName, HgHookManager hookManager, String startRev,
-    RepositoryHookType type)
+    String repositoryName, HgHookManager hookManager, HgRepositoryPool pool,
+    String startRev, RepositoryHookType type)
   {
     this.hookChangesetProvider = new HgHookChangesetProvider(handler,
-      repositoryName, hookManager, startRev, type);
+      repositoryName, hookManager, pool, startRev, type);
   }
 
   //~--- get methods ----------------------------------------------------------
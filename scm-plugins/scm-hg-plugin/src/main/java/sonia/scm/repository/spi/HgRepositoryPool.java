@@ -0,0 +1,779 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository.spi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.aragost.javahg.Repository;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sonia.scm.repository.HgEnvironment;
+import sonia.scm.repository.HgHookManager;
+import sonia.scm.repository.HgRepositoryHandler;
+import sonia.scm.web.HgUtil;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.File;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of opened javahg repositories. Every opened repository holds a warm
+ * mercurial command server process, so that the startup of the python
+ * interpreter is only paid once. The pool keeps a limited number of idle
+ * repositories per repository directory, encoding, pending flag and user,
+ * evicts repositories which are idle for too long and limits the number of
+ * command server processes. If the limit is reached and no repository is
+ * idle, a borrower waits until a process is free. The credentials of the
+ * user are part of the environment of the command server process and are
+ * used by the hooks, which are fired by the process. A process is therefore
+ * never shared between users.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+@Singleton
+public class HgRepositoryPool implements Closeable
+{
+
+  /** default time to wait for a free process in milliseconds */
+  public static final long DEFAULT_BORROW_TIMEOUT =
+    TimeUnit.SECONDS.toMillis(30);
+
+  /** default idle timeout in milliseconds */
+  public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+  /** default maximum of idle repositories per repository */
+  public static final int DEFAULT_MAX_IDLE = 2;
+
+  /** default maximum of command server processes held by the pool */
+  public static final int DEFAULT_MAX_PROCESSES = 32;
+
+  /** idle time after which a repository is checked before it is reused */
+  private static final long VALIDATION_INTERVAL =
+    TimeUnit.SECONDS.toMillis(30);
+
+  /** thread name */
+  private static final String THREAD_NAME = "HgRepositoryPool-%d";
+
+  /**
+   * the logger for HgRepositoryPool
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(HgRepositoryPool.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new pool with the default limits.
+   *
+   *
+   * @param handler
+   * @param hookManager
+   */
+  @Inject
+  public HgRepositoryPool(HgRepositoryHandler handler,
+    HgHookManager hookManager)
+  {
+    this(handler, hookManager, DEFAULT_MAX_PROCESSES, DEFAULT_MAX_IDLE,
+      DEFAULT_IDLE_TIMEOUT, DEFAULT_BORROW_TIMEOUT);
+  }
+
+  /**
+   * Constructs a new pool.
+   *
+   *
+   * @param handler
+   * @param hookManager
+   * @param maxProcesses maximum of command server processes
+   * @param maxIdle maximum of idle repositories per repository
+   * @param idleTimeout idle timeout in milliseconds
+   * @param borrowTimeout time to wait for a free process in milliseconds
+   */
+  HgRepositoryPool(HgRepositoryHandler handler, HgHookManager hookManager,
+    int maxProcesses, int maxIdle, long idleTimeout, long borrowTimeout)
+  {
+    this.handler = handler;
+    this.hookManager = hookManager;
+    this.maxProcesses = maxProcesses;
+    this.maxIdle = maxIdle;
+    this.idleTimeout = idleTimeout;
+    this.borrowTimeout = borrowTimeout;
+
+    //J-
+    ThreadFactory factory = new ThreadFactoryBuilder()
+      .setNameFormat(THREAD_NAME).setDaemon(true).build();
+    this.executor = Executors.newSingleThreadScheduledExecutor(factory);
+    this.executor.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        evictIdleRepositories();
+      }
+    }, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+    //J+
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Borrows a repository from the pool. If no idle repository is available, a
+   * new one is opened. The borrowed repository must be returned with
+   * {@link #release(com.aragost.javahg.Repository)} instead of closing it.
+   *
+   *
+   * @param directory repository directory
+   * @param encoding encoding or {@code null} for the configured encoding
+   * @param pending true to enable pending changesets
+   *
+   * @return borrowed repository
+   *
+   * @throws IllegalStateException if no process becomes free in time
+   */
+  public Repository borrow(File directory, String encoding, boolean pending)
+  {
+    Key key = new Key(directory, encoding, pending,
+                HgEnvironment.getCredentials());
+    Repository repository = null;
+    PooledRepository pooled = poll(key);
+
+    while ((repository == null) && (pooled != null))
+    {
+      if (isHealthy(pooled))
+      {
+        logger.trace("reuse pooled repository for {}", key);
+        repository = pooled.getRepository();
+      }
+      else
+      {
+        logger.debug("discard broken repository for {}", key);
+        invalidate(pooled.getRepository());
+        pooled = poll(key);
+      }
+    }
+
+    if (repository == null)
+    {
+      repository = open(key);
+    }
+
+    return repository;
+  }
+
+  /**
+   * Closes all idle repositories and stops the eviction. Repositories which
+   * are borrowed at this time are closed, when they are released.
+   *
+   */
+  @Override
+  public void close()
+  {
+    List<Repository> repositories = Lists.newArrayList();
+
+    synchronized (this)
+    {
+      closed = true;
+
+      for (LinkedList<PooledRepository> queue : idle.values())
+      {
+        for (PooledRepository pooled : queue)
+        {
+          repositories.add(pooled.getRepository());
+        }
+      }
+
+      processes -= repositories.size();
+      idle.clear();
+      notifyAll();
+    }
+
+    executor.shutdownNow();
+    closeAll(repositories);
+  }
+
+  /**
+   * Removes a broken repository from the pool and closes it.
+   *
+   *
+   * @param repository borrowed repository
+   */
+  public void invalidate(Repository repository)
+  {
+    synchronized (this)
+    {
+      if (borrowed.remove(repository) != null)
+      {
+        processes--;
+        notifyAll();
+      }
+    }
+
+    closeQuietly(repository);
+  }
+
+  /**
+   * Returns a borrowed repository to the pool. The repository is closed, if
+   * the pool has already enough idle repositories for the repository
+   * directory.
+   *
+   *
+   * @param repository borrowed repository
+   */
+  public void release(Repository repository)
+  {
+    boolean pooled = false;
+
+    synchronized (this)
+    {
+      Key key = borrowed.remove(repository);
+
+      if (key != null)
+      {
+        LinkedList<PooledRepository> queue = idle.get(key);
+
+        if (queue == null)
+        {
+          queue = new LinkedList<PooledRepository>();
+          idle.put(key, queue);
+        }
+
+        if (!closed && (queue.size() < maxIdle))
+        {
+          queue.addFirst(new PooledRepository(repository,
+            System.currentTimeMillis()));
+          pooled = true;
+        }
+        else
+        {
+          processes--;
+        }
+
+        notifyAll();
+      }
+    }
+
+    if (!pooled)
+    {
+      closeQuietly(repository);
+    }
+  }
+
+  /**
+   * Closes all repositories which are idle for longer than the idle timeout.
+   *
+   */
+  void evictIdleRepositories()
+  {
+    List<Repository> repositories = Lists.newArrayList();
+    long limit = System.currentTimeMillis() - idleTimeout;
+
+    synchronized (this)
+    {
+      Iterator<LinkedList<PooledRepository>> queues =
+        idle.values().iterator();
+
+      while (queues.hasNext())
+      {
+        LinkedList<PooledRepository> queue = queues.next();
+
+        while (!queue.isEmpty() && (queue.getLast().getLastUsed() < limit))
+        {
+          repositories.add(queue.removeLast().getRepository());
+        }
+
+        if (queue.isEmpty())
+        {
+          queues.remove();
+        }
+      }
+
+      processes -= repositories.size();
+      notifyAll();
+    }
+
+    if (!repositories.isEmpty())
+    {
+      logger.debug("evict {} idle repositories", repositories.size());
+      closeAll(repositories);
+    }
+  }
+
+  /**
+   * Waits until a process is free. Must be called with the lock of the pool.
+   *
+   *
+   * @param key
+   * @param deadline end of the wait in milliseconds
+   *
+   * @throws IllegalStateException if the deadline is reached
+   */
+  private void await(Key key, long deadline)
+  {
+    long remaining = deadline - System.currentTimeMillis();
+
+    if (remaining <= 0)
+    {
+      throw new IllegalStateException(
+        "no mercurial process available for ".concat(key.toString()));
+    }
+
+    logger.debug("process limit reached, wait for a free process for {}",
+      key);
+
+    try
+    {
+      wait(remaining);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+
+      throw new IllegalStateException(
+        "interrupted while waiting for a mercurial process", ex);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param repositories
+   */
+  private void closeAll(List<Repository> repositories)
+  {
+    for (Repository repository : repositories)
+    {
+      closeQuietly(repository);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param repository
+   */
+  private void closeQuietly(Repository repository)
+  {
+    try
+    {
+      repository.close();
+    }
+    catch (Exception ex)
+    {
+      logger.warn("could not close repository", ex);
+    }
+  }
+
+  /**
+   * Removes the repository which is idle for the longest time from the pool.
+   *
+   *
+   * @return evicted repository or {@code null}
+   */
+  private Repository evictOldest()
+  {
+    LinkedList<PooledRepository> oldestQueue = null;
+
+    for (LinkedList<PooledRepository> queue : idle.values())
+    {
+      if (!queue.isEmpty() && ((oldestQueue == null)
+        || (queue.getLast().getLastUsed()
+          < oldestQueue.getLast().getLastUsed())))
+      {
+        oldestQueue = queue;
+      }
+    }
+
+    Repository repository = null;
+
+    if (oldestQueue != null)
+    {
+      repository = oldestQueue.removeLast().getRepository();
+      processes--;
+    }
+
+    return repository;
+  }
+
+  /**
+   * Opens a new repository. If the process limit is reached, the oldest idle
+   * repository of the pool is closed. If there is no idle repository, the
+   * method waits until a process is released, invalidated or evicted.
+   *
+   *
+   * @param key
+   *
+   * @return
+   */
+  private Repository open(Key key)
+  {
+    Repository evicted = null;
+    boolean pooled;
+
+    synchronized (this)
+    {
+      long deadline = System.currentTimeMillis() + borrowTimeout;
+
+      while (!closed && (processes >= maxProcesses) && (evicted == null))
+      {
+        evicted = evictOldest();
+
+        if (evicted == null)
+        {
+          await(key, deadline);
+        }
+      }
+
+      // after the pool is closed, repositories are closed on release
+      pooled = !closed;
+
+      if (pooled)
+      {
+        processes++;
+      }
+    }
+
+    if (evicted != null)
+    {
+      logger.debug("process limit reached, close oldest idle repository");
+      closeQuietly(evicted);
+    }
+
+    Repository repository = null;
+
+    try
+    {
+      repository = HgUtil.open(handler, hookManager, key.directory,
+        key.encoding, key.pending);
+    }
+    finally
+    {
+      synchronized (this)
+      {
+        if (repository == null)
+        {
+          if (pooled)
+          {
+            processes--;
+            notifyAll();
+          }
+        }
+        else if (pooled)
+        {
+          borrowed.put(repository, key);
+        }
+      }
+    }
+
+    return repository;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param key
+   *
+   * @return
+   */
+  private synchronized PooledRepository poll(Key key)
+  {
+    PooledRepository pooled = null;
+    LinkedList<PooledRepository> queue = idle.get(key);
+
+    if ((queue != null) &&!queue.isEmpty())
+    {
+      pooled = queue.removeFirst();
+      borrowed.put(pooled.getRepository(), key);
+    }
+
+    return pooled;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of command server processes held by the pool.
+   *
+   *
+   * @return number of processes
+   */
+  synchronized int getProcesses()
+  {
+    return processes;
+  }
+
+  /**
+   * Checks a repository which was idle for a while, by running a cheap
+   * command on its command server.
+   *
+   *
+   * @param pooled
+   *
+   * @return true if the repository is usable
+   */
+  private boolean isHealthy(PooledRepository pooled)
+  {
+    boolean healthy = true;
+
+    if ((System.currentTimeMillis() - pooled.getLastUsed())
+      > VALIDATION_INTERVAL)
+    {
+      try
+      {
+        pooled.getRepository().tip();
+      }
+      catch (Exception ex)
+      {
+        logger.debug("health check of pooled repository failed", ex);
+        healthy = false;
+      }
+    }
+
+    return healthy;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Key of the pool.
+   */
+  private static class Key
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param directory
+     * @param encoding
+     * @param pending
+     * @param credentials credentials of the user
+     */
+    public Key(File directory, String encoding, boolean pending,
+      String credentials)
+    {
+      this.directory = directory;
+      this.encoding = encoding;
+      this.pending = pending;
+      this.credentials = credentials;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @param obj
+     *
+     * @return
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (obj == null)
+      {
+        return false;
+      }
+
+      if (getClass() != obj.getClass())
+      {
+        return false;
+      }
+
+      final Key other = (Key) obj;
+
+      return Objects.equal(directory, other.directory)
+        && Objects.equal(encoding, other.encoding)
+        && (pending == other.pending)
+        && Objects.equal(credentials, other.credentials);
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public int hashCode()
+    {
+      return Objects.hashCode(directory, encoding, pending, credentials);
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public String toString()
+    {
+      //J-
+      return Objects.toStringHelper(this)
+                    .add("directory", directory)
+                    .add("encoding", encoding)
+                    .add("pending", pending)
+                    .toString();
+      //J+
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** credentials of the user, never logged */
+    private final String credentials;
+
+    /** Field description */
+    private final File directory;
+
+    /** Field description */
+    private final String encoding;
+
+    /** Field description */
+    private final boolean pending;
+  }
+
+
+  /**
+   * Idle repository of the pool.
+   */
+  private static class PooledRepository
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param repository
+     * @param lastUsed
+     */
+    public PooledRepository(Repository repository, long lastUsed)
+    {
+      this.repository = repository;
+      this.lastUsed = lastUsed;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public long getLastUsed()
+    {
+      return lastUsed;
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public Repository getRepository()
+    {
+      return repository;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final long lastUsed;
+
+    /** Field description */
+    private final Repository repository;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** borrowed pooled repositories */
+  private final Map<Repository, Key> borrowed =
+    new IdentityHashMap<Repository, Key>();
+
+  /** time to wait for a free process in milliseconds */
+  private final long borrowTimeout;
+
+  /** eviction executor */
+  private final ScheduledExecutorService executor;
+
+  /** Field description */
+  private final HgRepositoryHandler handler;
+
+  /** Field description */
+  private final HgHookManager hookManager;
+
+  /** idle repositories, the most recently used first */
+  private final Map<Key, LinkedList<PooledRepository>> idle = Maps.newHashMap();
+
+  /** idle timeout in milliseconds */
+  private final long idleTimeout;
+
+  /** maximum of idle repositories per repository */
+  private final int maxIdle;
+
+  /** maximum of command server processes */
+  private final int maxProcesses;
+
+  /** closed marker */
+  private boolean closed = false;
+
+  /** number of command server processes held by the pool */
+  private int processes = 0;
+}
@@ -62,13 +62,15 @@ public class HgRepositoryServiceResolver implements RepositoryServiceResolver
    *
    * @param hookManager
    * @param handler
+   * @param pool
    */
   @Inject
   public HgRepositoryServiceResolver(HgRepositoryHandler handler,
-    HgHookManager hookManager)
+    HgHookManager hookManager, HgRepositoryPool pool)
   {
     this.handler = handler;
     this.hookManager = hookManager;
+    this.pool = pool;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -88,7 +90,7 @@ public class HgRepositoryServiceResolver implements RepositoryServiceResolver
 
     if (TYPE.equalsIgnoreCase(repository.getType()))
     {
-      provider = new HgRepositoryServiceProvider(handler, hookManager,
+      provider = new HgRepositoryServiceProvider(handler, hookManager, pool,
         repository);
     }
 
@@ -102,4 +104,7 @@ public class HgRepositoryServiceResolver implements RepositoryServiceResolver
 
   /** Field description */
   private HgHookManager hookManager;
+
+  /** Field description */
+  private HgRepositoryPool pool;
 }
@@ -108,12 +108,13 @@ public class HgCGIServlet extends HttpServlet
    * @param handler
    * @param hookManager
    * @param requestListenerUtil
+   * @param workerPool
    */
   @Inject
   public HgCGIServlet(CGIExecutorFactory cgiExecutorFactory,
     ScmConfiguration configuration, RepositoryProvider repositoryProvider,
     HgRepositoryHandler handler, HgHookManager hookManager,
-    RepositoryRequestListenerUtil requestListenerUtil)
+    RepositoryRequestListenerUtil requestListenerUtil, HgWorkerPool workerPool)
   {
     this.cgiExecutorFactory = cgiExecutorFactory;
     this.configuration = configuration;
@@ -121,6 +122,7 @@ public class HgCGIServlet extends HttpServlet
     this.handler = handler;
     this.hookManager = hookManager;
     this.requestListenerUtil = requestListenerUtil;
+    this.workerPool = workerPool;
     this.exceptionHandler = new HgCGIExceptionHandler();
   }
 
@@ -276,6 +278,12 @@ public class HgCGIServlet extends HttpServlet
       passSessionAttributes(executor.getEnvironment(), session);
     }
 
+    if (workerPool.isEnabled()
+      && executeWithWorker(request, response, executor))
+    {
+      return;
+    }
+
     String interpreter = getInterpreter();
 
     if (interpreter != null)
@@ -286,6 +294,33 @@ public class HgCGIServlet extends HttpServlet
     executor.execute(command.getAbsolutePath());
   }
 
+  /**
+   * Executes the request with a persistent hgweb worker. Returns false, if
+   * no worker is available and the request must be executed as cgi.
+   *
+   *
+   * @param request
+   * @param response
+   * @param executor
+   *
+   * @return true if the request was handled by a worker
+   *
+   * @throws IOException
+   */
+  private boolean executeWithWorker(HttpServletRequest request,
+    HttpServletResponse response, CGIExecutor executor)
+    throws IOException
+  {
+    EnvList env = new EnvList(executor.getEnvironment());
+
+    // workaround for mercurial 2.1
+    env.set(CGIExecutor.ENV_CONTENT_LENGTH,
+      Integer.toString(request.getContentLength()));
+
+    return workerPool.execute(env.asMutableMap(), request.getInputStream(),
+      response);
+  }
+
   //~--- get methods ----------------------------------------------------------
 
   /**
@@ -335,4 +370,7 @@ public class HgCGIServlet extends HttpServlet
 
   /** Field description */
   private RepositoryRequestListenerUtil requestListenerUtil;
+
+  /** Field description */
+  private HgWorkerPool workerPool;
 }
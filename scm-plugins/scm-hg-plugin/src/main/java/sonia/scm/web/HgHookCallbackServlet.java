@@ -56,6 +56,7 @@ import sonia.scm.repository.RepositoryUtil;
 import sonia.scm.repository.api.HgHookMessage;
 import sonia.scm.repository.api.HgHookMessage.Severity;
 import sonia.scm.repository.spi.HgHookContextProvider;
+import sonia.scm.repository.spi.HgRepositoryPool;
 import sonia.scm.repository.spi.HookEventFacade;
 import sonia.scm.security.CipherUtil;
 import sonia.scm.security.Tokens;
@@ -127,16 +128,18 @@ public class HgHookCallbackServlet extends HttpServlet
    * @param handler
    * @param hookManager
    * @param contextProvider
+   * @param pool
    */
   @Inject
   public HgHookCallbackServlet(HookEventFacade hookEventFacade,
     HgRepositoryHandler handler, HgHookManager hookManager,
-    Provider<HgContext> contextProvider)
+    Provider<HgContext> contextProvider, HgRepositoryPool pool)
   {
     this.hookEventFacade = hookEventFacade;
     this.handler = handler;
     this.hookManager = hookManager;
     this.contextProvider = contextProvider;
+    this.pool = pool;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -295,7 +298,7 @@ public class HgHookCallbackServlet extends HttpServlet
       }
 
       context = new HgHookContextProvider(handler, repositoryName, hookManager,
-        node, type);
+        pool, node, type);
 
       hookEventFacade.handle(HgRepositoryHandler.TYPE_NAME,
         repositoryName).fireHookEvent(type, context);
@@ -548,4 +551,7 @@ public class HgHookCallbackServlet extends HttpServlet
 
   /** Field description */
   private final HgHookManager hookManager;
+
+  /** repository pool */
+  private final HgRepositoryPool pool;
 }
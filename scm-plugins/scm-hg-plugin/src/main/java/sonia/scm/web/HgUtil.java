@@ -111,7 +111,7 @@ public final class HgUtil
       enc = handler.getConfig().getEncoding();
     }
 
-    RepositoryConfiguration repoConfiguration = RepositoryConfiguration.DEFAULT;
+    RepositoryConfiguration repoConfiguration = new RepositoryConfiguration();
 
     HgEnvironment.prepareEnvironment(repoConfiguration.getEnvironment(),
       handler, hookManager);
@@ -0,0 +1,433 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.web;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sonia.scm.util.IOUtil;
+import sonia.scm.web.cgi.CGIExecutor;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A persistent python process, which runs the hgwebworker.py script. The
+ * worker handles one request at a time. The environment and the body of the
+ * request are written to the stdin of the process, the response is read from
+ * its stdout. All messages are framed with a leading length.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public class HgWorker implements Closeable
+{
+
+  /** message which is sent by the worker, after it was started */
+  static final String HANDSHAKE = "ready";
+
+  /** size of the copy buffer */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * the logger for HgWorker
+   */
+  private static final Logger logger = LoggerFactory.getLogger(HgWorker.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new worker for the started process.
+   *
+   *
+   * @param process hgweb worker process
+   */
+  public HgWorker(Process process)
+  {
+    this.process = process;
+    this.input = new DataInputStream(
+      new BufferedInputStream(process.getInputStream()));
+    this.output = new DataOutputStream(
+      new BufferedOutputStream(process.getOutputStream()));
+    processErrorStreamAsync(process);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Stops the worker process.
+   *
+   */
+  @Override
+  public void close()
+  {
+    IOUtil.close(output);
+    IOUtil.close(input);
+    process.destroy();
+  }
+
+  /**
+   * Sends the request to the worker and copies the response of the worker to
+   * the servlet response. If the method throws an {@link IOException}, the
+   * worker is in an undefined state and must be closed.
+   *
+   *
+   * @param environment cgi environment of the request
+   * @param body body of the request
+   * @param response servlet response
+   *
+   * @throws IOException
+   */
+  public void handle(Map<String, String> environment, InputStream body,
+    HttpServletResponse response)
+    throws IOException
+  {
+    writeEnvironment(environment);
+    writeBody(body);
+    output.flush();
+    readHeaders(response);
+    readBody(response);
+  }
+
+  /**
+   * Waits until the worker process has imported mercurial and is ready to
+   * handle requests. The method must be called once, before the first
+   * request is passed to the worker. A worker which dies during the startup
+   * fails the handshake with an {@link IOException} and must be closed.
+   *
+   *
+   * @throws IOException
+   */
+  public void handshake() throws IOException
+  {
+    int length = input.readInt();
+
+    if (length != HANDSHAKE.length())
+    {
+      throw new IOException("unexpected handshake of hgweb worker");
+    }
+
+    byte[] message = new byte[length];
+
+    input.readFully(message);
+
+    if (!HANDSHAKE.equals(new String(message, Charsets.US_ASCII)))
+    {
+      throw new IOException("unexpected handshake of hgweb worker");
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns true if the worker process is still running.
+   *
+   *
+   * @return true if the process is running
+   */
+  public boolean isAlive()
+  {
+    boolean alive = false;
+
+    try
+    {
+      process.exitValue();
+    }
+    catch (IllegalThreadStateException ex)
+    {
+      alive = true;
+    }
+
+    return alive;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param process
+   */
+  private void processErrorStreamAsync(final Process process)
+  {
+    Thread thread = new Thread(new Runnable()
+    {
+
+      @Override
+      public void run()
+      {
+        BufferedReader reader = null;
+
+        try
+        {
+          reader = new BufferedReader(
+            new InputStreamReader(process.getErrorStream(), Charsets.UTF_8));
+
+          String line = reader.readLine();
+
+          while (line != null)
+          {
+            logger.warn(line);
+            line = reader.readLine();
+          }
+        }
+        catch (IOException ex)
+        {
+          logger.trace("could not read error stream of hgweb worker", ex);
+        }
+        finally
+        {
+          IOUtil.close(reader);
+        }
+      }
+    }, "HgWorker-Error");
+
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Copies the body frames of the response to the servlet response.
+   *
+   *
+   * @param response
+   *
+   * @throws IOException
+   */
+  private void readBody(HttpServletResponse response) throws IOException
+  {
+    OutputStream stream = null;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int length = input.readInt();
+
+    while (length > 0)
+    {
+      if (stream == null)
+      {
+        stream = response.getOutputStream();
+      }
+
+      while (length > 0)
+      {
+        int read = input.read(buffer, 0, Math.min(length, buffer.length));
+
+        if (read < 0)
+        {
+          throw new EOFException("unexpected end of hgweb worker stream");
+        }
+
+        stream.write(buffer, 0, read);
+        length -= read;
+      }
+
+      length = input.readInt();
+    }
+
+    if (stream != null)
+    {
+      stream.flush();
+    }
+  }
+
+  /**
+   * Reads the header frame of the response and applies status and headers to
+   * the servlet response, in the same way as the cgi executor does.
+   *
+   *
+   * @param response
+   *
+   * @throws IOException
+   */
+  private void readHeaders(HttpServletResponse response) throws IOException
+  {
+    String[] lines = new String(readFrame(), Charsets.ISO_8859_1).split("\n");
+    int status = Integer.parseInt(lines[0].trim().split(" ")[0]);
+
+    logger.debug("hgweb worker returned with status {}", status);
+
+    for (int i = 1; i < lines.length; i++)
+    {
+      String line = lines[i];
+      int k = line.indexOf(':');
+
+      if (k > 0)
+      {
+        String key = line.substring(0, k).trim();
+        String value = line.substring(k + 1).trim();
+
+        if (CGIExecutor.RESPONSE_HEADER_LOCATION.equalsIgnoreCase(key))
+        {
+          response.sendRedirect(response.encodeRedirectURL(value));
+        }
+        else
+        {
+          response.addHeader(key, value);
+        }
+      }
+    }
+
+    if (status < 304)
+    {
+      response.setStatus(status);
+    }
+    else
+    {
+      response.sendError(status);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private byte[] readFrame() throws IOException
+  {
+    byte[] frame = new byte[input.readInt()];
+
+    input.readFully(frame);
+
+    return frame;
+  }
+
+  /**
+   * Streams the request body as chunks, followed by an empty chunk.
+   *
+   *
+   * @param body
+   *
+   * @throws IOException
+   */
+  private void writeBody(InputStream body) throws IOException
+  {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int read = body.read(buffer);
+
+    while (read >= 0)
+    {
+      if (read > 0)
+      {
+        output.writeInt(read);
+        output.write(buffer, 0, read);
+      }
+
+      read = body.read(buffer);
+    }
+
+    output.writeInt(0);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param environment
+   *
+   * @throws IOException
+   */
+  private void writeEnvironment(Map<String, String> environment)
+    throws IOException
+  {
+    int count = 0;
+
+    for (Map.Entry<String, String> e : environment.entrySet())
+    {
+      if ((e.getKey() != null) && (e.getValue() != null))
+      {
+        count++;
+      }
+    }
+
+    output.writeInt(count);
+
+    for (Map.Entry<String, String> e : environment.entrySet())
+    {
+      if ((e.getKey() != null) && (e.getValue() != null))
+      {
+        writeFrame(e.getKey());
+        writeFrame(e.getValue());
+      }
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param value
+   *
+   * @throws IOException
+   */
+  private void writeFrame(String value) throws IOException
+  {
+    byte[] data = value.getBytes(Charsets.UTF_8);
+
+    output.writeInt(data.length);
+    output.write(data);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** stdout of the worker */
+  private final DataInputStream input;
+
+  /** stdin of the worker */
+  private final DataOutputStream output;
+
+  /** worker process */
+  private final Process process;
+}
@@ -0,0 +1,413 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.web;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sonia.scm.SCMContext;
+import sonia.scm.repository.HgConfig;
+import sonia.scm.repository.HgEnvironment;
+import sonia.scm.repository.HgPythonScript;
+import sonia.scm.repository.HgRepositoryHandler;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Pool of persistent hgweb worker processes. The pool avoids the start of a
+ * python interpreter and the import of the mercurial modules for each
+ * request. The pool is only used if the worker count of the {@link HgConfig}
+ * is greater than zero, otherwise the requests are executed as cgi.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+@Singleton
+public class HgWorkerPool implements Closeable
+{
+
+  /** default time to wait for a free worker in milliseconds */
+  public static final long DEFAULT_BORROW_TIMEOUT =
+    TimeUnit.SECONDS.toMillis(30);
+
+  /** time to wait for a released worker in milliseconds */
+  private static final long WAIT_TIMEOUT = 500;
+
+  /**
+   * the logger for HgWorkerPool
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(HgWorkerPool.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param handler
+   */
+  @Inject
+  public HgWorkerPool(HgRepositoryHandler handler)
+  {
+    this(handler, DEFAULT_BORROW_TIMEOUT);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param handler
+   * @param borrowTimeout time to wait for a free worker in milliseconds
+   */
+  HgWorkerPool(HgRepositoryHandler handler, long borrowTimeout)
+  {
+    this.handler = handler;
+    this.borrowTimeout = borrowTimeout;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Stops all idle workers. Workers which are currently in use, are stopped
+   * when they are released.
+   *
+   */
+  @Override
+  public void close()
+  {
+    List<HgWorker> workers = Lists.newArrayList();
+
+    synchronized (this)
+    {
+      closed = true;
+      idle.drainTo(workers);
+      processes -= workers.size();
+    }
+
+    for (HgWorker worker : workers)
+    {
+      worker.close();
+    }
+  }
+
+  /**
+   * Executes the request with a pooled worker. The method returns false, if
+   * no worker could be started or no worker became free in time. In this case
+   * the request was not touched and should be executed as cgi.
+   *
+   *
+   * @param environment cgi environment of the request
+   * @param body body of the request
+   * @param response servlet response
+   *
+   * @return true if the request was handled by a worker
+   *
+   * @throws IOException
+   */
+  public boolean execute(Map<String, String> environment, InputStream body,
+    HttpServletResponse response)
+    throws IOException
+  {
+    HgWorker worker = borrow();
+
+    if (worker == null)
+    {
+      return false;
+    }
+
+    boolean success = false;
+
+    try
+    {
+      worker.handle(environment, body, response);
+      success = true;
+    }
+    finally
+    {
+      release(worker, success);
+    }
+
+    return true;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns true if the worker count of the configuration is greater than
+   * zero.
+   *
+   *
+   * @return true if the pool is enabled
+   */
+  public boolean isEnabled()
+  {
+    HgConfig config = handler.getConfig();
+
+    return (config != null) && (config.getWorkerCount() > 0);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Starts the hgweb worker process.
+   *
+   *
+   * @return worker process
+   *
+   * @throws IOException
+   */
+  Process startProcess() throws IOException
+  {
+    HgConfig config = handler.getConfig();
+    List<String> cmd = Lists.newArrayList();
+
+    cmd.add(config.getPythonBinary());
+
+    if (config.isUseOptimizedBytecode())
+    {
+      cmd.add("-O");
+    }
+
+    cmd.add(
+      HgPythonScript.HGWEB_WORKER.getFile(
+        SCMContext.getContext()).getAbsolutePath());
+
+    logger.debug("start hgweb worker: {}", cmd);
+
+    ProcessBuilder builder = new ProcessBuilder(cmd);
+
+    builder.environment().put(HgEnvironment.ENV_PYTHON_PATH,
+      HgUtil.getPythonPath(config));
+
+    return builder.start();
+  }
+
+  /**
+   * Returns an idle worker, starts a new worker if the limit is not reached
+   * or waits until a worker is released.
+   *
+   *
+   * @return worker or null if no worker could be started or no worker became
+   *   free before the borrow timeout
+   *
+   * @throws IOException
+   */
+  private HgWorker borrow() throws IOException
+  {
+    HgWorker worker = null;
+    long deadline = System.currentTimeMillis() + borrowTimeout;
+
+    while (worker == null)
+    {
+      boolean start = false;
+
+      synchronized (this)
+      {
+        if (closed)
+        {
+          return null;
+        }
+
+        worker = idle.poll();
+
+        if ((worker == null)
+          && (processes < handler.getConfig().getWorkerCount()))
+        {
+          processes++;
+          start = true;
+        }
+      }
+
+      if (start)
+      {
+        worker = start();
+
+        if (worker == null)
+        {
+          return null;
+        }
+      }
+      else if (worker == null)
+      {
+        long remaining = deadline - System.currentTimeMillis();
+
+        if (remaining <= 0)
+        {
+          logger.warn("no hgweb worker available, fallback to cgi");
+
+          return null;
+        }
+
+        // poll with timeout, because a discarded worker frees a slot
+        try
+        {
+          worker = idle.poll(Math.min(remaining, WAIT_TIMEOUT),
+            TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+
+          throw new IOException("interrupted while waiting for hgweb worker",
+            ex);
+        }
+      }
+
+      if ((worker != null) &&!worker.isAlive())
+      {
+        logger.debug("discard dead hgweb worker");
+        discard(worker);
+        worker = null;
+      }
+    }
+
+    return worker;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param worker
+   */
+  private void discard(HgWorker worker)
+  {
+    worker.close();
+
+    synchronized (this)
+    {
+      processes--;
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param worker
+   * @param success
+   */
+  private void release(HgWorker worker, boolean success)
+  {
+    boolean keep;
+
+    synchronized (this)
+    {
+      keep = success &&!closed
+        && (processes <= handler.getConfig().getWorkerCount());
+    }
+
+    if (keep && worker.isAlive())
+    {
+      idle.offer(worker);
+    }
+    else
+    {
+      discard(worker);
+    }
+  }
+
+  /**
+   * Starts a new worker process and waits for its handshake. Returns null and
+   * releases the reserved slot, if the process could not be started or died
+   * during the startup.
+   *
+   *
+   * @return new worker or null
+   */
+  private HgWorker start()
+  {
+    HgWorker worker = null;
+
+    try
+    {
+      worker = new HgWorker(startProcess());
+      worker.handshake();
+    }
+    catch (IOException ex)
+    {
+      logger.warn("could not start hgweb worker, fallback to cgi", ex);
+
+      if (worker != null)
+      {
+        worker.close();
+        worker = null;
+      }
+
+      synchronized (this)
+      {
+        processes--;
+      }
+    }
+
+    return worker;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** idle workers */
+  private final BlockingQueue<HgWorker> idle =
+    new LinkedBlockingQueue<HgWorker>();
+
+  /** time to wait for a free worker in milliseconds */
+  private final long borrowTimeout;
+
+  /** repository handler */
+  private final HgRepositoryHandler handler;
+
+  /** true if the pool is closed */
+  private boolean closed = false;
+
+  /** number of started processes */
+  private int processes = 0;
+}
@@ -46,6 +46,7 @@ Sonia.hg.ConfigPanel = Ext.extend(Sonia.config.ConfigForm, {
   encodingText: 'Encoding',
   disabledText: 'Disabled',
   showRevisionInIdText: 'Show Revision',
+  workerCountText: 'Worker Processes',
 
   // helpText
   hgBinaryHelpText: 'Location of Mercurial binary.',
@@ -58,6 +59,9 @@ Sonia.hg.ConfigPanel = Ext.extend(Sonia.config.ConfigForm, {
                     Note you have to reload the page, after changing this value.',
   showRevisionInIdHelpText: 'Show revision as part of the node id. Note: \n\
           You have to restart the ApplicationServer to affect cached changesets.',
+  workerCountHelpText: 'Number of persistent hgweb processes, which handle \n\
+          the requests of mercurial clients. Use 0 to start a new process for \n\
+          each request (cgi).',
 
   initComponent: function(){
 
@@ -104,6 +108,13 @@ Sonia.hg.ConfigPanel = Ext.extend(Sonia.config.ConfigForm, {
         fieldLabel: this.showRevisionInIdText,
         inputValue: 'true',
         helpText: this.showRevisionInIdHelpText
+      },{
+        xtype: 'numberfield',
+        name: 'workerCount',
+        fieldLabel: this.workerCountText,
+        helpText: this.workerCountHelpText,
+        allowDecimals: false,
+        allowNegative: false
       },{
         xtype: 'checkbox',
         name: 'disabled',
@@ -210,6 +221,7 @@ if ( i18n && i18n.country === 'de' ){
     configWizardLabelText: 'Konfigurations-Assistent',
     disabledText: 'Deaktivieren',
     showRevisionInIdText: 'Zeige Revision an',
+    workerCountText: 'Worker Prozesse',
 
     // helpText
     hgBinaryHelpText: 'Pfad zum "hg" Befehl.',
@@ -221,7 +233,10 @@ if ( i18n && i18n.country === 'de' ){
       Die Seite muss neu geladen werden wenn dieser Wert geändert wird.',
     showRevisionInIdHelpText: 'Zeige die Revision als teil der NodeId an. \n\
           Der ApplicationServer muss neugestartet werden um zwischengespeicherte\n\
-           Changesets zuändern.'
+           Changesets zuändern.',
+    workerCountHelpText: 'Anzahl der dauerhaften hgweb Prozesse, welche die \n\
+          Anfragen der Mercurial Clients bearbeiten. 0 startet für jede \n\
+          Anfrage einen neuen Prozess (cgi).'
   });
 
 }
@@ -0,0 +1,180 @@
+#
+# Copyright (c) 2010, Sebastian Sdorra
+# All rights reserved.
+#
+# Redistribution and use in source and binary forms, with or without
+# modification, are permitted provided that the following conditions are met:
+#
+# 1. Redistributions of source code must retain the above copyright notice,
+#    this list of conditions and the following disclaimer.
+# 2. Redistributions in binary form must reproduce the above copyright notice,
+#    this list of conditions and the following disclaimer in the documentation
+#    and/or other materials provided with the distribution.
+# 3. Neither the name of SCM-Manager; nor the names of its
+#    contributors may be used to endorse or promote products derived from this
+#    software without specific prior written permission.
+#
+# THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+# AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+# IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+# DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+# DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+# (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+# LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+# ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+# (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+# SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+#
+# http://bitbucket.org/sdorra/scm-manager
+#
+#
+
+# persistent hgweb worker, which handles wsgi requests from scm-manager
+#
+# protocol (all integers are unsigned 32 bit big endian):
+#   handshake: frame with the message 'ready', sent once after the start
+#   request:   count, count * (key length, key, value length, value),
+#              body chunks (length, data), empty chunk
+#   response:  header frame (status line and header lines),
+#              body chunks (length, data), empty chunk
+
+import os, sys, struct, tempfile, traceback
+from mercurial import demandimport, util
+from mercurial.hgweb import hgweb
+
+demandimport.enable()
+
+# size of request bodies which are spooled in memory
+spoolSize = 1024 * 1024
+
+def readExactly(stream, size):
+  data = ''
+  while len(data) < size:
+    chunk = stream.read(size - len(data))
+    if not chunk:
+      raise EOFError()
+    data += chunk
+  return data
+
+def readInt(stream):
+  return struct.unpack('>I', readExactly(stream, 4))[0]
+
+def readFrame(stream):
+  return readExactly(stream, readInt(stream))
+
+def writeFrame(stream, data):
+  stream.write(struct.pack('>I', len(data)))
+  if data:
+    stream.write(data)
+
+class Worker:
+
+  def __init__(self, input, output):
+    self.input = input
+    self.output = output
+    self.applications = {}
+
+  def getApplication(self, path):
+    application = self.applications.get(path)
+    if application is None:
+      application = hgweb(path)
+      self.applications[path] = application
+    return application
+
+  def readRequest(self):
+    environ = {}
+    count = readInt(self.input)
+    for i in range(count):
+      key = readFrame(self.input)
+      environ[key] = readFrame(self.input)
+    body = tempfile.SpooledTemporaryFile(max_size = spoolSize)
+    chunk = readFrame(self.input)
+    while chunk:
+      body.write(chunk)
+      chunk = readFrame(self.input)
+    body.seek(0)
+    return environ, body
+
+  def handle(self, environ, body):
+    state = {'response': None, 'sent': False}
+
+    def sendHeaders():
+      if not state['sent']:
+        status, headers = state['response']
+        lines = [status]
+        for key, value in headers:
+          lines.append('%s: %s' % (key, value))
+        writeFrame(self.output, '\n'.join(lines))
+        state['sent'] = True
+
+    def write(data):
+      sendHeaders()
+      if data:
+        writeFrame(self.output, data)
+
+    def startResponse(status, headers, exc_info = None):
+      if exc_info and state['sent']:
+        raise exc_info[0], exc_info[1], exc_info[2]
+      state['response'] = (status, headers)
+      return write
+
+    env = dict(environ)
+    env['wsgi.input'] = body
+    env['wsgi.errors'] = sys.stderr
+    env['wsgi.version'] = (1, 0)
+    env['wsgi.multithread'] = False
+    env['wsgi.multiprocess'] = True
+    env['wsgi.run_once'] = False
+    if environ.get('HTTPS', 'off').lower() in ('on', '1', 'yes'):
+      env['wsgi.url_scheme'] = 'https'
+    else:
+      env['wsgi.url_scheme'] = 'http'
+
+    # hooks read their configuration from the process environment
+    savedEnviron = os.environ.copy()
+    os.environ.update(environ)
+    try:
+      try:
+        application = self.getApplication(environ['SCM_REPOSITORY_PATH'])
+        result = application(env, startResponse)
+        try:
+          for chunk in result:
+            write(chunk)
+          sendHeaders()
+        finally:
+          if hasattr(result, 'close'):
+            result.close()
+      except Exception:
+        traceback.print_exc(file = sys.stderr)
+        if not state['sent']:
+          state['response'] = ('500 Internal Server Error', [])
+          sendHeaders()
+    finally:
+      os.environ.clear()
+      os.environ.update(savedEnviron)
+      body.close()
+    writeFrame(self.output, '')
+    self.output.flush()
+
+  def run(self):
+    while True:
+      try:
+        environ, body = self.readRequest()
+      except EOFError:
+        return
+      self.handle(environ, body)
+
+# the original stdout is used for the protocol, everything else which is
+# written to stdout is redirected to stderr
+input = os.fdopen(os.dup(sys.stdin.fileno()), 'rb')
+output = os.fdopen(os.dup(sys.stdout.fileno()), 'wb')
+util.setbinary(input)
+util.setbinary(output)
+os.dup2(sys.stderr.fileno(), sys.stdout.fileno())
+sys.stdout = sys.stderr
+
+# tell scm-manager that mercurial was imported and requests can be sent
+writeFrame(output, 'ready')
+output.flush()
+
+Worker(input, output).run()
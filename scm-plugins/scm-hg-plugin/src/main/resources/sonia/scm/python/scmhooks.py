@@ -38,9 +38,9 @@
 
 import os, urllib, urllib2
 
-baseUrl = os.environ['SCM_URL']
-challenge = os.environ['SCM_CHALLENGE']
-credentials = os.environ['SCM_CREDENTIALS']
+# the environment is read on each call, because long running processes like
+# the hgweb worker import the module only once, but handle requests of
+# different users
 
 def printMessages(ui, msgs):
   for line in msgs:
@@ -51,7 +51,9 @@ def printMessages(ui, msgs):
 def callHookUrl(ui, repo, hooktype, node):
   abort = True
   try:
-    url = baseUrl + hooktype
+    url = os.environ['SCM_URL'] + hooktype
+    challenge = os.environ['SCM_CHALLENGE']
+    credentials = os.environ['SCM_CREDENTIALS']
     ui.debug( "send scm-hook to " + url + " and " + node + "\n" )
     data = urllib.urlencode({'node': node, 'challenge': challenge, 'credentials': credentials, 'repositoryPath': repo.root})
     # open url but ignore proxy settings
@@ -87,7 +89,7 @@ def callback(ui, repo, hooktype, node=None, source=None, pending=None, **kwargs)
     pending()
   abort = True
   if node != None:
-    if len(baseUrl) > 0:
+    if len(os.environ['SCM_URL']) > 0:
       abort = callHookUrl(ui, repo, hooktype, node)
     else:
       ui.warn("ERROR: scm-manager hooks are disabled, please check your configuration and the scm-manager log for details\n")
@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sonia.scm.SCMContext;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the scmhooks.py script in a long running python process, which
+ * calls the hooks of different users.
+ *
+ * @author Sebastian Sdorra
+ */
+public class HgHookScriptTest
+{
+
+  /** python script, which calls the hook for two users */
+  private static final String SCRIPT = Joiner.on('\n').join(
+    "import os, sys, scmhooks",
+    "class Ui:",
+    "  def debug(self, msg):",
+    "    pass",
+    "  def warn(self, msg):",
+    "    sys.stderr.write(msg)",
+    "class Repo:",
+    "  root = 'heart-of-gold'",
+    "for user in sys.argv[1:]:",
+    "  os.environ['SCM_CREDENTIALS'] = user",
+    "  if scmhooks.callback(Ui(), Repo(), 'changegroup', node = 'abc'):",
+    "    sys.exit(1)", "");
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void stopServer()
+  {
+    if (server != null)
+    {
+      server.stop(0);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  @Test
+  public void testCredentialsOfDifferentUsers()
+    throws IOException, InterruptedException
+  {
+    File script = tempFolder.newFile("hooktest.py");
+
+    Files.write(SCRIPT, script, Charsets.UTF_8);
+
+    ProcessBuilder builder =
+      new ProcessBuilder(handler.getConfig().getPythonBinary(),
+        script.getAbsolutePath(), "trillian", "dent");
+    Map<String, String> env = builder.environment();
+
+    env.put(HgEnvironment.ENV_PYTHON_PATH,
+      HgPythonScript.getScriptDirectory(SCMContext.getContext())
+        .getAbsolutePath());
+    env.put("SCM_URL",
+      "http://localhost:".concat(
+        String.valueOf(server.getAddress().getPort())).concat("/hook/hg/"));
+    env.put("SCM_CHALLENGE", "challenge");
+    env.put("SCM_CREDENTIALS", "trillian");
+    builder.redirectErrorStream(true);
+
+    Process process = builder.start();
+    String output = new String(
+                      ByteStreams.toByteArray(process.getInputStream()),
+                      Charsets.UTF_8);
+
+    assertEquals(output, 0, process.waitFor());
+    assertEquals(Lists.newArrayList("trillian", "dent"), credentials);
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Before
+  public void setUpHandlerAndServer() throws IOException
+  {
+    handler = HgTestUtil.createHandler(tempFolder.newFolder());
+    HgTestUtil.checkForSkip(handler);
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/hook/hg/", new HttpHandler()
+    {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        InputStream body = exchange.getRequestBody();
+        String data = new String(ByteStreams.toByteArray(body),
+                        Charsets.UTF_8);
+
+        for (String parameter : data.split("&"))
+        {
+          if (parameter.startsWith("credentials="))
+          {
+            credentials.add(
+              URLDecoder.decode(parameter.substring(12), "UTF-8"));
+          }
+        }
+
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** credentials, which are received by the hook server */
+  private final List<String> credentials = Lists.newArrayList();
+
+  /** Field description */
+  private HgRepositoryHandler handler;
+
+  /** Field description */
+  private HttpServer server;
+}
@@ -47,6 +47,8 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 
+import java.util.List;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -113,6 +115,80 @@ public class HgBlameCommandTest extends AbstractHgCommandTestBase
     checkFirstLine(line);
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetChange() throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+
+    BlameChange change = createCommand().getChange(request);
+
+    assertNotNull(change);
+    assertEquals("2baab8e80280ef05a9aa76c49c76feca2872afb7",
+      change.getRevision());
+    assertEquals("a9bacaf1b7fa0cebfca71fed4e59ed69a6319427",
+      change.getPreviousRevision());
+    assertEquals("added new line for blame", change.getDescription());
+    assertEquals("Zaphod Beeblebrox", change.getAuthor().getName());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetChangeWithRevision()
+    throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+    request.setRevision("a9bacaf1b7fa0cebfca71fed4e59ed69a6319427");
+
+    BlameChange change = createCommand().getChange(request);
+
+    assertNotNull(change);
+    assertEquals("a9bacaf1b7fa0cebfca71fed4e59ed69a6319427",
+      change.getRevision());
+    assertNull(change.getPreviousRevision());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetContent() throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+
+    List<String> content = createCommand().getContent(request);
+    BlameResult result = createCommand().getBlameResult(request);
+
+    assertEquals(result.getTotal(), content.size());
+
+    for (int i = 0; i < content.size(); i++)
+    {
+      assertEquals(result.getLine(i).getCode(), content.get(i));
+    }
+  }
+
   /**
    * Method description
    *
@@ -136,7 +212,7 @@ public class HgBlameCommandTest extends AbstractHgCommandTestBase
    *
    * @return
    */
-  private BlameCommand createCommand()
+  private HgBlameCommand createCommand()
   {
     return new HgBlameCommand(cmdContext, repository);
   }
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository.spi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.aragost.javahg.Repository;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import org.junit.After;
+import org.junit.Test;
+
+import sonia.scm.repository.HgTestUtil;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class HgRepositoryPoolTest extends AbstractHgCommandTestBase
+{
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void closePool()
+  {
+    if (pool != null)
+    {
+      pool.close();
+    }
+
+    ThreadContext.unbindSubject();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws InterruptedException
+   */
+  @Test
+  public void testEvictIdleRepositories() throws InterruptedException
+  {
+    pool = createPool(2, 1, 1, 50);
+    pool.release(pool.borrow(repositoryDirectory, null, false));
+    Thread.sleep(10);
+    pool.evictIdleRepositories();
+    assertEquals(0, pool.getProcesses());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testProcessLimit()
+  {
+    pool = createPool(1, 1, 60000, 50);
+
+    Repository first = pool.borrow(repositoryDirectory, null, false);
+
+    try
+    {
+      pool.borrow(repositoryDirectory, null, false);
+      fail("borrow should time out at the process limit");
+    }
+    catch (IllegalStateException ex)
+    {
+
+      // expected
+    }
+
+    assertEquals(1, pool.getProcesses());
+    pool.release(first);
+    assertEquals(1, pool.getProcesses());
+    assertSame(first, pool.borrow(repositoryDirectory, null, false));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testProcessLimitEvictsIdleRepository()
+  {
+    pool = createPool(1, 1, 60000, 50);
+    pool.release(pool.borrow(repositoryDirectory, null, false));
+
+    Repository pending = pool.borrow(repositoryDirectory, null, true);
+
+    assertNotNull(pending);
+    assertEquals(1, pool.getProcesses());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testReuse()
+  {
+    pool = createPool(2, 1, 60000, 50);
+
+    Repository repository = pool.borrow(repositoryDirectory, null, false);
+
+    assertNotNull(repository.tip());
+    pool.release(repository);
+    assertSame(repository, pool.borrow(repositoryDirectory, null, false));
+    assertNotSame(repository, pool.borrow(repositoryDirectory, null, true));
+    assertEquals(2, pool.getProcesses());
+    pool.invalidate(repository);
+    assertEquals(1, pool.getProcesses());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testUsersDoNotShareRepositories()
+  {
+    pool = createPool(2, 1, 60000, 50);
+
+    bindSubject("trillian-credentials");
+
+    Repository repository = pool.borrow(repositoryDirectory, null, false);
+
+    pool.release(repository);
+
+    bindSubject("dent-credentials");
+
+    Repository other = pool.borrow(repositoryDirectory, null, false);
+
+    assertNotSame(repository, other);
+    pool.release(other);
+
+    bindSubject("trillian-credentials");
+    assertSame(repository, pool.borrow(repositoryDirectory, null, false));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws InterruptedException
+   */
+  @Test
+  public void testWaitForReleasedProcess() throws InterruptedException
+  {
+    pool = createPool(1, 1, 60000, 10000);
+
+    final Repository first = pool.borrow(repositoryDirectory, null, false);
+    Thread releaser = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          Thread.sleep(100);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+
+        pool.release(first);
+      }
+    });
+
+    releaser.start();
+
+    Repository second = pool.borrow(repositoryDirectory, null, true);
+
+    releaser.join();
+    assertNotNull(second);
+    assertEquals(1, pool.getProcesses());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param credentials
+   */
+  private void bindSubject(String credentials)
+  {
+    Subject subject = mock(Subject.class);
+    Session session = mock(Session.class);
+
+    when(subject.getSession(false)).thenReturn(session);
+    when(session.getAttribute("SCM_CREDENTIALS")).thenReturn(credentials);
+    ThreadContext.bind(subject);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param maxProcesses
+   * @param maxIdle
+   * @param idleTimeout
+   * @param borrowTimeout
+   *
+   * @return
+   */
+  private HgRepositoryPool createPool(int maxProcesses, int maxIdle,
+    long idleTimeout, long borrowTimeout)
+  {
+    return new HgRepositoryPool(handler, HgTestUtil.createHookManager(),
+      maxProcesses, maxIdle, idleTimeout, borrowTimeout);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private HgRepositoryPool pool;
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+
+package sonia.scm.web;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sonia.scm.repository.HgConfig;
+import sonia.scm.repository.HgRepositoryHandler;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class HgWorkerPoolTest
+{
+
+  /** Field description */
+  private static final Map<String, String> ENVIRONMENT =
+    ImmutableMap.of("REQUEST_METHOD", "GET");
+
+  /** Field description */
+  private static final String HEADERS = "200 Script output follows";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void closePool()
+  {
+    pool.close();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  @Test
+  public void testBorrowTimeout() throws IOException, InterruptedException
+  {
+    processes.add(createProcess(HEADERS, HEADERS));
+
+    final CountDownLatch reading = new CountDownLatch(1);
+    final CountDownLatch finish = new CountDownLatch(1);
+    final InputStream body = new InputStream()
+    {
+      @Override
+      public int read()
+      {
+        reading.countDown();
+
+        try
+        {
+          finish.await();
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+
+        return -1;
+      }
+    };
+    Thread thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          pool.execute(ENVIRONMENT, body, createResponse());
+        }
+        catch (IOException ex)
+        {
+          throw new RuntimeException(ex);
+        }
+      }
+    });
+
+    thread.start();
+    reading.await();
+
+    // the only worker is busy
+    assertFalse(execute());
+
+    finish.countDown();
+    thread.join();
+    assertTrue(execute());
+    assertEquals(1, started);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testFallbackIfHandshakeFails() throws IOException
+  {
+    Process process = HgWorkerTest.createProcess(new byte[0],
+                        new ByteArrayOutputStream());
+
+    processes.add(process);
+
+    ByteArrayInputStream body = new ByteArrayInputStream(new byte[] { 42 });
+
+    assertFalse(pool.execute(ENVIRONMENT, body, createResponse()));
+    assertEquals(1, body.available());
+    verify(process).destroy();
+
+    // the failed start frees the slot for the next worker
+    processes.add(createProcess(HEADERS));
+    assertTrue(execute());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testFallbackIfStartFails() throws IOException
+  {
+    ByteArrayInputStream body = new ByteArrayInputStream(new byte[] { 42 });
+
+    assertFalse(pool.execute(ENVIRONMENT, body, createResponse()));
+    assertEquals(1, body.available());
+    assertEquals(1, started);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testRestartAfterCrash() throws IOException
+  {
+    Process process = createProcess(HEADERS, HEADERS);
+
+    processes.add(process);
+    processes.add(createProcess(HEADERS));
+    assertTrue(execute());
+
+    // the idle worker dies
+    doReturn(1).when(process).exitValue();
+    assertTrue(execute());
+    verify(process).destroy();
+    assertEquals(2, started);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testRestartAfterCrashDuringRequest() throws IOException
+  {
+    byte[] output = HgWorkerTest.createOutput(HEADERS);
+    byte[] truncated = new byte[output.length - 8];
+
+    System.arraycopy(output, 0, truncated, 0, truncated.length);
+
+    Process process = HgWorkerTest.createProcess(truncated,
+                        new ByteArrayOutputStream());
+
+    processes.add(process);
+    processes.add(createProcess(HEADERS));
+
+    try
+    {
+      execute();
+      fail("request to crashed worker should fail");
+    }
+    catch (IOException ex)
+    {
+
+      // expected
+    }
+
+    verify(process).destroy();
+    assertTrue(execute());
+    assertEquals(2, started);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testReuse() throws IOException
+  {
+    processes.add(createProcess(HEADERS, HEADERS));
+    assertTrue(execute());
+    assertTrue(execute());
+    assertEquals(1, started);
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUpPool()
+  {
+    HgConfig config = new HgConfig();
+
+    config.setWorkerCount(1);
+
+    HgRepositoryHandler handler = mock(HgRepositoryHandler.class);
+
+    when(handler.getConfig()).thenReturn(config);
+    pool = new HgWorkerPool(handler, 100)
+    {
+      @Override
+      Process startProcess() throws IOException
+      {
+        started++;
+
+        if (processes.isEmpty())
+        {
+          throw new IOException("could not start python");
+        }
+
+        return processes.removeFirst();
+      }
+    };
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param headers
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private Process createProcess(String... headers) throws IOException
+  {
+    return HgWorkerTest.createProcess(HgWorkerTest.createOutput(headers),
+      new ByteArrayOutputStream());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private HttpServletResponse createResponse()
+    throws IOException
+  {
+    return HgWorkerTest.createResponse(new ByteArrayOutputStream());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private boolean execute() throws IOException
+  {
+    return pool.execute(ENVIRONMENT, new ByteArrayInputStream(new byte[0]),
+      createResponse());
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** processes which are returned by the pool */
+  private final LinkedList<Process> processes = Lists.newLinkedList();
+
+  /** Field description */
+  private HgWorkerPool pool;
+
+  /** number of started processes */
+  private int started = 0;
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+
+package sonia.scm.web;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class HgWorkerTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testHandle() throws IOException
+  {
+    ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+    HgWorker worker = new HgWorker(createProcess(createOutput(
+                        "200 Script output follows\n"
+                        + "Content-Type: application/mercurial-0.1"), stdin));
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    HttpServletResponse response = createResponse(body);
+
+    worker.handshake();
+    worker.handle(ImmutableMap.of("REQUEST_METHOD", "POST"),
+      new ByteArrayInputStream("heart of gold".getBytes(Charsets.UTF_8)),
+      response);
+
+    verify(response).setStatus(200);
+    verify(response).addHeader("Content-Type", "application/mercurial-0.1");
+    assertEquals("hitchhiker", body.toString("UTF-8"));
+
+    DataInputStream request =
+      new DataInputStream(new ByteArrayInputStream(stdin.toByteArray()));
+
+    assertEquals(1, request.readInt());
+    assertEquals("REQUEST_METHOD", readFrame(request));
+    assertEquals("POST", readFrame(request));
+    assertEquals("heart of gold", readFrame(request));
+    assertEquals(0, request.readInt());
+    assertEquals(-1, request.read());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test(expected = IOException.class)
+  public void testHandleWithCrashedWorker() throws IOException
+  {
+    byte[] output = createOutput("200 Script output follows");
+    byte[] truncated = new byte[output.length - 8];
+
+    System.arraycopy(output, 0, truncated, 0, truncated.length);
+
+    HgWorker worker = new HgWorker(createProcess(truncated,
+                        new ByteArrayOutputStream()));
+
+    worker.handshake();
+    worker.handle(ImmutableMap.<String, String>of(),
+      new ByteArrayInputStream(new byte[0]),
+      createResponse(new ByteArrayOutputStream()));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testHandleWithRedirectAndError() throws IOException
+  {
+    HgWorker worker = new HgWorker(createProcess(createOutput(
+                        "404 Not Found\nLocation: /hg/other"),
+                        new ByteArrayOutputStream()));
+    HttpServletResponse response =
+      createResponse(new ByteArrayOutputStream());
+
+    when(response.encodeRedirectURL("/hg/other")).thenReturn("/hg/other");
+    worker.handshake();
+    worker.handle(ImmutableMap.<String, String>of(),
+      new ByteArrayInputStream(new byte[0]), response);
+
+    verify(response).sendRedirect("/hg/other");
+    verify(response).sendError(404);
+    verify(response, never()).addHeader(anyString(), anyString());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test(expected = IOException.class)
+  public void testHandshakeOfDeadWorker() throws IOException
+  {
+    new HgWorker(createProcess(new byte[0],
+      new ByteArrayOutputStream())).handshake();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test(expected = IOException.class)
+  public void testHandshakeWithUnexpectedMessage() throws IOException
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    writeFrame(new DataOutputStream(baos), "error");
+    new HgWorker(createProcess(baos.toByteArray(),
+      new ByteArrayOutputStream())).handshake();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testIsAlive()
+  {
+    Process process = createProcess(new byte[0], new ByteArrayOutputStream());
+    HgWorker worker = new HgWorker(process);
+
+    assertTrue(worker.isAlive());
+    doReturn(1).when(process).exitValue();
+    assertFalse(worker.isAlive());
+    worker.close();
+    verify(process).destroy();
+  }
+
+  /**
+   * Creates the stdout of a worker, which sends the handshake and the given
+   * responses.
+   *
+   *
+   * @param headers header frames of the responses
+   *
+   * @return stdout of the worker
+   *
+   * @throws IOException
+   */
+  static byte[] createOutput(String... headers) throws IOException
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(baos);
+
+    writeFrame(dos, HgWorker.HANDSHAKE);
+
+    for (String header : headers)
+    {
+      writeFrame(dos, header);
+      writeFrame(dos, "hitchhiker");
+      dos.writeInt(0);
+    }
+
+    return baos.toByteArray();
+  }
+
+  /**
+   * Creates a mocked process, which is alive and has the given stdout.
+   *
+   *
+   * @param stdout stdout of the process
+   * @param stdin stdin of the process
+   *
+   * @return mocked process
+   */
+  static Process createProcess(byte[] stdout, ByteArrayOutputStream stdin)
+  {
+    Process process = mock(Process.class);
+
+    when(process.getInputStream()).thenReturn(
+      new ByteArrayInputStream(stdout));
+    when(process.getOutputStream()).thenReturn(stdin);
+    when(process.getErrorStream()).thenReturn(
+      new ByteArrayInputStream(new byte[0]));
+    when(process.exitValue()).thenThrow(new IllegalThreadStateException());
+
+    return process;
+  }
+
+  /**
+   * Creates a mocked response, which writes its body to the given stream.
+   *
+   *
+   * @param body stream for the body
+   *
+   * @return mocked response
+   *
+   * @throws IOException
+   */
+  static HttpServletResponse createResponse(final ByteArrayOutputStream body)
+    throws IOException
+  {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream()
+    {
+      @Override
+      public void write(int b)
+      {
+        body.write(b);
+      }
+    });
+
+    return response;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param dos
+   * @param value
+   *
+   * @throws IOException
+   */
+  private static void writeFrame(DataOutputStream dos, String value)
+    throws IOException
+  {
+    byte[] data = value.getBytes(Charsets.UTF_8);
+
+    dos.writeInt(data.length);
+    dos.write(data);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param request
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private String readFrame(DataInputStream request) throws IOException
+  {
+    byte[] data = new byte[request.readInt()];
+
+    request.readFully(data);
+
+    return new String(data, Charsets.UTF_8);
+  }
+}
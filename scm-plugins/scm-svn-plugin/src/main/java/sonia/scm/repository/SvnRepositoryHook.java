@@ -42,9 +42,12 @@ import org.tmatesoft.svn.core.SVNCancelException;
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.internal.io.fs.FSHook;
 import org.tmatesoft.svn.core.internal.io.fs.FSHookEvent;
 import org.tmatesoft.svn.core.internal.io.fs.FSHooks;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 
 import sonia.scm.repository.spi.AbstractSvnHookChangesetProvider;
 import sonia.scm.repository.spi.HookEventFacade;
@@ -113,6 +116,7 @@ public class SvnRepositoryHook implements FSHook
         {
           long revision = Long.parseLong(args[0]);
 
+          updateRevisionIndex(directory);
           fireHook(directory,
             new SvnPostReceiveHookChangesetProvier(directory, revision));
         }
@@ -190,6 +194,39 @@ public class SvnRepositoryHook implements FSHook
     }
   }
 
+  /**
+   * Appends the new revisions to the {@link SvnRevisionIndex} of the
+   * repository. The index is only updated, if it was already created by a
+   * log command. The creation of the index for a large repository would
+   * delay the commit.
+   *
+   *
+   * @param directory repository directory
+   */
+  private void updateRevisionIndex(File directory)
+  {
+    SvnRevisionIndex index = SvnRevisionIndex.open(directory);
+
+    if (index.getRevision() > 0)
+    {
+      SVNRepository repository = null;
+
+      try
+      {
+        repository = SVNRepositoryFactory.create(SVNURL.fromFile(directory));
+        index.update(repository);
+      }
+      catch (Exception ex)
+      {
+        logger.warn("could not update revision index", ex);
+      }
+      finally
+      {
+        SvnUtil.closeSession(repository);
+      }
+    }
+  }
+
   //~--- get methods ----------------------------------------------------------
 
   /**
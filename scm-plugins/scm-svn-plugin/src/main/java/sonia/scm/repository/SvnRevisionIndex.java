@@ -0,0 +1,556 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import sonia.scm.util.IOUtil;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Persistent index of the changed paths of every revision of a subversion
+ * repository. The index is stored in the repository directory and is used to
+ * compute the total of a path filtered changelog, without reading the history
+ * from the repository. New revisions are appended to the index by the post
+ * commit hook or on the next read. A small head file holds the last indexed
+ * revision and the valid length of the index. It is replaced after every
+ * append, so an interrupted append is cut off on the next update.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public final class SvnRevisionIndex
+{
+
+  /** name of the index file in the repository directory */
+  public static final String FILENAME = "scm-revision-paths.idx";
+
+  /** number of revisions after which the head is written during an update */
+  private static final int CHECKPOINT = 10000;
+
+  /** extension of the head file */
+  private static final String EXTENSION_HEAD = ".head";
+
+  /** version of the index file format */
+  private static final int VERSION = 1;
+
+  /** locks for updates of an index */
+  private static final ConcurrentMap<File, Object> locks =
+    Maps.newConcurrentMap();
+
+  /**
+   * the logger for SvnRevisionIndex
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(SvnRevisionIndex.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param directory
+   */
+  private SvnRevisionIndex(File directory)
+  {
+    this.file = new File(directory, FILENAME);
+    this.head = new File(directory, FILENAME.concat(EXTENSION_HEAD));
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Opens the index of the given repository directory. A missing or
+   * unreadable index results in an empty index.
+   *
+   *
+   * @param directory repository directory
+   *
+   * @return index of the repository
+   */
+  public static SvnRevisionIndex open(File directory)
+  {
+    SvnRevisionIndex index = new SvnRevisionIndex(directory);
+
+    index.readHead();
+
+    return index;
+  }
+
+  /**
+   * Returns the number of revisions between start and end (both inclusive),
+   * which are reported by a strict node log of the given path. Returns -1, if
+   * the start revision is not indexed.
+   *
+   *
+   * @param path repository path
+   * @param start start revision
+   * @param end end revision, must not be greater than start
+   *
+   * @return number of revisions or -1
+   *
+   * @throws IOException
+   */
+  public int count(String path, long start, long end) throws IOException
+  {
+    if (start > revision)
+    {
+      return -1;
+    }
+
+    String target = normalize(path);
+
+    // every revision, including revision 0, is part of the root log
+    if (target.length() == 0)
+    {
+      return (int) (start - end + 1);
+    }
+
+    int count = 0;
+    DataInputStream input = null;
+
+    try
+    {
+      CountingInputStream counting = new CountingInputStream(
+                                       new BufferedInputStream(
+                                         new FileInputStream(file)));
+
+      input = new DataInputStream(counting);
+
+      // the index could be longer, if an append is in progress
+      while (counting.getCount() < length)
+      {
+        long rev = input.readLong();
+        int size = input.readInt();
+        boolean changed = false;
+        boolean created = false;
+        boolean deleted = false;
+
+        for (int i = 0; i < size; i++)
+        {
+          char type = (char) input.readByte();
+          String changedPath = input.readUTF();
+
+          if (target.equals(changedPath) || isParent(changedPath, target))
+          {
+            if ((type == SVNLogEntryPath.TYPE_ADDED)
+              || (type == SVNLogEntryPath.TYPE_REPLACED))
+            {
+              created = true;
+            }
+            else if (type == SVNLogEntryPath.TYPE_DELETED)
+            {
+              deleted = true;
+            }
+            else if (target.equals(changedPath))
+            {
+              changed = true;
+            }
+          }
+          else if (isParent(target, changedPath))
+          {
+            changed = true;
+          }
+        }
+
+        if (rev > start)
+        {
+          break;
+        }
+        else if (rev >= end)
+        {
+
+          // the history of the node starts with its creation
+          if (created)
+          {
+            count = 1;
+          }
+          else if (deleted)
+          {
+            count = 0;
+          }
+          else if (changed)
+          {
+            count++;
+          }
+        }
+      }
+    }
+    finally
+    {
+      IOUtil.close(input);
+    }
+
+    return count;
+  }
+
+  /**
+   * Appends all revisions of the repository, which are not yet indexed.
+   *
+   *
+   * @param repository subversion repository
+   *
+   * @throws IOException
+   * @throws SVNException
+   */
+  public void update(SVNRepository repository)
+    throws IOException, SVNException
+  {
+    Object lock = locks.get(file);
+
+    if (lock == null)
+    {
+      Object newLock = new Object();
+
+      lock = locks.putIfAbsent(file, newLock);
+
+      if (lock == null)
+      {
+        lock = newLock;
+      }
+    }
+
+    synchronized (lock)
+    {
+
+      // another thread could have updated the index
+      readHead();
+
+      long latest = repository.getLatestRevision();
+
+      if (latest > revision)
+      {
+        logger.debug("append revisions {} to {} to index {}", revision + 1,
+          latest, file);
+        append(repository, latest);
+      }
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the last indexed revision.
+   *
+   *
+   * @return last indexed revision
+   */
+  public long getRevision()
+  {
+    return revision;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param path
+   *
+   * @return
+   */
+  private static String normalize(String path)
+  {
+    String normalized = path;
+
+    if (!normalized.startsWith("/"))
+    {
+      normalized = "/".concat(normalized);
+    }
+
+    while (normalized.endsWith("/"))
+    {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+
+    return normalized;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param repository
+   * @param latest
+   *
+   * @throws IOException
+   * @throws SVNException
+   */
+  private void append(SVNRepository repository, long latest)
+    throws IOException, SVNException
+  {
+    truncate();
+
+    final DataOutputStream output = new DataOutputStream(
+                                      new BufferedOutputStream(
+                                        new FileOutputStream(file, true)));
+
+    try
+    {
+      repository.log(null, revision + 1, latest, true, true, 0,
+        new ISVNLogEntryHandler()
+      {
+
+        private int appended = 0;
+
+        @Override
+        public void handleLogEntry(SVNLogEntry entry) throws SVNException
+        {
+          try
+          {
+            write(output, entry);
+
+            if (++appended % CHECKPOINT == 0)
+            {
+              output.flush();
+              writeHead(entry.getRevision(), file.length());
+            }
+          }
+          catch (IOException ex)
+          {
+            throw new SVNException(
+              SVNErrorMessage.create(SVNErrorCode.IO_ERROR, ex.getMessage()),
+              ex);
+          }
+        }
+      });
+    }
+    finally
+    {
+      IOUtil.close(output);
+    }
+
+    writeHead(latest, file.length());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  private void readHead()
+  {
+    revision = 0;
+    length = 0;
+
+    if (head.exists())
+    {
+      DataInputStream input = null;
+
+      try
+      {
+        input = new DataInputStream(new FileInputStream(head));
+
+        if (input.readInt() == VERSION)
+        {
+          revision = input.readLong();
+          length = input.readLong();
+        }
+        else
+        {
+          logger.warn("unknown version of revision index {}", file);
+        }
+      }
+      catch (IOException ex)
+      {
+        logger.warn("could not read revision index, start a new one", ex);
+        revision = 0;
+        length = 0;
+      }
+      finally
+      {
+        IOUtil.close(input);
+      }
+    }
+  }
+
+  /**
+   * Cuts off everything behind the valid length of the index.
+   *
+   *
+   * @throws IOException
+   */
+  private void truncate() throws IOException
+  {
+    if (file.exists() && (file.length() != length))
+    {
+      logger.debug("truncate revision index {} to {} bytes", file, length);
+
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+      try
+      {
+        raf.setLength(length);
+      }
+      finally
+      {
+        raf.close();
+      }
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param output
+   * @param entry
+   *
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked")
+  private void write(DataOutputStream output, SVNLogEntry entry)
+    throws IOException
+  {
+    Map<String, SVNLogEntryPath> paths = entry.getChangedPaths();
+
+    output.writeLong(entry.getRevision());
+
+    if (paths == null)
+    {
+      output.writeInt(0);
+    }
+    else
+    {
+      output.writeInt(paths.size());
+
+      for (SVNLogEntryPath path : paths.values())
+      {
+        output.writeByte(path.getType());
+        output.writeUTF(path.getPath());
+      }
+    }
+  }
+
+  /**
+   * Writes the head file. The head is written to a temporary file first, to
+   * never leave a broken head behind.
+   *
+   *
+   * @param rev last indexed revision
+   * @param len valid length of the index
+   *
+   * @throws IOException
+   */
+  private void writeHead(long rev, long len) throws IOException
+  {
+    File tmp = new File(head.getParentFile(), head.getName().concat(".tmp"));
+    DataOutputStream output = null;
+
+    try
+    {
+      output = new DataOutputStream(new FileOutputStream(tmp));
+      output.writeInt(VERSION);
+      output.writeLong(rev);
+      output.writeLong(len);
+    }
+    finally
+    {
+      IOUtil.close(output);
+    }
+
+    if (!tmp.renameTo(head))
+    {
+      IOUtil.delete(head, true);
+
+      if (!tmp.renameTo(head))
+      {
+        throw new IOException("could not store revision index head");
+      }
+    }
+
+    revision = rev;
+    length = len;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns true if child is located below parent.
+   *
+   *
+   * @param parent
+   * @param child
+   *
+   * @return
+   */
+  private static boolean isParent(String parent, String child)
+  {
+    return child.startsWith(parent) && (child.length() > parent.length())
+      && (child.charAt(parent.length()) == '/');
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** index file */
+  private final File file;
+
+  /** head file */
+  private final File head;
+
+  /** valid length of the index */
+  private long length;
+
+  /** last indexed revision */
+  private long revision;
+}
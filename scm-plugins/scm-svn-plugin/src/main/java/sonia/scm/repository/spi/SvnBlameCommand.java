@@ -36,7 +36,10 @@ package sonia.scm.repository.spi;
 
 import com.google.common.collect.Lists;
 
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.io.SVNRepository;
@@ -46,23 +49,30 @@ import org.tmatesoft.svn.core.wc.SVNRevision;
 
 import sonia.scm.repository.BlameLine;
 import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.Person;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryException;
 import sonia.scm.repository.SvnBlameHandler;
+import sonia.scm.repository.SvnUtil;
 import sonia.scm.util.Util;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 
+import java.nio.charset.Charset;
+
 import java.util.List;
+import java.util.Map;
 
 /**
  *
  * @author Sebastian Sdorra
  */
-public class SvnBlameCommand extends AbstractSvnCommand implements BlameCommand
+public class SvnBlameCommand extends AbstractSvnCommand
+  implements IncrementalBlameCommand
 {
 
   /**
@@ -131,4 +141,195 @@ public class SvnBlameCommand extends AbstractSvnCommand implements BlameCommand
 
     return new BlameResult(blameLines.size(), blameLines);
   }
+
+  /**
+   * Returns the revision which has last modified the file. The revision has
+   * no previous revision, if it has added, replaced or copied the file or one
+   * of its parent directories.
+   *
+   *
+   * @param request blame request
+   *
+   * @return last change of the file or {@code null}
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public BlameChange getChange(BlameCommandRequest request)
+    throws IOException, RepositoryException
+  {
+    BlameChange change = null;
+    final List<SVNLogEntry> entries = Lists.newArrayList();
+
+    try
+    {
+      SVNRepository svnRepository = open();
+
+      svnRepository.log(new String[] { request.getPath() },
+        getRevision(svnRepository, request), 1l, true, true, 2l,
+        new ISVNLogEntryHandler()
+      {
+        @Override
+        public void handleLogEntry(SVNLogEntry entry)
+        {
+          entries.add(entry);
+        }
+      });
+    }
+    catch (SVNException ex)
+    {
+      throw new RepositoryException("could not find last change", ex);
+    }
+
+    if (!entries.isEmpty())
+    {
+      SVNLogEntry entry = entries.get(0);
+      String previousRevision = null;
+
+      if ((entries.size() > 1)
+        && !isAdded(entry.getChangedPaths(), request.getPath()))
+      {
+        previousRevision = String.valueOf(entries.get(1).getRevision());
+      }
+
+      Person author = null;
+
+      if (Util.isNotEmpty(entry.getAuthor()))
+      {
+        author = Person.toPerson(entry.getAuthor());
+      }
+
+      Long when = null;
+
+      if (entry.getDate() != null)
+      {
+        when = entry.getDate().getTime();
+      }
+
+      change = new BlameChange(String.valueOf(entry.getRevision()),
+        previousRevision, author, when, entry.getMessage());
+    }
+
+    return change;
+  }
+
+  /**
+   * Returns the lines of the file, split and decoded in the same way as the
+   * lines of the svnkit annotation.
+   *
+   *
+   * @param request blame request
+   *
+   * @return lines of the file
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Override
+  public List<String> getContent(BlameCommandRequest request)
+    throws IOException, RepositoryException
+  {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try
+    {
+      SVNRepository svnRepository = open();
+
+      svnRepository.getFile(request.getPath(),
+        getRevision(svnRepository, request), null, output);
+    }
+    catch (SVNException ex)
+    {
+      throw new RepositoryException("could not get content", ex);
+    }
+
+    byte[] content = output.toByteArray();
+    Charset charset = Charset.defaultCharset();
+    List<String> lines = Lists.newArrayList();
+    int start = 0;
+
+    for (int i = 0; i < content.length; i++)
+    {
+      if (content[i] == '\n')
+      {
+        lines.add(new String(content, start, i - start, charset));
+        start = i + 1;
+      }
+    }
+
+    // svnkit ignores an empty last line
+    if (start < content.length)
+    {
+      lines.add(new String(content, start, content.length - start, charset));
+    }
+
+    return lines;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the revision number of the request or the latest revision, if
+   * the request has no revision.
+   *
+   *
+   * @param svnRepository subversion repository
+   * @param request blame request
+   *
+   * @return revision number
+   *
+   * @throws RepositoryException
+   * @throws SVNException
+   */
+  private long getRevision(SVNRepository svnRepository,
+    BlameCommandRequest request)
+    throws RepositoryException, SVNException
+  {
+    long revision = SvnUtil.getRevisionNumber(request.getRevision());
+
+    if (revision < 0)
+    {
+      revision = svnRepository.getLatestRevision();
+    }
+
+    return revision;
+  }
+
+  /**
+   * Returns true if the file or one of its parent directories was added or
+   * replaced by the changed paths of a log entry.
+   *
+   *
+   * @param changedPaths changed paths of the log entry
+   * @param path path of the file
+   *
+   * @return true if the file was added
+   */
+  private boolean isAdded(Map<String, SVNLogEntryPath> changedPaths,
+    String path)
+  {
+    boolean added = false;
+    String absolutePath = path.startsWith("/")
+      ? path
+      : "/".concat(path);
+
+    for (SVNLogEntryPath entryPath : changedPaths.values())
+    {
+      String changedPath = entryPath.getPath();
+
+      if (((entryPath.getType() == SVNLogEntryPath.TYPE_ADDED)
+        || (entryPath.getType() == SVNLogEntryPath.TYPE_REPLACED))
+        && (absolutePath.equals(changedPath)
+          || absolutePath.startsWith(changedPath.concat("/"))))
+      {
+        added = true;
+
+        break;
+      }
+    }
+
+    return added;
+  }
 }
@@ -41,6 +41,7 @@ import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
 import org.tmatesoft.svn.core.io.SVNRepository;
@@ -49,6 +50,7 @@ import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.SvnRevisionIndex;
 import sonia.scm.repository.SvnUtil;
 import sonia.scm.util.Util;
 
@@ -168,7 +170,6 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
       SVNRepository repository = open();
       long startRev = repository.getLatestRevision();
       long endRev = 0;
-      long maxRev = startRev;
 
       if (!Strings.isNullOrEmpty(startRevision))
       {
@@ -180,50 +181,59 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
         endRev = Long.parseLong(endRevision);
       }
 
-      String[] pathArray = null;
+      int start = Math.max(request.getPagingStart(), 0);
+      int limit = Math.max(request.getPagingLimit(), 0);
+      LogEntryCollector collector;
+      int total;
 
-      if (!Strings.isNullOrEmpty(request.getPath()))
+      if (Strings.isNullOrEmpty(request.getPath()))
       {
-        pathArray = new String[] { request.getPath() };
-      }
 
-      List<SVNLogEntry> changesetList = Lists.newArrayList();
-      Collection<SVNLogEntry> entries = repository.log(pathArray, null,
-                                          startRev, endRev, true, true);
+        // every revision is part of the log, so the window can be computed
+        total = (int) Math.abs(startRev - endRev) + 1;
+        collector = new LogEntryCollector(0);
 
-      for (SVNLogEntry entry : entries)
-      {
-        if (entry.getRevision() <= maxRev)
+        if (start < total)
         {
-          changesetList.add(entry);
+          long windowStart = (startRev >= endRev)
+            ? startRev - start
+            : startRev + start;
+
+          repository.log(null, windowStart, endRev, true, true, limit,
+            collector);
         }
       }
+      else
+      {
+        String[] pathArray = new String[] { request.getPath() };
 
-      int total = changesetList.size();
-      int start = request.getPagingStart();
-      int max = request.getPagingLimit() + start;
-      int end = total;
+        collector = new LogEntryCollector(start);
+        repository.log(pathArray, startRev, endRev, true, true,
+          (limit > 0)
+          ? start + limit
+          : 0, collector);
 
-      if ((max > 0) && (end > max))
-      {
-        end = max;
-      }
+        if ((limit > 0) && (collector.getCount() >= start + limit))
+        {
+          total = countChangesets(repository, request.getPath(), startRev,
+            endRev);
+        }
+        else
+        {
 
-      if (start < 0)
-      {
-        start = 0;
+          // the log ended before the limit was reached
+          total = collector.getCount();
+        }
       }
 
       if (logger.isTraceEnabled())
       {
-        logger.trace(
-          "create sublist from {} to {} of total {} collected changesets",
-          start, end, total);
+        logger.trace("collected {} changesets from {} of total {}",
+          collector.getEntries().size(), start, total);
       }
 
-      changesetList = changesetList.subList(start, end);
       changesets = new ChangesetPagingResult(total,
-        SvnUtil.createChangesets(changesetList));
+        SvnUtil.createChangesets(collector.getEntries()));
     }
     catch (NumberFormatException ex)
     {
@@ -237,4 +247,164 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
 
     return changesets;
   }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Counts the changesets of the path. The count is taken from the
+   * {@link SvnRevisionIndex} of the repository. If the index could not be
+   * used, the log is streamed without changed paths.
+   *
+   *
+   * @param repository
+   * @param path
+   * @param startRev
+   * @param endRev
+   *
+   * @return
+   *
+   * @throws SVNException
+   */
+  private int countChangesets(SVNRepository repository, String path,
+    long startRev, long endRev)
+    throws SVNException
+  {
+    int total = -1;
+
+    if (startRev >= endRev)
+    {
+      try
+      {
+        SvnRevisionIndex index = SvnRevisionIndex.open(context.getDirectory());
+
+        index.update(repository);
+        total = index.count(path, startRev, endRev);
+      }
+      catch (IOException ex)
+      {
+        logger.warn("could not use revision index, count log entries", ex);
+      }
+    }
+
+    if (total < 0)
+    {
+      LogEntryCounter counter = new LogEntryCounter();
+
+      repository.log(new String[] { path }, startRev, endRev, false, true, 0,
+        counter);
+      total = counter.getCount();
+    }
+
+    return total;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Collects the log entries after the first skipped entries.
+   */
+  private static class LogEntryCollector implements ISVNLogEntryHandler
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param skip
+     */
+    public LogEntryCollector(int skip)
+    {
+      this.skip = skip;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @param entry
+     */
+    @Override
+    public void handleLogEntry(SVNLogEntry entry)
+    {
+      if (count++ >= skip)
+      {
+        entries.add(entry);
+      }
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns the number of received entries, including the skipped entries.
+     *
+     *
+     * @return
+     */
+    public int getCount()
+    {
+      return count;
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public List<SVNLogEntry> getEntries()
+    {
+      return entries;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final List<SVNLogEntry> entries = Lists.newArrayList();
+
+    /** Field description */
+    private final int skip;
+
+    /** Field description */
+    private int count = 0;
+  }
+
+
+  /**
+   * Counts log entries, without keeping them.
+   */
+  private static class LogEntryCounter implements ISVNLogEntryHandler
+  {
+
+    /**
+     * Method description
+     *
+     *
+     * @param entry
+     */
+    @Override
+    public void handleLogEntry(SVNLogEntry entry)
+    {
+      count++;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    public int getCount()
+    {
+      return count;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private int count = 0;
+  }
 }
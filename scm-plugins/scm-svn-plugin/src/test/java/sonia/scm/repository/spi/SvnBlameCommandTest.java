@@ -46,6 +46,8 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 
+import java.util.Arrays;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -111,6 +113,80 @@ public class SvnBlameCommandTest extends AbstractSvnCommandTestBase
     checkFirstLine(line);
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetChange() throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+
+    BlameChange change = createCommand().getChange(request);
+
+    assertNotNull(change);
+    assertEquals("5", change.getRevision());
+    assertEquals("3", change.getPreviousRevision());
+    assertEquals("added line for blame test", change.getDescription());
+    assertEquals("zaphod", change.getAuthor().getName());
+    checkDate(change.getWhen());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetChangeWithRevision()
+    throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+    request.setRevision("4");
+
+    BlameChange change = createCommand().getChange(request);
+
+    assertNotNull(change);
+    assertEquals("3", change.getRevision());
+    assertEquals("1", change.getPreviousRevision());
+
+    request.setRevision("1");
+    change = createCommand().getChange(request);
+    assertNotNull(change);
+    assertEquals("1", change.getRevision());
+    assertNull(change.getPreviousRevision());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetContent() throws IOException, RepositoryException
+  {
+    BlameCommandRequest request = new BlameCommandRequest();
+
+    request.setPath("a.txt");
+    assertEquals(Arrays.asList("a and b", "line for blame test"),
+      createCommand().getContent(request));
+
+    request.setRevision("3");
+    assertEquals(Arrays.asList("a and b"),
+      createCommand().getContent(request));
+  }
+
   /**
    * Method description
    *
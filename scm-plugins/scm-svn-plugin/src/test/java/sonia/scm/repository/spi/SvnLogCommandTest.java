@@ -40,11 +40,13 @@ import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.Modifications;
 import sonia.scm.repository.RepositoryException;
+import sonia.scm.repository.SvnRevisionIndex;
 
 import static org.junit.Assert.*;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -96,6 +98,38 @@ public class SvnLogCommandTest extends AbstractSvnCommandTestBase
     assertEquals("1", result.getChangesets().get(2).getId());
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void testGetByPathWithPaging() throws IOException, RepositoryException
+  {
+    LogCommandRequest request = new LogCommandRequest();
+
+    request.setPath("a.txt");
+    request.setPagingStart(1);
+    request.setPagingLimit(1);
+
+    ChangesetPagingResult result = createCommand().getChangesets(request);
+
+    assertNotNull(result);
+    assertEquals(3, result.getTotal());
+    assertEquals(1, result.getChangesets().size());
+    assertEquals("3", result.getChangesets().get(0).getId());
+    assertTrue("revision index should be created",
+      new File(repositoryDirectory, SvnRevisionIndex.FILENAME).exists());
+
+    // second request uses the existing index
+    request.setPagingStart(0);
+    result = createCommand().getChangesets(request);
+    assertEquals(3, result.getTotal());
+    assertEquals("5", result.getChangesets().get(0).getId());
+  }
+
   /**
    *  Method description
    *
@@ -43,7 +43,9 @@ import com.google.common.collect.Sets;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -135,12 +137,16 @@ public class MapCache<K, V>
   public Iterable<V> removeAll(Predicate<K> filter)
   {
     Set<V> values = Sets.newHashSet();
+    Iterator<Entry<K, V>> it = map.entrySet().iterator();
 
-    for (K key : map.keySet())
+    while (it.hasNext())
     {
-      if (filter.apply(key))
+      Entry<K, V> e = it.next();
+
+      if (filter.apply(e.getKey()))
       {
-        values.add(remove(key));
+        values.add(e.getValue());
+        it.remove();
       }
     }
 
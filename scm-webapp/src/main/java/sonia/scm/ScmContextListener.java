@@ -44,9 +44,11 @@ import com.google.inject.servlet.GuiceServletContextListener;
 import org.apache.shiro.guice.web.ShiroWebModule;
 
 import sonia.scm.cache.CacheManager;
+import sonia.scm.event.ScmEventBus;
 import sonia.scm.group.GroupManager;
 import sonia.scm.plugin.DefaultPluginLoader;
 import sonia.scm.repository.HealthCheckContextListener;
+import sonia.scm.repository.HealthChecker;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.store.StoreFactory;
 import sonia.scm.upgrade.UpgradeManager;
@@ -56,6 +58,8 @@ import sonia.scm.web.security.AuthenticationManager;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.Closeable;
+
 import java.util.List;
 
 import javax.servlet.ServletContext;
@@ -80,6 +84,9 @@ public class ScmContextListener extends GuiceServletContextListener
     if ((globalInjector != null) &&!startupError)
     {
 
+      // stop running health checks
+      IOUtil.close(globalInjector.getInstance(HealthChecker.class));
+
       // close RepositoryManager
       IOUtil.close(globalInjector.getInstance(RepositoryManager.class));
 
@@ -103,6 +110,14 @@ public class ScmContextListener extends GuiceServletContextListener
       globalInjector.getInstance(ServletContextListenerHolder.class)
                     .contextDestroyed(servletContextEvent);
       //J+
+
+      // stop the dispatcher threads of the event bus
+      ScmEventBus eventBus = ScmEventBus.getInstance();
+
+      if (eventBus instanceof Closeable)
+      {
+        IOUtil.close((Closeable) eventBus);
+      }
     }
 
     super.contextDestroyed(servletContextEvent);
@@ -55,6 +55,7 @@ import sonia.scm.filter.AdminSecurityFilter;
 import sonia.scm.filter.BaseUrlFilter;
 import sonia.scm.filter.GZipFilter;
 import sonia.scm.filter.SecurityFilter;
+import sonia.scm.filter.StaticResourceFilter;
 import sonia.scm.group.DefaultGroupManager;
 import sonia.scm.group.GroupDAO;
 import sonia.scm.group.GroupManager;
@@ -172,6 +173,9 @@ public class ScmServletModule extends JerseyServletModule
   /** Field description */
   public static final String PATTERN_PLUGIN_SCRIPT = "/plugins/resources/js/*";
 
+  /** Field description */
+  public static final String PATTERN_RESOURCES = "/resources/*";
+
   /** Field description */
   public static final String PATTERN_RESTAPI = "/api/rest/*";
 
@@ -328,12 +332,11 @@ public class ScmServletModule extends JerseyServletModule
       filter(PATTERN_ALL).through(LoggingFilter.class);
     }
 
-    /*
-     * filter(PATTERN_PAGE,
-     *      PATTERN_STATIC_RESOURCES).through(StaticResourceFilter.class);
-     */
     filter(PATTERN_ALL).through(BaseUrlFilter.class);
     filter(PATTERN_ALL).through(AutoLoginFilter.class);
+
+    // precompressed static resources, must be in front of the gzip filter
+    filter(PATTERN_RESOURCES).through(StaticResourceFilter.class);
     filterRegex(RESOURCE_REGEX).through(GZipFilter.class);
     filter(PATTERN_RESTAPI,
       PATTERN_DEBUG).through(ApiBasicAuthenticationFilter.class);
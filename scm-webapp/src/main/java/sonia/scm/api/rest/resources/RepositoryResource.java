@@ -53,6 +53,7 @@ import sonia.scm.repository.Branches;
 import sonia.scm.repository.BrowserResult;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.HealthCheckProgress;
 import sonia.scm.repository.HealthChecker;
 import sonia.scm.repository.Permission;
 import sonia.scm.repository.PermissionType;
@@ -233,6 +234,30 @@ public class RepositoryResource
     return response;
   }
 
+  /**
+   * Starts the health checks for all repositories in the background. The
+   * progress of the checks can be retrieved with a get request to the same
+   * url.<br />
+   * Status codes:
+   * <ul>
+   *  <li>200 checks are started or already running</li>
+   *  <li>403 forbidden, the current user has no admin privileges</li>
+   *  <li>500 internal server error</li>
+   * </ul>
+   *
+   * @return progress of the health checks
+   *
+   * @since 2.0.0
+   */
+  @POST
+  @Path("healthcheck")
+  @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+  @TypeHint(HealthCheckProgress.class)
+  public Response runAllHealthChecks()
+  {
+    return Response.ok(healthChecker.checkAll()).build();
+  }
+
   /**
    * Re run repository health checks.<br />
    * Status codes:
@@ -953,6 +978,29 @@ public class RepositoryResource
     return response;
   }
 
+  /**
+   * Returns the progress of the health checks for all repositories.<br />
+   * <br />
+   * Status codes:
+   * <ul>
+   *   <li>200 get successful</li>
+   *   <li>403 forbidden, the current user has no admin privileges</li>
+   *   <li>500 internal server error</li>
+   * </ul>
+   *
+   * @return progress of the health checks
+   *
+   * @since 2.0.0
+   */
+  @GET
+  @Path("healthcheck")
+  @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+  @TypeHint(HealthCheckProgress.class)
+  public Response getHealthCheckProgress()
+  {
+    return Response.ok(healthChecker.getProgress()).build();
+  }
+
   /**
    * Returns all {@link Tags} of a repository.<br />
    * <br />
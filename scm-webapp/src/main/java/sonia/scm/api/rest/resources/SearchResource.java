@@ -35,24 +35,18 @@ package sonia.scm.api.rest.resources;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import com.github.legman.Subscribe;
-
 import com.google.common.base.Function;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import org.codehaus.enunciate.modules.jersey.ExternallyManagedLifecycle;
 
-import sonia.scm.cache.Cache;
-import sonia.scm.cache.CacheManager;
 import sonia.scm.group.Group;
-import sonia.scm.group.GroupEvent;
 import sonia.scm.group.GroupManager;
 import sonia.scm.search.SearchHandler;
 import sonia.scm.search.SearchResult;
 import sonia.scm.search.SearchResults;
 import sonia.scm.user.User;
-import sonia.scm.user.UserEvent;
 import sonia.scm.user.UserManager;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -73,12 +67,6 @@ import javax.ws.rs.core.MediaType;
 public class SearchResource
 {
 
-  /** Field description */
-  public static final String CACHE_GROUP = "sonia.cache.search.groups";
-
-  /** Field description */
-  public static final String CACHE_USER = "sonia.cache.search.users";
-
   //~--- constructors ---------------------------------------------------------
 
   /**
@@ -87,58 +75,16 @@ public class SearchResource
    *
    * @param userManager
    * @param groupManager
-   * @param cacheManager
    */
   @Inject
-  public SearchResource(UserManager userManager, GroupManager groupManager,
-    CacheManager cacheManager)
+  public SearchResource(UserManager userManager, GroupManager groupManager)
   {
-
-    // create user searchhandler
-    Cache<String, SearchResults> userCache = cacheManager.getCache(CACHE_USER);
-
-    this.userSearchHandler = new SearchHandler<User>(userCache, userManager);
-
-    // create group searchhandler
-    Cache<String, SearchResults> groupCache =
-      cacheManager.getCache(CACHE_GROUP);
-
-    this.groupSearchHandler = new SearchHandler<Group>(groupCache,
-      groupManager);
+    this.userSearchHandler = new SearchHandler<User>(userManager);
+    this.groupSearchHandler = new SearchHandler<Group>(groupManager);
   }
 
   //~--- methods --------------------------------------------------------------
 
-  /**
-   * Method description
-   *
-   *
-   * @param event
-   */
-  @Subscribe
-  public void onEvent(UserEvent event)
-  {
-    if (event.getEventType().isPost())
-    {
-      userSearchHandler.clearCache();
-    }
-  }
-
-  /**
-   * Method description
-   *
-   *
-   * @param event
-   */
-  @Subscribe
-  public void onEvent(GroupEvent event)
-  {
-    if (event.getEventType().isPost())
-    {
-      groupSearchHandler.clearCache();
-    }
-  }
-
   /**
    * Returns a list of groups found by the given search string.<br />
    * <br />
@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import sonia.scm.io.DeepCopy;
+import sonia.scm.repository.BlameLine;
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.Modifications;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.SubRepository;
+import sonia.scm.security.RepositoryAuthorizationInfo;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of {@link Copier}s for cached values. The copier is selected by the
+ * exact class of the value. Values without a registered copier are copied with
+ * a serialization round trip by {@link DeepCopy}, which is much slower and
+ * allocates a lot more memory than a structural copy.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public final class Copiers
+{
+
+  /** returns the original object, for immutable types */
+  private static final Copier<Object> IDENTITY = new Copier<Object>()
+  {
+    @Override
+    public Object copy(Object object)
+    {
+      return object;
+    }
+  };
+
+  /** copier for {@link Person} */
+  private static final Copier<Person> PERSON = new Copier<Person>()
+  {
+    @Override
+    public Person copy(Person person)
+    {
+      return new Person(person.getName(), person.getMail());
+    }
+  };
+
+  /** copier for {@link Modifications} */
+  private static final Copier<Modifications> MODIFICATIONS =
+    new Copier<Modifications>()
+  {
+    @Override
+    public Modifications copy(Modifications modifications)
+    {
+      return new Modifications(copyStrings(modifications.getAdded()),
+        copyStrings(modifications.getModified()),
+        copyStrings(modifications.getRemoved()));
+    }
+  };
+
+  /** copier for {@link Changeset} */
+  private static final Copier<Changeset> CHANGESET = new Copier<Changeset>()
+  {
+    @Override
+    public Changeset copy(Changeset changeset)
+    {
+      Changeset copy = new Changeset(changeset.getId(), changeset.getDate(),
+                         copyNullable(PERSON, changeset.getAuthor()),
+                         changeset.getDescription());
+
+      copy.setBranches(copyStrings(changeset.getBranches()));
+      copy.setParents(copyStrings(changeset.getParents()));
+      copy.setTags(copyStrings(changeset.getTags()));
+      copy.setModifications(MODIFICATIONS.copy(changeset.getModifications()));
+      copy.setProperties(Maps.newHashMap(changeset.getProperties()));
+
+      return copy;
+    }
+  };
+
+  /** copier for {@link ChangesetPagingResult} */
+  private static final Copier<ChangesetPagingResult> CHANGESET_PAGING_RESULT =
+    new Copier<ChangesetPagingResult>()
+  {
+    @Override
+    public ChangesetPagingResult copy(ChangesetPagingResult result)
+    {
+      return new ChangesetPagingResult(result.getTotal(),
+        copyList(CHANGESET, result.getChangesets()));
+    }
+  };
+
+  /** copier for {@link SubRepository} */
+  private static final Copier<SubRepository> SUB_REPOSITORY =
+    new Copier<SubRepository>()
+  {
+    @Override
+    public SubRepository copy(SubRepository sub)
+    {
+      return new SubRepository(sub.getRepositoryUrl(), sub.getBrowserUrl(),
+        sub.getRevision());
+    }
+  };
+
+  /** copier for {@link FileObject} */
+  private static final Copier<FileObject> FILE_OBJECT =
+    new Copier<FileObject>()
+  {
+    @Override
+    public FileObject copy(FileObject file)
+    {
+      FileObject copy = new FileObject();
+
+      copy.setName(file.getName());
+      copy.setPath(file.getPath());
+      copy.setDirectory(file.isDirectory());
+      copy.setDescription(file.getDescription());
+      copy.setLength(file.getLength());
+      copy.setLastModified(file.getLastModified());
+      copy.setSubRepository(copyNullable(SUB_REPOSITORY,
+        file.getSubRepository()));
+
+      return copy;
+    }
+  };
+
+  /** copier for {@link BrowserResult} */
+  private static final Copier<BrowserResult> BROWSER_RESULT =
+    new Copier<BrowserResult>()
+  {
+    @Override
+    public BrowserResult copy(BrowserResult result)
+    {
+      return new BrowserResult(result.getRevision(), result.getTag(),
+        result.getBranch(), copyList(FILE_OBJECT, result.getFiles()));
+    }
+  };
+
+  /** copier for {@link BlameLine} */
+  private static final Copier<BlameLine> BLAME_LINE = new Copier<BlameLine>()
+  {
+    @Override
+    public BlameLine copy(BlameLine line)
+    {
+      return new BlameLine(line.getLineNumber(), line.getRevision(),
+        line.getWhen(), copyNullable(PERSON, line.getAuthor()),
+        line.getDescription(), line.getCode());
+    }
+  };
+
+  /** copier for {@link BlameResult} */
+  private static final Copier<BlameResult> BLAME_RESULT =
+    new Copier<BlameResult>()
+  {
+    @Override
+    public BlameResult copy(BlameResult result)
+    {
+      return new BlameResult(result.getTotal(),
+        copyList(BLAME_LINE, result.getBlameLines()));
+    }
+  };
+
+  /** registered copiers by type */
+  private static final ConcurrentMap<Class<?>, Copier<?>> copiers =
+    new ConcurrentHashMap<Class<?>, Copier<?>>();
+
+  static
+  {
+    register(String.class, IDENTITY);
+    register(Integer.class, IDENTITY);
+    register(Long.class, IDENTITY);
+    register(Boolean.class, IDENTITY);
+
+    // authorization infos are frozen after construction
+    register(RepositoryAuthorizationInfo.class, IDENTITY);
+
+    register(Person.class, PERSON);
+    register(Modifications.class, MODIFICATIONS);
+    register(Changeset.class, CHANGESET);
+    register(ChangesetPagingResult.class, CHANGESET_PAGING_RESULT);
+    register(SubRepository.class, SUB_REPOSITORY);
+    register(FileObject.class, FILE_OBJECT);
+    register(BrowserResult.class, BROWSER_RESULT);
+    register(BlameLine.class, BLAME_LINE);
+    register(BlameResult.class, BLAME_RESULT);
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Copiers() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns a copy of the given object. The copy is created by the copier,
+   * which is registered for the class of the object, or by {@link DeepCopy}
+   * if no copier is registered.
+   *
+   *
+   * @param object object to copy
+   * @param <T> type of the object
+   *
+   * @return copy of the object or {@code null}
+   *
+   * @throws CacheException if the object could not be copied
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T copy(T object)
+  {
+    T copy = null;
+
+    if (object != null)
+    {
+      Copier<T> copier = (Copier<T>) copiers.get(object.getClass());
+
+      if (copier != null)
+      {
+        copy = copier.copy(object);
+      }
+      else
+      {
+        copy = deepCopy(object);
+      }
+    }
+
+    return copy;
+  }
+
+  /**
+   * Registers a copier for the given type. The copier is only used for
+   * objects of exactly this type, subclasses are not affected.
+   *
+   *
+   * @param type type of the objects
+   * @param copier copier for the type
+   * @param <T> type of the objects
+   */
+  public static <T> void register(Class<T> type, Copier<? super T> copier)
+  {
+    copiers.put(type, copier);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param copier
+   * @param list
+   * @param <T>
+   *
+   * @return
+   */
+  private static <T> List<T> copyList(Copier<T> copier, List<T> list)
+  {
+    List<T> copy = null;
+
+    if (list != null)
+    {
+      copy = Lists.newArrayListWithCapacity(list.size());
+
+      for (T item : list)
+      {
+        copy.add(copyNullable(copier, item));
+      }
+    }
+
+    return copy;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param copier
+   * @param object
+   * @param <T>
+   *
+   * @return
+   */
+  private static <T> T copyNullable(Copier<T> copier, T object)
+  {
+    return (object != null)
+      ? copier.copy(object)
+      : null;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param list
+   *
+   * @return
+   */
+  private static List<String> copyStrings(List<String> list)
+  {
+    return (list != null)
+      ? Lists.newArrayList(list)
+      : null;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param object
+   * @param <T>
+   *
+   * @return
+   */
+  private static <T> T deepCopy(T object)
+  {
+    try
+    {
+      return DeepCopy.copy(object);
+    }
+    catch (IOException ex)
+    {
+      throw new CacheException(
+        "could not create a copy of ".concat(object.toString()), ex);
+    }
+  }
+}
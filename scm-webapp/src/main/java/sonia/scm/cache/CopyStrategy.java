@@ -32,14 +32,8 @@
 
 package sonia.scm.cache;
 
-//~--- non-JDK imports --------------------------------------------------------
-
-import sonia.scm.io.DeepCopy;
-
 //~--- JDK imports ------------------------------------------------------------
 
-import java.io.IOException;
-
 import java.util.Locale;
 
 /**
@@ -132,7 +126,8 @@ public enum CopyStrategy
   //~--- methods --------------------------------------------------------------
 
   /**
-   * Method description
+   * Creates a copy of the object with the {@link Copier} which is registered
+   * for the type of the object.
    *
    *
    * @param object
@@ -142,19 +137,7 @@ public enum CopyStrategy
    */
   private <T> T deepCopy(T object)
   {
-    T copy = null;
-
-    try
-    {
-      copy = DeepCopy.copy(object);
-    }
-    catch (IOException ex)
-    {
-      throw new CacheException(
-        "could not create a copy of ".concat(object.toString()), ex);
-    }
-
-    return copy;
+    return Copiers.copy(object);
   }
 
   //~--- fields ---------------------------------------------------------------
@@ -0,0 +1,705 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import sonia.scm.repository.BlameLine;
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.Modifications;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.SubRepository;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the values, which are stored in the disk tier of
+ * a cache. Supported are {@link ChangesetPagingResult}, {@link BlameResult}
+ * and {@link BrowserResult}. Strings and lengths are written with a variable
+ * length prefix, {@code null} values are encoded in the prefix.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+final class DiskCacheCodec
+{
+
+  /** type of a {@link BlameResult} */
+  private static final byte TYPE_BLAME = 2;
+
+  /** type of a {@link BrowserResult} */
+  private static final byte TYPE_BROWSER = 3;
+
+  /** type of a {@link ChangesetPagingResult} */
+  private static final byte TYPE_CHANGESETS = 1;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private DiskCacheCodec() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Decodes a value, which was encoded by {@link #encode(Object)}.
+   *
+   *
+   * @param data encoded value
+   *
+   * @return decoded value
+   *
+   * @throws IOException if the data is not a valid encoded value
+   */
+  static Object decode(byte[] data) throws IOException
+  {
+    DataInputStream in =
+      new DataInputStream(new ByteArrayInputStream(data));
+    Object value;
+    byte type = in.readByte();
+
+    switch (type)
+    {
+      case TYPE_CHANGESETS :
+        value = readChangesets(in);
+
+        break;
+
+      case TYPE_BLAME :
+        value = readBlame(in);
+
+        break;
+
+      case TYPE_BROWSER :
+        value = readBrowser(in);
+
+        break;
+
+      default :
+        throw new IOException("unknown type ".concat(String.valueOf(type)));
+    }
+
+    return value;
+  }
+
+  /**
+   * Encodes the value or returns {@code null}, if the type of the value is
+   * not supported.
+   *
+   *
+   * @param value value to encode
+   *
+   * @return encoded value or {@code null}
+   */
+  static byte[] encode(Object value)
+  {
+    byte[] data = null;
+
+    try
+    {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+      DataOutputStream out = new DataOutputStream(baos);
+
+      if (value instanceof ChangesetPagingResult)
+      {
+        out.writeByte(TYPE_CHANGESETS);
+        writeChangesets(out, (ChangesetPagingResult) value);
+        data = baos.toByteArray();
+      }
+      else if (value instanceof BlameResult)
+      {
+        out.writeByte(TYPE_BLAME);
+        writeBlame(out, (BlameResult) value);
+        data = baos.toByteArray();
+      }
+      else if (value instanceof BrowserResult)
+      {
+        out.writeByte(TYPE_BROWSER);
+        writeBrowser(out, (BrowserResult) value);
+        data = baos.toByteArray();
+      }
+    }
+    catch (IOException ex)
+    {
+
+      // a ByteArrayOutputStream does not throw IOExceptions
+      throw new CacheException("could not encode value", ex);
+    }
+
+    return data;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param in
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private static BlameResult readBlame(DataInputStream in) throws IOException
+  {
+    int total = readLength(in);
+    int size = readLength(in);
+    List<BlameLine> lines = null;
+
+    if (size >= 0)
+    {
+      lines = Lists.newArrayListWithCapacity(size);
+
+      for (int i = 0; i < size; i++)
+      {
+        lines.add(new BlameLine(readLength(in), readString(in), readLong(in),
+          readPerson(in), readString(in), readString(in)));
+      }
+    }
+
+    return new BlameResult(total, lines);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param in
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private static BrowserResult readBrowser(DataInputStream in)
+    throws IOException
+  {
+    String revision = readString(in);
+    String tag = readString(in);
+    String branch = readString(in);
+    int size = readLength(in);
+    List<FileObject> files = null;
+
+    if (size >= 0)
+    {
+      files = Lists.newArrayListWithCapacity(size);
+
+      for (int i = 0; i < size; i++)
+      {
+        FileObject file = new FileObject();
+
+        file.setName(readString(in));
+        file.setPath(readString(in));
+        file.setDirectory(in.readBoolean());
+        file.setDescription(readString(in));
+        file.setLength(in.readLong());
+        file.setLastModified(readLong(in));
+
+        if (in.readBoolean())
+        {
+          file.setSubRepository(new SubRepository(readString(in),
+            readString(in), readString(in)));
+        }
+
+        files.add(file);
+      }
+    }
+
+    return new BrowserResult(revision, tag, branch, files);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param in
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private static ChangesetPagingResult readChangesets(DataInputStream in)
+    throws IOException
+  {
+    int total = readLength(in);
+    int size = readLength(in);
+    List<Changeset> changesets = null;
+
+    if (size >= 0)
+    {
+      changesets = Lists.newArrayListWithCapacity(size);
+
+      for (int i = 0; i < size; i++)
+      {
+        Changeset c = new Changeset(readString(in), readLong(in),
+                        readPerson(in), readString(in));
+
+        c.setBranches(readStrings(in));
+        c.setParents(readStrings(in));
+        c.setTags(readStrings(in));
+
+        if (in.readBoolean())
+        {
+          c.setModifications(new Modifications(readStrings(in),
+            readStrings(in), readStrings(in)));
+        }
+
+        int properties = readLength(in);
+
+        if (properties >= 0)
+        {
+          Map<String, String> map = Maps.newHashMap();
+
+          for (int j = 0; j < properties; j++)
+          {
+            map.put(readString(in), readString(in));
+          }
+
+          c.setProperties(map);
+        }
+
+        changesets.add(c);
+      }
+    }
+
+    return new ChangesetPagingResult(total, changesets);
+  }
+
+  /**
+   * Reads a length, which was written by {@link #writeLength}.
+   *
+   *
+   * @param in
+   *
+   * @return length or -1 for {@code null}
+   *
+   * @throws IOException
+   */
+  private static int readLength(DataInputStream in) throws IOException
+  {
+    int value = 0;
+    int shift = 0;
+    int b;
+
+    do
+    {
+      if (shift > 28)
+      {
+        throw new IOException("malformed length");
+      }
+
+      b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    }
+    while ((b & 0x80) != 0);
+
+    return value - 1;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param in
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private static Long readLong(DataInputStream in) throws IOException
+  {
+    Long value = null;
+
+    if (in.readBoolean())
+    {
+      value = in.readLong();
+    }
+
+    return value;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param in
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private static Person readPerson(DataInputStream in) throws IOException
+  {
+    Person person = null;
+
+    if (in.readBoolean())
+    {
+      person = new Person(readString(in), readString(in));
+    }
+
+    return person;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param in
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private static String readString(DataInputStream in) throws IOException
+  {
+    String value = null;
+    int length = readLength(in);
+
+    if (length >= 0)
+    {
+      byte[] buffer = new byte[length];
+
+      in.readFully(buffer);
+      value = new String(buffer, Charsets.UTF_8);
+    }
+
+    return value;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param in
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private static List<String> readStrings(DataInputStream in)
+    throws IOException
+  {
+    List<String> values = null;
+    int size = readLength(in);
+
+    if (size >= 0)
+    {
+      values = Lists.newArrayListWithCapacity(size);
+
+      for (int i = 0; i < size; i++)
+      {
+        values.add(readString(in));
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param out
+   * @param result
+   *
+   * @throws IOException
+   */
+  private static void writeBlame(DataOutputStream out, BlameResult result)
+    throws IOException
+  {
+    writeLength(out, result.getTotal());
+
+    List<BlameLine> lines = result.getBlameLines();
+
+    writeLength(out, (lines != null)
+      ? lines.size()
+      : -1);
+
+    if (lines != null)
+    {
+      for (BlameLine line : lines)
+      {
+        writeLength(out, line.getLineNumber());
+        writeString(out, line.getRevision());
+        writeLong(out, line.getWhen());
+        writePerson(out, line.getAuthor());
+        writeString(out, line.getDescription());
+        writeString(out, line.getCode());
+      }
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param out
+   * @param result
+   *
+   * @throws IOException
+   */
+  private static void writeBrowser(DataOutputStream out, BrowserResult result)
+    throws IOException
+  {
+    writeString(out, result.getRevision());
+    writeString(out, result.getTag());
+    writeString(out, result.getBranch());
+
+    List<FileObject> files = result.getFiles();
+
+    writeLength(out, (files != null)
+      ? files.size()
+      : -1);
+
+    if (files != null)
+    {
+      for (FileObject file : files)
+      {
+        writeString(out, file.getName());
+        writeString(out, file.getPath());
+        out.writeBoolean(file.isDirectory());
+        writeString(out, file.getDescription());
+        out.writeLong(file.getLength());
+        writeLong(out, file.getLastModified());
+
+        SubRepository sub = file.getSubRepository();
+
+        out.writeBoolean(sub != null);
+
+        if (sub != null)
+        {
+          writeString(out, sub.getRepositoryUrl());
+          writeString(out, sub.getBrowserUrl());
+          writeString(out, sub.getRevision());
+        }
+      }
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param out
+   * @param result
+   *
+   * @throws IOException
+   */
+  private static void writeChangesets(DataOutputStream out,
+    ChangesetPagingResult result)
+    throws IOException
+  {
+    writeLength(out, result.getTotal());
+
+    List<Changeset> changesets = result.getChangesets();
+
+    writeLength(out, (changesets != null)
+      ? changesets.size()
+      : -1);
+
+    if (changesets != null)
+    {
+      for (Changeset c : changesets)
+      {
+        writeString(out, c.getId());
+        writeLong(out, c.getDate());
+        writePerson(out, c.getAuthor());
+        writeString(out, c.getDescription());
+        writeStrings(out, c.getBranches());
+        writeStrings(out, c.getParents());
+        writeStrings(out, c.getTags());
+
+        Modifications modifications = c.getModifications();
+
+        out.writeBoolean(modifications != null);
+
+        if (modifications != null)
+        {
+          writeStrings(out, modifications.getAdded());
+          writeStrings(out, modifications.getModified());
+          writeStrings(out, modifications.getRemoved());
+        }
+
+        Map<String, String> properties = c.getProperties();
+
+        writeLength(out, (properties != null)
+          ? properties.size()
+          : -1);
+
+        if (properties != null)
+        {
+          for (Map.Entry<String, String> e : properties.entrySet())
+          {
+            writeString(out, e.getKey());
+            writeString(out, e.getValue());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the length plus one as unsigned variable length integer. A length
+   * of -1 is used for {@code null}.
+   *
+   *
+   * @param out
+   * @param length
+   *
+   * @throws IOException
+   */
+  private static void writeLength(DataOutputStream out, int length)
+    throws IOException
+  {
+    int value = length + 1;
+
+    while ((value & ~0x7F) != 0)
+    {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+
+    out.writeByte(value);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param out
+   * @param value
+   *
+   * @throws IOException
+   */
+  private static void writeLong(DataOutputStream out, Long value)
+    throws IOException
+  {
+    out.writeBoolean(value != null);
+
+    if (value != null)
+    {
+      out.writeLong(value);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param out
+   * @param person
+   *
+   * @throws IOException
+   */
+  private static void writePerson(DataOutputStream out, Person person)
+    throws IOException
+  {
+    out.writeBoolean(person != null);
+
+    if (person != null)
+    {
+      writeString(out, person.getName());
+      writeString(out, person.getMail());
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param out
+   * @param value
+   *
+   * @throws IOException
+   */
+  private static void writeString(DataOutputStream out, String value)
+    throws IOException
+  {
+    if (value == null)
+    {
+      writeLength(out, -1);
+    }
+    else
+    {
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+
+      writeLength(out, bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param out
+   * @param values
+   *
+   * @throws IOException
+   */
+  private static void writeStrings(DataOutputStream out, List<String> values)
+    throws IOException
+  {
+    if (values == null)
+    {
+      writeLength(out, -1);
+    }
+    else
+    {
+      writeLength(out, values.size());
+
+      for (String value : values)
+      {
+        writeString(out, value);
+      }
+    }
+  }
+}
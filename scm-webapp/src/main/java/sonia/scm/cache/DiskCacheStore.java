@@ -0,0 +1,783 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sonia.scm.util.IOUtil;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent byte store for the disk tier of a cache. The entries are
+ * appended to memory mapped segment files of a fixed size. The index of the
+ * entries is kept in memory and is rebuilt from the segments, when the store
+ * is opened. If the segments exceed the maximum size, the oldest segment is
+ * deleted with all its entries.
+ * <p>
+ * Each record of a segment starts with the length of the key, the length of
+ * the value and a crc32 checksum of both, followed by the key and the value.
+ * A record with a key length of zero marks the end of the segment, a value
+ * length of -1 marks a removed key. Reads do not block, writes are
+ * serialized.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+final class DiskCacheStore implements Closeable
+{
+
+  /** default size of a segment */
+  static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  /** magic number at the start of each segment */
+  private static final int MAGIC = 0x53434D43;
+
+  /** minimum size of a segment */
+  private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+  /** size of the segment header */
+  private static final int SEGMENT_HEADER = 8;
+
+  /** file extension of the segments */
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  /** size of the record header */
+  private static final int RECORD_HEADER = 12;
+
+  /** version of the segment format */
+  private static final int VERSION = 1;
+
+  /**
+   * the logger for DiskCacheStore
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(DiskCacheStore.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param directory
+   * @param maximumSize
+   * @param segmentSize
+   */
+  private DiskCacheStore(File directory, long maximumSize, int segmentSize)
+  {
+    this.directory = directory;
+    this.maximumSize = maximumSize;
+    this.segmentSize = segmentSize;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Opens the store in the given directory and rebuilds the index from the
+   * existing segments. The segment size is derived from the maximum size.
+   *
+   *
+   * @param directory directory of the segments
+   * @param maximumSize maximum size of all segments in bytes
+   *
+   * @return store
+   *
+   * @throws IOException
+   */
+  static DiskCacheStore open(File directory, long maximumSize)
+    throws IOException
+  {
+    long size = Math.min(DEFAULT_SEGMENT_SIZE, maximumSize / 4);
+
+    return open(directory, maximumSize,
+      (int) Math.max(MIN_SEGMENT_SIZE, size));
+  }
+
+  /**
+   * Opens the store in the given directory and rebuilds the index from the
+   * existing segments.
+   *
+   *
+   * @param directory directory of the segments
+   * @param maximumSize maximum size of all segments in bytes
+   * @param segmentSize size of a new segment in bytes
+   *
+   * @return store
+   *
+   * @throws IOException
+   */
+  static DiskCacheStore open(File directory, long maximumSize,
+    int segmentSize)
+    throws IOException
+  {
+    IOUtil.mkdirs(directory);
+
+    DiskCacheStore store = new DiskCacheStore(directory, maximumSize,
+                             segmentSize);
+
+    store.load();
+
+    return store;
+  }
+
+  /**
+   * Removes all entries and deletes the segments.
+   *
+   */
+  synchronized void clear()
+  {
+    index.clear();
+
+    for (Segment segment : segments)
+    {
+      segment.delete();
+    }
+
+    segments.clear();
+  }
+
+  /**
+   * Flushes the segments to disk.
+   *
+   */
+  @Override
+  public synchronized void close()
+  {
+    for (Segment segment : segments)
+    {
+      segment.buffer.force();
+    }
+  }
+
+  /**
+   * Returns true if the store contains a value for the key.
+   *
+   *
+   * @param key key of the value
+   *
+   * @return true if the key is stored
+   */
+  boolean contains(String key)
+  {
+    return index.containsKey(key);
+  }
+
+  /**
+   * Returns the stored value or {@code null}.
+   *
+   *
+   * @param key key of the value
+   *
+   * @return value or {@code null}
+   */
+  byte[] get(String key)
+  {
+    byte[] value = null;
+    Location location = index.get(key);
+
+    if (location != null)
+    {
+      ByteBuffer buffer = location.segment.buffer.duplicate();
+
+      buffer.position(location.offset);
+      value = new byte[location.length];
+      buffer.get(value);
+    }
+
+    return value;
+  }
+
+  /**
+   * Stores the value. Values, which do not fit into a single segment, are
+   * ignored.
+   *
+   *
+   * @param key key of the value
+   * @param value value
+   *
+   * @throws IOException
+   */
+  synchronized void put(String key, byte[] value) throws IOException
+  {
+    byte[] keyBytes = key.getBytes(Charsets.UTF_8);
+    int offset = append(keyBytes, value, value.length);
+
+    if (offset >= 0)
+    {
+      index.put(key, new Location(current(), offset, value.length));
+    }
+    else if (logger.isDebugEnabled())
+    {
+      logger.debug("value of {} is too large for the disk store", key);
+    }
+  }
+
+  /**
+   * Removes the value from the store.
+   *
+   *
+   * @param key key of the value
+   *
+   * @throws IOException
+   */
+  synchronized void remove(String key) throws IOException
+  {
+    if (index.remove(key) != null)
+    {
+      append(key.getBytes(Charsets.UTF_8), new byte[0], -1);
+    }
+  }
+
+  /**
+   * Removes all values with a matching key from the store.
+   *
+   *
+   * @param filter filter for the keys
+   *
+   * @return number of removed values
+   *
+   * @throws IOException
+   */
+  synchronized int removeAll(Predicate<String> filter) throws IOException
+  {
+    List<String> keys = Lists.newArrayList();
+
+    for (String key : index.keySet())
+    {
+      if (filter.apply(key))
+      {
+        keys.add(key);
+      }
+    }
+
+    for (String key : keys)
+    {
+      remove(key);
+    }
+
+    return keys.size();
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of stored entries.
+   *
+   *
+   * @return number of entries
+   */
+  int getEntryCount()
+  {
+    return index.size();
+  }
+
+  /**
+   * Returns the size of all segments in bytes.
+   *
+   *
+   * @return size in bytes
+   */
+  synchronized long getSize()
+  {
+    long size = 0;
+
+    for (Segment segment : segments)
+    {
+      size += segment.buffer.capacity();
+    }
+
+    return size;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Appends a record to the current segment and starts a new segment, if the
+   * record does not fit. Returns the offset of the value or -1, if the record
+   * is larger than a segment.
+   *
+   *
+   * @param key key of the record
+   * @param value value of the record
+   * @param length length of the value or -1 for a removed key
+   *
+   * @return offset of the value or -1
+   *
+   * @throws IOException
+   */
+  private int append(byte[] key, byte[] value, int length) throws IOException
+  {
+    int offset = -1;
+    int recordSize = RECORD_HEADER + key.length + value.length;
+
+    if (SEGMENT_HEADER + recordSize <= segmentSize)
+    {
+      Segment segment = current();
+
+      if ((segment == null)
+        || (segment.position + recordSize > segment.buffer.capacity()))
+      {
+        segment = createSegment();
+      }
+
+      CRC32 crc = new CRC32();
+
+      crc.update(key);
+      crc.update(value);
+
+      ByteBuffer buffer = segment.buffer.duplicate();
+
+      buffer.position(segment.position);
+      buffer.putInt(key.length);
+      buffer.putInt(length);
+      buffer.putInt((int) crc.getValue());
+      buffer.put(key);
+      buffer.put(value);
+
+      // mark the end of the segment
+      if (buffer.remaining() >= 4)
+      {
+        buffer.putInt(0);
+      }
+
+      offset = segment.position + RECORD_HEADER + key.length;
+      segment.position += recordSize;
+    }
+
+    return offset;
+  }
+
+  /**
+   * Creates a new segment and deletes the oldest segments, if the maximum size
+   * is exceeded.
+   *
+   *
+   * @return new segment
+   *
+   * @throws IOException
+   */
+  private Segment createSegment() throws IOException
+  {
+    Segment last = current();
+    long id = (last != null)
+      ? last.id + 1
+      : 1;
+    File file = new File(directory, String.valueOf(id).concat(SEGMENT_SUFFIX));
+    Segment segment = new Segment(id, file, map(file, segmentSize));
+
+    segment.buffer.putInt(MAGIC);
+    segment.buffer.putInt(VERSION);
+    segment.buffer.putInt(0);
+    segment.position = SEGMENT_HEADER;
+    segments.add(segment);
+
+    while ((segments.size() > 1)
+      && ((long) segments.size() * segmentSize > maximumSize))
+    {
+      evict(segments.removeFirst());
+    }
+
+    return segment;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private Segment current()
+  {
+    return segments.isEmpty()
+      ? null
+      : segments.getLast();
+  }
+
+  /**
+   * Removes all entries of the segment from the index and deletes the
+   * segment.
+   *
+   *
+   * @param segment
+   */
+  private void evict(Segment segment)
+  {
+    logger.debug("evict segment {} of disk store {}", segment.file,
+      directory);
+
+    Iterator<Location> it = index.values().iterator();
+
+    while (it.hasNext())
+    {
+      if (it.next().segment == segment)
+      {
+        it.remove();
+      }
+    }
+
+    segment.delete();
+  }
+
+  /**
+   * Reads all segments and rebuilds the index. Invalid segments are deleted,
+   * the records of a segment are read until the first invalid record.
+   *
+   *
+   * @throws IOException
+   */
+  private void load() throws IOException
+  {
+    File[] files = directory.listFiles(new FileFilter()
+    {
+
+      @Override
+      public boolean accept(File file)
+      {
+        return file.isFile() && file.getName().endsWith(SEGMENT_SUFFIX);
+      }
+    });
+
+    if (files != null)
+    {
+      List<Segment> loaded = Lists.newArrayList();
+
+      for (File file : files)
+      {
+        Segment segment = loadSegment(file);
+
+        if (segment != null)
+        {
+          loaded.add(segment);
+        }
+        else
+        {
+          logger.warn("delete invalid segment {}", file);
+          IOUtil.delete(file, true);
+        }
+      }
+
+      Collections.sort(loaded, new Comparator<Segment>()
+      {
+
+        @Override
+        public int compare(Segment s1, Segment s2)
+        {
+          return (s1.id < s2.id)
+            ? -1
+            : ((s1.id == s2.id)
+              ? 0
+              : 1);
+        }
+      });
+
+      for (Segment segment : loaded)
+      {
+        segments.add(segment);
+        scan(segment);
+      }
+
+      while ((segments.size() > 1)
+        && ((long) segments.size() * segmentSize > maximumSize))
+      {
+        evict(segments.removeFirst());
+      }
+    }
+
+    logger.info("loaded {} entries from disk store {}", index.size(),
+      directory);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param file
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private Segment loadSegment(File file) throws IOException
+  {
+    Segment segment = null;
+    String name = file.getName();
+
+    try
+    {
+      long id = Long.parseLong(name.substring(0,
+                  name.length() - SEGMENT_SUFFIX.length()));
+      long length = file.length();
+
+      if ((length > SEGMENT_HEADER) && (length <= Integer.MAX_VALUE))
+      {
+        MappedByteBuffer buffer = map(file, (int) length);
+
+        if ((buffer.getInt() == MAGIC) && (buffer.getInt() == VERSION))
+        {
+          segment = new Segment(id, file, buffer);
+        }
+      }
+    }
+    catch (NumberFormatException ex)
+    {
+      logger.trace("segment name is not a number", ex);
+    }
+
+    return segment;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param file
+   * @param size
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private MappedByteBuffer map(File file, int size) throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+    try
+    {
+      raf.setLength(size);
+
+      // the mapping stays valid after the channel is closed
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    finally
+    {
+      IOUtil.close(raf);
+    }
+  }
+
+  /**
+   * Reads the records of the segment into the index.
+   *
+   *
+   * @param segment
+   */
+  private void scan(Segment segment)
+  {
+    ByteBuffer buffer = segment.buffer.duplicate();
+    int position = SEGMENT_HEADER;
+
+    buffer.position(position);
+
+    while (buffer.remaining() >= RECORD_HEADER)
+    {
+      int keyLength = buffer.getInt();
+      int length = buffer.getInt();
+      int checksum = buffer.getInt();
+      int valueLength = Math.max(length, 0);
+
+      if ((keyLength <= 0) || (length < -1)
+        || (keyLength + valueLength > buffer.remaining()))
+      {
+        break;
+      }
+
+      byte[] key = new byte[keyLength];
+      byte[] value = new byte[valueLength];
+
+      buffer.get(key);
+      buffer.get(value);
+
+      CRC32 crc = new CRC32();
+
+      crc.update(key);
+      crc.update(value);
+
+      if ((int) crc.getValue() != checksum)
+      {
+        logger.warn("found corrupt record in segment {}", segment.file);
+
+        break;
+      }
+
+      String k = new String(key, Charsets.UTF_8);
+
+      if (length >= 0)
+      {
+        index.put(k, new Location(segment,
+          position + RECORD_HEADER + keyLength, length));
+      }
+      else
+      {
+        index.remove(k);
+      }
+
+      position = buffer.position();
+    }
+
+    // new records overwrite a corrupt tail
+    segment.position = position;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Location of a value in a segment.
+   */
+  private static final class Location
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param segment
+     * @param offset
+     * @param length
+     */
+    Location(Segment segment, int offset, int length)
+    {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** length of the value */
+    private final int length;
+
+    /** offset of the value */
+    private final int offset;
+
+    /** segment of the value */
+    private final Segment segment;
+  }
+
+
+  /**
+   * Memory mapped segment file.
+   */
+  private static final class Segment
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param id
+     * @param file
+     * @param buffer
+     */
+    Segment(long id, File file, MappedByteBuffer buffer)
+    {
+      this.id = id;
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Deletes the segment file. Readers, which have already found a location
+     * in the segment, can still read from the mapping.
+     *
+     */
+    void delete()
+    {
+      if (!file.delete())
+      {
+        logger.warn("could not delete segment {}", file);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** mapped content of the segment */
+    private final MappedByteBuffer buffer;
+
+    /** file of the segment */
+    private final File file;
+
+    /** id of the segment, newer segments have higher ids */
+    private final long id;
+
+    /** write position */
+    private int position;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** directory of the segments */
+  private final File directory;
+
+  /** location of each key */
+  private final ConcurrentMap<String, Location> index =
+    Maps.newConcurrentMap();
+
+  /** maximum size of all segments */
+  private final long maximumSize;
+
+  /** size of new segments */
+  private final int segmentSize;
+
+  /** segments ordered by id */
+  private final LinkedList<Segment> segments = Lists.newLinkedList();
+}
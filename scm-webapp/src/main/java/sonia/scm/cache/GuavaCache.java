@@ -36,20 +36,53 @@ package sonia.scm.cache;
 //~--- non-JDK imports --------------------------------------------------------
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.repository.RepositoryCacheKey;
+import sonia.scm.repository.RepositoryCacheKeyPredicate;
+import sonia.scm.repository.spi.PersistentCacheKeys;
+
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.IOException;
+
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Cache implementation on top of a guava cache. A partitioned cache stores
+ * the entries with a {@link RepositoryCacheKey} in a partition per
+ * repository. The partition of a repository can be dropped in constant time,
+ * by a call of {@link #removeAll(Predicate)} with a
+ * {@link RepositoryCacheKeyPredicate}. The entries of a dropped partition can
+ * not be reached anymore and are evicted by the underlying guava cache, which
+ * enforces the size limit and the statistics across all partitions.
+ * <p>
+ * A cache with a {@link DiskCacheStore} stores values with a
+ * {@link PersistentCacheKey} additionally on disk. A miss of the memory tier
+ * is looked up in the disk tier and a found value is promoted to the memory
+ * tier. A {@link RepositoryCacheKeyPredicate} removes the entries of the
+ * repository from the disk tier as well, because values like changesets
+ * contain branches and tags which change with the repository. A predicate
+ * which keeps persistent entries drops the partition of the repository, but
+ * not its entries in the disk tier. Other predicates do not affect the disk
+ * tier.
  *
  * @author Sebastian Sdorra
  *
@@ -86,11 +119,43 @@ public class GuavaCache<K, V>
    * @param configuration
    * @param name
    */
-  @SuppressWarnings("unchecked")
   public GuavaCache(GuavaCacheConfiguration configuration, String name)
   {
-    this(GuavaCaches.create(configuration, name),
-      configuration.getCopyStrategy(), name);
+    this(configuration, name, null);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param configuration
+   * @param name
+   * @param disk disk tier of the cache or {@code null}
+   *
+   * @since 2.0.0
+   */
+  GuavaCache(GuavaCacheConfiguration configuration, String name,
+    DiskCacheStore disk)
+  {
+    this(configuration, name, disk, new EntryListener());
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param configuration
+   * @param name
+   * @param disk
+   * @param listener
+   */
+  @SuppressWarnings("unchecked")
+  private GuavaCache(GuavaCacheConfiguration configuration, String name,
+    DiskCacheStore disk, EntryListener listener)
+  {
+    this(GuavaCaches.create(configuration, name, listener),
+      configuration.getCopyStrategy(), name,
+      Boolean.TRUE.equals(configuration.getPartitioned()), disk, listener);
   }
 
   /**
@@ -105,8 +170,67 @@ public class GuavaCache<K, V>
   protected GuavaCache(com.google.common.cache.Cache<K, V> cache,
     CopyStrategy copyStrategy, String name)
   {
-    this.cache = cache;
+    this(cache, copyStrategy, name, false);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param cache
+   * @param copyStrategy
+   * @param name
+   * @param partitioned true to partition the entries by repository
+   *
+   * @since 2.0.0
+   */
+  @VisibleForTesting
+  protected GuavaCache(com.google.common.cache.Cache<K, V> cache,
+    CopyStrategy copyStrategy, String name, boolean partitioned)
+  {
+    this(cache, copyStrategy, name, partitioned, null);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param cache
+   * @param copyStrategy
+   * @param name
+   * @param partitioned true to partition the entries by repository
+   * @param disk disk tier of the cache or {@code null}
+   *
+   * @since 2.0.0
+   */
+  @VisibleForTesting
+  GuavaCache(com.google.common.cache.Cache<K, V> cache,
+    CopyStrategy copyStrategy, String name, boolean partitioned,
+    DiskCacheStore disk)
+  {
+    this(cache, copyStrategy, name, partitioned, disk, null);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param cache
+   * @param copyStrategy
+   * @param name
+   * @param partitioned
+   * @param disk
+   * @param listener listener for removed entries or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private GuavaCache(com.google.common.cache.Cache<K, V> cache,
+    CopyStrategy copyStrategy, String name, boolean partitioned,
+    DiskCacheStore disk, EntryListener listener)
+  {
+    this.cache = (com.google.common.cache.Cache<Object, WeightedValue>) cache;
     this.name = name;
+    this.disk = disk;
+    this.listener = listener;
 
     if (copyStrategy != null)
     {
@@ -116,6 +240,15 @@ public class GuavaCache<K, V>
     {
       this.copyStrategy = CopyStrategy.NONE;
     }
+
+    if (partitioned)
+    {
+      this.partitions = Maps.newConcurrentMap();
+    }
+    else
+    {
+      this.partitions = null;
+    }
   }
 
   //~--- methods --------------------------------------------------------------
@@ -132,7 +265,17 @@ public class GuavaCache<K, V>
       logger.debug("clear cache {}", name);
     }
 
+    if (partitions != null)
+    {
+      partitions.clear();
+    }
+
     cache.invalidateAll();
+
+    if (disk != null)
+    {
+      disk.clear();
+    }
   }
 
   /**
@@ -146,7 +289,16 @@ public class GuavaCache<K, V>
   @Override
   public boolean contains(K key)
   {
-    return cache.getIfPresent(key) != null;
+    boolean contains = cache.getIfPresent(cacheKey(key)) != null;
+
+    if (!contains && (disk != null))
+    {
+      String pk = persistentKey(key);
+
+      contains = (pk != null) && disk.contains(pk);
+    }
+
+    return contains;
   }
 
   /**
@@ -156,9 +308,31 @@ public class GuavaCache<K, V>
    * @return
    */
   @Override
+  @SuppressWarnings("unchecked")
   public Set<K> keys()
   {
-    return cache.asMap().keySet();
+    Set<K> keys;
+
+    if (partitions == null)
+    {
+      keys = (Set<K>) cache.asMap().keySet();
+    }
+    else
+    {
+      keys = Sets.newHashSet();
+
+      for (Object key : cache.asMap().keySet())
+      {
+        K k = liveKey(key);
+
+        if (k != null)
+        {
+          keys.add(k);
+        }
+      }
+    }
+
+    return keys;
   }
 
   /**
@@ -173,9 +347,15 @@ public class GuavaCache<K, V>
   @Override
   public V put(K key, V value)
   {
-    V previous = cache.getIfPresent(key);
+    Object ck = cacheKey(key);
+    V previous = unwrap(cache.getIfPresent(ck));
+
+    write(ck, copyStrategy.copyOnWrite(value));
 
-    cache.put(key, copyStrategy.copyOnWrite(value));
+    if (disk != null)
+    {
+      store(key, value);
+    }
 
     return previous;
   }
@@ -191,9 +371,28 @@ public class GuavaCache<K, V>
   @Override
   public V remove(K key)
   {
-    V value = cache.getIfPresent(key);
+    Object ck = cacheKey(key);
+    V value = unwrap(cache.getIfPresent(ck));
+
+    cache.invalidate(ck);
 
-    cache.invalidate(key);
+    if (disk != null)
+    {
+      String pk = persistentKey(key);
+
+      if (pk != null)
+      {
+        try
+        {
+          disk.remove(pk);
+        }
+        catch (IOException ex)
+        {
+          logger.warn("could not remove entry from disk tier of ".concat(name),
+            ex);
+        }
+      }
+    }
 
     return value;
   }
@@ -209,21 +408,27 @@ public class GuavaCache<K, V>
   @Override
   public Iterable<V> removeAll(Predicate<K> filter)
   {
-    Set<V> removedValues = Sets.newHashSet();
-    Set<K> keysToRemove = Sets.newHashSet();
+    Iterable<V> removedValues = null;
 
-    for (Entry<K, V> e : cache.asMap().entrySet())
+    if (filter instanceof RepositoryCacheKeyPredicate)
     {
-      if (filter.apply(e.getKey()))
+      RepositoryCacheKeyPredicate rp = (RepositoryCacheKeyPredicate) filter;
+
+      // persistent entries of a dropped partition are still on disk
+      if ((partitions != null) && (!rp.isKeepPersistent() || (disk != null)))
       {
-        keysToRemove.add(e.getKey());
-        removedValues.add(e.getValue());
+        removedValues = removePartition(rp.getRepositoryId());
+      }
+
+      if ((disk != null) &&!rp.isKeepPersistent())
+      {
+        removeFromDisk(rp.getRepositoryId());
       }
     }
 
-    if (!keysToRemove.isEmpty())
+    if (removedValues == null)
     {
-      cache.invalidateAll(keysToRemove);
+      removedValues = removeMatching(filter);
     }
 
     return removedValues;
@@ -238,7 +443,27 @@ public class GuavaCache<K, V>
   @Override
   public int size()
   {
-    return (int) cache.size();
+    int size;
+
+    if (partitions == null)
+    {
+      size = (int) cache.size();
+    }
+    else
+    {
+      size = Iterables.size(Iterables.filter(cache.asMap().keySet(),
+        new Predicate<Object>()
+      {
+
+        @Override
+        public boolean apply(Object key)
+        {
+          return liveKey(key) != null;
+        }
+      }));
+    }
+
+    return size;
   }
 
   /**
@@ -250,7 +475,17 @@ public class GuavaCache<K, V>
   @Override
   public Collection<V> values()
   {
-    return cache.asMap().values();
+    List<V> values = Lists.newArrayList();
+
+    for (Entry<Object, WeightedValue> e : cache.asMap().entrySet())
+    {
+      if ((partitions == null) || (liveKey(e.getKey()) != null))
+      {
+        values.add(unwrap(e.getValue()));
+      }
+    }
+
+    return Collections.unmodifiableList(values);
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -266,7 +501,13 @@ public class GuavaCache<K, V>
   @Override
   public V get(K key)
   {
-    V value = cache.getIfPresent(key);
+    Object ck = cacheKey(key);
+    V value = unwrap(cache.getIfPresent(ck));
+
+    if ((value == null) && (disk != null))
+    {
+      value = load(key, ck);
+    }
 
     if (value != null)
     {
@@ -282,31 +523,566 @@ public class GuavaCache<K, V>
   }
 
   /**
-   * Method description
+   * Returns the statistics of the cache. The eviction count and the weight
+   * are only tracked for caches, which are created from a configuration.
+   * The weight is a running total, which is maintained on every write and
+   * removal. Entries of dropped partitions are not included.
    *
    *
-   * @return
+   * @return statistics of the cache
    */
   @Override
   public CacheStatistics getStatistics()
   {
-    return new CacheStatistics(name, hitCount.get(), missCount.get());
+    long evictionCount = 0l;
+    long weight = 0l;
+
+    if (listener != null)
+    {
+      evictionCount = listener.evictions.get();
+      weight = listener.weight.get();
+    }
+
+    return new CacheStatistics(name, hitCount.get(), missCount.get(),
+      evictionCount, weight);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns the key of the entry in the guava cache. Keys with a repository
+   * are wrapped together with the current partition of the repository.
+   *
+   *
+   * @param key
+   *
+   * @return
+   */
+  private Object cacheKey(K key)
+  {
+    Object ck = key;
+
+    if ((partitions != null) && (key instanceof RepositoryCacheKey))
+    {
+      String repositoryId = ((RepositoryCacheKey) key).getRepositoryId();
+      Partition partition = partitions.get(repositoryId);
+
+      if (partition == null)
+      {
+        Partition newPartition = new Partition();
+
+        partition = partitions.putIfAbsent(repositoryId, newPartition);
+
+        if (partition == null)
+        {
+          partition = newPartition;
+        }
+      }
+
+      ck = new PartitionKey(partition, key);
+    }
+
+    return ck;
+  }
+
+  /**
+   * Clears the memory tier and flushes the disk tier. The entries of the disk
+   * tier are kept for the next start.
+   *
+   * @since 2.0.0
+   */
+  void close()
+  {
+    if (partitions != null)
+    {
+      partitions.clear();
+    }
+
+    cache.invalidateAll();
+
+    if (disk != null)
+    {
+      disk.close();
+    }
+  }
+
+  /**
+   * Returns the original key, if the entry belongs to a live partition or
+   * null if the partition was dropped.
+   *
+   *
+   * @param ck
+   *
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  private K liveKey(Object ck)
+  {
+    K key;
+
+    if (ck instanceof PartitionKey)
+    {
+      PartitionKey pk = (PartitionKey) ck;
+      String repositoryId = ((RepositoryCacheKey) pk.key).getRepositoryId();
+
+      if (partitions.get(repositoryId) == pk.partition)
+      {
+        key = (K) pk.key;
+      }
+      else
+      {
+        key = null;
+      }
+    }
+    else
+    {
+      key = (K) ck;
+    }
+
+    return key;
+  }
+
+  /**
+   * Loads the value from the disk tier and promotes it to the memory tier.
+   *
+   *
+   * @param key
+   * @param ck key in the memory tier
+   *
+   * @return value or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private V load(K key, Object ck)
+  {
+    V value = null;
+    String pk = persistentKey(key);
+
+    if (pk != null)
+    {
+      byte[] data = disk.get(pk);
+
+      if (data != null)
+      {
+        try
+        {
+          value = (V) DiskCacheCodec.decode(data);
+          write(ck, value);
+        }
+        catch (IOException ex)
+        {
+          logger.warn("could not decode entry from disk tier of ".concat(name),
+            ex);
+          remove(key);
+        }
+      }
+    }
+
+    return value;
+  }
+
+  /**
+   * Returns the key for the disk tier or {@code null}.
+   *
+   *
+   * @param key
+   *
+   * @return
+   */
+  private String persistentKey(K key)
+  {
+    return (key instanceof PersistentCacheKey)
+      ? ((PersistentCacheKey) key).getPersistentKey()
+      : null;
+  }
+
+  /**
+   * Removes the entries of the repository from the disk tier.
+   *
+   *
+   * @param repositoryId id of the repository
+   */
+  private void removeFromDisk(final String repositoryId)
+  {
+    try
+    {
+      int count = disk.removeAll(new Predicate<String>()
+      {
+
+        @Override
+        public boolean apply(String key)
+        {
+          return PersistentCacheKeys.isKeyOfRepository(key, repositoryId);
+        }
+      });
+
+      logger.debug("removed {} entries of repository {} from disk tier of {}",
+        new Object[] { count, repositoryId, name });
+    }
+    catch (IOException ex)
+    {
+      logger.warn("could not remove entries from disk tier of ".concat(name),
+        ex);
+    }
+  }
+
+  /**
+   * Removes all live entries which are matched by the filter.
+   *
+   *
+   * @param filter
+   *
+   * @return
+   */
+  private Iterable<V> removeMatching(Predicate<K> filter)
+  {
+    Set<V> removedValues = Sets.newHashSet();
+    Set<Object> keysToRemove = Sets.newHashSet();
+
+    for (Entry<Object, WeightedValue> e : cache.asMap().entrySet())
+    {
+      K key = liveKey(e.getKey());
+
+      if ((key != null) && filter.apply(key))
+      {
+        keysToRemove.add(e.getKey());
+        removedValues.add(unwrap(e.getValue()));
+      }
+    }
+
+    if (!keysToRemove.isEmpty())
+    {
+      cache.invalidateAll(keysToRemove);
+    }
+
+    return removedValues;
+  }
+
+  /**
+   * Drops the partition of the repository. The removed values are collected
+   * lazy, only if the returned iterable is used.
+   *
+   *
+   * @param repositoryId
+   *
+   * @return
+   */
+  private Iterable<V> removePartition(String repositoryId)
+  {
+    logger.debug("drop partition of repository {} from cache {}",
+      repositoryId, name);
+
+    final Partition partition = partitions.remove(repositoryId);
+    Iterable<V> removedValues;
+
+    if (partition != null)
+    {
+      if (listener != null)
+      {
+        partition.drop(listener.weight);
+      }
+
+      removedValues = Iterables.transform(
+        Iterables.filter(cache.asMap().entrySet(),
+          new Predicate<Entry<Object, WeightedValue>>()
+      {
+
+        @Override
+        public boolean apply(Entry<Object, WeightedValue> e)
+        {
+          return (e.getKey() instanceof PartitionKey)
+            && (((PartitionKey) e.getKey()).partition == partition);
+        }
+      }), new Function<Entry<Object, WeightedValue>, V>()
+      {
+
+        @Override
+        public V apply(Entry<Object, WeightedValue> e)
+        {
+          return unwrap(e.getValue());
+        }
+      });
+    }
+    else
+    {
+      removedValues = Collections.emptySet();
+    }
+
+    return removedValues;
   }
 
+  /**
+   * Stores the value in the disk tier, if the key is persistent and the value
+   * can be encoded.
+   *
+   *
+   * @param key
+   * @param value
+   */
+  private void store(K key, V value)
+  {
+    String pk = persistentKey(key);
+
+    if (pk != null)
+    {
+      byte[] data = DiskCacheCodec.encode(value);
+
+      if (data != null)
+      {
+        try
+        {
+          disk.put(pk, data);
+        }
+        catch (IOException ex)
+        {
+          logger.warn("could not store entry in disk tier of ".concat(name),
+            ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the cached value of the weighted value.
+   *
+   *
+   * @param weighted weighted value or {@code null}
+   *
+   * @return cached value or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private V unwrap(WeightedValue weighted)
+  {
+    return (weighted != null)
+      ? (V) weighted.getValue()
+      : null;
+  }
+
+  /**
+   * Writes the value to the memory tier. The weight of the value is computed
+   * once and stored together with the value, it is used by the weigher of
+   * the guava cache and for the running total of the cache.
+   *
+   *
+   * @param ck key in the memory tier
+   * @param value value to write
+   */
+  private void write(Object ck, V value)
+  {
+    WeightedValue weighted = new WeightedValue(value);
+
+    cache.put(ck, weighted);
+
+    if (listener != null)
+    {
+      listener.update(ck, weighted.getWeight());
+    }
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Counts the entries, which are evicted by the guava cache, and keeps the
+   * running total of the weight of all entries in live partitions.
+   */
+  private static final class EntryListener
+    implements RemovalListener<Object, Object>
+  {
+
+    /**
+     * Method description
+     *
+     *
+     * @param notification
+     */
+    @Override
+    public void onRemoval(RemovalNotification<Object, Object> notification)
+    {
+      if (notification.wasEvicted())
+      {
+        evictions.incrementAndGet();
+      }
+
+      Object value = notification.getValue();
+
+      // a value, which was collected by the gc, can not be subtracted
+      if (value instanceof WeightedValue)
+      {
+        update(notification.getKey(), -((WeightedValue) value).getWeight());
+      }
+    }
+
+    /**
+     * Changes the running total by the given weight. The weight of an entry
+     * of a dropped partition is ignored, because it was subtracted together
+     * with the partition.
+     *
+     *
+     * @param ck key in the memory tier
+     * @param delta weight to add or subtract
+     */
+    void update(Object ck, long delta)
+    {
+      if (ck instanceof PartitionKey)
+      {
+        ((PartitionKey) ck).partition.update(weight, delta);
+      }
+      else
+      {
+        weight.addAndGet(delta);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** number of evicted entries */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** weight of all entries in live partitions */
+    private final AtomicLong weight = new AtomicLong();
+  }
+
+
+  /**
+   * Identity of a partition. A dropped partition is replaced by a new one.
+   * The partition keeps the weight of its entries, which is subtracted from
+   * the total of the cache when the partition is dropped.
+   */
+  private static final class Partition
+  {
+
+    /**
+     * Marks the partition as dropped and subtracts the weight of its entries
+     * from the total.
+     *
+     *
+     * @param total total weight of the cache
+     */
+    synchronized void drop(AtomicLong total)
+    {
+      dropped = true;
+      total.addAndGet(-weight);
+      weight = 0l;
+    }
+
+    /**
+     * Changes the weight of the partition and the total, if the partition was
+     * not dropped.
+     *
+     *
+     * @param total total weight of the cache
+     * @param delta weight to add or subtract
+     */
+    synchronized void update(AtomicLong total, long delta)
+    {
+      if (!dropped)
+      {
+        weight += delta;
+        total.addAndGet(delta);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** true if the partition was dropped */
+    private boolean dropped = false;
+
+    /** weight of the entries of the partition */
+    private long weight = 0l;
+  }
+
+
+  /**
+   * Key of an entry in a partition.
+   */
+  private static final class PartitionKey
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param partition
+     * @param key
+     */
+    PartitionKey(Partition partition, Object key)
+    {
+      this.partition = partition;
+      this.key = key;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @param obj
+     *
+     * @return
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (obj == null)
+      {
+        return false;
+      }
+
+      if (getClass() != obj.getClass())
+      {
+        return false;
+      }
+
+      final PartitionKey other = (PartitionKey) obj;
+
+      return (partition == other.partition) && key.equals(other.key);
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public int hashCode()
+    {
+      return Objects.hashCode(System.identityHashCode(partition), key);
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final Object key;
+
+    /** Field description */
+    private final Partition partition;
+  }
+
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
-  private final com.google.common.cache.Cache<K, V> cache;
+  private final com.google.common.cache.Cache<Object, WeightedValue> cache;
 
   /** Field description */
   private final CopyStrategy copyStrategy;
 
+  /** disk tier or null */
+  private final DiskCacheStore disk;
+
   /** Field description */
   private final AtomicLong hitCount = new AtomicLong();
 
+  /** listener for removed entries or null */
+  private final EntryListener listener;
+
   /** Field description */
   private final AtomicLong missCount = new AtomicLong();
 
   /** Field description */
   private final String name;
+
+  /** current partition of each repository or null */
+  private final ConcurrentMap<String, Partition> partitions;
 }
@@ -76,8 +76,10 @@ public class GuavaCacheConfiguration implements Serializable
                   .add("expireAfterAccess", expireAfterAccess)
                   .add("expireAfterWrite", expireAfterWrite)
                   .add("initialCapacity", initialCapacity)
+                  .add("maximumDiskSize", maximumDiskSize)
                   .add("maximumSize", maximumSize)
                   .add("maximumWeight", maximumWeight)
+                  .add("partitioned", partitioned)
                   .add("recordStats", recordStats)
                   .add("softValues", softValues)
                   .add("weakKeys", weakKeys)
@@ -143,6 +145,21 @@ public class GuavaCacheConfiguration implements Serializable
     return initialCapacity;
   }
 
+  /**
+   * Returns the maximum size in bytes of the persistent disk tier of the
+   * cache. Only values with a {@link PersistentCacheKey} are stored on disk.
+   * The disk tier is disabled, if the size is not set.
+   *
+   *
+   * @return maximum size of the disk tier in bytes or {@code null}
+   *
+   * @since 2.0.0
+   */
+  public Long getMaximumDiskSize()
+  {
+    return maximumDiskSize;
+  }
+
   /**
    * Method description
    *
@@ -155,16 +172,32 @@ public class GuavaCacheConfiguration implements Serializable
   }
 
   /**
-   * Method description
+   * Returns the maximum size of all entries in bytes. The size of an entry is
+   * estimated by the {@link Weighers}. The maximum weight can not be used
+   * together with the maximum size.
    *
    *
-   * @return
+   * @return maximum size of all entries in bytes or {@code null}
    */
   public Long getMaximumWeight()
   {
     return maximumWeight;
   }
 
+  /**
+   * Returns true if the entries of the cache are partitioned by the
+   * repository of their {@link sonia.scm.repository.RepositoryCacheKey}.
+   *
+   *
+   * @return true if the cache is partitioned
+   *
+   * @since 2.0.0
+   */
+  public Boolean getPartitioned()
+  {
+    return partitioned;
+  }
+
   /**
    * Method description
    *
@@ -232,6 +265,10 @@ public class GuavaCacheConfiguration implements Serializable
   @XmlAttribute
   private Integer initialCapacity;
 
+  /** Field description */
+  @XmlAttribute
+  private Long maximumDiskSize;
+
   /** Field description */
   @XmlAttribute
   private Long maximumSize;
@@ -240,6 +277,10 @@ public class GuavaCacheConfiguration implements Serializable
   @XmlAttribute
   private Long maximumWeight;
 
+  /** Field description */
+  @XmlAttribute
+  private Boolean partitioned;
+
   /** Field description */
   @XmlAttribute
   private Boolean recordStats;
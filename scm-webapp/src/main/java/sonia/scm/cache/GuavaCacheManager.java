@@ -42,8 +42,11 @@ import com.google.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.SCMContext;
+
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.File;
 import java.io.IOException;
 
 import java.util.Map;
@@ -57,6 +60,9 @@ public class GuavaCacheManager
   implements CacheManager, org.apache.shiro.cache.CacheManager
 {
 
+  /** name of the directory for the disk tiers */
+  private static final String DIRECTORY = "cache";
+
   /**
    * the logger for GuavaCacheManager
    */
@@ -71,7 +77,8 @@ public class GuavaCacheManager
    */
   public GuavaCacheManager()
   {
-    this(GuavaCacheConfigurationReader.read());
+    this(GuavaCacheConfigurationReader.read(),
+      new File(SCMContext.getContext().getBaseDirectory(), DIRECTORY));
   }
 
   /**
@@ -83,13 +90,31 @@ public class GuavaCacheManager
   @VisibleForTesting
   protected GuavaCacheManager(GuavaCacheManagerConfiguration config)
   {
+    this(config, null);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param config
+   * @param directory directory of the disk tiers or {@code null} to disable
+   *   the disk tiers
+   *
+   * @since 2.0.0
+   */
+  @VisibleForTesting
+  protected GuavaCacheManager(GuavaCacheManagerConfiguration config,
+    File directory)
+  {
+    this.directory = directory;
     defaultConfiguration = config.getDefaultCache();
 
     for (GuavaNamedCacheConfiguration ncc : config.getCaches())
     {
       logger.debug("create cache {} from configured configuration {}",
         ncc.getName(), ncc);
-      cacheMap.put(ncc.getName(), new GuavaCache(ncc));
+      cacheMap.put(ncc.getName(), createCache(ncc, ncc.getName()));
     }
   }
 
@@ -106,9 +131,9 @@ public class GuavaCacheManager
   {
     logger.info("close guava cache manager");
 
-    for (Cache c : cacheMap.values())
+    for (GuavaCache c : cacheMap.values())
     {
-      c.clear();
+      c.close();
     }
 
     cacheMap.clear();
@@ -139,13 +164,50 @@ public class GuavaCacheManager
       logger.debug(
         "cache {} does not exists, creating a new instance from default configuration: {}",
         name, defaultConfiguration);
-      cache = new GuavaCache<K, V>(defaultConfiguration, name);
+      cache = createCache(defaultConfiguration, name);
       cacheMap.put(name, cache);
     }
 
     return cache;
   }
 
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates the cache and opens its disk tier, if a maximum disk size is
+   * configured. If the disk tier could not be opened, the cache is used
+   * without disk tier.
+   *
+   *
+   * @param configuration
+   * @param name
+   * @param <K>
+   * @param <V>
+   *
+   * @return
+   */
+  private <K, V> GuavaCache<K, V> createCache(
+    GuavaCacheConfiguration configuration, String name)
+  {
+    DiskCacheStore disk = null;
+    Long maximumDiskSize = configuration.getMaximumDiskSize();
+
+    if ((directory != null) && (maximumDiskSize != null)
+      && (maximumDiskSize > 0))
+    {
+      try
+      {
+        disk = DiskCacheStore.open(new File(directory, name), maximumDiskSize);
+      }
+      catch (IOException ex)
+      {
+        logger.error("could not open disk tier of cache ".concat(name), ex);
+      }
+    }
+
+    return new GuavaCache<K, V>(configuration, name, disk);
+  }
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
@@ -153,4 +215,7 @@ public class GuavaCacheManager
 
   /** Field description */
   private GuavaCacheConfiguration defaultConfiguration;
+
+  /** directory of the disk tiers or null */
+  private final File directory;
 }
@@ -35,6 +35,7 @@ package sonia.scm.cache;
 //~--- non-JDK imports --------------------------------------------------------
 
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,6 +78,28 @@ public final class GuavaCaches
    */
   public static com.google.common.cache.Cache create(
     GuavaCacheConfiguration configuration, String name)
+  {
+    return create(configuration, name, null);
+  }
+
+  /**
+   * Creates a guava cache from the configuration. A configured maximum weight
+   * is measured in bytes, the weight of each entry is estimated by the
+   * {@link Weighers}. A maximum weight can not be combined with soft or weak
+   * values.
+   *
+   *
+   * @param configuration configuration of the cache
+   * @param name name of the cache
+   * @param listener listener for removed entries or {@code null}
+   *
+   * @return guava cache
+   *
+   * @since 2.0.0
+   */
+  public static com.google.common.cache.Cache create(
+    GuavaCacheConfiguration configuration, String name,
+    RemovalListener<Object, Object> listener)
   {
     CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
 
@@ -109,7 +132,18 @@ public final class GuavaCaches
 
     if (configuration.getMaximumWeight() != null)
     {
+
+      // the weight of values cleared by the gc can not be subtracted
+      if (isEnabled(configuration.getSoftValues())
+        || isEnabled(configuration.getWeakValues()))
+      {
+        throw new CacheException(
+          "maximumWeight can not be combined with softValues or weakValues "
+          + "in cache ".concat(name));
+      }
+
       builder.maximumWeight(configuration.getMaximumWeight());
+      builder.weigher(Weighers.weigher());
     }
 
     if (isEnabled(configuration.getRecordStats()))
@@ -132,6 +166,11 @@ public final class GuavaCaches
       builder.weakKeys();
     }
 
+    if (listener != null)
+    {
+      builder.removalListener(listener);
+    }
+
     if (logger.isTraceEnabled())
     {
       logger.trace("create new cache {} from builder: {}", name, builder);
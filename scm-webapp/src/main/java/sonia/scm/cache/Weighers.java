@@ -0,0 +1,481 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.cache.Weigher;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+
+import sonia.scm.repository.BlameLine;
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.Branches;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.Modifications;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.SubRepository;
+import sonia.scm.repository.Tag;
+import sonia.scm.repository.Tags;
+import sonia.scm.security.RepositoryAuthorizationInfo;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of weighers, which estimate the retained heap size in bytes of
+ * cached values. The weigher is selected by the exact class of the value.
+ * Values without a registered weigher are weighted with
+ * {@link #DEFAULT_WEIGHT}. The estimations assume a 64 bit jvm with 16 bytes
+ * per object header and 8 bytes per reference.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+public final class Weighers
+{
+
+  /** weight of values without a registered weigher */
+  public static final int DEFAULT_WEIGHT = 1024;
+
+  /** size of an array header */
+  private static final int ARRAY = 16;
+
+  /** size of a boxed long */
+  private static final int BOXED_LONG = 24;
+
+  /** size of a map entry without key and value */
+  private static final int MAP_ENTRY = 48;
+
+  /** size of an object header */
+  private static final int OBJECT = 16;
+
+  /** size of a reference */
+  private static final int REFERENCE = 8;
+
+  /** weigher for {@link Person} */
+  private static final Weigher<Object, Person> PERSON =
+    new Weigher<Object, Person>()
+  {
+    @Override
+    public int weigh(Object key, Person person)
+    {
+      return OBJECT + 2 * REFERENCE + weighString(person.getName())
+        + weighString(person.getMail());
+    }
+  };
+
+  /** weigher for {@link Modifications} */
+  private static final Weigher<Object, Modifications> MODIFICATIONS =
+    new Weigher<Object, Modifications>()
+  {
+    @Override
+    public int weigh(Object key, Modifications modifications)
+    {
+      return OBJECT + 3 * REFERENCE
+        + weighStrings(modifications.getAdded())
+        + weighStrings(modifications.getModified())
+        + weighStrings(modifications.getRemoved());
+    }
+  };
+
+  /** weigher for {@link Changeset} */
+  private static final Weigher<Object, Changeset> CHANGESET =
+    new Weigher<Object, Changeset>()
+  {
+    @Override
+    public int weigh(Object key, Changeset changeset)
+    {
+      int weight = OBJECT + 9 * REFERENCE + BOXED_LONG
+                   + weighString(changeset.getId())
+                   + weighString(changeset.getDescription())
+                   + weighNullable(PERSON, changeset.getAuthor())
+                   + weighStrings(changeset.getBranches())
+                   + weighStrings(changeset.getParents())
+                   + weighStrings(changeset.getTags())
+                   + weighNullable(MODIFICATIONS, changeset.getModifications());
+      Map<String, String> properties = changeset.getProperties();
+
+      if (properties != null)
+      {
+        weight += OBJECT + ARRAY + REFERENCE * 2 * properties.size();
+
+        for (Map.Entry<String, String> e : properties.entrySet())
+        {
+          weight += MAP_ENTRY + weighString(e.getKey())
+            + weighString(e.getValue());
+        }
+      }
+
+      return weight;
+    }
+  };
+
+  /** weigher for {@link ChangesetPagingResult} */
+  private static final Weigher<Object, ChangesetPagingResult> CHANGESETS =
+    new Weigher<Object, ChangesetPagingResult>()
+  {
+    @Override
+    public int weigh(Object key, ChangesetPagingResult result)
+    {
+      return OBJECT + REFERENCE + 4
+        + weighList(CHANGESET, result.getChangesets());
+    }
+  };
+
+  /** weigher for {@link SubRepository} */
+  private static final Weigher<Object, SubRepository> SUB_REPOSITORY =
+    new Weigher<Object, SubRepository>()
+  {
+    @Override
+    public int weigh(Object key, SubRepository sub)
+    {
+      return OBJECT + 3 * REFERENCE + weighString(sub.getRepositoryUrl())
+        + weighString(sub.getBrowserUrl()) + weighString(sub.getRevision());
+    }
+  };
+
+  /** weigher for {@link FileObject} */
+  private static final Weigher<Object, FileObject> FILE_OBJECT =
+    new Weigher<Object, FileObject>()
+  {
+    @Override
+    public int weigh(Object key, FileObject file)
+    {
+      return OBJECT + 5 * REFERENCE + 16 + BOXED_LONG
+        + weighString(file.getName()) + weighString(file.getPath())
+        + weighString(file.getDescription())
+        + weighNullable(SUB_REPOSITORY, file.getSubRepository());
+    }
+  };
+
+  /** weigher for {@link BrowserResult} */
+  private static final Weigher<Object, BrowserResult> BROWSER_RESULT =
+    new Weigher<Object, BrowserResult>()
+  {
+    @Override
+    public int weigh(Object key, BrowserResult result)
+    {
+      return OBJECT + 4 * REFERENCE + weighString(result.getRevision())
+        + weighString(result.getTag()) + weighString(result.getBranch())
+        + weighList(FILE_OBJECT, result.getFiles());
+    }
+  };
+
+  /** weigher for {@link BlameLine} */
+  private static final Weigher<Object, BlameLine> BLAME_LINE =
+    new Weigher<Object, BlameLine>()
+  {
+    @Override
+    public int weigh(Object key, BlameLine line)
+    {
+      return OBJECT + 5 * REFERENCE + 4 + BOXED_LONG
+        + weighString(line.getRevision()) + weighString(line.getCode())
+        + weighString(line.getDescription())
+        + weighNullable(PERSON, line.getAuthor());
+    }
+  };
+
+  /** weigher for {@link BlameResult} */
+  private static final Weigher<Object, BlameResult> BLAME_RESULT =
+    new Weigher<Object, BlameResult>()
+  {
+    @Override
+    public int weigh(Object key, BlameResult result)
+    {
+      return OBJECT + REFERENCE + 4
+        + weighList(BLAME_LINE, result.getBlameLines());
+    }
+  };
+
+  /** weigher for {@link Tag} */
+  private static final Weigher<Object, Tag> TAG = new Weigher<Object, Tag>()
+  {
+    @Override
+    public int weigh(Object key, Tag tag)
+    {
+      return OBJECT + 2 * REFERENCE + weighString(tag.getName())
+        + weighString(tag.getRevision());
+    }
+  };
+
+  /** weigher for {@link Tags} */
+  private static final Weigher<Object, Tags> TAGS = new Weigher<Object, Tags>()
+  {
+    @Override
+    public int weigh(Object key, Tags tags)
+    {
+      return OBJECT + REFERENCE + weighList(TAG, tags.getTags());
+    }
+  };
+
+  /** weigher for {@link Branch} */
+  private static final Weigher<Object, Branch> BRANCH =
+    new Weigher<Object, Branch>()
+  {
+    @Override
+    public int weigh(Object key, Branch branch)
+    {
+      return OBJECT + REFERENCE + weighString(branch.getName());
+    }
+  };
+
+  /** weigher for {@link Branches} */
+  private static final Weigher<Object, Branches> BRANCHES =
+    new Weigher<Object, Branches>()
+  {
+    @Override
+    public int weigh(Object key, Branches branches)
+    {
+      return OBJECT + REFERENCE + weighList(BRANCH, branches.getBranches());
+    }
+  };
+
+  /** weigher for {@link AuthorizationInfo} */
+  private static final Weigher<Object, AuthorizationInfo> AUTHORIZATION_INFO =
+    new Weigher<Object, AuthorizationInfo>()
+  {
+    @Override
+    public int weigh(Object key, AuthorizationInfo info)
+    {
+
+      // the permission objects are shared by all infos, count the references
+      return OBJECT + 6 * REFERENCE + weighSize(info.getRoles())
+        + weighSize(info.getStringPermissions())
+        + weighSize(info.getObjectPermissions()) * 2;
+    }
+  };
+
+  /** weigher for {@link String} */
+  private static final Weigher<Object, String> STRING =
+    new Weigher<Object, String>()
+  {
+    @Override
+    public int weigh(Object key, String value)
+    {
+      return weighString(value);
+    }
+  };
+
+  /** registered weighers by type */
+  private static final ConcurrentMap<Class<?>, Weigher<Object, ?>> weighers =
+    new ConcurrentHashMap<Class<?>, Weigher<Object, ?>>();
+
+  /**
+   * weigher, which selects the registered weigher for the value or reuses the
+   * weight of a {@link WeightedValue}
+   */
+  private static final Weigher<Object, Object> WEIGHER =
+    new Weigher<Object, Object>()
+  {
+    @Override
+    public int weigh(Object key, Object value)
+    {
+      long weight = (value instanceof WeightedValue)
+        ? ((WeightedValue) value).getWeight()
+        : Weighers.weigh(value);
+
+      return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+  };
+
+  static
+  {
+    register(String.class, STRING);
+    register(RepositoryAuthorizationInfo.class, AUTHORIZATION_INFO);
+    register(ChangesetPagingResult.class, CHANGESETS);
+    register(BrowserResult.class, BROWSER_RESULT);
+    register(BlameResult.class, BLAME_RESULT);
+    register(Tags.class, TAGS);
+    register(Branches.class, BRANCHES);
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Weighers() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Registers a weigher for the given type. The weigher is only used for
+   * values of exactly this type, subclasses are not affected.
+   *
+   *
+   * @param type type of the values
+   * @param weigher weigher for the type
+   * @param <T> type of the values
+   */
+  public static <T> void register(Class<T> type,
+    Weigher<Object, ? super T> weigher)
+  {
+    weighers.put(type, weigher);
+  }
+
+  /**
+   * Returns the estimated size of the value in bytes.
+   *
+   *
+   * @param value value
+   *
+   * @return estimated size in bytes
+   */
+  @SuppressWarnings("unchecked")
+  public static long weigh(Object value)
+  {
+    long weight = 0;
+
+    if (value != null)
+    {
+      Weigher<Object, Object> weigher =
+        (Weigher<Object, Object>) weighers.get(value.getClass());
+
+      weight = (weigher != null)
+        ? weigher.weigh(null, value)
+        : DEFAULT_WEIGHT;
+    }
+
+    return weight;
+  }
+
+  /**
+   * Returns a guava weigher, which weighs the values of a cache with the
+   * registered weighers.
+   *
+   *
+   * @return guava weigher
+   */
+  public static Weigher<Object, Object> weigher()
+  {
+    return WEIGHER;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param weigher
+   * @param list
+   * @param <T>
+   *
+   * @return
+   */
+  private static <T> int weighList(Weigher<Object, T> weigher, List<T> list)
+  {
+    int weight = 0;
+
+    if (list != null)
+    {
+      weight = OBJECT + ARRAY + REFERENCE * list.size();
+
+      for (T item : list)
+      {
+        weight += weighNullable(weigher, item);
+      }
+    }
+
+    return weight;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param weigher
+   * @param value
+   * @param <T>
+   *
+   * @return
+   */
+  private static <T> int weighNullable(Weigher<Object, T> weigher, T value)
+  {
+    return (value != null)
+      ? weigher.weigh(null, value)
+      : 0;
+  }
+
+  /**
+   * Returns the size of the collection, without the size of the items.
+   *
+   *
+   * @param collection
+   *
+   * @return
+   */
+  private static int weighSize(Collection<?> collection)
+  {
+    return (collection != null)
+      ? OBJECT + ARRAY + MAP_ENTRY * collection.size()
+      : 0;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param value
+   *
+   * @return
+   */
+  private static int weighString(String value)
+  {
+    return (value != null)
+      ? OBJECT + 8 + ARRAY + 2 * value.length()
+      : 0;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param values
+   *
+   * @return
+   */
+  private static int weighStrings(List<String> values)
+  {
+    return weighList(STRING, values);
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+/**
+ * Value of a {@link GuavaCache} together with its estimated weight. The weight
+ * is computed once, when the value is written to the cache. It is used by the
+ * weigher of the guava cache and for the running total of the cache
+ * statistics.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+final class WeightedValue
+{
+
+  /**
+   * Constructs a new weighted value and estimates its weight with the
+   * {@link Weighers}.
+   *
+   *
+   * @param value cached value
+   */
+  WeightedValue(Object value)
+  {
+    this.value = value;
+    this.weight = Weighers.weigh(value);
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the cached value.
+   *
+   *
+   * @return cached value
+   */
+  Object getValue()
+  {
+    return value;
+  }
+
+  /**
+   * Returns the estimated weight of the value in bytes.
+   *
+   *
+   * @return estimated weight
+   */
+  long getWeight()
+  {
+    return weight;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** cached value */
+  private final Object value;
+
+  /** estimated weight of the value */
+  private final long weight;
+}
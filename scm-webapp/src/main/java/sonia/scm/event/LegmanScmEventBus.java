@@ -37,19 +37,63 @@ package sonia.scm.event;
 
 import com.github.legman.EventBus;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.repository.PreReceiveRepositoryHookEvent;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
+ * {@link ScmEventBus} implementation which uses legman. Events of a type which
+ * is marked with {@link Event#async()} are dispatched by a dedicated thread
+ * for each type, which uses a bounded queue. If the queue is full, the posting
+ * thread waits for free space. If there is still no space after a timeout,
+ * the event is dispatched by the posting thread and may be delivered before
+ * events of the same type which are still queued. Events which can be vetoed
+ * are always dispatched synchronously.
  *
  * @author Sebastian Sdorra
  */
-public class LegmanScmEventBus extends ScmEventBus
+public class LegmanScmEventBus extends ScmEventBus implements Closeable
 {
 
   /** Field description */
   private static final String NAME = "ScmEventBus";
 
+  /**
+   * milliseconds to wait for free space in a full queue, before the event is
+   * dispatched by the posting thread
+   */
+  private static final long OFFER_TIMEOUT = 5000l;
+
+  /** maximum number of events, which can wait for dispatch */
+  private static final int QUEUE_CAPACITY = 1000;
+
+  /** seconds to wait for queued events on close */
+  private static final long SHUTDOWN_TIMEOUT = 10l;
+
   /**
    * the logger for LegmanScmEventBus
    */
@@ -64,11 +108,46 @@ public class LegmanScmEventBus extends ScmEventBus
    */
   public LegmanScmEventBus()
   {
+    this(QUEUE_CAPACITY, OFFER_TIMEOUT);
+  }
+
+  /**
+   * Constructs a new event bus with the given queue capacity for asynchronous
+   * event types.
+   *
+   *
+   * @param queueCapacity maximum number of events, which can wait for dispatch
+   * @param offerTimeout milliseconds to wait for free space in a full queue
+   */
+  @VisibleForTesting
+  LegmanScmEventBus(int queueCapacity, long offerTimeout)
+  {
+    this.queueCapacity = queueCapacity;
+    this.offerTimeout = offerTimeout;
     eventBus = new EventBus(NAME);
   }
 
   //~--- methods --------------------------------------------------------------
 
+  /**
+   * Stops the dispatcher threads of the asynchronous event types. Events
+   * which are still queued are dispatched before the threads are stopped,
+   * events which are posted afterwards are dispatched synchronously.
+   *
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException
+  {
+    closed = true;
+
+    for (Dispatcher dispatcher : dispatchers.values())
+    {
+      dispatcher.close();
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -79,7 +158,15 @@ public class LegmanScmEventBus extends ScmEventBus
   public void post(Object event)
   {
     logger.debug("post {} to event bus", event);
-    eventBus.post(event);
+
+    if (!closed && isAsync(event))
+    {
+      getDispatcher(event.getClass()).dispatch(event);
+    }
+    else
+    {
+      eventBus.post(event);
+    }
   }
 
   /**
@@ -117,8 +204,347 @@ public class LegmanScmEventBus extends ScmEventBus
     }
   }
 
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   *
+   *
+   * @return
+   */
+  @Override
+  public List<EventDispatchStatistics> getStatistics()
+  {
+    List<EventDispatchStatistics> statistics = Lists.newArrayList();
+
+    for (Dispatcher dispatcher : dispatchers.values())
+    {
+      statistics.add(dispatcher.getStatistics());
+    }
+
+    return statistics;
+  }
+
+  /**
+   * Returns the dispatcher for the given event type and creates it, if it
+   * does not exist.
+   *
+   *
+   * @param type event type
+   *
+   * @return dispatcher for the event type
+   */
+  private Dispatcher getDispatcher(Class<?> type)
+  {
+    Dispatcher dispatcher = dispatchers.get(type);
+
+    if (dispatcher == null)
+    {
+      synchronized (dispatchers)
+      {
+        dispatcher = dispatchers.get(type);
+
+        if (dispatcher == null)
+        {
+          logger.info("create dispatcher for asynchronous event type {}",
+            type.getName());
+          dispatcher = new Dispatcher(type);
+          dispatchers.put(type, dispatcher);
+        }
+      }
+    }
+
+    return dispatcher;
+  }
+
+  /**
+   * Returns true if the event should be dispatched asynchronously. Events
+   * which can be vetoed by a subscriber are never dispatched asynchronously,
+   * because the posting thread must receive the exception of the subscriber.
+   *
+   *
+   * @param event event to post
+   *
+   * @return true if the event should be dispatched asynchronously
+   */
+  private boolean isAsync(Object event)
+  {
+    Event annotation = event.getClass().getAnnotation(Event.class);
+    boolean async = (annotation != null) && annotation.async();
+
+    if (async)
+    {
+      if (event instanceof PreReceiveRepositoryHookEvent)
+      {
+        async = false;
+      }
+      else if (event instanceof HandlerEvent)
+      {
+        async = ((HandlerEvent<?>) event).getEventType().isPost();
+      }
+    }
+
+    return async;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Dispatches the events of one type with a single thread, in the order in
+   * which they were posted.
+   */
+  private class Dispatcher implements RejectedExecutionHandler, ThreadFactory
+  {
+
+    /**
+     * Constructs a new dispatcher for the given event type.
+     *
+     *
+     * @param type event type
+     */
+    public Dispatcher(Class<?> type)
+    {
+      this.type = type;
+
+      //J-
+      factory = new ThreadFactoryBuilder()
+        .setNameFormat(NAME.concat("-").concat(type.getSimpleName())
+          .concat("-%s"))
+        .setDaemon(true)
+        .build();
+      //J+
+
+      executor = new ThreadPoolExecutor(1, 1, 0l, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueCapacity), this, this);
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Stops the dispatcher thread, after all queued events are dispatched.
+     */
+    public void close()
+    {
+      executor.shutdown();
+
+      try
+      {
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS))
+        {
+          logger.warn("dispatcher of {} did not finish in time",
+            type.getName());
+          executor.shutdownNow();
+        }
+      }
+      catch (InterruptedException ex)
+      {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Queues the event for dispatching. The subject of the posting thread is
+     * associated with the dispatching.
+     *
+     *
+     * @param event event to dispatch
+     */
+    public void dispatch(Object event)
+    {
+      Runnable task = new Delivery(event);
+      Subject subject = ThreadContext.getSubject();
+
+      if (subject != null)
+      {
+        task = subject.associateWith(task);
+      }
+
+      executor.execute(task);
+    }
+
+    /**
+     * Creates the dispatcher thread.
+     *
+     *
+     * @param runnable runnable of the executor
+     *
+     * @return dispatcher thread
+     */
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+      thread = factory.newThread(runnable);
+
+      return thread;
+    }
+
+    /**
+     * Waits for free space in the full queue. If there is still no space
+     * after the timeout, the dispatcher is closed or the event was posted by
+     * a subscriber on the dispatcher thread, the event is dispatched on the
+     * posting thread. In that case the order of the events is not guaranteed.
+     *
+     *
+     * @param task delivery of the event
+     * @param executor executor of the dispatcher
+     */
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor)
+    {
+      if (!executor.isShutdown() && (Thread.currentThread() != thread))
+      {
+        try
+        {
+          BlockingQueue<Runnable> queue = executor.getQueue();
+
+          // the dispatcher could be closed while the posting thread waits
+          if (queue.offer(task, offerTimeout, TimeUnit.MILLISECONDS)
+            && (!executor.isShutdown() ||!queue.remove(task)))
+          {
+            return;
+          }
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      callerRunsCount.incrementAndGet();
+      logger.warn("queue of event type {} is full, dispatch on posting thread",
+        type.getName());
+      task.run();
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns the statistics of the dispatcher.
+     *
+     *
+     * @return statistics of the dispatcher
+     */
+    public EventDispatchStatistics getStatistics()
+    {
+      return new EventDispatchStatistics(type.getName(),
+        executor.getQueue().size(), queueCapacity, dispatchCount.get(),
+        callerRunsCount.get(), totalLatency.get(), maxLatency.get());
+    }
+
+    //~--- inner classes ------------------------------------------------------
+
+    /**
+     * Posts one event to the legman event bus and records the latency.
+     */
+    private class Delivery implements Runnable
+    {
+
+      /**
+       * Constructs a new delivery.
+       *
+       *
+       * @param event event to deliver
+       */
+      public Delivery(Object event)
+      {
+        this.event = event;
+      }
+
+      //~--- methods ----------------------------------------------------------
+
+      /**
+       * Posts the event and records the latency.
+       */
+      @Override
+      public void run()
+      {
+        long start = System.nanoTime();
+
+        try
+        {
+          eventBus.post(event);
+        }
+        catch (Exception ex)
+        {
+          logger.error("subscriber failed to handle ".concat(type.getName()),
+            ex);
+        }
+        finally
+        {
+          record(System.nanoTime() - start);
+        }
+      }
+
+      /**
+       * Records the latency of one dispatched event.
+       *
+       *
+       * @param latency latency in nanoseconds
+       */
+      private void record(long latency)
+      {
+        dispatchCount.incrementAndGet();
+        totalLatency.addAndGet(latency);
+
+        long max = maxLatency.get();
+
+        while ((latency > max) &&!maxLatency.compareAndSet(max, latency))
+        {
+          max = maxLatency.get();
+        }
+      }
+
+      //~--- fields -----------------------------------------------------------
+
+      /** event to deliver */
+      private final Object event;
+    }
+
+
+    //~--- fields -------------------------------------------------------------
+
+    /** number of events dispatched by the posting thread */
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    /** number of dispatched events */
+    private final AtomicLong dispatchCount = new AtomicLong();
+
+    /** executor with a single thread and a bounded queue */
+    private final ThreadPoolExecutor executor;
+
+    /** factory for the dispatcher thread */
+    private final ThreadFactory factory;
+
+    /** longest dispatch time in nanoseconds */
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /** dispatcher thread */
+    private volatile Thread thread;
+
+    /** total dispatch time in nanoseconds */
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    /** event type */
+    private final Class<?> type;
+  }
+
+
   //~--- fields ---------------------------------------------------------------
 
+  /** dispatchers of the asynchronous event types */
+  private final ConcurrentMap<Class<?>, Dispatcher> dispatchers =
+    Maps.newConcurrentMap();
+
   /** event bus */
   private final EventBus eventBus;
+
+  /** milliseconds to wait for free space in a full queue */
+  private final long offerTimeout;
+
+  /** maximum number of events, which can wait for dispatch */
+  private final int queueCapacity;
+
+  /** true if the event bus is closed */
+  private volatile boolean closed = false;
 }
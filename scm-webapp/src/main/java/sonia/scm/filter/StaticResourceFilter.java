@@ -33,18 +33,27 @@ package sonia.scm.filter;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
 import com.google.inject.Singleton;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.util.IOUtil;
 import sonia.scm.util.WebUtil;
 import sonia.scm.web.filter.HttpFilter;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -54,6 +63,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 /**
+ * Serves static resources with gzip encoding. The resources are compressed
+ * once during the initialization of the filter and are sent with their stored
+ * content length. Resources which were modified after the initialization and
+ * requests without gzip support are passed to the filter chain.
  *
  * @author Sebastian Sdorra
  */
@@ -61,6 +74,13 @@ import javax.servlet.http.HttpServletResponse;
 public class StaticResourceFilter extends HttpFilter
 {
 
+  /** directory of the static resources */
+  private static final String DIRECTORY = "/resources";
+
+  /** extensions of compressible resources */
+  private static final Set<String> EXTENSIONS = ImmutableSet.of("css", "html",
+                                                  "js", "json", "txt", "xml");
+
   /** Field description */
   private static final Logger logger =
     LoggerFactory.getLogger(StaticResourceFilter.class);
@@ -68,7 +88,7 @@ public class StaticResourceFilter extends HttpFilter
   //~--- methods --------------------------------------------------------------
 
   /**
-   * Method description
+   * Compresses all static resources.
    *
    *
    * @param filterConfig
@@ -79,10 +99,35 @@ public class StaticResourceFilter extends HttpFilter
   public void init(FilterConfig filterConfig) throws ServletException
   {
     this.context = filterConfig.getServletContext();
+
+    String path = context.getRealPath(DIRECTORY);
+
+    if (path != null)
+    {
+      ImmutableMap.Builder<String, CompressedResource> builder =
+        ImmutableMap.builder();
+
+      try
+      {
+        compress(builder, new File(path), DIRECTORY);
+      }
+      catch (IOException ex)
+      {
+        throw new ServletException("could not compress static resources", ex);
+      }
+
+      resources = builder.build();
+      logger.info("compressed {} static resources", resources.size());
+    }
+    else
+    {
+      logger.warn(
+        "static resources are not available as files, skip compression");
+    }
   }
 
   /**
-   * Method description
+   * Sends the compressed resource, if the client supports gzip encoding.
    *
    *
    * @param request
@@ -98,14 +143,18 @@ public class StaticResourceFilter extends HttpFilter
           throws IOException, ServletException
   {
     String uri = request.getRequestURI();
-    File resource = getResourceFile(request, uri);
+    CompressedResource resource =
+      resources.get(uri.substring(request.getContextPath().length()));
 
-    if (!resource.exists())
+    if ((resource != null) && resource.isCurrent()
+      && WebUtil.isGzipSupported(request))
     {
-      WebUtil.addETagHeader(response, resource);
-      WebUtil.addStaticCacheControls(response, WebUtil.TIME_YEAR);
+      WebUtil.addETagHeader(response, resource.file);
+      response.addDateHeader(WebUtil.HEADER_LASTMODIFIED,
+        resource.lastModified);
+      response.addHeader("Vary", WebUtil.HEADER_ACCEPTENCODING);
 
-      if (!WebUtil.isModified(request, resource))
+      if (!WebUtil.isModified(request, resource.file))
       {
         if (logger.isDebugEnabled())
         {
@@ -120,7 +169,7 @@ public class StaticResourceFilter extends HttpFilter
       }
       else
       {
-        chain.doFilter(request, response);
+        send(response, resource);
       }
     }
     else
@@ -129,26 +178,186 @@ public class StaticResourceFilter extends HttpFilter
     }
   }
 
+  /**
+   * Compresses all compressible files of the directory and its
+   * sub directories.
+   *
+   *
+   * @param builder map of compressed resources
+   * @param directory directory
+   * @param path request path of the directory
+   *
+   * @throws IOException
+   */
+  private void compress(
+    ImmutableMap.Builder<String, CompressedResource> builder, File directory,
+    String path)
+    throws IOException
+  {
+    File[] children = directory.listFiles();
+
+    if (children != null)
+    {
+      for (File child : children)
+      {
+        String childPath = path.concat("/").concat(child.getName());
+
+        if (child.isDirectory())
+        {
+          compress(builder, child, childPath);
+        }
+        else if (isCompressible(child))
+        {
+          CompressedResource resource = compress(child);
+
+          if (resource.content.length < child.length())
+          {
+            builder.put(childPath, resource);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Compresses a single file.
+   *
+   *
+   * @param file file to compress
+   *
+   * @return compressed resource
+   *
+   * @throws IOException
+   */
+  private CompressedResource compress(File file) throws IOException
+  {
+    long lastModified = file.lastModified();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    GZIPOutputStream output = new GZIPOutputStream(baos);
+
+    try
+    {
+      Files.copy(file, output);
+      output.finish();
+    }
+    finally
+    {
+      IOUtil.close(output);
+    }
+
+    return new CompressedResource(file, lastModified, baos.toByteArray(),
+      context.getMimeType(file.getName()));
+  }
+
+  /**
+   * Sends the compressed resource.
+   *
+   *
+   * @param response http response
+   * @param resource compressed resource
+   *
+   * @throws IOException
+   */
+  private void send(HttpServletResponse response, CompressedResource resource)
+    throws IOException
+  {
+    if (resource.contentType != null)
+    {
+      response.setContentType(resource.contentType);
+    }
+
+    response.addHeader("Content-Encoding", "gzip");
+    response.setContentLength(resource.content.length);
+
+    OutputStream output = response.getOutputStream();
+
+    try
+    {
+      output.write(resource.content);
+    }
+    finally
+    {
+      IOUtil.close(output);
+    }
+  }
+
   //~--- get methods ----------------------------------------------------------
 
   /**
-   * Method description
+   * Returns true if the file is large enough and has a compressible type.
    *
    *
-   * @param request
-   * @param uri
+   * @param file file
    *
-   * @return
+   * @return true if the file should be compressed
    */
-  private File getResourceFile(HttpServletRequest request, String uri)
+  private boolean isCompressible(File file)
   {
-    String path = uri.substring(request.getContextPath().length());
+    return (file.length() >= GZipFilterConfig.DEFAULT_MINIMUM_SIZE)
+      && EXTENSIONS.contains(Files.getFileExtension(file.getName()));
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Static resource in gzip encoding.
+   */
+  private static class CompressedResource
+  {
+
+    /**
+     * Constructs a new compressed resource.
+     *
+     *
+     * @param file file of the resource
+     * @param lastModified last modification time of the compressed file
+     * @param content compressed content
+     * @param contentType content type of the resource
+     */
+    public CompressedResource(File file, long lastModified, byte[] content,
+      String contentType)
+    {
+      this.file = file;
+      this.lastModified = lastModified;
+      this.content = content;
+      this.contentType = contentType;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns true if the file was not modified since it was compressed.
+     *
+     *
+     * @return true if the compressed content is current
+     */
+    public boolean isCurrent()
+    {
+      return file.lastModified() == lastModified;
+    }
+
+    //~--- fields -------------------------------------------------------------
 
-    return new File(context.getRealPath(path));
+    /** compressed content */
+    private final byte[] content;
+
+    /** content type */
+    private final String contentType;
+
+    /** file of the resource */
+    private final File file;
+
+    /** last modification time of the compressed file */
+    private final long lastModified;
   }
 
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
   private ServletContext context;
+
+  /** compressed resources by request path */
+  private ImmutableMap<String, CompressedResource> resources =
+    ImmutableMap.of();
 }
@@ -35,6 +35,9 @@ package sonia.scm.group;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.github.legman.Subscribe;
+
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -45,9 +48,8 @@ import org.slf4j.LoggerFactory;
 
 import sonia.scm.HandlerEventType;
 import sonia.scm.SCMContextProvider;
-import sonia.scm.TransformFilter;
 import sonia.scm.search.SearchRequest;
-import sonia.scm.search.SearchUtil;
+import sonia.scm.search.TrigramIndex;
 import sonia.scm.util.CollectionAppender;
 import sonia.scm.util.SecurityUtil;
 import sonia.scm.util.Util;
@@ -224,6 +226,39 @@ public class DefaultGroupManager extends AbstractGroupManager
     }
   }
 
+  /**
+   * Updates the search index after the creation, modification or deletion of
+   * a group.
+   *
+   *
+   * @param event group event
+   *
+   * @since 2.0.0
+   */
+  @Subscribe(async = false)
+  public void onEvent(GroupEvent event)
+  {
+    HandlerEventType type = event.getEventType();
+
+    if (type.isPost())
+    {
+      synchronized (searchIndex)
+      {
+        if (searchIndexed)
+        {
+          if (type == HandlerEventType.DELETE)
+          {
+            searchIndex.remove(event.getItem());
+          }
+          else
+          {
+            searchIndex.put(event.getItem().clone());
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Method description
    *
@@ -270,23 +305,14 @@ public class DefaultGroupManager extends AbstractGroupManager
       logger.debug("search group with query {}", searchRequest.getQuery());
     }
 
-    return SearchUtil.search(searchRequest, groupDAO.getAll(),
-      new TransformFilter<Group>()
-    {
-      @Override
-      public Group accept(Group group)
-      {
-        Group result = null;
+    List<Group> result = Lists.newArrayList();
 
-        if (SearchUtil.matchesOne(searchRequest, group.getName(),
-          group.getDescription()))
-        {
-          result = group.clone();
-        }
+    for (Group group : getSearchIndex().search(searchRequest))
+    {
+      result.add(group.clone());
+    }
 
-        return result;
-      }
-    });
+    return result;
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -448,8 +474,49 @@ public class DefaultGroupManager extends AbstractGroupManager
     group.setMembers(members);
   }
 
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the search index. The index is created from all stored groups
+   * on the first call and is updated afterwards by the group events.
+   *
+   *
+   * @return search index
+   */
+  private TrigramIndex<Group> getSearchIndex()
+  {
+    if (!searchIndexed)
+    {
+      synchronized (searchIndex)
+      {
+        if (!searchIndexed)
+        {
+          logger.debug("create search index for groups");
+          searchIndex.putAll(groupDAO.getAll());
+          searchIndexed = true;
+        }
+      }
+    }
+
+    return searchIndex;
+  }
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
   private GroupDAO groupDAO;
+
+  /** search index for groups */
+  private final TrigramIndex<Group> searchIndex =
+    new TrigramIndex<Group>(new Function<Group, String[]>()
+  {
+    @Override
+    public String[] apply(Group group)
+    {
+      return new String[] { group.getName(), group.getDescription() };
+    }
+  });
+
+  /** true if the search index is created */
+  private volatile boolean searchIndexed = false;
 }
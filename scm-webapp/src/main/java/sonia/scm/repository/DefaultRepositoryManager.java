@@ -552,17 +552,12 @@ public class DefaultRepositoryManager extends AbstractRepositoryManager
 
     if (handlerMap.containsKey(type))
     {
-      Collection<Repository> repositories = repositoryDAO.getAll();
+      Repository r = findByPathPrefix(type, uri);
 
-      for (Repository r : repositories)
+      if (r != null)
       {
-        if (type.equals(r.getType()) && isNameMatching(r, uri))
-        {
-          assertIsReader(r);
-          repository = r.clone();
-
-          break;
-        }
+        assertIsReader(r);
+        repository = r.clone();
       }
     }
 
@@ -757,27 +752,30 @@ public class DefaultRepositoryManager extends AbstractRepositoryManager
   }
 
   /**
-   * Method description
+   * Returns the repository whose name is the longest path prefix of the given
+   * uri. Every prefix which ends at a path separator is looked up by type and
+   * name, which keeps the costs independent from the number of repositories.
+   * Sub paths behind the repository name are used by mercurial and
+   * subversion.
    *
    *
-   * @param repository
-   * @param path
+   * @param type repository type
+   * @param uri uri without type
    *
-   * @return
+   * @return matching repository or null
    */
-  private boolean isNameMatching(Repository repository, String path)
+  private Repository findByPathPrefix(String type, String uri)
   {
-    boolean result = false;
-    String name = repository.getName();
+    Repository repository = null;
+    int end = uri.length();
 
-    if (path.startsWith(name))
+    while ((repository == null) && (end > 0))
     {
-      String sub = path.substring(name.length());
-
-      result = Util.isEmpty(sub) || sub.startsWith(HttpUtil.SEPARATOR_PATH);
+      repository = repositoryDAO.get(type, uri.substring(0, end));
+      end = uri.lastIndexOf(HttpUtil.SEPARATOR_PATH, end - 1);
     }
 
-    return result;
+    return repository;
   }
 
   /**
@@ -127,7 +127,7 @@ public class HealthCheckContextListener implements ServletContextListener
     public void run()
     {
 
-      // excute health checks for all repsitories asynchronous
+      // start health checks for all repsitories in the background
       SecurityUtils.getSubject().execute(new Runnable()
       {
 
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of SCM-Manager;
+ * nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Objects;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Progress of the health checks for all repositories, which are executed in
+ * the background by the {@link HealthChecker}.
+ * Instances of this class are immutable.
+ *
+ * @author Sebastian Sdorra
+ * @since 2.0.0
+ */
+@XmlRootElement(name = "health-check-progress")
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class HealthCheckProgress
+{
+
+  /**
+   * Constructs a new {@link HealthCheckProgress}.
+   * This constructor is only visible for JAXB.
+   *
+   */
+  HealthCheckProgress() {}
+
+  /**
+   * Constructs a new {@link HealthCheckProgress}.
+   *
+   *
+   * @param total number of repositories to check
+   * @param completed number of finished checks
+   * @param skipped number of checks, which were skipped because the
+   *   repository was not modified since its last check
+   * @param unhealthy number of unhealthy repositories
+   * @param running true if the checks are still running
+   */
+  HealthCheckProgress(int total, int completed, int skipped, int unhealthy,
+    boolean running)
+  {
+    this.total = total;
+    this.completed = completed;
+    this.skipped = skipped;
+    this.unhealthy = unhealthy;
+    this.running = running;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    //J-
+    return Objects.toStringHelper(this)
+                  .add("total", total)
+                  .add("completed", completed)
+                  .add("skipped", skipped)
+                  .add("unhealthy", unhealthy)
+                  .add("running", running)
+                  .toString();
+    //J+
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of finished checks, including the skipped checks.
+   *
+   *
+   * @return number of finished checks
+   */
+  public int getCompleted()
+  {
+    return completed;
+  }
+
+  /**
+   * Returns the number of checks, which were skipped because the directory of
+   * the repository was not modified since its last check.
+   *
+   *
+   * @return number of skipped checks
+   */
+  public int getSkipped()
+  {
+    return skipped;
+  }
+
+  /**
+   * Returns the number of repositories of the current or last run.
+   *
+   *
+   * @return number of repositories
+   */
+  public int getTotal()
+  {
+    return total;
+  }
+
+  /**
+   * Returns the number of unhealthy repositories found so far.
+   *
+   *
+   * @return number of unhealthy repositories
+   */
+  public int getUnhealthy()
+  {
+    return unhealthy;
+  }
+
+  /**
+   * Returns true if the health checks are still running.
+   *
+   *
+   * @return true if the checks are running
+   */
+  public boolean isRunning()
+  {
+    return running;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** number of finished checks */
+  private int completed;
+
+  /** true if the checks are running */
+  private boolean running;
+
+  /** number of skipped checks */
+  private int skipped;
+
+  /** number of repositories */
+  private int total;
+
+  /** number of unhealthy repositories */
+  private int unhealthy;
+}
@@ -29,14 +29,20 @@
 
 
 
+
 package sonia.scm.repository;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
 import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.concurrent.SubjectAwareExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,17 +51,36 @@ import sonia.scm.security.Role;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Executes the {@link HealthCheck}s for repositories. The checks for all
+ * repositories are executed in the background by a bounded pool of worker
+ * threads. A repository is only checked again by {@link #checkAll()}, if the
+ * last modified date of its directory has changed since its last check.
  *
  * @author Sebastian Sdorra
  */
-public final class HealthChecker
+@Singleton
+public final class HealthChecker implements Closeable
 {
 
+  /** max number of worker threads */
+  private static final int MAX_THREADS = 4;
+
+  /** name of the worker threads */
+  private static final String THREAD_NAME = "HealthChecker-%s";
+
   /**
    * the logger for HealthChecker
    */
@@ -74,9 +99,33 @@ public final class HealthChecker
   @Inject
   public HealthChecker(Set<HealthCheck> checks,
     RepositoryManager repositoryManager)
+  {
+    this(checks, repositoryManager,
+      Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param checks
+   * @param repositoryManager
+   * @param threads number of worker threads
+   */
+  @VisibleForTesting
+  HealthChecker(Set<HealthCheck> checks, RepositoryManager repositoryManager,
+    int threads)
   {
     this.checks = checks;
     this.repositoryManager = repositoryManager;
+
+    //J-
+    ThreadFactory factory = new ThreadFactoryBuilder()
+      .setNameFormat(THREAD_NAME).setDaemon(true).build();
+    this.executor = new SubjectAwareExecutorService(
+      Executors.newFixedThreadPool(Math.max(1, threads), factory)
+    );
+    //J+
   }
 
   //~--- methods --------------------------------------------------------------
@@ -119,6 +168,109 @@ public final class HealthChecker
    */
   public void check(Repository repository)
     throws RepositoryException, IOException
+  {
+    check(repository, getLastModified(repository));
+  }
+
+  /**
+   * Starts the health checks for all repositories in the background and
+   * returns immediately. If the checks of a previous call are still running,
+   * no new checks are started. The progress of the checks can be observed
+   * with {@link #getProgress()}.
+   *
+   *
+   * @return progress of the health checks
+   */
+  public synchronized HealthCheckProgress checkAll()
+  {
+    SecurityUtils.getSubject().checkRole(Role.ADMIN);
+
+    if ((run != null) && run.isRunning())
+    {
+      logger.debug("health checks are already running");
+    }
+    else
+    {
+      Collection<Repository> repositories = repositoryManager.getAll();
+
+      logger.info("start health checks for {} repositories",
+        repositories.size());
+
+      final Run current = new Run(repositories.size());
+
+      for (final Repository repository : repositories)
+      {
+        executor.execute(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            checkInBackground(current, repository);
+          }
+        });
+      }
+
+      run = current;
+    }
+
+    return run.toProgress();
+  }
+
+  /**
+   * Stops the worker threads.
+   *
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException
+  {
+    executor.shutdownNow();
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the progress of the current or the last run of
+   * {@link #checkAll()}.
+   *
+   *
+   * @return progress of the health checks
+   */
+  public synchronized HealthCheckProgress getProgress()
+  {
+    SecurityUtils.getSubject().checkRole(Role.ADMIN);
+
+    HealthCheckProgress progress;
+
+    if (run != null)
+    {
+      progress = run.toProgress();
+    }
+    else
+    {
+      progress = new HealthCheckProgress(0, 0, 0, 0, false);
+    }
+
+    return progress;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Executes all health checks for the repository and stores the last
+   * modified date of the repository directory, which was read before the
+   * checks were executed.
+   *
+   *
+   * @param repository repository to check
+   * @param lastModified last modified date of the repository directory
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  private void check(Repository repository, long lastModified)
+    throws RepositoryException, IOException
   {
     logger.info("start health check for repository {}", repository.getName());
     SecurityUtils.getSubject().checkRole(Role.ADMIN);
@@ -150,36 +302,167 @@ public final class HealthChecker
         ImmutableList.copyOf(result.getFailures()));
       repositoryManager.modify(repository);
     }
+
+    if (lastModified > 0)
+    {
+      checked.put(repository.getId(), lastModified);
+    }
   }
 
   /**
-   * Method description
+   * Checks the repository as part of a run of {@link #checkAll()}. The checks
+   * are skipped, if the directory of the repository was not modified since
+   * its last check.
    *
    *
+   * @param current current run
+   * @param repository repository to check
    */
-  public void checkAll()
+  private void checkInBackground(Run current, Repository repository)
   {
-    logger.debug("check health of all repositories");
-    SecurityUtils.getSubject().checkRole(Role.ADMIN);
+    try
+    {
+      long lastModified = getLastModified(repository);
+      Long lastChecked = checked.get(repository.getId());
+
+      if ((lastModified > 0) && (lastChecked != null)
+        && (lastChecked == lastModified))
+      {
+        logger.debug("skip health check for unmodified repository {}",
+          repository.getName());
+        current.skipped.incrementAndGet();
+      }
+      else
+      {
+        check(repository, lastModified);
+      }
 
-    for (Repository repository : repositoryManager.getAll())
+      if (!repository.isHealthy())
+      {
+        current.unhealthy.incrementAndGet();
+      }
+    }
+    catch (Exception ex)
+    {
+      logger.error("health check ends with exception", ex);
+    }
+    finally
     {
-      try
+      if (current.completed.incrementAndGet() == current.total)
       {
-        check(repository);
+        logger.info("finished health checks for {} repositories",
+          current.total);
       }
-      catch (Exception ex)
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the last modified date of the repository directory or 0, if the
+   * repository has no directory.
+   *
+   *
+   * @param repository repository
+   *
+   * @return last modified date of the directory or 0
+   */
+  private long getLastModified(Repository repository)
+  {
+    long lastModified = 0l;
+    RepositoryHandler handler =
+      repositoryManager.getHandler(repository.getType());
+
+    if (handler instanceof RepositoryDirectoryHandler)
+    {
+      File directory =
+        ((RepositoryDirectoryHandler) handler).getDirectory(repository);
+
+      if (directory != null)
       {
-        logger.error("health check ends with exception", ex);
+        lastModified = directory.lastModified();
       }
     }
+
+    return lastModified;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Counters of a single run of {@link HealthChecker#checkAll()}.
+   */
+  private static final class Run
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param total number of repositories
+     */
+    public Run(int total)
+    {
+      this.total = total;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns true if not all repositories are checked.
+     *
+     *
+     * @return true if the run is not finished
+     */
+    public boolean isRunning()
+    {
+      return completed.get() < total;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Creates a snapshot of the counters.
+     *
+     *
+     * @return snapshot of the counters
+     */
+    public HealthCheckProgress toProgress()
+    {
+      return new HealthCheckProgress(total, completed.get(), skipped.get(),
+        unhealthy.get(), isRunning());
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** number of finished checks */
+    private final AtomicInteger completed = new AtomicInteger();
+
+    /** number of skipped checks */
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    /** number of repositories */
+    private final int total;
+
+    /** number of unhealthy repositories */
+    private final AtomicInteger unhealthy = new AtomicInteger();
   }
 
   //~--- fields ---------------------------------------------------------------
 
+  /** last modified dates of the checked repository directories */
+  private final ConcurrentMap<String, Long> checked =
+    Maps.newConcurrentMap();
+
   /** Field description */
   private final Set<HealthCheck> checks;
 
+  /** worker threads */
+  private final ExecutorService executor;
+
   /** Field description */
   private final RepositoryManager repositoryManager;
+
+  /** current or last run of the health checks */
+  private Run run;
 }
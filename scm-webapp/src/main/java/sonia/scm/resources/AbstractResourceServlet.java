@@ -39,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import sonia.scm.util.HttpUtil;
 import sonia.scm.util.IOUtil;
+import sonia.scm.util.WebUtil;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -57,6 +58,17 @@ import javax.servlet.http.HttpServletResponse;
 public abstract class AbstractResourceServlet extends HttpServlet
 {
 
+  /** cache control for resources which never change */
+  private static final String CACHE_CONTROL_IMMUTABLE =
+    "public, max-age=".concat(Long.toString(WebUtil.TIME_YEAR)).concat(
+      ", immutable");
+
+  /** Field description */
+  private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+
+  /** Field description */
+  private static final String HEADER_VARY = "Vary";
+
   /** Field description */
   private static final long serialVersionUID = -1774434741744054387L;
 
@@ -117,7 +129,11 @@ public abstract class AbstractResourceServlet extends HttpServlet
       String name = uri.substring(index + nameSeparator.length());
       Resource resource = resourceManager.getResource(type, name);
 
-      if (resource != null)
+      if (resource instanceof DefaultResource)
+      {
+        printBundle(request, response, (DefaultResource) resource);
+      }
+      else if (resource != null)
       {
         printResource(response, resource);
       }
@@ -137,6 +153,72 @@ public abstract class AbstractResourceServlet extends HttpServlet
     }
   }
 
+  /**
+   * Sends a bundle of resources. The name of the bundle contains the
+   * checksum of its content, so the bundle can be cached forever and is
+   * sent in its precompressed form, if the client supports gzip.
+   *
+   *
+   * @param request http request
+   * @param response http response
+   * @param bundle resource bundle
+   *
+   * @throws IOException
+   */
+  private void printBundle(HttpServletRequest request,
+    HttpServletResponse response, DefaultResource bundle)
+    throws IOException
+  {
+    String etag = "\"".concat(bundle.getName()).concat("\"");
+
+    response.setHeader(WebUtil.HEADER_ETAG, etag);
+    response.setHeader(WebUtil.HEADER_CACHECONTROL, CACHE_CONTROL_IMMUTABLE);
+    response.setDateHeader(WebUtil.HEADER_EXPIRES,
+      System.currentTimeMillis() + (WebUtil.TIME_YEAR * 1000));
+    response.setHeader(HEADER_VARY, WebUtil.HEADER_ACCEPTENCODING);
+
+    if (etag.equals(request.getHeader(WebUtil.HEADER_INM)))
+    {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+    else
+    {
+      response.setContentType(bundle.getType().getContentType());
+
+      boolean gzip = WebUtil.isGzipSupported(request);
+
+      if (gzip)
+      {
+        response.setHeader(HEADER_CONTENT_ENCODING, "gzip");
+        response.setContentLength(bundle.getCompressedLength());
+      }
+      else
+      {
+        response.setContentLength(bundle.getLength());
+      }
+
+      OutputStream output = null;
+
+      try
+      {
+        output = response.getOutputStream();
+
+        if (gzip)
+        {
+          bundle.copyCompressedTo(output);
+        }
+        else
+        {
+          bundle.copyTo(output);
+        }
+      }
+      finally
+      {
+        IOUtil.close(output);
+      }
+    }
+  }
+
   /**
    * Method description
    *
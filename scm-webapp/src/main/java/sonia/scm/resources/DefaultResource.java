@@ -44,6 +44,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletContext;
 
@@ -79,6 +80,7 @@ public class DefaultResource extends AbstractResource
     {
       appendResources(baos);
       this.content = baos.toByteArray();
+      this.compressedContent = compress(content);
       this.name = ChecksumUtil.createChecksum(this.content).concat(".").concat(
         type.getExtension());
     }
@@ -90,6 +92,22 @@ public class DefaultResource extends AbstractResource
 
   //~--- methods --------------------------------------------------------------
 
+  /**
+   * Copies the gzip compressed content of the resource to the given
+   * {@link OutputStream}. The content is compressed once, when the resource
+   * is created.
+   *
+   *
+   * @param output stream to copy the compressed content
+   *
+   * @throws IOException
+   * @since 2.0.0
+   */
+  public void copyCompressedTo(OutputStream output) throws IOException
+  {
+    output.write(compressedContent);
+  }
+
   /**
    * Method description
    *
@@ -104,8 +122,62 @@ public class DefaultResource extends AbstractResource
     output.write(content);
   }
 
+  /**
+   * Compresses the content with gzip.
+   *
+   *
+   * @param content content to compress
+   *
+   * @return compressed content
+   *
+   * @throws IOException
+   */
+  private byte[] compress(byte[] content) throws IOException
+  {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    GZIPOutputStream output = new GZIPOutputStream(baos);
+
+    try
+    {
+      output.write(content);
+      output.finish();
+    }
+    finally
+    {
+      IOUtil.close(output);
+    }
+
+    return baos.toByteArray();
+  }
+
   //~--- get methods ----------------------------------------------------------
 
+  /**
+   * Returns the length of the gzip compressed content in bytes.
+   *
+   *
+   * @return length of the compressed content
+   *
+   * @since 2.0.0
+   */
+  public int getCompressedLength()
+  {
+    return compressedContent.length;
+  }
+
+  /**
+   * Returns the length of the content in bytes.
+   *
+   *
+   * @return length of the content
+   *
+   * @since 2.0.0
+   */
+  public int getLength()
+  {
+    return content.length;
+  }
+
   /**
    * Method description
    *
@@ -132,6 +204,9 @@ public class DefaultResource extends AbstractResource
 
   //~--- fields ---------------------------------------------------------------
 
+  /** gzip compressed content */
+  private byte[] compressedContent;
+
   /** Field description */
   private byte[] content;
 
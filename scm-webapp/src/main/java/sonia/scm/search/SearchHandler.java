@@ -42,10 +42,6 @@ import com.google.common.collect.Lists;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.subject.Subject;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import sonia.scm.cache.Cache;
 import sonia.scm.security.ScmSecurityException;
 import sonia.scm.util.Util;
 
@@ -66,39 +62,21 @@ import sonia.scm.security.Role;
 public class SearchHandler<T>
 {
 
-  /** the logger for SearchHandler */
-  private static final Logger logger =
-    LoggerFactory.getLogger(SearchHandler.class);
-
   //~--- constructors ---------------------------------------------------------
 
   /**
    * Constructs ...
    *
    *
-   * @param securityContextProvider
-   * @param cache
    * @param searchable
    */
-  public SearchHandler(Cache<String, SearchResults> cache,
-    Searchable<T> searchable)
+  public SearchHandler(Searchable<T> searchable)
   {
-
-    this.cache = cache;
     this.searchable = searchable;
   }
 
   //~--- methods --------------------------------------------------------------
 
-  /**
-   * Method description
-   *
-   */
-  public void clearCache()
-  {
-    this.cache.clear();
-  }
-
   /**
    * Method description
    *
@@ -123,35 +101,25 @@ public class SearchHandler<T>
       throw new WebApplicationException(Status.BAD_REQUEST);
     }
 
-    SearchResults result = cache.get(queryString);
-
-    if (result == null)
-    {
-      SearchRequest request = new SearchRequest(queryString, ignoreCase);
+    SearchRequest request = new SearchRequest(queryString, ignoreCase);
 
-      request.setMaxResults(maxResults);
+    request.setMaxResults(maxResults);
 
-      Collection<T> users = searchable.search(request);
+    Collection<T> users = searchable.search(request);
 
-      result = new SearchResults();
+    SearchResults result = new SearchResults();
 
-      if (Util.isNotEmpty(users))
-      {
-        Collection<SearchResult> resultCollection =
-          Collections2.transform(users, function);
+    if (Util.isNotEmpty(users))
+    {
+      Collection<SearchResult> resultCollection =
+        Collections2.transform(users, function);
 
-        result.setSuccess(true);
+      result.setSuccess(true);
 
-        // create a copy of the result collection to reduce memory
-        // use ArrayList instead of ImmutableList for copy, 
-        // because the list must be mutable for decorators
-        result.setResults(Lists.newArrayList(resultCollection));
-        cache.put(queryString, result);
-      }
-    }
-    else if (logger.isDebugEnabled())
-    {
-      logger.debug("return searchresults for {} from cache", queryString);
+      // create a copy of the result collection to reduce memory
+      // use ArrayList instead of ImmutableList for copy, 
+      // because the list must be mutable for decorators
+      result.setResults(Lists.newArrayList(resultCollection));
     }
 
     return result;
@@ -207,9 +175,6 @@ public class SearchHandler<T>
 
   //~--- fields ---------------------------------------------------------------
 
-  /** Field description */
-  protected Cache<String, SearchResults> cache;
-
   /** Field description */
   protected Searchable<T> searchable;
 
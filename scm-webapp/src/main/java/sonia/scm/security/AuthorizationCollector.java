@@ -39,8 +39,11 @@ import com.github.legman.Subscribe;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -55,8 +58,10 @@ import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.HandlerEventType;
 import sonia.scm.cache.Cache;
 import sonia.scm.cache.CacheManager;
+import sonia.scm.group.Group;
 import sonia.scm.group.GroupEvent;
 import sonia.scm.group.GroupNames;
 import sonia.scm.repository.PermissionType;
@@ -70,6 +75,7 @@ import sonia.scm.util.Util;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -138,17 +144,19 @@ public class AuthorizationCollector
   }
 
   /**
-   * Method description
+   * Removes the cached authorization of the user, because the user could
+   * have become an administrator or the user was deleted.
    *
    *
-   * @param event
+   * @param event user event
    */
   @Subscribe
   public void onEvent(UserEvent event)
   {
     if (event.getEventType().isPost())
     {
-      User user = event.getItem();
+      final User user = event.getItem();
+      final User oldUser = event.getOldItem();
 
       if (logger.isDebugEnabled())
       {
@@ -157,71 +165,121 @@ public class AuthorizationCollector
           user.getName());
       }
 
-      // check if this is neccessary
-      cache.clear();
+      cache.removeAll(new Predicate<CacheKey>()
+      {
+
+        @Override
+        public boolean apply(CacheKey key)
+        {
+          return key.username.equals(user.getId())
+            || ((oldUser != null) && key.username.equals(oldUser.getId()));
+        }
+      });
     }
   }
 
   /**
-   * Method description
+   * Updates the entry of the changed repository in every cached
+   * authorization, instead of collecting them again.
    *
    *
-   * @param event
+   * @param event repository event
    */
   @Subscribe
   public void onEvent(RepositoryEvent event)
   {
     if (event.getEventType().isPost())
     {
+      Repository repository = event.getItem();
+
       if (logger.isDebugEnabled())
       {
-        logger.debug("clear cache, because repository {} has changed",
-          event.getItem().getName());
+        logger.debug("update cache, because repository {} has changed",
+          repository.getName());
       }
 
-      cache.clear();
+      updateRepository(repository,
+        event.getEventType() == HandlerEventType.DELETE);
     }
   }
 
   /**
-   * Method description
+   * Removes the cached authorizations, which are affected by the changed
+   * permission.
    *
    *
-   * @param event
+   * @param event permission event
    */
   @Subscribe
   public void onEvent(StoredAssignedPermissionEvent event)
   {
     if (event.getEventType().isPost())
     {
-      if (logger.isDebugEnabled())
+      final StoredAssignedPermission permission = event.getPermission();
+
+      if (event.getEventType() == HandlerEventType.MODIFY)
       {
-        logger.debug("clear cache, because permission {} has changed",
-          event.getPermission().getId());
+        if (logger.isDebugEnabled())
+        {
+          logger.debug("clear cache, because permission {} has changed",
+            permission.getId());
+        }
+
+        // the event does not contain the previous owner of the permission
+        cache.clear();
       }
+      else
+      {
+        if (logger.isDebugEnabled())
+        {
+          logger.debug("clear cache of {}, because permission {} has changed",
+            permission.getName(), permission.getId());
+        }
 
-      cache.clear();
+        cache.removeAll(new Predicate<CacheKey>()
+        {
+
+          @Override
+          public boolean apply(CacheKey key)
+          {
+            return isUserPermission(key.username, key.groupnames, permission);
+          }
+        });
+      }
     }
   }
 
   /**
-   * Method description
+   * Removes the cached authorizations of all members of the group and of all
+   * users which are authenticated with the group.
    *
    *
-   * @param event
+   * @param event group event
    */
   @Subscribe
   public void onEvent(GroupEvent event)
   {
     if (event.getEventType().isPost())
     {
+      final Group group = event.getItem();
+      final Group oldGroup = event.getOldItem();
+
       if (logger.isDebugEnabled())
       {
-        logger.debug("clear cache, because group {} has changed",
-          event.getItem().getId());
+        logger.debug("clear cache of members, because group {} has changed",
+          group.getId());
       }
 
-      cache.clear();
+      cache.removeAll(new Predicate<CacheKey>()
+      {
+
+        @Override
+        public boolean apply(CacheKey key)
+        {
+          return isAffected(key, group)
+            || ((oldGroup != null) && isAffected(key, oldGroup));
+        }
+      });
     }
   }
 
@@ -277,8 +335,9 @@ public class AuthorizationCollector
    * @param groups
    *
    */
-  private void collectGlobalPermissions(Builder<Permission> builder,
-    final User user, final GroupNames groups)
+  private void collectGlobalPermissions(
+    Map<String, PermissionType> repositoryPermissions,
+    Builder<Permission> builder, final User user, final GroupNames groups)
   {
     if (logger.isTraceEnabled())
     {
@@ -306,7 +365,14 @@ public class AuthorizationCollector
 
       Permission permission = resolver.resolvePermission(gp.getPermission());
 
-      if (permission != null)
+      if (permission instanceof RepositoryPermission)
+      {
+        RepositoryPermission rp = (RepositoryPermission) permission;
+
+        addRepositoryPermission(repositoryPermissions, rp.getRepositoryId(),
+          rp.getPermissionType());
+      }
+      else if (permission != null)
       {
         builder.add(permission);
       }
@@ -318,13 +384,15 @@ public class AuthorizationCollector
    *
    *
    *
-   * @param builder
+   * @param repositoryPermissions
+   * @param publicReadable
    * @param user
    * @param groups
    *
    */
-  private void collectRepositoryPermissions(Builder<Permission> builder,
-    User user, GroupNames groups)
+  private void collectRepositoryPermissions(
+    Map<String, PermissionType> repositoryPermissions,
+    Set<String> publicReadable, User user, GroupNames groups)
   {
     for (Repository repository : repositoryDAO.getAll())
     {
@@ -334,7 +402,13 @@ public class AuthorizationCollector
           repository.getName(), user.getName());
       }
 
-      collectRepositoryPermissions(builder, repository, user, groups);
+      if (repository.isPublicReadable())
+      {
+        publicReadable.add(repository.getId());
+      }
+
+      collectRepositoryPermissions(repositoryPermissions, repository, user,
+        groups);
     }
   }
 
@@ -343,13 +417,14 @@ public class AuthorizationCollector
    *
    *
    *
-   * @param builder
+   * @param permissionMap
    * @param repository
    * @param user
    * @param groups
    */
-  private void collectRepositoryPermissions(Builder<Permission> builder,
-    Repository repository, User user, GroupNames groups)
+  private void collectRepositoryPermissions(
+    Map<String, PermissionType> permissionMap, Repository repository,
+    User user, GroupNames groups)
   {
     List<sonia.scm.repository.Permission> repositoryPermissions =
       repository.getPermissions();
@@ -361,16 +436,14 @@ public class AuthorizationCollector
       {
         if (isUserPermission(user, groups, permission))
         {
-          RepositoryPermission rp = new RepositoryPermission(repository,
-                                      permission.getType());
-
           if (logger.isTraceEnabled())
           {
-            logger.trace("add repository permission {} for user {}", rp,
-              user.getName());
+            logger.trace("add repository permission {} on {} for user {}",
+              permission.getType(), repository.getName(), user.getName());
           }
 
-          builder.add(rp);
+          addRepositoryPermission(permissionMap, repository.getId(),
+            permission.getType());
         }
       }
     }
@@ -394,6 +467,8 @@ public class AuthorizationCollector
     GroupNames groups)
   {
     Set<String> roles;
+    Map<String, PermissionType> repositoryPermissions = Maps.newHashMap();
+    Set<String> publicReadable = Sets.newHashSet();
     Set<Permission> permissions;
 
     if (user.isAdmin())
@@ -404,15 +479,9 @@ public class AuthorizationCollector
       }
 
       roles = ImmutableSet.of(Role.USER, Role.ADMIN);
-
-      //J-
-      Permission adminPermission = new RepositoryPermission(
-        RepositoryPermission.WILDCARD,
-        PermissionType.OWNER
-      );
-      //J+
-
-      permissions = ImmutableSet.of(adminPermission);
+      repositoryPermissions.put(RepositoryPermission.WILDCARD,
+        PermissionType.OWNER);
+      permissions = ImmutableSet.of();
     }
     else
     {
@@ -420,20 +489,143 @@ public class AuthorizationCollector
 
       Builder<Permission> builder = ImmutableSet.builder();
 
-      collectGlobalPermissions(builder, user, groups);
-      collectRepositoryPermissions(builder, user, groups);
+      collectGlobalPermissions(repositoryPermissions, builder, user, groups);
+      collectRepositoryPermissions(repositoryPermissions, publicReadable, user,
+        groups);
       permissions = builder.build();
     }
 
-    SimpleAuthorizationInfo info = new SimpleAuthorizationInfo(roles);
+    return new RepositoryAuthorizationInfo(roles, repositoryPermissions,
+      publicReadable, permissions);
+  }
 
-    info.addObjectPermissions(permissions);
+  /**
+   * Stores the permission type for the repository, if it is higher than the
+   * one which is already stored.
+   *
+   *
+   * @param repositoryPermissions
+   * @param repositoryId
+   * @param type
+   */
+  private void addRepositoryPermission(
+    Map<String, PermissionType> repositoryPermissions, String repositoryId,
+    PermissionType type)
+  {
+    repositoryPermissions.put(repositoryId,
+      RepositoryAuthorizationInfo.max(repositoryPermissions.get(repositoryId),
+        type));
+  }
 
-    return info;
+  /**
+   * Replaces the entry of the repository in every cached authorization.
+   *
+   *
+   * @param repository changed repository
+   * @param deleted true if the repository was deleted
+   */
+  private void updateRepository(final Repository repository, boolean deleted)
+  {
+    List<StoredAssignedPermission> globalPermissions = ImmutableList.of();
+
+    if (!deleted)
+    {
+      globalPermissions = securitySystem.getPermissions(
+        new Predicate<AssignedPermission>()
+      {
+
+        @Override
+        public boolean apply(AssignedPermission input)
+        {
+          return resolveRepositoryPermission(input, repository) != null;
+        }
+      });
+    }
+
+    for (CacheKey key : ImmutableSet.copyOf(cache.keys()))
+    {
+      AuthorizationInfo info = cache.get(key);
+
+      if (info instanceof RepositoryAuthorizationInfo)
+      {
+        PermissionType type = null;
+
+        if (!deleted)
+        {
+          type = getPermissionType(key, repository, globalPermissions);
+        }
+
+        //J-
+        cache.put(key,
+          ((RepositoryAuthorizationInfo) info).withRepository(
+            repository.getId(), type, !deleted && repository.isPublicReadable()
+          )
+        );
+        //J+
+      }
+    }
   }
 
   //~--- get methods ----------------------------------------------------------
 
+  /**
+   * Returns the highest permission type of the cache key for the repository.
+   *
+   *
+   * @param key cache key
+   * @param repository repository
+   * @param globalPermissions global permissions for the repository
+   *
+   * @return highest permission type or null
+   */
+  private PermissionType getPermissionType(CacheKey key,
+    Repository repository, List<StoredAssignedPermission> globalPermissions)
+  {
+    PermissionType type = null;
+    List<sonia.scm.repository.Permission> repositoryPermissions =
+      repository.getPermissions();
+
+    if (Util.isNotEmpty(repositoryPermissions))
+    {
+      for (sonia.scm.repository.Permission permission : repositoryPermissions)
+      {
+        if (isUserPermission(key.username, key.groupnames, permission))
+        {
+          type = RepositoryAuthorizationInfo.max(type, permission.getType());
+        }
+      }
+    }
+
+    for (StoredAssignedPermission gp : globalPermissions)
+    {
+      RepositoryPermission rp = resolveRepositoryPermission(gp, repository);
+
+      if ((rp != null) && isUserPermission(key.username, key.groupnames, gp))
+      {
+        type = RepositoryAuthorizationInfo.max(type, rp.getPermissionType());
+      }
+    }
+
+    return type;
+  }
+
+  /**
+   * Returns true if the cached authorization of the key is affected by a
+   * change of the group.
+   *
+   *
+   * @param key cache key
+   * @param group changed group
+   *
+   * @return true if the key is affected
+   */
+  private boolean isAffected(CacheKey key, Group group)
+  {
+    return ((key.groupnames != null)
+      && key.groupnames.contains(group.getName())) || group.isMember(
+        key.username);
+  }
+
   /**
    * Method description
    *
@@ -446,13 +638,57 @@ public class AuthorizationCollector
    */
   private boolean isUserPermission(User user, GroupNames groups,
     PermissionObject perm)
+  {
+    return isUserPermission(user.getName(), groups, perm);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param username
+   * @param groups
+   * @param perm
+   *
+   * @return
+   */
+  private boolean isUserPermission(String username, GroupNames groups,
+    PermissionObject perm)
   {
     //J-
-    return (perm.isGroupPermission() && groups.contains(perm.getName())) 
-      || ((!perm.isGroupPermission()) && user.getName().equals(perm.getName()));
+    return (perm.isGroupPermission() && (groups != null) && groups.contains(perm.getName())) 
+      || ((!perm.isGroupPermission()) && username.equals(perm.getName()));
     //J+
   }
 
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Resolves the assigned permission and returns it, if it is a repository
+   * permission for the given repository.
+   *
+   *
+   * @param permission assigned permission
+   * @param repository repository
+   *
+   * @return repository permission or null
+   */
+  private RepositoryPermission resolveRepositoryPermission(
+    AssignedPermission permission, Repository repository)
+  {
+    RepositoryPermission rp = null;
+    Permission p = resolver.resolvePermission(permission.getPermission());
+
+    if ((p instanceof RepositoryPermission)
+      && repository.getId().equals(
+        ((RepositoryPermission) p).getRepositoryId()))
+    {
+      rp = (RepositoryPermission) p;
+    }
+
+    return rp;
+  }
+
   //~--- inner classes --------------------------------------------------------
 
   /**
@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.security;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+
+import sonia.scm.repository.PermissionType;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link org.apache.shiro.authz.AuthorizationInfo} which stores the highest
+ * {@link PermissionType} of a user for each repository. A check of a
+ * {@link RepositoryPermission} is resolved with a single map lookup, instead
+ * of calling {@link Permission#implies(Permission)} on every permission of the
+ * user. The object permissions are still populated, to keep the info usable
+ * by code which reads them directly.
+ * The info is immutable, all mutators throw an
+ * {@link UnsupportedOperationException}. This allows the authorization cache
+ * to return the cached info without a copy.
+ *
+ * @author Sebastian Sdorra
+ */
+public class RepositoryAuthorizationInfo extends SimpleAuthorizationInfo
+{
+
+  /** Field description */
+  private static final long serialVersionUID = -4312685468218813409L;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new RepositoryAuthorizationInfo.
+   *
+   *
+   * @param roles roles of the user
+   * @param repositoryPermissions highest permission for each repository id,
+   *   the key {@link RepositoryPermission#WILDCARD} grants the permission to
+   *   all repositories
+   * @param publicReadable ids of all public readable repositories
+   * @param otherPermissions permissions which are no repository permissions
+   */
+  public RepositoryAuthorizationInfo(Set<String> roles,
+    Map<String, PermissionType> repositoryPermissions,
+    Set<String> publicReadable, Set<Permission> otherPermissions)
+  {
+    this.repositoryPermissions = ImmutableMap.copyOf(repositoryPermissions);
+    this.publicReadable = ImmutableSet.copyOf(publicReadable);
+    this.otherPermissions = ImmutableSet.copyOf(otherPermissions);
+
+    ImmutableSet.Builder<Permission> builder = ImmutableSet.builder();
+
+    builder.addAll(this.otherPermissions);
+
+    for (Map.Entry<String, PermissionType> e :
+      this.repositoryPermissions.entrySet())
+    {
+      builder.add(new RepositoryPermission(e.getKey(), e.getValue()));
+    }
+
+    // assign the fields directly, the mutators are disabled
+    this.roles = (roles != null)
+      ? ImmutableSet.copyOf(roles)
+      : ImmutableSet.<String>of();
+    this.stringPermissions = ImmutableSet.of();
+    this.objectPermissions = builder.build();
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns a copy of this info, with an updated entry for the given
+   * repository. This is used to update cached authorization infos, after a
+   * repository has changed.
+   *
+   *
+   * @param repositoryId id of the repository
+   * @param type highest permission type of the user or {@code null}
+   * @param isPublicReadable true if the repository is public readable
+   *
+   * @return updated copy of the info
+   */
+  public RepositoryAuthorizationInfo withRepository(String repositoryId,
+    PermissionType type, boolean isPublicReadable)
+  {
+    Map<String, PermissionType> permissions =
+      Maps.newHashMap(repositoryPermissions);
+    Set<String> readable = Sets.newHashSet(publicReadable);
+
+    if (type != null)
+    {
+      permissions.put(repositoryId, type);
+    }
+    else
+    {
+      permissions.remove(repositoryId);
+    }
+
+    if (isPublicReadable)
+    {
+      readable.add(repositoryId);
+    }
+    else
+    {
+      readable.remove(repositoryId);
+    }
+
+    return new RepositoryAuthorizationInfo(getRoles(), permissions, readable,
+      otherPermissions);
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param permission
+   */
+  @Override
+  public void addObjectPermission(Permission permission)
+  {
+    throw immutable();
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param permissions
+   */
+  @Override
+  public void addObjectPermissions(Collection<Permission> permissions)
+  {
+    throw immutable();
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param role
+   */
+  @Override
+  public void addRole(String role)
+  {
+    throw immutable();
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param roles
+   */
+  @Override
+  public void addRoles(Collection<String> roles)
+  {
+    throw immutable();
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param permission
+   */
+  @Override
+  public void addStringPermission(String permission)
+  {
+    throw immutable();
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param permissions
+   */
+  @Override
+  public void addStringPermissions(Collection<String> permissions)
+  {
+    throw immutable();
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the highest permission type for the given repository or
+   * {@code null} if the user has no permission for the repository.
+   *
+   *
+   * @param repositoryId id of the repository
+   *
+   * @return highest permission type or {@code null}
+   */
+  public PermissionType getPermissionType(String repositoryId)
+  {
+    PermissionType type = max(repositoryPermissions.get(repositoryId),
+                            repositoryPermissions.get(
+                              RepositoryPermission.WILDCARD));
+
+    if (publicReadable.contains(repositoryId))
+    {
+      type = max(type, PermissionType.READ);
+    }
+
+    return type;
+  }
+
+  /**
+   * Returns the ids of all public readable repositories.
+   *
+   *
+   * @return ids of public readable repositories
+   */
+  public Set<String> getPublicReadable()
+  {
+    return publicReadable;
+  }
+
+  /**
+   * Returns the highest permission type for each repository, which was
+   * explicitly granted to the user.
+   *
+   *
+   * @return highest permission type for each repository
+   */
+  public Map<String, PermissionType> getRepositoryPermissions()
+  {
+    return repositoryPermissions;
+  }
+
+  /**
+   * Returns all permissions, which are no repository permissions.
+   *
+   *
+   * @return all non repository permissions
+   */
+  public Set<Permission> getOtherPermissions()
+  {
+    return otherPermissions;
+  }
+
+  /**
+   * Returns true if the given permission is granted.
+   *
+   *
+   * @param permission permission to check
+   *
+   * @return true if the permission is granted
+   */
+  public boolean isPermitted(Permission permission)
+  {
+    boolean permitted = false;
+
+    if (permission instanceof RepositoryPermission)
+    {
+      RepositoryPermission rp = (RepositoryPermission) permission;
+      PermissionType type = getPermissionType(rp.getRepositoryId());
+
+      permitted = (type != null)
+        && (type.getValue() >= rp.getPermissionType().getValue());
+    }
+
+    if (!permitted)
+    {
+      for (Permission p : otherPermissions)
+      {
+        if (p.implies(permission))
+        {
+          permitted = true;
+
+          break;
+        }
+      }
+    }
+
+    return permitted;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns the higher of both permission types. Both types can be
+   * {@code null}.
+   *
+   *
+   * @param t1 first type
+   * @param t2 second type
+   *
+   * @return higher permission type
+   */
+  static PermissionType max(PermissionType t1, PermissionType t2)
+  {
+    PermissionType type = t1;
+
+    if ((t1 == null)
+      || ((t2 != null) && (t2.getValue() > t1.getValue())))
+    {
+      type = t2;
+    }
+
+    return type;
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param permissions
+   */
+  @Override
+  public void setObjectPermissions(Set<Permission> permissions)
+  {
+    throw immutable();
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param roles
+   */
+  @Override
+  public void setRoles(Set<String> roles)
+  {
+    throw immutable();
+  }
+
+  /**
+   * Not supported, the info is immutable.
+   *
+   *
+   * @param permissions
+   */
+  @Override
+  public void setStringPermissions(Set<String> permissions)
+  {
+    throw immutable();
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private UnsupportedOperationException immutable()
+  {
+    return new UnsupportedOperationException(
+      "RepositoryAuthorizationInfo is immutable");
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** non repository permissions */
+  private final Set<Permission> otherPermissions;
+
+  /** ids of all public readable repositories */
+  private final Set<String> publicReadable;
+
+  /** highest permission type by repository id */
+  private final Map<String, PermissionType> repositoryPermissions;
+}
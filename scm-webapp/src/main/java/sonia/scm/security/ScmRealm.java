@@ -51,6 +51,8 @@ import org.apache.shiro.authc.UnknownAccountException;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authc.pam.UnsupportedTokenException;
 import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.SimplePrincipalCollection;
@@ -79,6 +81,8 @@ import sonia.scm.web.security.AuthenticationState;
 import java.io.IOException;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
@@ -217,6 +221,161 @@ public class ScmRealm extends AuthorizingRealm
     return collector.collect(principals);
   }
 
+  /**
+   * Checks the permission with a single lookup, if the authorization info
+   * was created by the {@link AuthorizationCollector}.
+   *
+   *
+   * @param permission permission to check
+   * @param info authorization info of the user
+   */
+  @Override
+  protected void checkPermission(Permission permission, AuthorizationInfo info)
+  {
+    if (!isPermitted(permission, info))
+    {
+      throw new UnauthorizedException(
+        "User is not permitted [" + permission + "]");
+    }
+  }
+
+  /**
+   * Checks each permission with a single lookup, if the authorization info
+   * was created by the {@link AuthorizationCollector}.
+   *
+   *
+   * @param permissions permissions to check
+   * @param info authorization info of the user
+   */
+  @Override
+  protected void checkPermissions(Collection<Permission> permissions,
+    AuthorizationInfo info)
+  {
+    if (permissions != null)
+    {
+      for (Permission permission : permissions)
+      {
+        checkPermission(permission, info);
+      }
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Checks the permission with a single lookup, if the authorization info
+   * was created by the {@link AuthorizationCollector}.
+   * The method must be overridden, because it calls the private check of
+   * {@link AuthorizingRealm} directly.
+   *
+   *
+   * @param principals principals of the user
+   * @param permission permission to check
+   *
+   * @return true if the permission is granted
+   */
+  @Override
+  public boolean isPermitted(PrincipalCollection principals,
+    Permission permission)
+  {
+    return isPermitted(permission, getAuthorizationInfo(principals));
+  }
+
+  /**
+   * Checks each permission with a single lookup, if the authorization info
+   * was created by the {@link AuthorizationCollector}.
+   *
+   *
+   * @param permissions permissions to check
+   * @param info authorization info of the user
+   *
+   * @return true for each granted permission
+   */
+  @Override
+  protected boolean[] isPermitted(List<Permission> permissions,
+    AuthorizationInfo info)
+  {
+    boolean[] result;
+
+    if (permissions != null)
+    {
+      result = new boolean[permissions.size()];
+
+      for (int i = 0; i < result.length; i++)
+      {
+        result[i] = isPermitted(permissions.get(i), info);
+      }
+    }
+    else
+    {
+      result = new boolean[0];
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks each permission with a single lookup, if the authorization info
+   * was created by the {@link AuthorizationCollector}.
+   *
+   *
+   * @param permissions permissions to check
+   * @param info authorization info of the user
+   *
+   * @return true if all permissions are granted
+   */
+  @Override
+  protected boolean isPermittedAll(Collection<Permission> permissions,
+    AuthorizationInfo info)
+  {
+    boolean permitted = true;
+
+    if (permissions != null)
+    {
+      for (Permission permission : permissions)
+      {
+        if (!isPermitted(permission, info))
+        {
+          permitted = false;
+
+          break;
+        }
+      }
+    }
+
+    return permitted;
+  }
+
+  /**
+   * Checks the permission against the index of a
+   * {@link RepositoryAuthorizationInfo}, which includes the public readable
+   * repositories. All other infos are checked by {@link AuthorizingRealm}.
+   *
+   *
+   * @param permission permission to check
+   * @param info authorization info of the user
+   *
+   * @return true if the permission is granted
+   */
+  private boolean isPermitted(Permission permission, AuthorizationInfo info)
+  {
+    boolean permitted;
+
+    if (info instanceof RepositoryAuthorizationInfo)
+    {
+      permitted = ((RepositoryAuthorizationInfo) info).isPermitted(permission);
+    }
+    else
+    {
+      permitted = super.isPermitted(Collections.singletonList(permission),
+        info)[0];
+    }
+
+    return permitted;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
   /**
    * Method description
    *
@@ -35,6 +35,10 @@ package sonia.scm.user;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.github.legman.Subscribe;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -46,9 +50,8 @@ import org.slf4j.LoggerFactory;
 
 import sonia.scm.HandlerEventType;
 import sonia.scm.SCMContextProvider;
-import sonia.scm.TransformFilter;
 import sonia.scm.search.SearchRequest;
-import sonia.scm.search.SearchUtil;
+import sonia.scm.search.TrigramIndex;
 import sonia.scm.security.Role;
 import sonia.scm.security.ScmSecurityException;
 import sonia.scm.util.AssertUtil;
@@ -284,6 +287,39 @@ public class DefaultUserManager extends AbstractUserManager
     }
   }
 
+  /**
+   * Updates the search index after the creation, modification or deletion of
+   * a user.
+   *
+   *
+   * @param event user event
+   *
+   * @since 2.0.0
+   */
+  @Subscribe(async = false)
+  public void onEvent(UserEvent event)
+  {
+    HandlerEventType type = event.getEventType();
+
+    if (type.isPost())
+    {
+      synchronized (searchIndex)
+      {
+        if (searchIndexed)
+        {
+          if (type == HandlerEventType.DELETE)
+          {
+            searchIndex.remove(event.getItem());
+          }
+          else
+          {
+            searchIndex.put(event.getItem().clone());
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Method description
    *
@@ -329,23 +365,14 @@ public class DefaultUserManager extends AbstractUserManager
       logger.debug("search user with query {}", searchRequest.getQuery());
     }
 
-    return SearchUtil.search(searchRequest, userDAO.getAll(),
-      new TransformFilter<User>()
-    {
-      @Override
-      public User accept(User user)
-      {
-        User result = null;
+    List<User> result = Lists.newArrayList();
 
-        if (SearchUtil.matchesOne(searchRequest, user.getName(),
-          user.getDisplayName(), user.getMail()))
-        {
-          result = user.clone();
-        }
+    for (User user : getSearchIndex().search(searchRequest))
+    {
+      result.add(user.clone());
+    }
 
-        return result;
-      }
-    });
+    return result;
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -531,8 +558,50 @@ public class DefaultUserManager extends AbstractUserManager
     }
   }
 
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the search index. The index is created from all stored users
+   * on the first call and is updated afterwards by the user events.
+   *
+   *
+   * @return search index
+   */
+  private TrigramIndex<User> getSearchIndex()
+  {
+    if (!searchIndexed)
+    {
+      synchronized (searchIndex)
+      {
+        if (!searchIndexed)
+        {
+          logger.debug("create search index for users");
+          searchIndex.putAll(userDAO.getAll());
+          searchIndexed = true;
+        }
+      }
+    }
+
+    return searchIndex;
+  }
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
   private final UserDAO userDAO;
+
+  /** search index for users */
+  private final TrigramIndex<User> searchIndex =
+    new TrigramIndex<User>(new Function<User, String[]>()
+  {
+    @Override
+    public String[] apply(User user)
+    {
+      return new String[] { user.getName(), user.getDisplayName(),
+        user.getMail() };
+    }
+  });
+
+  /** true if the search index is created */
+  private volatile boolean searchIndexed = false;
 }
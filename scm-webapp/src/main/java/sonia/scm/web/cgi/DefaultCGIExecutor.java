@@ -35,8 +35,8 @@ package sonia.scm.web.cgi;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
-import com.google.common.io.ByteStreams;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +58,7 @@ import java.io.OutputStream;
 
 import java.util.Enumeration;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletInputStream;
@@ -88,21 +89,26 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
   private static final Logger logger =
     LoggerFactory.getLogger(DefaultCGIExecutor.class);
 
+  /** reusable buffers of the current thread */
+  private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
   //~--- constructors ---------------------------------------------------------
 
   /**
    * Constructs ...
    *
    *
+   * @param executor executor which reads the error stream of the process
    * @param configuration
    * @param context
    * @param request
    * @param response
    */
-  public DefaultCGIExecutor(ScmConfiguration configuration,
+  public DefaultCGIExecutor(Executor executor, ScmConfiguration configuration,
     ServletContext context, HttpServletRequest request,
     HttpServletResponse response)
   {
+    this.executor = executor;
     this.configuration = configuration;
     this.context = context;
     this.request = request;
@@ -398,10 +404,16 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
       processErrorStreamAsync(process);
       processServletInput(process);
       processIS = process.getInputStream();
-      parseHeaders(processIS);
+
+      byte[] buffer = getBuffer();
+      int remaining = parseHeaders(processIS, buffer);
+
       servletOS = response.getOutputStream();
 
-      long content = ByteStreams.copy(processIS, servletOS);
+      // write the part of the body, which was read with the headers
+      servletOS.write(buffer, 0, remaining);
+
+      long content = remaining + copy(processIS, servletOS, buffer);
 
       waitForFinish(process, servletOS, content);
     }
@@ -413,66 +425,138 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
   }
 
   /**
-   * Method description
+   * Copies the input stream to the output stream with the given buffer.
    *
    *
-   * @param is
+   * @param input input stream
+   * @param output output stream
+   * @param buffer buffer for copying
    *
+   * @return number of copied bytes
    *
    * @throws IOException
    */
-  private void parseHeaders(InputStream is) throws IOException
+  private long copy(InputStream input, OutputStream output, byte[] buffer)
+    throws IOException
   {
-    String line = null;
+    long total = 0;
+    int len;
 
-    while ((line = getTextLineFromStream(is)).length() > 0)
+    while ((len = input.read(buffer)) != -1)
     {
-      if (logger.isTraceEnabled())
-      {
-        logger.trace("  ".concat(line));
-      }
+      output.write(buffer, 0, len);
+      total += len;
+    }
 
-      if (!line.startsWith(RESPONSE_HEADER_HTTP_PREFIX))
+    return total;
+  }
+
+  /**
+   * Applies a single header line of the cgi response.
+   *
+   *
+   * @param line header line
+   *
+   * @throws IOException
+   */
+  private void parseHeader(String line) throws IOException
+  {
+    if (logger.isTraceEnabled())
+    {
+      logger.trace("  ".concat(line));
+    }
+
+    if (!line.startsWith(RESPONSE_HEADER_HTTP_PREFIX))
+    {
+      int k = line.indexOf(':');
+
+      if (k > 0)
       {
-        int k = line.indexOf(':');
+        String key = line.substring(0, k).trim();
+        String value = line.substring(k + 1).trim();
 
-        if (k > 0)
+        if (RESPONSE_HEADER_LOCATION.equalsIgnoreCase(key))
         {
-          String key = line.substring(0, k).trim();
-          String value = line.substring(k + 1).trim();
+          response.sendRedirect(response.encodeRedirectURL(value));
+        }
+        else if (RESPONSE_HEADER_STATUS.equalsIgnoreCase(key))
+        {
+          String[] token = value.split(" ");
+          int status = Integer.parseInt(token[0]);
 
-          if (RESPONSE_HEADER_LOCATION.equalsIgnoreCase(key))
+          if (logger.isDebugEnabled())
           {
-            response.sendRedirect(response.encodeRedirectURL(value));
+            logger.debug("CGI returned with status {}", status);
           }
-          else if (RESPONSE_HEADER_STATUS.equalsIgnoreCase(key))
+
+          if (status < 304)
           {
-            String[] token = value.split(" ");
-            int status = Integer.parseInt(token[0]);
-
-            if (logger.isDebugEnabled())
-            {
-              logger.debug("CGI returned with status {}", status);
-            }
-
-            if (status < 304)
-            {
-              response.setStatus(status);
-            }
-            else
-            {
-              response.sendError(status);
-            }
+            response.setStatus(status);
           }
           else
           {
+            response.sendError(status);
+          }
+        }
+        else
+        {
 
-            // add remaining header items to our response header
-            response.addHeader(key, value);
+          // add remaining header items to our response header
+          response.addHeader(key, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the headers of the cgi response in blocks of the buffer size. The
+   * part of the body, which was read together with the headers, is moved to
+   * the start of the buffer.
+   *
+   *
+   * @param is output of the cgi process
+   * @param buffer buffer for reading
+   *
+   * @return number of body bytes at the start of the buffer
+   *
+   * @throws IOException
+   */
+  @VisibleForTesting
+  int parseHeaders(InputStream is, byte[] buffer) throws IOException
+  {
+    StringBuilder line = new StringBuilder();
+    int len;
+
+    while ((len = is.read(buffer)) != -1)
+    {
+      for (int i = 0; i < len; i++)
+      {
+        byte b = buffer[i];
+
+        if (b == '\n')
+        {
+          String header = line.toString().trim();
+
+          if (header.length() == 0)
+          {
+            int remaining = len - i - 1;
+
+            System.arraycopy(buffer, i + 1, buffer, 0, remaining);
+
+            return remaining;
           }
+
+          parseHeader(header);
+          line.setLength(0);
+        }
+        else
+        {
+          line.append((char) (b & 0xff));
         }
       }
     }
+
+    return 0;
   }
 
   /**
@@ -485,17 +569,28 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
    */
   private void processErrorStream(InputStream in) throws IOException
   {
-    if (logger.isWarnEnabled())
-    {
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-      IOUtil.copy(in, baos);
+    byte[] buffer = getBuffer();
+    ByteArrayOutputStream baos = null;
+    int len;
 
-      if (baos.size() > 0)
+    // the stream is always read, a full error stream blocks the process
+    while ((len = in.read(buffer)) != -1)
+    {
+      if (logger.isWarnEnabled())
       {
-        logger.warn(baos.toString());
+        if (baos == null)
+        {
+          baos = new ByteArrayOutputStream();
+        }
+
+        baos.write(buffer, 0, len);
       }
     }
+
+    if ((baos != null) && (baos.size() > 0))
+    {
+      logger.warn(baos.toString());
+    }
   }
 
   /**
@@ -507,7 +602,7 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
    */
   private void processErrorStreamAsync(final Process process)
   {
-    new Thread(new Runnable()
+    executor.execute(new Runnable()
     {
       @Override
       public void run()
@@ -528,7 +623,7 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
           IOUtil.close(errorStream);
         }
       }
-    }).start();
+    });
   }
 
   /**
@@ -546,7 +641,7 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
     {
       processOS = process.getOutputStream();
       servletIS = request.getInputStream();
-      IOUtil.copy(servletIS, processOS, bufferSize);
+      copy(servletIS, processOS, getBuffer());
     }
     catch (IOException ex)
     {
@@ -613,26 +708,23 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
   //~--- get methods ----------------------------------------------------------
 
   /**
-   * Method description
-   *
+   * Returns the buffer of the current thread. The threads of the servlet
+   * container and of the error stream pool are reused, so are their buffers.
    *
-   * @param is
    *
-   * @return
-   *
-   * @throws IOException
+   * @return buffer with the configured size
    */
-  private String getTextLineFromStream(InputStream is) throws IOException
+  private byte[] getBuffer()
   {
-    StringBuilder buffer = new StringBuilder();
-    int b;
+    byte[] buffer = buffers.get();
 
-    while ((b = is.read()) != -1 && (b != (int) '\n'))
+    if ((buffer == null) || (buffer.length != bufferSize))
     {
-      buffer.append((char) b);
+      buffer = new byte[bufferSize];
+      buffers.set(buffer);
     }
 
-    return buffer.toString().trim();
+    return buffer;
   }
 
   //~--- fields ---------------------------------------------------------------
@@ -651,4 +743,7 @@ public class DefaultCGIExecutor extends AbstractCGIExecutor
 
   /** Field description */
   private HttpServletResponse response;
+
+  /** executor which reads the error stream of the process */
+  private final Executor executor;
 }
@@ -35,21 +35,83 @@ package sonia.scm.web.cgi;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import sonia.scm.config.ScmConfiguration;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 /**
+ * Creates {@link DefaultCGIExecutor} instances. The error streams of all cgi
+ * processes are read by a shared pool of threads, instead of a new thread for
+ * each process.
  *
  * @author Sebastian Sdorra
  */
+@Singleton
 public class DefaultCGIExecutorFactory implements CGIExecutorFactory
 {
 
+  /** seconds until an idle thread is stopped */
+  private static final long KEEP_ALIVE = 60l;
+
+  /** maximum number of pooled threads */
+  private static final int MAX_THREADS = 64;
+
+  /**
+   * the logger for DefaultCGIExecutorFactory
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(DefaultCGIExecutorFactory.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new factory.
+   *
+   */
+  public DefaultCGIExecutorFactory()
+  {
+    //J-
+    final ThreadFactory factory = new ThreadFactoryBuilder()
+      .setNameFormat("CGIErrorStream-%s")
+      .setDaemon(true)
+      .build();
+    //J+
+
+    // if all pooled threads are busy, the error stream gets its own thread,
+    // because a cgi process blocks if its error stream is not read
+    RejectedExecutionHandler overflow = new RejectedExecutionHandler()
+    {
+      @Override
+      public void rejectedExecution(Runnable task, ThreadPoolExecutor executor)
+      {
+        logger.debug("all error stream threads are busy, start new thread");
+        factory.newThread(task).start();
+      }
+    };
+
+    executor = new ThreadPoolExecutor(0, MAX_THREADS, KEEP_ALIVE,
+      TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), factory, overflow);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
   /**
    * Method description
    *
@@ -67,6 +129,12 @@ public class DefaultCGIExecutorFactory implements CGIExecutorFactory
                                     HttpServletRequest request,
                                     HttpServletResponse response)
   {
-    return new DefaultCGIExecutor(configuration, context, request, response);
+    return new DefaultCGIExecutor(executor, configuration, context, request,
+      response);
   }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** executor for the error streams */
+  private final ExecutorService executor;
 }
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.authz.Permission;
+
+import org.junit.Test;
+
+import sonia.scm.io.DeepCopy;
+import sonia.scm.repository.BlameLine;
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.Modifications;
+import sonia.scm.repository.PermissionType;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.SubRepository;
+import sonia.scm.security.RepositoryAuthorizationInfo;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class CopiersTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  public static BlameResult createBlameResult()
+  {
+    Person author = new Person("Tricia McMillan", "tricia@hitchhiker.com");
+
+    return new BlameResult(2,
+      Lists.newArrayList(new BlameLine(1, "a1", 1l, author, "first", "line 1"),
+        new BlameLine(2, "b2", 2l, null, null, "line 2")));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  public static BrowserResult createBrowserResult()
+  {
+    FileObject file = new FileObject();
+
+    file.setName("a.txt");
+    file.setPath("dir/a.txt");
+    file.setLength(42l);
+    file.setLastModified(1l);
+    file.setDescription("added a.txt");
+
+    FileObject directory = new FileObject();
+
+    directory.setName("sub");
+    directory.setPath("dir/sub");
+    directory.setDirectory(true);
+    directory.setSubRepository(new SubRepository("http://localhost/sub",
+      "http://localhost/sub/browse", "a1"));
+
+    return new BrowserResult("a1", "tip", "default",
+      Lists.newArrayList(file, directory));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  public static ChangesetPagingResult createChangesetPagingResult()
+  {
+    Changeset c1 = new Changeset("a1", 1l,
+                     new Person("Arthur Dent", "arthur@hitchhiker.com"),
+                     "first commit");
+
+    c1.setBranches(Lists.newArrayList("default"));
+    c1.setParents(Lists.newArrayList("00"));
+    c1.setTags(Lists.newArrayList("tip", "1.0"));
+    c1.setModifications(new Modifications(Lists.newArrayList("a.txt"),
+      Lists.newArrayList("b.txt"), Lists.newArrayList("c.txt")));
+    c1.setProperty("hg.rev", "1");
+
+    Changeset c2 = new Changeset("b2", 2l, null, null);
+
+    c2.setBranches(Lists.<String>newArrayList());
+    c2.setParents(Lists.newArrayList("a1"));
+    c2.setTags(Lists.<String>newArrayList());
+    c2.setModifications(new Modifications());
+
+    // the copy initializes lazy collections with empty ones
+    c2.getProperties();
+
+    return new ChangesetPagingResult(10, Lists.newArrayList(c1, c2));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testCopyAuthorizationInfo()
+  {
+    RepositoryAuthorizationInfo info = new RepositoryAuthorizationInfo(
+                                         ImmutableSet.of("user"),
+                                         ImmutableMap.of("hog",
+                                           PermissionType.WRITE),
+                                         ImmutableSet.of("puzzle"),
+                                         ImmutableSet.<Permission>of());
+
+    // the info is immutable and is not copied
+    assertSame(info, Copiers.copy(info));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCopyBlameResult() throws IOException
+  {
+    BlameResult result = createBlameResult();
+    BlameResult copy = assertCopy(result);
+
+    assertNotSame(result.getLine(0), copy.getLine(0));
+    assertNotSame(result.getLine(0).getAuthor(), copy.getLine(0).getAuthor());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCopyBrowserResult() throws IOException
+  {
+    BrowserResult result = createBrowserResult();
+    BrowserResult copy = assertCopy(result);
+
+    assertNotSame(result.getFiles(), copy.getFiles());
+    assertNotSame(result.getFiles().get(1).getSubRepository(),
+      copy.getFiles().get(1).getSubRepository());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCopyChangesetPagingResult() throws IOException
+  {
+    ChangesetPagingResult result = createChangesetPagingResult();
+    ChangesetPagingResult copy = assertCopy(result);
+    Changeset changeset = result.getChangesets().get(0);
+    Changeset changesetCopy = copy.getChangesets().get(0);
+
+    assertNotSame(changeset, changesetCopy);
+    assertNotSame(changeset.getTags(), changesetCopy.getTags());
+    assertNotSame(changeset.getModifications().getAdded(),
+      changesetCopy.getModifications().getAdded());
+    assertNotSame(changeset.getProperties(), changesetCopy.getProperties());
+
+    changesetCopy.getTags().add("2.0");
+    assertEquals(2, changeset.getTags().size());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testCopyNull()
+  {
+    assertNull(Copiers.copy(null));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testCopyUnknownType()
+  {
+    CacheCopyTestBase.MutableObject mo = new CacheCopyTestBase.MutableObject(1);
+    CacheCopyTestBase.MutableObject copy = Copiers.copy(mo);
+
+    assertNotSame(mo, copy);
+    assertEquals(1, copy.getVersion());
+  }
+
+  /**
+   * Creates a structural copy and compares it with the original and a copy,
+   * which was created by a serialization round trip.
+   *
+   *
+   * @param object
+   * @param <T>
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private <T> T assertCopy(T object) throws IOException
+  {
+    T copy = Copiers.copy(object);
+
+    assertNotSame(object, copy);
+    assertEquals(object, copy);
+    assertEquals(DeepCopy.copy(object), copy);
+
+    return copy;
+  }
+}
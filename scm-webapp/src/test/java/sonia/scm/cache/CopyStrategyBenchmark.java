@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.authz.Permission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import sonia.scm.io.DeepCopy;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.PermissionType;
+import sonia.scm.security.RepositoryAuthorizationInfo;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a {@link GuavaCache#get(Object)} with the copy
+ * strategy "read", once with the registered {@link Copier}s and once with a
+ * serialization round trip by {@link DeepCopy}. The {@link GCProfiler} is
+ * enabled to report the allocation of the copies. Run the benchmark with the
+ * main method from the test classpath.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyStrategyBenchmark
+{
+
+  /** cache key */
+  private static final String KEY = "key";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param args
+   *
+   * @throws RunnerException
+   */
+  public static void main(String[] args) throws RunnerException
+  {
+    new Runner(
+      new OptionsBuilder().include(
+        CopyStrategyBenchmark.class.getSimpleName()).addProfiler(
+          GCProfiler.class).build()).run();
+  }
+
+  /**
+   * Reads the value with a copy of the registered {@link Copier}.
+   *
+   *
+   * @return
+   */
+  @Benchmark
+  public Object copier()
+  {
+    return cache.get(KEY);
+  }
+
+  /**
+   * Reads the value with a copy of {@link DeepCopy}, this was the behaviour
+   * of the copy strategy before the {@link Copier}s were introduced.
+   *
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  @Benchmark
+  public Object serialization() throws IOException
+  {
+    return DeepCopy.copy(uncopied.get(KEY));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    Object value;
+
+    if ("changesets".equals(type))
+    {
+      value = createChangesets();
+    }
+    else if ("browse".equals(type))
+    {
+      value = CopiersTest.createBrowserResult();
+    }
+    else if ("blame".equals(type))
+    {
+      value = CopiersTest.createBlameResult();
+    }
+    else
+    {
+      value = createAuthorizationInfo();
+    }
+
+    cache = new GuavaCache<String, Object>(
+      CacheBuilder.newBuilder().<String, Object>build(), CopyStrategy.READ,
+      "benchmark");
+    cache.put(KEY, value);
+    uncopied = new GuavaCache<String, Object>(
+      CacheBuilder.newBuilder().<String, Object>build(), CopyStrategy.NONE,
+      "benchmark");
+    uncopied.put(KEY, value);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private RepositoryAuthorizationInfo createAuthorizationInfo()
+  {
+    ImmutableMap.Builder<String, PermissionType> permissions =
+      ImmutableMap.builder();
+
+    for (int i = 0; i < 50; i++)
+    {
+      permissions.put("repository-" + i, PermissionType.WRITE);
+    }
+
+    return new RepositoryAuthorizationInfo(ImmutableSet.of("user"),
+      permissions.build(), ImmutableSet.of("public"),
+      ImmutableSet.<Permission>of());
+  }
+
+  /**
+   * Creates a page of 20 changesets.
+   *
+   *
+   * @return
+   */
+  private ChangesetPagingResult createChangesets()
+  {
+    Changeset template =
+      CopiersTest.createChangesetPagingResult().getChangesets().get(0);
+    List<Changeset> changesets = Lists.newArrayList();
+
+    for (int i = 0; i < 20; i++)
+    {
+      changesets.add(Copiers.copy(template));
+    }
+
+    return new ChangesetPagingResult(100, changesets);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** type of the cached value */
+  @Param({ "changesets", "browse", "blame", "authorization" })
+  public String type;
+
+  /** Field description */
+  private GuavaCache<String, Object> cache;
+
+  /** Field description */
+  private GuavaCache<String, Object> uncopied;
+}
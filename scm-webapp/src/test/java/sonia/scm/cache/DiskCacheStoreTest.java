@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.cache;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.ChangesetPagingResult;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class DiskCacheStoreTest
+{
+
+  /** size of a segment */
+  private static final int SEGMENT_SIZE = 1024;
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCodec() throws IOException
+  {
+    BlameResult blame = CopiersTest.createBlameResult();
+    BrowserResult browse = CopiersTest.createBrowserResult();
+    ChangesetPagingResult log = CopiersTest.createChangesetPagingResult();
+
+    assertEquals(blame, DiskCacheCodec.decode(DiskCacheCodec.encode(blame)));
+    assertEquals(browse, DiskCacheCodec.decode(DiskCacheCodec.encode(browse)));
+    assertEquals(log, DiskCacheCodec.decode(DiskCacheCodec.encode(log)));
+    assertNull(DiskCacheCodec.encode("unsupported"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCorruptTail() throws IOException
+  {
+    File directory = tempFolder.newFolder();
+    DiskCacheStore store = DiskCacheStore.open(directory, 10 * SEGMENT_SIZE,
+                             SEGMENT_SIZE);
+
+    store.put("a", bytes("value a"));
+    store.put("b", bytes("value b"));
+    store.close();
+
+    // damage the last byte of the value of b
+    File segment = directory.listFiles()[0];
+    RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+
+    try
+    {
+      int offset = 8 + 2 * (12 + 1 + 7) - 1;
+
+      raf.seek(offset);
+      raf.write('X');
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    store = DiskCacheStore.open(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    assertEquals("value a", string(store.get("a")));
+    assertNull(store.get("b"));
+
+    // the corrupt record is overwritten
+    store.put("c", bytes("value c"));
+    store.close();
+    store = DiskCacheStore.open(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    assertEquals("value c", string(store.get("c")));
+    assertEquals(2, store.getEntryCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testEviction() throws IOException
+  {
+    DiskCacheStore store = DiskCacheStore.open(tempFolder.newFolder(),
+                             3 * SEGMENT_SIZE, SEGMENT_SIZE);
+    byte[] value = new byte[300];
+
+    for (int i = 0; i < 20; i++)
+    {
+      store.put("k" + i, value);
+    }
+
+    assertTrue(store.getSize() <= 3 * SEGMENT_SIZE);
+    assertNull(store.get("k0"));
+    assertNotNull(store.get("k19"));
+
+    // larger than a segment
+    store.put("large", new byte[SEGMENT_SIZE]);
+    assertNull(store.get("large"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testPutAndGet() throws IOException
+  {
+    File directory = tempFolder.newFolder();
+    DiskCacheStore store = DiskCacheStore.open(directory, 10 * SEGMENT_SIZE,
+                             SEGMENT_SIZE);
+
+    store.put("a", bytes("value a"));
+    store.put("b", bytes("value b"));
+    store.put("a", bytes("value a2"));
+    store.remove("b");
+    assertEquals("value a2", string(store.get("a")));
+    assertNull(store.get("b"));
+    store.close();
+
+    store = DiskCacheStore.open(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    assertEquals("value a2", string(store.get("a")));
+    assertFalse(store.contains("b"));
+    assertEquals(1, store.getEntryCount());
+
+    store.clear();
+    assertNull(store.get("a"));
+    assertEquals(0, directory.listFiles().length);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param value
+   *
+   * @return
+   */
+  private byte[] bytes(String value)
+  {
+    return value.getBytes(Charsets.UTF_8);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param value
+   *
+   * @return
+   */
+  private String string(byte[] value)
+  {
+    return (value != null)
+      ? new String(value, Charsets.UTF_8)
+      : null;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+}
@@ -32,6 +32,18 @@
 
 package sonia.scm.cache;
 
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+
+import javax.xml.bind.JAXB;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -50,4 +62,27 @@ public class GuavaCacheManagerTest extends CacheManagerTestBase
   {
     return CacheTestUtil.createDefaultGuavaCacheManager();
   }
+
+  /**
+   * Creates all caches of the default configuration, guava rejects invalid
+   * combinations of the limits.
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDefaultConfiguration() throws IOException
+  {
+    GuavaCacheManagerConfiguration config =
+      JAXB.unmarshal(GuavaCacheManager.class.getResource("/config/gcache.xml"),
+        GuavaCacheManagerConfiguration.class);
+    GuavaCacheManager manager = new GuavaCacheManager(config);
+
+    for (GuavaNamedCacheConfiguration c : config.getCaches())
+    {
+      assertNotNull(manager.getCache(c.getName()));
+    }
+
+    manager.close();
+  }
 }
@@ -32,8 +32,30 @@
 
 package sonia.scm.cache;
 
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Predicate;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.RepositoryCacheKey;
+import sonia.scm.repository.RepositoryCacheKeyPredicate;
+
+import static org.junit.Assert.*;
+
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.bind.JAXB;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -52,4 +74,393 @@ public class GuavaCacheTest extends CacheTestBase
   {
     return CacheTestUtil.createDefaultGuavaCacheManager();
   }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDiskTier() throws IOException
+  {
+    File directory = tempFolder.newFolder();
+    GuavaCache<Key, BlameResult> cache = createDiskCache(directory);
+    BlameResult result = CopiersTest.createBlameResult();
+
+    cache.put(new Key("r1", "a"), result);
+    cache.removeAll(new Predicate<Key>()
+    {
+      @Override
+      public boolean apply(Key key)
+      {
+        return true;
+      }
+    });
+
+    // the disk tier is not affected by other predicates
+    assertEquals(result, cache.get(new Key("r1", "a")));
+    cache.close();
+
+    // promoted from disk after a restart
+    cache = createDiskCache(directory);
+    assertTrue(cache.contains(new Key("r1", "a")));
+    assertEquals(0, cache.size());
+    assertEquals(result, cache.get(new Key("r1", "a")));
+    assertEquals(1, cache.size());
+
+    cache.remove(new Key("r1", "a"));
+    assertNull(cache.get(new Key("r1", "a")));
+    cache.put(new Key("r1", "b"), result);
+    cache.clear();
+    cache.close();
+
+    cache = createDiskCache(directory);
+    assertNull(cache.get(new Key("r1", "b")));
+    cache.close();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDiskTierKeepPersistent() throws IOException
+  {
+    File directory = tempFolder.newFolder();
+    GuavaCache<Key, BlameResult> cache = createDiskCache(directory);
+    BlameResult result = CopiersTest.createBlameResult();
+
+    cache.put(new Key("r1", "a"), result);
+    cache.removeAll(new RepositoryCacheKeyPredicate<Key>("r1", true));
+
+    // the partition is dropped, the value is loaded from the disk tier
+    assertEquals(0, cache.size());
+    assertEquals(result, cache.get(new Key("r1", "a")));
+    cache.close();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDiskTierRemoveAllOfRepository() throws IOException
+  {
+    File directory = tempFolder.newFolder();
+    GuavaCache<Key, BlameResult> cache = createDiskCache(directory);
+    BlameResult result = CopiersTest.createBlameResult();
+
+    cache.put(new Key("r1", "a"), result);
+    cache.put(new Key("r10", "a"), result);
+    cache.removeAll(new RepositoryCacheKeyPredicate<Key>("r1"));
+
+    // the values could contain branches or tags of the changed repository
+    assertFalse(cache.contains(new Key("r1", "a")));
+    assertTrue(cache.contains(new Key("r10", "a")));
+    cache.close();
+
+    cache = createDiskCache(directory);
+    assertNull(cache.get(new Key("r1", "a")));
+    assertEquals(result, cache.get(new Key("r10", "a")));
+    cache.close();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPartitionedRemoveAll()
+  {
+    GuavaCache<Key, String> cache = createPartitionedCache(100);
+
+    cache.put(new Key("r1", "a"), "r1a");
+    cache.put(new Key("r1", "b"), "r1b");
+    cache.put(new Key("r2", "a"), "r2a");
+
+    Iterable<String> removed =
+      cache.removeAll(new RepositoryCacheKeyPredicate<Key>("r1"));
+
+    assertEquals(2, Iterables.size(removed));
+    assertNull(cache.get(new Key("r1", "a")));
+    assertNull(cache.get(new Key("r1", "b")));
+    assertEquals("r2a", cache.get(new Key("r2", "a")));
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.keys().size());
+    assertEquals(1, cache.values().size());
+
+    // new entries of the repository are stored in a new partition
+    cache.put(new Key("r1", "a"), "r1a-2");
+    assertEquals("r1a-2", cache.get(new Key("r1", "a")));
+    assertEquals(2, cache.size());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPartitionedRemoveAllWithPredicate()
+  {
+    GuavaCache<Key, String> cache = createPartitionedCache(100);
+
+    cache.put(new Key("r1", "a"), "r1a");
+    cache.put(new Key("r1", "b"), "r1b");
+    cache.put(new Key("r2", "a"), "r2a");
+    cache.removeAll(new Predicate<Key>()
+    {
+
+      @Override
+      public boolean apply(Key key)
+      {
+        return "a".equals(key.path);
+      }
+    });
+
+    assertNull(cache.get(new Key("r1", "a")));
+    assertNull(cache.get(new Key("r2", "a")));
+    assertEquals("r1b", cache.get(new Key("r1", "b")));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPartitionedSizeLimit()
+  {
+    GuavaCache<Key, String> cache = createPartitionedCache(10);
+
+    for (int i = 0; i < 20; i++)
+    {
+      cache.put(new Key("r" + (i % 4), String.valueOf(i)), "v" + i);
+    }
+
+    assertTrue(cache.size() <= 10);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testWeightOfRemovedEntries()
+  {
+    GuavaCacheConfiguration config = JAXB.unmarshal(
+                                       new StringReader(
+                                         "<cache maximumSize=\"100\" "
+                                         + "partitioned=\"true\" />"),
+                                       GuavaCacheConfiguration.class);
+    GuavaCache<Key, String> cache = new GuavaCache<Key, String>(config,
+                                      "test");
+
+    cache.put(new Key("r1", "a"), "a");
+    cache.put(new Key("r1", "b"), "b");
+    cache.put(new Key("r2", "a"), "c");
+    assertEquals(3 * Weighers.weigh("a"), cache.getStatistics().getWeight());
+
+    // replace and remove
+    cache.put(new Key("r1", "a"), "hitchhiker");
+    cache.remove(new Key("r1", "b"));
+    assertEquals(Weighers.weigh("hitchhiker") + Weighers.weigh("c"),
+      cache.getStatistics().getWeight());
+
+    // the entries of a dropped partition are not counted
+    cache.removeAll(new RepositoryCacheKeyPredicate<Key>("r1"));
+    assertEquals(Weighers.weigh("c"), cache.getStatistics().getWeight());
+    cache.put(new Key("r1", "a"), "a");
+    assertEquals(Weighers.weigh("a") + Weighers.weigh("c"),
+      cache.getStatistics().getWeight());
+
+    cache.clear();
+    assertEquals(0l, cache.getStatistics().getWeight());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test(expected = CacheException.class)
+  public void testWeightWithSoftValues()
+  {
+    GuavaCacheConfiguration config = JAXB.unmarshal(
+                                       new StringReader(
+                                         "<cache maximumWeight=\"20000\" "
+                                         + "softValues=\"true\" />"),
+                                       GuavaCacheConfiguration.class);
+
+    new GuavaCache<String, String>(config, "test");
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testWeightedSizeLimit()
+  {
+    GuavaCacheConfiguration config = JAXB.unmarshal(
+                                       new StringReader(
+                                         "<cache maximumWeight=\"20000\" "
+                                         + "concurrencyLevel=\"1\" />"),
+                                       GuavaCacheConfiguration.class);
+    GuavaCache<String, BlameResult> cache =
+      new GuavaCache<String, BlameResult>(config, "test");
+    BlameResult result = CopiersTest.createBlameResult();
+    long weight = Weighers.weigh(result);
+
+    assertTrue(weight > 0);
+
+    for (int i = 0; i < 100; i++)
+    {
+      cache.put(String.valueOf(i), result);
+    }
+
+    CacheStatistics stats = cache.getStatistics();
+
+    assertTrue(stats.getWeight() <= 20000);
+    assertEquals(cache.size() * weight, stats.getWeight());
+    assertEquals(100 - cache.size(), stats.getEvictionCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param directory
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private GuavaCache<Key, BlameResult> createDiskCache(File directory)
+    throws IOException
+  {
+    com.google.common.cache.Cache<Key, BlameResult> guava =
+      CacheBuilder.newBuilder().maximumSize(10).build();
+
+    return new GuavaCache<Key, BlameResult>(guava, CopyStrategy.READWRITE,
+      "test", true, DiskCacheStore.open(directory, 1024 * 1024));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param maximumSize
+   *
+   * @return
+   */
+  private GuavaCache<Key, String> createPartitionedCache(long maximumSize)
+  {
+    com.google.common.cache.Cache<Key, String> guava =
+      CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(
+        maximumSize).build();
+
+    return new GuavaCache<Key, String>(guava, CopyStrategy.NONE, "test", true);
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Cache key with a repository.
+   */
+  private static class Key implements RepositoryCacheKey, PersistentCacheKey
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param repositoryId
+     * @param path
+     */
+    public Key(String repositoryId, String path)
+    {
+      this.repositoryId = repositoryId;
+      this.path = path;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @param obj
+     *
+     * @return
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof Key))
+      {
+        return false;
+      }
+
+      Key other = (Key) obj;
+
+      return repositoryId.equals(other.repositoryId)
+        && path.equals(other.path);
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public int hashCode()
+    {
+      return repositoryId.hashCode() * 31 + path.hashCode();
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public String getPersistentKey()
+    {
+      return "test/".concat(repositoryId).concat("/").concat(path);
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     */
+    @Override
+    public String getRepositoryId()
+    {
+      return repositoryId;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    private final String path;
+
+    /** Field description */
+    private final String repositoryId;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
 }
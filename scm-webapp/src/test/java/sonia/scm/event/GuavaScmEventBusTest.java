@@ -54,6 +54,13 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -77,6 +84,163 @@ public class GuavaScmEventBusTest extends AbstractTestBase
     setSubject(subject);
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws InterruptedException
+   * @throws IOException
+   */
+  @Test
+  public void testAsyncEventType() throws InterruptedException, IOException
+  {
+    thread = null;
+
+    String currentThread = Thread.currentThread().getName();
+    final CountDownLatch latch = new CountDownLatch(1);
+    LegmanScmEventBus eventBus = new LegmanScmEventBus();
+
+    eventBus.register(new Object()
+    {
+      @Subscribe(async = false)
+      public void handleEvent(AsyncEvent event)
+      {
+        thread = Thread.currentThread().getName();
+        latch.countDown();
+      }
+    });
+
+    eventBus.post(new AsyncEvent());
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertNotEquals(currentThread, thread);
+    eventBus.close();
+
+    List<EventDispatchStatistics> statistics = eventBus.getStatistics();
+
+    assertEquals(1, statistics.size());
+    assertEquals(AsyncEvent.class.getName(), statistics.get(0).getName());
+    assertEquals(1l, statistics.get(0).getDispatchCount());
+    assertEquals(0, statistics.get(0).getQueueSize());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws InterruptedException
+   * @throws IOException
+   */
+  @Test
+  public void testAsyncEventTypeWithFullQueue()
+    throws InterruptedException, IOException
+  {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Object> events = new CopyOnWriteArrayList<Object>();
+    LegmanScmEventBus eventBus = new LegmanScmEventBus(1, 5000l);
+
+    eventBus.register(new Object()
+    {
+      @Subscribe(async = false)
+      public void handleEvent(AsyncEvent event) throws InterruptedException
+      {
+        events.add(event);
+        started.countDown();
+        release.await(5, TimeUnit.SECONDS);
+      }
+    });
+
+    AsyncEvent first = new AsyncEvent();
+    AsyncEvent second = new AsyncEvent();
+    AsyncEvent third = new AsyncEvent();
+
+    // first event blocks the dispatcher, second fills the queue
+    eventBus.post(first);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    eventBus.post(second);
+
+    new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          Thread.sleep(100l);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+
+        release.countDown();
+      }
+    }).start();
+
+    // the queue is full, the third event waits for free space
+    eventBus.post(third);
+    eventBus.close();
+
+    EventDispatchStatistics statistics = eventBus.getStatistics().get(0);
+
+    assertEquals(3l, statistics.getDispatchCount());
+    assertEquals(0l, statistics.getCallerRunsCount());
+    assertEquals(Arrays.asList(first, second, third), events);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws InterruptedException
+   * @throws IOException
+   */
+  @Test
+  public void testAsyncEventTypeWithFullQueueTimeout()
+    throws InterruptedException, IOException
+  {
+    final String currentThread = Thread.currentThread().getName();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger callerRuns = new AtomicInteger();
+    LegmanScmEventBus eventBus = new LegmanScmEventBus(1, 50l);
+
+    eventBus.register(new Object()
+    {
+      @Subscribe(async = false)
+      public void handleEvent(AsyncEvent event) throws InterruptedException
+      {
+        if (currentThread.equals(Thread.currentThread().getName()))
+        {
+          callerRuns.incrementAndGet();
+        }
+        else
+        {
+          started.countDown();
+          release.await(5, TimeUnit.SECONDS);
+        }
+      }
+    });
+
+    // first event blocks the dispatcher, second fills the queue
+    eventBus.post(new AsyncEvent());
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    eventBus.post(new AsyncEvent());
+
+    // the queue stays full, the third event is dispatched by the caller
+    eventBus.post(new AsyncEvent());
+    assertEquals(1, callerRuns.get());
+    assertEquals(1, eventBus.getStatistics().get(0).getQueueSize());
+
+    release.countDown();
+    eventBus.close();
+
+    EventDispatchStatistics statistics = eventBus.getStatistics().get(0);
+
+    assertEquals(3l, statistics.getDispatchCount());
+    assertEquals(1l, statistics.getCallerRunsCount());
+  }
+
   /**
    * Method description
    *
@@ -179,6 +343,76 @@ public class GuavaScmEventBusTest extends AbstractTestBase
     eventBus.post(new Object());
   }
 
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testVetoableAsyncEventType()
+  {
+    thread = null;
+
+    String currentThread = Thread.currentThread().getName();
+    LegmanScmEventBus eventBus = new LegmanScmEventBus();
+
+    eventBus.register(new Object()
+    {
+      @Subscribe(async = false)
+      public void handleEvent(AsyncHandlerEvent event)
+      {
+        thread = Thread.currentThread().getName();
+
+        if (event.getEventType().isPre())
+        {
+          throw new IllegalStateException("veto");
+        }
+      }
+    });
+
+    try
+    {
+      eventBus.post(new AsyncHandlerEvent(HandlerEventType.BEFORE_CREATE));
+      fail("the veto of the subscriber was not received");
+    }
+    catch (RuntimeException ex)
+    {
+
+      // expected, the event was dispatched synchronously
+    }
+
+    assertEquals(currentThread, thread);
+    assertTrue(eventBus.getStatistics().isEmpty());
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Event type which is dispatched asynchronously.
+   */
+  @Event(async = true)
+  private static class AsyncEvent {}
+
+
+  /**
+   * Handler event type which is dispatched asynchronously.
+   */
+  @Event(async = true)
+  private static class AsyncHandlerEvent extends AbstractHandlerEvent<User>
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param type
+     */
+    public AsyncHandlerEvent(HandlerEventType type)
+    {
+      super(type, new User("test"));
+    }
+  }
+
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
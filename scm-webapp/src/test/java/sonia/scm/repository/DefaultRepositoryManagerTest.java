@@ -119,6 +119,35 @@ public class DefaultRepositoryManagerTest extends RepositoryManagerTestBase
     assertNull(m.getFromUri("/git/project1/test-3/ka/some/path"));
   }
 
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   * @throws RepositoryException
+   */
+  @Test
+  public void getRepositoryFromRequestUriWithNestedNamesTest()
+    throws RepositoryException, IOException
+  {
+    RepositoryManager m = createManager();
+
+    m.init(contextProvider);
+    createRepository(m, new Repository("1", "hg", "project"));
+    createRepository(m, new Repository("2", "hg", "project/sub"));
+    createRepository(m, new Repository("3", "git", "project/sub"));
+    assertEquals("project", m.getFromUri("/hg/project/other/path").getName());
+    assertEquals("project/sub", m.getFromUri("/hg/project/sub").getName());
+    assertEquals("project/sub",
+      m.getFromUri("/hg/project/sub/some/path").getName());
+
+    Repository repository = m.getFromUri("/git/project/sub/info/refs");
+
+    assertEquals("project/sub", repository.getName());
+    assertEquals("git", repository.getType());
+    assertNull(m.getFromUri("/git/project/other"));
+  }
+
   //~--- methods --------------------------------------------------------------
 
   /**
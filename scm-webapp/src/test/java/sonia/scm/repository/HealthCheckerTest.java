@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.repository;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.support.SubjectRunnable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import sonia.scm.AbstractTestBase;
+import sonia.scm.util.MockUtil;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class HealthCheckerTest extends AbstractTestBase
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    final Subject subject = MockUtil.createAdminSubject();
+
+    when(subject.associateWith(any(Runnable.class))).then(
+      new Answer<Runnable>()
+    {
+      @Override
+      public Runnable answer(InvocationOnMock invocation)
+      {
+        return new SubjectRunnable(subject,
+          (Runnable) invocation.getArguments()[0]);
+      }
+    });
+    setSubject(subject);
+
+    heartOfGold = RepositoryTestData.createHeartOfGold();
+    heartOfGold.setId("hog");
+    restaurant = RepositoryTestData.createRestaurantAtTheEndOfTheUniverse();
+    restaurant.setId("rateotu");
+
+    heartOfGoldDirectory = tempFolder.newFolder();
+    heartOfGoldDirectory.setLastModified(1000000000000l);
+
+    RepositoryDirectoryHandler handler = mock(RepositoryDirectoryHandler.class);
+
+    when(handler.getDirectory(heartOfGold)).thenReturn(heartOfGoldDirectory);
+    when(handler.getDirectory(restaurant)).thenReturn(tempFolder.newFolder());
+
+    RepositoryManager repositoryManager = mock(RepositoryManager.class);
+
+    when(repositoryManager.getHandler(anyString())).thenReturn(handler);
+    when(repositoryManager.getAll()).thenReturn(Lists.newArrayList(heartOfGold,
+      restaurant));
+
+    check = mock(HealthCheck.class);
+    when(check.check(heartOfGold)).thenReturn(HealthCheckResult.healthy());
+    when(check.check(restaurant)).thenReturn(
+      HealthCheckResult.unhealthy(
+        new HealthCheckFailure("123", "failure", "failed")));
+
+    checker = new HealthChecker(ImmutableSet.of(check), repositoryManager, 2);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @After
+  public void tearDown() throws IOException
+  {
+    checker.close();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws InterruptedException
+   */
+  @Test
+  public void testCheckAll() throws InterruptedException
+  {
+    HealthCheckProgress progress = checkAll();
+
+    assertEquals(2, progress.getTotal());
+    assertEquals(2, progress.getCompleted());
+    assertEquals(0, progress.getSkipped());
+    assertEquals(1, progress.getUnhealthy());
+    assertTrue(heartOfGold.isHealthy());
+    assertFalse(restaurant.isHealthy());
+    verify(check).check(heartOfGold);
+    verify(check).check(restaurant);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws InterruptedException
+   */
+  @Test
+  public void testSkipUnmodified() throws InterruptedException
+  {
+    checkAll();
+
+    HealthCheckProgress progress = checkAll();
+
+    assertEquals(2, progress.getCompleted());
+    assertEquals(2, progress.getSkipped());
+    assertEquals(1, progress.getUnhealthy());
+    verify(check, times(1)).check(heartOfGold);
+    verify(check, times(1)).check(restaurant);
+
+    heartOfGoldDirectory.setLastModified(1100000000000l);
+    progress = checkAll();
+    assertEquals(1, progress.getSkipped());
+    verify(check, times(2)).check(heartOfGold);
+    verify(check, times(1)).check(restaurant);
+  }
+
+  /**
+   * Starts the checks and waits until they are finished.
+   *
+   *
+   * @return progress of the finished checks
+   *
+   * @throws InterruptedException
+   */
+  private HealthCheckProgress checkAll() throws InterruptedException
+  {
+    HealthCheckProgress progress = checker.checkAll();
+
+    for (int i = 0; progress.isRunning() && (i < 100); i++)
+    {
+      Thread.sleep(50l);
+      progress = checker.getProgress();
+    }
+
+    assertFalse(progress.isRunning());
+
+    return progress;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** Field description */
+  private HealthCheck check;
+
+  /** Field description */
+  private HealthChecker checker;
+
+  /** Field description */
+  private Repository heartOfGold;
+
+  /** Field description */
+  private File heartOfGoldDirectory;
+
+  /** Field description */
+  private Repository restaurant;
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.security;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.shiro.subject.SimplePrincipalCollection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.Mockito;
+
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.MapCacheManager;
+import sonia.scm.group.Group;
+import sonia.scm.group.GroupEvent;
+import sonia.scm.group.GroupNames;
+import sonia.scm.repository.Permission;
+import sonia.scm.repository.PermissionType;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryDAO;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.user.User;
+import sonia.scm.user.UserEvent;
+import sonia.scm.user.UserTestData;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class AuthorizationCollectorTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp()
+  {
+    repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+    repository.setPermissions(
+      Lists.newArrayList(new Permission("trillian", PermissionType.READ)));
+
+    RepositoryDAO repositoryDAO = mock(RepositoryDAO.class);
+
+    when(repositoryDAO.getAll()).thenReturn(Lists.newArrayList(repository));
+
+    SecuritySystem securitySystem = mock(SecuritySystem.class);
+
+    when(
+      securitySystem.getPermissions(Mockito.any(Predicate.class))).thenReturn(
+        Collections.EMPTY_LIST);
+
+    MapCacheManager cacheManager = new MapCacheManager();
+
+    cache = cacheManager.getCache("sonia.cache.authorizing");
+    collector = new AuthorizationCollector(cacheManager, repositoryDAO,
+      securitySystem, new RepositoryPermissionResolver());
+
+    trillian = UserTestData.createTrillian();
+    dent = UserTestData.createDent();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testGroupEvent()
+  {
+    collect(trillian, "heartOfGold");
+    collect(dent, "earth");
+
+    Group group = new Group("xml", "heartOfGold");
+
+    collector.onEvent(new GroupEvent(HandlerEventType.MODIFY, group));
+    assertEquals(1, cache.size());
+
+    // dent is not authenticated with the group, but is now a member
+    group.add(dent.getName());
+    collector.onEvent(new GroupEvent(HandlerEventType.MODIFY, group));
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutableInfo()
+  {
+    collect(trillian).addRole("admin");
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutablePermissions()
+  {
+    collect(trillian).getObjectPermissions().add(
+      new RepositoryPermission("hog", PermissionType.OWNER));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testRepositoryEvent()
+  {
+    RepositoryAuthorizationInfo info = collect(trillian);
+
+    assertEquals(PermissionType.READ, info.getPermissionType("hog"));
+    assertNull(collect(dent).getPermissionType("hog"));
+
+    repository.setPermissions(
+      Lists.newArrayList(
+        new Permission("trillian", PermissionType.OWNER),
+        new Permission("dent", PermissionType.WRITE)));
+    collector.onEvent(new RepositoryEvent(HandlerEventType.MODIFY,
+      repository));
+
+    // the cached entries are updated and not removed
+    assertEquals(2, cache.size());
+    assertEquals(PermissionType.OWNER,
+      collect(trillian).getPermissionType("hog"));
+    assertEquals(PermissionType.WRITE, collect(dent).getPermissionType("hog"));
+
+    repository.setPublicReadable(true);
+    repository.setPermissions(Lists.<Permission>newArrayList());
+    collector.onEvent(new RepositoryEvent(HandlerEventType.MODIFY,
+      repository));
+    assertEquals(PermissionType.READ, collect(dent).getPermissionType("hog"));
+
+    collector.onEvent(new RepositoryEvent(HandlerEventType.DELETE,
+      repository));
+    assertEquals(2, cache.size());
+    assertNull(collect(dent).getPermissionType("hog"));
+    assertNull(collect(trillian).getPermissionType("hog"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testUserEvent()
+  {
+    collect(trillian);
+    collect(dent);
+    assertEquals(2, cache.size());
+
+    collector.onEvent(new UserEvent(HandlerEventType.MODIFY, trillian));
+    assertEquals(1, cache.size());
+
+    collector.onEvent(new UserEvent(HandlerEventType.BEFORE_DELETE, dent));
+    assertEquals(1, cache.size());
+
+    collector.onEvent(new UserEvent(HandlerEventType.DELETE, dent));
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param user
+   * @param groups
+   *
+   * @return
+   */
+  private RepositoryAuthorizationInfo collect(User user, String... groups)
+  {
+    SimplePrincipalCollection principals = principalMap.get(user.getId());
+
+    if (principals == null)
+    {
+      principals = new SimplePrincipalCollection();
+      principals.add(user.getId(), "scm");
+      principals.add(user, "scm");
+      principals.add(new GroupNames(Lists.newArrayList(groups)), "scm");
+      principalMap.put(user.getId(), principals);
+    }
+
+    return (RepositoryAuthorizationInfo) collector.collect(principals);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private Cache<Object, Object> cache;
+
+  /** Field description */
+  private AuthorizationCollector collector;
+
+  /** Field description */
+  private User dent;
+
+  /** Field description */
+  private final Map<String, SimplePrincipalCollection> principalMap =
+    Maps.newHashMap();
+
+  /** Field description */
+  private Repository repository;
+
+  /** Field description */
+  private User trillian;
+}
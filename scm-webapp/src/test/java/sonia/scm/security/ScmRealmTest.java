@@ -48,6 +48,7 @@ import org.apache.shiro.authc.UnknownAccountException;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.shiro.subject.PrincipalCollection;
 
 import org.junit.Test;
@@ -251,6 +252,113 @@ public class ScmRealmTest
     containPermission(permissions, r3, PermissionType.OWNER);
   }
 
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testIsPermitted()
+  {
+    User trillian = createSampleUser();
+    Repository r1 = RepositoryTestData.create42Puzzle();
+
+    prepareRepo(r1, trillian, PermissionType.WRITE);
+
+    Repository r2 = RepositoryTestData.createHeartOfGold();
+
+    r2.setId(id());
+    r2.setPublicReadable(true);
+
+    Repository r3 = RepositoryTestData.createHappyVerticalPeopleTransporter();
+
+    r3.setId(id());
+
+    ScmRealm realm = createRealm(trillian, null, null,
+                       ImmutableSet.of(r1, r2, r3));
+    PrincipalCollection principals =
+      realm.getAuthenticationInfo(token(trillian)).getPrincipals();
+
+    assertTrue(realm.isPermitted(principals,
+      new RepositoryPermission(r1, PermissionType.READ)));
+    assertTrue(realm.isPermitted(principals,
+      new RepositoryPermission(r1, PermissionType.WRITE)));
+    assertFalse(realm.isPermitted(principals,
+      new RepositoryPermission(r1, PermissionType.OWNER)));
+    assertTrue(realm.isPermitted(principals,
+      new RepositoryPermission(r2, PermissionType.READ)));
+    assertFalse(realm.isPermitted(principals,
+      new RepositoryPermission(r2, PermissionType.WRITE)));
+    assertFalse(realm.isPermitted(principals,
+      new RepositoryPermission(r3, PermissionType.READ)));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testIsPermittedAll()
+  {
+    User trillian = createSampleUser();
+    Repository r1 = RepositoryTestData.create42Puzzle();
+
+    prepareRepo(r1, trillian, PermissionType.WRITE);
+
+    Repository r2 = RepositoryTestData.createHeartOfGold();
+
+    r2.setId(id());
+    r2.setPublicReadable(true);
+
+    Repository r3 = RepositoryTestData.createHappyVerticalPeopleTransporter();
+
+    r3.setId(id());
+
+    ScmRealm realm = createRealm(trillian, null, null,
+                       ImmutableSet.of(r1, r2, r3));
+    PrincipalCollection principals =
+      realm.getAuthenticationInfo(token(trillian)).getPrincipals();
+    List<Permission> granted =
+      ImmutableList.<Permission>of(new RepositoryPermission(r1,
+        PermissionType.WRITE), new RepositoryPermission(r2,
+          PermissionType.READ));
+
+    // r2 is public readable and not part of the object permissions
+    assertTrue(realm.isPermittedAll(principals, granted));
+
+    boolean[] permitted = realm.isPermitted(principals, granted);
+
+    assertTrue(permitted[0]);
+    assertTrue(permitted[1]);
+    realm.checkPermissions(principals, granted);
+    realm.checkPermission(principals,
+      new RepositoryPermission(r2, PermissionType.READ));
+    assertFalse(realm.isPermittedAll(principals,
+      ImmutableList.<Permission>of(new RepositoryPermission(r2,
+        PermissionType.READ), new RepositoryPermission(r3,
+          PermissionType.READ))));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test(expected = UnauthorizedException.class)
+  public void testCheckPermissionsDenied()
+  {
+    User trillian = createSampleUser();
+    Repository r1 = RepositoryTestData.create42Puzzle();
+
+    r1.setId(id());
+
+    ScmRealm realm = createRealm(trillian, null, null, ImmutableSet.of(r1));
+    PrincipalCollection principals =
+      realm.getAuthenticationInfo(token(trillian)).getPrincipals();
+
+    realm.checkPermissions(principals,
+      ImmutableList.<Permission>of(new RepositoryPermission(r1,
+        PermissionType.READ)));
+  }
+
   /**
    * Method description
    *
@@ -0,0 +1,340 @@
+/**
+ * Copyright (c) 2010, Sebastian Sdorra
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of SCM-Manager; nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * http://bitbucket.org/sdorra/scm-manager
+ *
+ */
+
+
+package sonia.scm.web.cgi;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sonia.scm.config.ScmConfiguration;
+
+import static org.junit.Assert.*;
+
+import static org.mockito.Mockito.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.Vector;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tests the parsing of the headers of a cgi response.
+ *
+ * @author Sebastian Sdorra
+ */
+public class DefaultCGIExecutorTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersBodyInSameRead() throws IOException
+  {
+    byte[] buffer = new byte[128];
+    int remaining = executor.parseHeaders(
+                      stream("Content-Type: text/plain\n\nhitchhiker"),
+                      buffer);
+
+    assertEquals("hitchhiker", new String(buffer, 0, remaining, "UTF-8"));
+    verify(response).addHeader("Content-Type", "text/plain");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersCRLF() throws IOException
+  {
+    byte[] buffer = new byte[128];
+    int remaining = executor.parseHeaders(
+                      stream("Content-Type: text/plain\r\n"
+                        + "Content-Length: 10\r\n\r\nhitchhiker"), buffer);
+
+    assertEquals("hitchhiker", new String(buffer, 0, remaining, "UTF-8"));
+    verify(response).addHeader("Content-Type", "text/plain");
+    verify(response).addHeader("Content-Length", "10");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersHttpPrefix() throws IOException
+  {
+    byte[] buffer = new byte[128];
+
+    assertEquals(0,
+      executor.parseHeaders(stream("HTTP/1.0 200 OK\nX-Test: a\n\n"),
+        buffer));
+    verify(response).addHeader("X-Test", "a");
+    verify(response, never()).setStatus(anyInt());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersLF() throws IOException
+  {
+    byte[] buffer = new byte[128];
+    int remaining = executor.parseHeaders(
+                      stream("Content-Type: text/plain\n"
+                        + "Content-Length: 10\n\nhitchhiker"), buffer);
+
+    assertEquals("hitchhiker", new String(buffer, 0, remaining, "UTF-8"));
+    verify(response).addHeader("Content-Type", "text/plain");
+    verify(response).addHeader("Content-Length", "10");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersLocation() throws IOException
+  {
+    when(response.encodeRedirectURL("/scm/hg/repo")).thenReturn(
+      "/scm/hg/repo;jsessionid=1");
+
+    byte[] buffer = new byte[128];
+
+    executor.parseHeaders(stream("Location: /scm/hg/repo\n\n"), buffer);
+    verify(response).sendRedirect("/scm/hg/repo;jsessionid=1");
+    verify(response, never()).addHeader(anyString(), anyString());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersMissingBlankLine() throws IOException
+  {
+    byte[] buffer = new byte[128];
+
+    // the incomplete last line is not a header
+    assertEquals(0,
+      executor.parseHeaders(stream("Content-Type: text/plain\nX-Test: a"),
+        buffer));
+    verify(response).addHeader("Content-Type", "text/plain");
+    verify(response, never()).addHeader(eq("X-Test"), anyString());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersEmptyOutput() throws IOException
+  {
+    assertEquals(0, executor.parseHeaders(stream(""), new byte[128]));
+    verifyZeroInteractions(response);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersSplitAcrossReads() throws IOException
+  {
+    String output = "Content-Type: text/plain\r\nStatus: 201 Created\r\n"
+      + "\r\nhitchhiker";
+
+    // the buffer is smaller than a header line
+    byte[] buffer = new byte[8];
+    InputStream stream = new ChunkedInputStream(stream(output), 5);
+    int remaining = executor.parseHeaders(stream, buffer);
+    String body = new String(buffer, 0, remaining, "UTF-8").concat(
+                    new String(ByteStreams.toByteArray(stream), "UTF-8"));
+
+    assertEquals("hitchhiker", body);
+    verify(response).addHeader("Content-Type", "text/plain");
+    verify(response).setStatus(201);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParseHeadersStatusError() throws IOException
+  {
+    executor.parseHeaders(stream("Status: 404 Not Found\n\n"),
+      new byte[128]);
+    verify(response).sendError(404);
+    verify(response, never()).setStatus(anyInt());
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUpExecutor()
+  {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+
+    when(request.getPathInfo()).thenReturn("/repo");
+    when(request.getRequestURI()).thenReturn("/scm/hg/repo");
+    when(request.getHeaderNames()).thenReturn(new Vector<String>().elements());
+    response = mock(HttpServletResponse.class);
+    executor = new DefaultCGIExecutor(MoreExecutors.sameThreadExecutor(),
+      new ScmConfiguration(), mock(ServletContext.class), request, response);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @param value
+   *
+   * @return
+   */
+  private InputStream stream(String value)
+  {
+    return new ByteArrayInputStream(value.getBytes(Charsets.UTF_8));
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Stream which returns at most a given number of bytes per read, like the
+   * output of a process which writes in small blocks.
+   */
+  private static class ChunkedInputStream extends InputStream
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param stream
+     * @param chunkSize
+     */
+    public ChunkedInputStream(InputStream stream, int chunkSize)
+    {
+      this.stream = stream;
+      this.chunkSize = chunkSize;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Method description
+     *
+     *
+     * @return
+     *
+     * @throws IOException
+     */
+    @Override
+    public int read() throws IOException
+    {
+      return stream.read();
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @param b
+     * @param off
+     * @param len
+     *
+     * @return
+     *
+     * @throws IOException
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      return stream.read(b, off, Math.min(len, chunkSize));
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** maximum number of bytes per read */
+    private final int chunkSize;
+
+    /** wrapped stream */
+    private final InputStream stream;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private DefaultCGIExecutor executor;
+
+  /** Field description */
+  private HttpServletResponse response;
+}